@@ -144,3 +144,47 @@ CREATE TABLE `persistent_logins` (
   PRIMARY KEY (`series`),
   KEY `IDX_persistent_logins_username` (`username`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- Audit events written by JdbcAuditLogWriter and read by JdbcAuditLogQueryService.
+-- Only required when user.audit.store=jdbc.  ts is epoch milliseconds; user_email is stored lower-cased.
+CREATE TABLE `audit_event` (
+  `id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+  `ts` BIGINT(20) NOT NULL,
+  `action` VARCHAR(255) DEFAULT NULL,
+  `action_status` VARCHAR(255) DEFAULT NULL,
+  `user_id` VARCHAR(255) DEFAULT NULL,
+  `user_email` VARCHAR(255) DEFAULT NULL,
+  `ip_address` VARCHAR(255) DEFAULT NULL,
+  `session_id` VARCHAR(255) DEFAULT NULL,
+  `message` TEXT DEFAULT NULL,
+  `user_agent` TEXT DEFAULT NULL,
+  `extra_data` TEXT DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  KEY `IDX_audit_event_user_ts` (`user_id`, `ts`),
+  KEY `IDX_audit_event_email_ts` (`user_email`, `ts`),
+  KEY `IDX_audit_event_action_ts` (`action`, `ts`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- Current consent state per user and consent type, maintained by ConsentStateService through JDBC (no entity maps it).
+-- Only required when user.gdpr.consentStateStore=true.  Rows are deleted with the user by a UserPreDeleteEvent listener.
+CREATE TABLE `user_consent_state` (
+  `id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+  `user_id` BIGINT(20) NOT NULL,
+  `consent_type` VARCHAR(255) NOT NULL,
+  `active` BIT(1) NOT NULL,
+  `granted_at` DATETIME(6) DEFAULT NULL,
+  `withdrawn_at` DATETIME(6) DEFAULT NULL,
+  `changed_at` DATETIME(6) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `ux_user_consent_state_user_type` (`user_id`, `consent_type`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- Completion of, and the lease on running, the one-time backfill of user_consent_state from the audit log
+-- (ConsentStateBackfillJob).  Holds a single row.  Only required when user.gdpr.consentStateStore=true.
+CREATE TABLE `user_consent_state_backfill` (
+  `name` VARCHAR(64) NOT NULL,
+  `locked_by` VARCHAR(255) NOT NULL,
+  `locked_until` DATETIME(6) NOT NULL,
+  `completed_at` DATETIME(6) DEFAULT NULL,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
@@ -0,0 +1,83 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FileAuditLogWriter} throughput under each {@link AuditDurabilityPolicy}, in synchronous and async mode.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.includes=AuditDurabilityBenchmark}. Results are dominated by the storage device's
+ * {@code fsync} latency, so compare policies on the hardware the application will actually run on. Add
+ * {@code -Pjmh.args="-t 8"} to measure contended producers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditDurabilityBenchmark {
+
+    @Param({"NONE", "INTERVAL", "EVERY_N_EVENTS", "EVERY_BATCH"})
+    public AuditDurabilityPolicy policy;
+
+    @Param({"false", "true"})
+    public boolean asyncWrite;
+
+    private Path directory;
+    private FileAuditLogWriter writer;
+    private AuditEvent event;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audit-durability-bench");
+        AuditConfig config = new AuditConfig();
+        config.setLogEvents(true);
+        config.setLogFilePath(directory.resolve("audit.log").toString());
+        config.setDurabilityPolicy(policy);
+        config.setAsyncWrite(asyncWrite);
+        // Large buffer so async mode measures the writer, not drops.
+        config.setAsyncBufferSize(1 << 20);
+        writer = new FileAuditLogWriter(config);
+        writer.setup();
+        event = AuditEvent.builder()
+                .source(this)
+                .action("Login")
+                .actionStatus("Success")
+                .ipAddress("203.0.113.10")
+                .sessionId("4C8B1A2F9D3E")
+                .userAgent("Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36")
+                .message("User logged in")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.cleanup();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void writeLog() {
+        writer.writeLog(event);
+    }
+}
@@ -0,0 +1,122 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.text.DateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link AuditTimestampParser} with the parser it replaced, which tried each {@link DateTimeFormatter} as a
+ * {@link ZonedDateTime} and then as a {@link LocalDateTime} and relied on {@link DateTimeParseException} to move on.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.includes=AuditTimestampParsingBenchmark}. Each invocation parses one segment's worth of
+ * timestamps in the given rendering, so the single-pass parser pays for format detection once per invocation, as it does once per
+ * segment in {@link FileAuditLogQueryService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditTimestampParsingBenchmark {
+
+    private static final int LINES_PER_SEGMENT = 1000;
+
+    /** The previous parser's formatters, in its order. */
+    private static final DateTimeFormatter[] LEGACY_FORMATTERS = {
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US),
+            DateTimeFormatter.ofPattern("MMM d, yyyy, h:mm:ss a", Locale.US),
+            DateTimeFormatter.ofPattern("MMM dd, yyyy, h:mm:ss a", Locale.US),
+            DateTimeFormatter.ISO_INSTANT,
+            DateTimeFormatter.ISO_DATE_TIME
+    };
+
+    /** The rendering of the timestamps in the segment. */
+    @Param({"ISO_INSTANT", "EPOCH_MILLIS", "DATE_TO_STRING", "SHORT_MESSAGE_FORMAT"})
+    public String rendering;
+
+    private String[] timestamps;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        timestamps = new String[LINES_PER_SEGMENT];
+        Instant start = Instant.parse("2025-01-15T10:30:00Z");
+        DateFormat shortFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+        for (int i = 0; i < LINES_PER_SEGMENT; i++) {
+            Instant instant = start.plusSeconds(i * 61L);
+            timestamps[i] = switch (rendering) {
+                case "ISO_INSTANT" -> instant.toString();
+                case "EPOCH_MILLIS" -> Long.toString(instant.toEpochMilli());
+                case "DATE_TO_STRING" -> Date.from(instant).toString();
+                case "SHORT_MESSAGE_FORMAT" -> shortFormat.format(Date.from(instant));
+                default -> throw new IllegalArgumentException(rendering);
+            };
+        }
+    }
+
+    @Benchmark
+    public int legacyParser() {
+        int parsed = 0;
+        for (String timestamp : timestamps) {
+            if (legacyParse(timestamp) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public int singlePassParser() {
+        AuditTimestampParser parser = new AuditTimestampParser();
+        int parsed = 0;
+        for (String timestamp : timestamps) {
+            if (parser.parse(timestamp) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    /** The parser {@link AuditTimestampParser} replaced, kept here as the baseline. */
+    private static Instant legacyParse(String dateStr) {
+        if (dateStr == null || dateStr.isBlank() || "null".equals(dateStr)) {
+            return null;
+        }
+        for (DateTimeFormatter formatter : LEGACY_FORMATTERS) {
+            try {
+                return ZonedDateTime.parse(dateStr.trim(), formatter).toInstant();
+            } catch (DateTimeParseException e) {
+                // Try next approach
+            }
+            try {
+                return LocalDateTime.parse(dateStr.trim(), formatter).atZone(ZoneId.systemDefault()).toInstant();
+            } catch (DateTimeParseException e) {
+                // Try next formatter
+            }
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(dateStr.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.digitalsanctuary.spring.user.api;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import org.springframework.context.MessageSource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -18,6 +27,8 @@ import com.digitalsanctuary.spring.user.gdpr.ConsentRecord;
 import com.digitalsanctuary.spring.user.gdpr.ConsentType;
 import com.digitalsanctuary.spring.user.gdpr.GdprConfig;
 import com.digitalsanctuary.spring.user.gdpr.GdprDeletionService;
+import com.digitalsanctuary.spring.user.gdpr.GdprExportJob;
+import com.digitalsanctuary.spring.user.gdpr.GdprExportJobService;
 import com.digitalsanctuary.spring.user.gdpr.GdprExportService;
 import com.digitalsanctuary.spring.user.persistence.model.User;
 import com.digitalsanctuary.spring.user.service.DSUserDetails;
@@ -27,6 +38,7 @@ import com.digitalsanctuary.spring.user.util.JSONResponse;
 import com.digitalsanctuary.spring.user.util.UserUtils;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -38,7 +50,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
  *
  * <p>Provides JSON endpoints for GDPR compliance including:
  * <ul>
- *   <li>Data export (Right of Access)</li>
+ *   <li>Data export (Right of Access), immediate, streamed or as a background job</li>
  *   <li>Account deletion (Right to be Forgotten)</li>
  *   <li>Consent management</li>
  * </ul>
@@ -58,6 +70,7 @@ public class GdprAPI {
 
     private final GdprConfig gdprConfig;
     private final GdprExportService gdprExportService;
+    private final GdprExportJobService gdprExportJobService;
     private final GdprDeletionService gdprDeletionService;
     private final ConsentAuditService consentAuditService;
     private final UserService userService;
@@ -116,6 +129,179 @@ public class GdprAPI {
         }
     }
 
+    /**
+     * Exports all GDPR-relevant data for the authenticated user as a downloadable JSON document, streamed to the response.
+     *
+     * <p>Contains the same sections as {@link #exportUserData}, without the {@link JSONResponse} envelope, but is written by
+     * {@link GdprExportService#writeUserData} as it is read, so the memory used stays flat however large the user's audit history
+     * and contributor data are. Prefer this endpoint for long-lived accounts.
+     *
+     * <p>Errors detected before anything is written return the usual JSON error response. Once streaming has started the status
+     * can no longer change; a failure then leaves the document truncated, and is logged and audited.
+     *
+     * @param userDetails the authenticated user
+     * @param request the HTTP request
+     * @param response the HTTP response the export is written to
+     * @return an error response, or {@code null} when the export has been written to the response
+     */
+    @GetMapping("/export/stream")
+    public ResponseEntity<JSONResponse> streamUserData(@AuthenticationPrincipal DSUserDetails userDetails,
+                                                        HttpServletRequest request, HttpServletResponse response) {
+        if (!gdprConfig.isEnabled()) {
+            return buildNotFoundResponse();
+        }
+
+        User user = validateAndGetUser(userDetails);
+        if (user == null) {
+            return buildErrorResponse("User not authenticated", 1, HttpStatus.UNAUTHORIZED);
+        }
+
+        try {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename("gdpr-export.json").build().toString());
+            gdprExportService.writeUserData(user, response.getOutputStream());
+            response.flushBuffer();
+            logAuditEvent("GdprExport", "Success", "User data exported (streamed)", user, request);
+            return null;
+        } catch (Exception e) {
+            log.error("GdprAPI.streamUserData: Failed to export data for user {}: {}",
+                    user.getId(), e.getMessage(), e);
+            logAuditEvent("GdprExport", "Failure", e.getMessage(), user, request);
+            if (response.isCommitted()) {
+                return null;
+            }
+            response.reset();
+            return buildErrorResponse("Failed to export data", 5, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Requests a background export of the authenticated user's data.
+     *
+     * <p>Returns at once with the job, whose id is used to poll {@link #getExportJob} and, once its status is
+     * {@code COMPLETED}, to download the compressed export from {@link #downloadExportJob}. If the user already has an export
+     * queued or running, that job is returned instead of starting another.
+     *
+     * @param userDetails the authenticated user
+     * @param request the HTTP request
+     * @return 202 Accepted with the job, or 503 if too many exports are waiting
+     */
+    @PostMapping("/export/jobs")
+    public ResponseEntity<JSONResponse> requestExportJob(@AuthenticationPrincipal DSUserDetails userDetails,
+                                                          HttpServletRequest request) {
+        if (!gdprConfig.isEnabled()) {
+            return buildNotFoundResponse();
+        }
+
+        User user = validateAndGetUser(userDetails);
+        if (user == null) {
+            return buildErrorResponse("User not authenticated", 1, HttpStatus.UNAUTHORIZED);
+        }
+
+        try {
+            GdprExportJob job = gdprExportJobService.submit(user);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(JSONResponse.builder()
+                    .success(true)
+                    .code(0)
+                    .message("Data export started")
+                    .data(job)
+                    .build());
+        } catch (RejectedExecutionException e) {
+            log.warn("GdprAPI.requestExportJob: Export job rejected for user {}: too many jobs waiting", user.getId());
+            return buildErrorResponse("Too many exports in progress, please try again later", 6, HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            log.error("GdprAPI.requestExportJob: Failed to start export for user {}: {}",
+                    user.getId(), e.getMessage(), e);
+            return buildErrorResponse("Failed to start data export", 5, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Gets the status of one of the authenticated user's export jobs.
+     *
+     * @param userDetails the authenticated user
+     * @param jobId the job id
+     * @return the job, or 404 if the user has no such job
+     */
+    @GetMapping("/export/jobs/{jobId}")
+    public ResponseEntity<JSONResponse> getExportJob(@AuthenticationPrincipal DSUserDetails userDetails,
+                                                      @PathVariable String jobId) {
+        if (!gdprConfig.isEnabled()) {
+            return buildNotFoundResponse();
+        }
+
+        User user = validateAndGetUser(userDetails);
+        if (user == null) {
+            return buildErrorResponse("User not authenticated", 1, HttpStatus.UNAUTHORIZED);
+        }
+
+        return gdprExportJobService.getJob(jobId, user)
+                .map(job -> ResponseEntity.ok(JSONResponse.builder()
+                        .success(true)
+                        .code(0)
+                        .message("Export job " + job.getStatus())
+                        .data(job)
+                        .build()))
+                .orElseGet(() -> buildErrorResponse("Export job not found", 3, HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Downloads the gzip-compressed export of a completed job. An export can be downloaded once; its file is deleted when
+     * the download completes.
+     *
+     * @param userDetails the authenticated user
+     * @param jobId the job id
+     * @param response the HTTP response the export is written to
+     * @return an error response, or {@code null} when the export has been written to the response
+     */
+    @GetMapping(path = "/export/jobs/{jobId}/download", produces = {"application/gzip", "application/json"})
+    public ResponseEntity<JSONResponse> downloadExportJob(@AuthenticationPrincipal DSUserDetails userDetails,
+                                                           @PathVariable String jobId, HttpServletResponse response) {
+        if (!gdprConfig.isEnabled()) {
+            return buildNotFoundResponse();
+        }
+
+        User user = validateAndGetUser(userDetails);
+        if (user == null) {
+            return buildErrorResponse("User not authenticated", 1, HttpStatus.UNAUTHORIZED);
+        }
+
+        Optional<GdprExportJob> job = gdprExportJobService.getJob(jobId, user);
+        if (job.isEmpty()) {
+            return buildErrorResponse("Export job not found", 3, HttpStatus.NOT_FOUND);
+        }
+        Optional<Path> file = gdprExportJobService.claimDownload(jobId, user);
+        if (file.isEmpty()) {
+            return buildErrorResponse("Export is not available for download: " + job.get().getStatus(), 4, HttpStatus.CONFLICT);
+        }
+
+        boolean delivered = false;
+        try {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType("application/gzip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename("gdpr-export.json.gz").build().toString());
+            response.setContentLengthLong(Files.size(file.get()));
+            Files.copy(file.get(), response.getOutputStream());
+            response.flushBuffer();
+            delivered = true;
+            return null;
+        } catch (Exception e) {
+            log.error("GdprAPI.downloadExportJob: Failed to send export job {} to user {}: {}",
+                    jobId, user.getId(), e.getMessage(), e);
+            if (response.isCommitted()) {
+                return null;
+            }
+            response.reset();
+            return buildErrorResponse("Failed to download export", 5, HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            gdprExportJobService.finishDownload(jobId, delivered);
+        }
+    }
+
     /**
      * Requests deletion of the authenticated user's account.
      *
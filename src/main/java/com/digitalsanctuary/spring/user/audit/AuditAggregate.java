@@ -0,0 +1,42 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * One row of a cross-user audit aggregate returned by {@link AuditAnalyticsService#aggregate}: the number of records in a time bucket
+ * that share the grouped fields. Fields the {@link AuditAggregateQuery} does not group by are {@code null}.
+ *
+ * @see AuditAggregateQuery
+ */
+@Value
+@Builder
+public class AuditAggregate {
+
+    /**
+     * The start of the time bucket, or {@code null} when the query has no {@link AuditAggregateQuery#getBucket() bucket}.
+     */
+    Instant bucketStart;
+
+    /**
+     * The action, or {@code null} when not grouped by action.
+     */
+    String action;
+
+    /**
+     * The action status, or {@code null} when not grouped by status.
+     */
+    String actionStatus;
+
+    /**
+     * The IP address, or {@code null} when not grouped by address. {@value AuditRollups#OTHER_IP_ADDRESS} collects the addresses
+     * that arrived once the rollups were full.
+     */
+    String ipAddress;
+
+    /**
+     * The number of records.
+     */
+    long count;
+}
@@ -0,0 +1,123 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+/**
+ * Criteria and grouping of a cross-user audit aggregate, answered by {@link AuditAnalyticsService#aggregate} from the per-minute
+ * {@link AuditRollups}.
+ *
+ * <p>The criteria select records like those of an {@link AuditQuery}, across all users. The selected records are counted per
+ * combination of the {@link #dimensions} and, when a {@link #bucket} is given, per time bucket. The time range is applied in whole
+ * minutes: the minute holding {@link #since} is included, and so is the one holding {@link #until}. Immutable.
+ *
+ * <pre>{@code
+ * // failed logins per IP address in the last hour, most first
+ * AuditAggregateQuery failedLoginsByIp = AuditAggregateQuery.builder()
+ *         .action("Login")
+ *         .status("Failure")
+ *         .dimension(AuditAggregateQuery.Dimension.IP_ADDRESS)
+ *         .since(Instant.now().minus(1, ChronoUnit.HOURS))
+ *         .build();
+ *
+ * // CAPTCHA failures per minute
+ * AuditAggregateQuery captchaFailures = AuditAggregateQuery.builder()
+ *         .action("CaptchaValidation")
+ *         .status("Failure")
+ *         .bucket(Duration.ofMinutes(1))
+ *         .build();
+ * }</pre>
+ *
+ * @see AuditAnalyticsService
+ */
+@Value
+@Builder
+public class AuditAggregateQuery {
+
+    /**
+     * A field records can be grouped by.
+     */
+    public enum Dimension {
+
+        /** The action, e.g. "Login". */
+        ACTION,
+
+        /** The action status, e.g. "Failure". */
+        STATUS,
+
+        /** The client IP address. */
+        IP_ADDRESS
+    }
+
+    /**
+     * Only records with one of these actions; empty for any action.
+     */
+    @Singular
+    Set<String> actions;
+
+    /**
+     * Only records with one of these action statuses; empty for any status.
+     */
+    @Singular
+    Set<String> statuses;
+
+    /**
+     * Only records from this IP address, or {@code null} for any address.
+     */
+    String ipAddress;
+
+    /**
+     * Only records at or after this instant, or {@code null} for everything retained.
+     */
+    Instant since;
+
+    /**
+     * Only records before this instant, or {@code null} for no upper bound.
+     */
+    Instant until;
+
+    /**
+     * The fields counts are grouped by; empty for a single total per bucket.
+     */
+    @Singular
+    Set<Dimension> dimensions;
+
+    /**
+     * The width of the time buckets, a whole number of minutes; {@code null} to count the whole range as one bucket. Buckets are
+     * aligned to the epoch, so one-hour buckets start on the hour (UTC).
+     */
+    Duration bucket;
+
+    /**
+     * The maximum number of groups returned per bucket, keeping the largest counts; {@code 0} for all of them.
+     */
+    int limit;
+
+    /**
+     * Returns whether the counts are grouped by a dimension.
+     *
+     * @param dimension the dimension
+     * @return {@code true} if the result has one row per value of the dimension
+     */
+    public boolean groupsBy(Dimension dimension) {
+        return dimensions.contains(dimension);
+    }
+
+    /**
+     * Returns whether records with the given fields meet the criteria.
+     *
+     * @param action the action
+     * @param status the action status
+     * @param address the IP address
+     * @return {@code true} if the query counts such records
+     */
+    public boolean matches(String action, String status, String address) {
+        return (actions.isEmpty() || actions.contains(action))
+                && (statuses.isEmpty() || statuses.contains(status))
+                && (ipAddress == null || ipAddress.equals(address));
+    }
+}
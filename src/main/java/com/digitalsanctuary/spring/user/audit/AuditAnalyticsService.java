@@ -0,0 +1,59 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Cross-user aggregate queries over the audit trail for administrators and security dashboards, such as failed logins per IP
+ * address in the last hour, CAPTCHA failures per minute or the most frequent actions today.
+ *
+ * <p>Answered from the {@link AuditRollups} the audit writer keeps up to date, so a query costs in proportion to the minutes and groups
+ * it covers and never reads raw events. The counts start at startup and reach back at most {@code user.audit.rollups.retentionMinutes};
+ * {@link #getCoverageStart()} tells a dashboard from when they are complete.
+ *
+ * <p>The counts are per node: they cover only the events written by this application instance. This holds even with
+ * {@code user.audit.store=jdbc}, where every node writes to the same table: each node's service still answers from its own rollups,
+ * not from the table. Behind a load balancer, add up the results of every node, or query the {@code audit_event} table directly.
+ *
+ * <p>Unlike {@link AuditLogQueryService}, which answers for one user, this service sees every user's activity. It performs no
+ * authorization of its own: an application exposing it must restrict access to administrators.
+ *
+ * @see AuditAggregateQuery
+ */
+public class AuditAnalyticsService {
+
+    private final AuditRollups rollups;
+
+    /**
+     * Creates the service.
+     *
+     * @param rollups the rollups maintained by the audit writer
+     */
+    public AuditAnalyticsService(AuditRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    /**
+     * Counts the records selected by a query, grouped as it asks.
+     *
+     * @param query the criteria and grouping
+     * @return one row per bucket and group, by bucket start and then by descending count
+     * @throws IllegalArgumentException if the query's bucket is not a positive whole number of minutes
+     */
+    public List<AuditAggregate> aggregate(AuditAggregateQuery query) {
+        if (query.getBucket() != null && (query.getBucket().toMinutes() < 1 || query.getBucket().toSecondsPart() != 0
+                || query.getBucket().toNanosPart() != 0)) {
+            throw new IllegalArgumentException("bucket must be a positive whole number of minutes: " + query.getBucket());
+        }
+        return rollups.aggregate(query);
+    }
+
+    /**
+     * Returns the earliest instant from which the counts are complete.
+     *
+     * @return the later of startup and the start of the retention window
+     */
+    public Instant getCoverageStart() {
+        return rollups.getCoverageStart();
+    }
+}
@@ -1,5 +1,7 @@
 package com.digitalsanctuary.spring.user.audit;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
@@ -58,17 +60,23 @@ public class AuditConfig {
      */
     private int maxQueryResults = 10000;
 
+    /**
+     * Maximum number of log segments (the active file and its rotated archives) {@link FileAuditLogQueryService} reads at the same time
+     * for one query, on virtual threads. Older segments are cancelled once newer ones hold the answer. {@code 1} reads the segments one
+     * after another on the calling thread. Default is {@code 4}.
+     */
+    private int queryParallelism = 4;
+
     /**
      * Maximum size of the active audit log file, in megabytes, before it is rotated.
      * When the active log file exceeds this size, it is rotated: the current file is renamed to
      * {@code <name>.1} (shifting any existing {@code <name>.1} to {@code <name>.2}, and so on, up to
      * {@link #maxFiles}) and a fresh active file is opened. Set to a positive value to enable rotation.
      * <p>
-     * <strong>Default is {@code 0} (rotation disabled).</strong> Rotation is opt-in because the audit
-     * query/export reader currently reads only the active log file; once rotation moves older events into
-     * {@code <name>.1}, {@code <name>.2}, ... they are no longer visible to GDPR exports or investigations.
-     * Enable rotation only when you have external log shipping/retention, or wait for the query reader to
-     * read rotated archives (planned follow-up). With the default, logs grow unbounded.
+     * <strong>Default is {@code 0} (rotation disabled).</strong> The query/export reader reads the retained
+     * archives as well as the active file, so events stay visible to GDPR exports and investigations until
+     * they fall out of the {@link #maxFiles} window. Size that window for your retention requirements before
+     * enabling rotation. With the default, logs grow unbounded.
      * </p>
      */
     private int maxFileSizeMb = 0;
@@ -80,4 +88,231 @@ public class AuditConfig {
      */
     private int maxFiles = 5;
 
+    /**
+     * Whether rotated audit log archives are gzip-compressed ({@code <name>.1.gz}, ...). Compression runs on a background thread
+     * after rotation, never on the write path. Default is {@code true}.
+     */
+    private boolean compressArchives = true;
+
+    /**
+     * False-positive rate of the {@link AuditSegmentBloomFilter} built for each rotated segment over the user ids and emails it holds.
+     * {@link FileAuditLogQueryService} skips archives whose filter rules out the queried user; a false positive only costs a scan. Lower
+     * rates make the filters larger ({@code 0.01} takes about 10 bits per distinct user key). {@code 0} builds no filters. Default is
+     * {@code 0.01}.
+     */
+    private double segmentFilterFalsePositiveRate = 0.01;
+
+    /**
+     * Time-based rolling of the active audit log file, in addition to {@link #maxFileSizeMb}. Default is
+     * {@link AuditRollingInterval#NONE}.
+     */
+    private AuditRollingInterval rollingInterval = AuditRollingInterval.NONE;
+
+    /**
+     * The async write flag. When enabled, {@link FileAuditLogWriter#writeRecord(AuditRecord)} hands each record to a bounded, lock-free ring
+     * buffer and returns immediately; a single dedicated writer thread drains the buffer and writes events in batches, flushing once per
+     * batch when {@link #flushOnWrite} is enabled. Callers never block on file I/O, at the cost of dropping events if the buffer fills
+     * faster than the disk can absorb them. Default is {@code false} (events are written on the calling thread).
+     */
+    private boolean asyncWrite = false;
+
+    /**
+     * Capacity of the async write ring buffer, in events. Rounded up to the next power of two. Only used when {@link #asyncWrite} is
+     * enabled. Default is {@code 8192}.
+     */
+    private int asyncBufferSize = 8192;
+
+    /**
+     * Maximum number of events the async writer thread writes (and, with {@link #flushOnWrite}, flushes) as one batch. Only used when
+     * {@link #asyncWrite} is enabled. Default is {@code 256}.
+     */
+    private int asyncBatchSize = 256;
+
+    /**
+     * The on-disk record format used by {@link FileAuditLogWriter}: {@link AuditLogFormat#NDJSON} (one JSON object per line) or
+     * {@link AuditLogFormat#PIPE} (the legacy pipe-delimited format with a header line). Ignored when the application supplies its
+     * own {@link AuditRecordCodec} bean. {@link FileAuditLogQueryService} reads both formats, so changing this setting does not
+     * hide events already written in the other format; tools that parse the file themselves must handle both. Default is
+     * {@link AuditLogFormat#PIPE}, the format earlier releases wrote.
+     */
+    private AuditLogFormat logFormat = AuditLogFormat.PIPE;
+
+    /**
+     * When {@link FileAuditLogWriter} forces written records to the storage device ({@code fsync}). Flushing alone only hands records
+     * to the operating system; see {@link AuditDurabilityPolicy} for the trade-offs. Default is {@link AuditDurabilityPolicy#NONE}.
+     */
+    private AuditDurabilityPolicy durabilityPolicy = AuditDurabilityPolicy.NONE;
+
+    /**
+     * Interval, in milliseconds, between forces for {@link AuditDurabilityPolicy#INTERVAL}. Default is {@code 1000}.
+     */
+    private long durabilityIntervalMs = 1000L;
+
+    /**
+     * Number of records between forces for {@link AuditDurabilityPolicy#EVERY_N_EVENTS}. Default is {@code 100}.
+     */
+    private int durabilityEveryNEvents = 100;
+
+    /**
+     * Whether {@link FileAuditLogWriter} maintains the {@code <name>.idx} user index next to the active log file, so
+     * {@link FileAuditLogQueryService} reads only a user's own records from it instead of the whole file. The index is rebuilt on
+     * startup if it is missing. Default is {@code true}.
+     */
+    private boolean userIndex = true;
+
+    /**
+     * The audit storage backend: {@link AuditStore#FILE} (a log file per node) or {@link AuditStore#JDBC} (the {@code audit_event}
+     * table, shared by all nodes). The file-specific settings above are ignored with {@link AuditStore#JDBC}. Default is
+     * {@link AuditStore#FILE}.
+     */
+    private AuditStore store = AuditStore.FILE;
+
+    /**
+     * Capacity, in events, of the queue {@link JdbcAuditLogWriter} buffers events in before they are inserted. Rounded up to the next
+     * power of two. Events are dropped (and counted) while the queue is full. Default is {@code 8192}.
+     */
+    private int jdbcBufferSize = 8192;
+
+    /**
+     * Maximum number of events {@link JdbcAuditLogWriter} inserts with one JDBC batch. Default is {@code 200}.
+     */
+    private int jdbcBatchSize = 200;
+
+    /**
+     * Sinks every audit record is fanned out to, for example {@code file,jdbc,log}. When set, a {@link CompositeAuditLogWriter} replaces the
+     * single writer chosen by {@link #store}, and each sink gets its own queue and thread (see {@link AuditSink}). Queries are still served
+     * from {@link #store}. Empty by default.
+     */
+    private List<AuditSinkType> sinks = new ArrayList<>();
+
+    /**
+     * Capacity, in records, of each sink's queue. Rounded up to the next power of two. Records are dropped for a sink (and counted) while
+     * its queue is full. Default is {@code 8192}.
+     */
+    private int sinkBufferSize = 8192;
+
+    /**
+     * Maximum number of records a sink hands to its writer at once. Default is {@code 256}.
+     */
+    private int sinkBatchSize = 256;
+
+    /**
+     * Name of the logger the {@link AuditSinkType#LOG} sink writes NDJSON lines to. Default is
+     * {@code com.digitalsanctuary.spring.user.audit.AUDIT}.
+     */
+    private String sinkLoggerName = Slf4jAuditLogWriter.DEFAULT_LOGGER_NAME;
+
+    /** Rate limiting of audit events under attack; see {@link AuditRateLimiter}. */
+    private RateLimit rateLimit = new RateLimit();
+
+    /** The executor audit events are dispatched on; see {@link AuditDispatchExecutor}. */
+    private Dispatch dispatch = new Dispatch();
+
+    /** The in-memory cache of each user's most recent events; see {@link AuditRecentActivityCache}. */
+    private RecentActivity recentActivity = new RecentActivity();
+
+    /** The per-minute counts behind cross-user aggregate queries; see {@link AuditRollups}. */
+    private Rollups rollups = new Rollups();
+
+    /**
+     * Per-action and per-network token-bucket limits for audit events ({@code user.audit.rateLimit.*}). Events over a limit are folded into
+     * a periodic aggregate record instead of being written one by one.
+     */
+    @Data
+    public static class RateLimit {
+
+        /** Whether audit events are rate limited. Default is {@code false}. */
+        private boolean enabled = false;
+
+        /** Sustained events per second allowed for each action and status pair. Default is {@code 50}. */
+        private double actionEventsPerSecond = 50;
+
+        /** Events an action and status pair may emit in a burst above the sustained rate. Default is {@code 200}. */
+        private int actionBurst = 200;
+
+        /** Sustained events per second allowed from each client network ({@code /24} IPv4, {@code /64} IPv6). Default is {@code 5}. */
+        private double sourceEventsPerSecond = 5;
+
+        /** Events a client network may emit in a burst above the sustained rate. Default is {@code 20}. */
+        private int sourceBurst = 20;
+
+        /** Interval, in milliseconds, at which suppressed events are written as aggregate records. Default is {@code 60000}. */
+        private long aggregateIntervalMs = 60000L;
+
+        /** Maximum number of client networks tracked individually; further networks share one bucket. Default is {@code 10000}. */
+        private int maxTrackedSources = 10000;
+
+        /**
+         * Actions that are never limited, as {@code Action} (any status) or {@code Action:Status}, matched case-insensitively. Default is
+         * successful logins and consent changes.
+         */
+        private List<String> exemptActions = new ArrayList<>(List.of("Login:Success", "CONSENT_GRANTED", "CONSENT_WITHDRAWN"));
+    }
+
+    /**
+     * Sizing and overflow behavior of the bounded {@code dsAuditExecutor} that {@link AuditEventListener} hands writes to
+     * ({@code user.audit.dispatch.*}).
+     */
+    @Data
+    public static class Dispatch {
+
+        /**
+         * Number of dispatch threads. With more than one thread, events published close together may be written out of order.
+         * Default is {@code 1}.
+         */
+        private int threads = 1;
+
+        /** Maximum number of events waiting for a dispatch thread. Default is {@code 10000}. */
+        private int queueCapacity = 10000;
+
+        /** What happens to an event published while the queue is full. Default is {@link AuditOverflowPolicy#BLOCK}. */
+        private AuditOverflowPolicy overflowPolicy = AuditOverflowPolicy.BLOCK;
+
+        /**
+         * How long, in milliseconds, {@link AuditOverflowPolicy#BLOCK} waits for queue space before dropping the event. Default is
+         * {@code 100}.
+         */
+        private long blockTimeoutMs = 100L;
+    }
+
+    /**
+     * Sizing of the {@link AuditRecentActivityCache} that {@link FileAuditLogWriter} feeds and {@link FileAuditLogQueryService} answers
+     * recent-activity queries from ({@code user.audit.recentActivity.*}). Only used with the file store.
+     */
+    @Data
+    public static class RecentActivity {
+
+        /** Whether recent events are cached. Default is {@code true}. */
+        private boolean enabled = true;
+
+        /** Most recent events kept per user. Default is {@code 50}. */
+        private int eventsPerUser = 50;
+
+        /**
+         * Estimated heap size, in bytes, of all cached events above which the least recently used users are evicted. Default is
+         * {@code 8388608} (8 MB).
+         */
+        private long maxBytes = 8L * 1024 * 1024;
+    }
+
+    /**
+     * Sizing of the {@link AuditRollups} that the writer of {@code user.audit.store} feeds and {@link AuditAnalyticsService} answers
+     * aggregate queries from ({@code user.audit.rollups.*}).
+     */
+    @Data
+    public static class Rollups {
+
+        /** Whether per-minute counts are kept. Default is {@code true}. */
+        private boolean enabled = true;
+
+        /** Number of most recent minutes kept. Default is {@code 1440} (one day). */
+        private int retentionMinutes = 1440;
+
+        /**
+         * Distinct action, status and IP address combinations held across all retained minutes before records from new addresses are
+         * counted under {@value AuditRollups#OTHER_IP_ADDRESS}. Default is {@code 100000}.
+         */
+        private int maxGroups = 100_000;
+    }
+
 }
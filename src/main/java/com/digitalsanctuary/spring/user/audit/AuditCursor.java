@@ -0,0 +1,74 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Resume position of a paged audit query, handed to callers as the opaque {@link AuditEventPage#getNextCursor()} token.
+ *
+ * <p>What {@code key} and {@code position} mean depends on the service that issued the cursor, which {@code kind} names:
+ * {@link FileAuditLogQueryService} stores a segment fingerprint and the byte offset of the last returned line,
+ * {@link JdbcAuditLogQueryService} the timestamp and id of the last returned row, and the default
+ * {@link AuditLogQueryService#findPage} an index into the materialized result. A cursor of another kind is rejected.
+ *
+ * @param kind the issuing implementation
+ * @param key the segment, row timestamp or {@code 0}
+ * @param position the offset, row id or index
+ */
+record AuditCursor(String kind, long key, long position) {
+
+    /** Issued by {@link FileAuditLogQueryService}. */
+    static final String FILE = "f1";
+
+    /** Issued by {@link JdbcAuditLogQueryService}. */
+    static final String JDBC = "j1";
+
+    /** Issued by the default {@link AuditLogQueryService#findPage}. */
+    static final String LIST = "l1";
+
+    private static final char SEPARATOR = ':';
+
+    /**
+     * Returns the opaque token for this cursor.
+     *
+     * @return the URL-safe token
+     */
+    String encode() {
+        String text = kind + SEPARATOR + key + SEPARATOR + position;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Reads a token issued by {@link #encode()}.
+     *
+     * @param token the token, or {@code null} for the first page
+     * @param expectedKind the kind the reading service issues
+     * @return the cursor, or {@code null} if {@code token} is {@code null}
+     * @throws IllegalArgumentException if the token is malformed or was issued by another kind of service
+     */
+    static AuditCursor decode(String token, String expectedKind) {
+        if (token == null) {
+            return null;
+        }
+        AuditCursor cursor = parse(token);
+        if (cursor == null || !cursor.kind().equals(expectedKind)) {
+            throw new IllegalArgumentException("Invalid audit cursor: " + token);
+        }
+        return cursor;
+    }
+
+    private static AuditCursor parse(String token) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int first = text.indexOf(SEPARATOR);
+            int second = text.indexOf(SEPARATOR, first + 1);
+            if (first < 0 || second < 0) {
+                return null;
+            }
+            return new AuditCursor(text.substring(0, first), Long.parseLong(text.substring(first + 1, second)),
+                    Long.parseLong(text.substring(second + 1)));
+        } catch (IllegalArgumentException e) {
+            return null; // not Base64, or not a number
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The bounded {@code dsAuditExecutor} that {@link AuditEventListener} hands audit writes to.
+ *
+ * <p>Audit events used to be dispatched on Spring's shared default {@code @Async} executor, whose queue is unbounded: when the writer fell
+ * behind, pending events piled up on the heap with nothing to show for it until memory ran short. This executor gives auditing its own
+ * fixed pool ({@code user.audit.dispatch.threads}) and a bounded queue ({@code user.audit.dispatch.queueCapacity}). What happens when
+ * the queue is full is chosen explicitly with {@code user.audit.dispatch.overflowPolicy}; see {@link AuditOverflowPolicy}.
+ *
+ * <p>Queue depth, dropped events, caller-run events and the time from enqueueing an event to its writer accepting it are exposed
+ * through getters and, when Micrometer is on the classpath, exported by {@link AuditDispatchMetrics}. On shutdown the queue is drained
+ * for up to five seconds before the writers are closed.
+ *
+ * @see AuditExecutorConfiguration
+ */
+@Slf4j
+public class AuditDispatchExecutor implements TaskExecutor, DisposableBean {
+
+    /** Prefix of the dispatch thread names. */
+    static final String THREAD_NAME_PREFIX = "ds-audit-dispatch-";
+
+    /** How long {@link #destroy()} waits for queued events to be dispatched. */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000L;
+
+    private final ThreadPoolExecutor executor;
+    private final AuditOverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final int queueCapacity;
+
+    private final LongAdder droppedTasks = new LongAdder();
+    private final LongAdder callerRunTasks = new LongAdder();
+
+    /** Receives the time from enqueueing each task until its event is handed off, in nanoseconds; set by {@link AuditDispatchMetrics}. */
+    private volatile LongConsumer handoffRecorder = nanos -> {
+    };
+
+    /**
+     * Creates the executor from {@code user.audit.dispatch.*}.
+     *
+     * @param auditConfig the audit configuration
+     */
+    public AuditDispatchExecutor(AuditConfig auditConfig) {
+        this(auditConfig.getDispatch());
+    }
+
+    AuditDispatchExecutor(AuditConfig.Dispatch settings) {
+        int threads = Math.max(1, settings.getThreads());
+        this.queueCapacity = Math.max(1, settings.getQueueCapacity());
+        this.overflowPolicy = settings.getOverflowPolicy() != null ? settings.getOverflowPolicy() : AuditOverflowPolicy.BLOCK;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, settings.getBlockTimeoutMs()));
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                daemonThreadFactory(), this::onOverflow);
+        log.info("AuditDispatchExecutor: {} audit dispatch thread(s), queue capacity {}, overflow policy {}.", threads, queueCapacity,
+                overflowPolicy);
+    }
+
+    /**
+     * Queues a task, applying the overflow policy when the queue is full.
+     *
+     * @param task the task, normally the write of one audit record queued by {@link AuditEventListener}
+     */
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(new DispatchTask(task, System.nanoTime()));
+    }
+
+    /**
+     * Stops accepting tasks and waits for queued ones to finish. Tasks submitted afterwards run on the calling thread.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("AuditDispatchExecutor.destroy: {} queued audit event(s) were not dispatched within {} ms.", executor.getQueue().size(),
+                        SHUTDOWN_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of events waiting for a dispatch thread.
+     *
+     * @return the current queue depth
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the configured queue capacity.
+     *
+     * @return the maximum queue depth
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the number of dispatch threads currently processing an event.
+     *
+     * @return the active thread count
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the configured overflow policy.
+     *
+     * @return the overflow policy
+     */
+    public AuditOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the number of events dropped by the overflow policy since startup.
+     *
+     * @return the dropped event count
+     */
+    public long getDroppedTaskCount() {
+        return droppedTasks.sum();
+    }
+
+    /**
+     * Returns the number of events processed on the publishing thread by {@link AuditOverflowPolicy#CALLER_RUNS}.
+     *
+     * @return the caller-run event count
+     */
+    public long getCallerRunTaskCount() {
+        return callerRunTasks.sum();
+    }
+
+    void setHandoffRecorder(LongConsumer handoffRecorder) {
+        this.handoffRecorder = handoffRecorder;
+    }
+
+    /**
+     * Rejection handler of the pool: called when the queue is full, or after shutdown.
+     */
+    private void onOverflow(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            task.run(); // late events during shutdown are written by the caller rather than lost
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    if (!pool.getQueue().offer(task, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                        drop();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop();
+                }
+            }
+            case DROP_OLDEST -> {
+                if (pool.getQueue().poll() != null) {
+                    drop();
+                }
+                pool.execute(task);
+            }
+            case DROP_NEWEST -> drop();
+            case CALLER_RUNS -> {
+                callerRunTasks.increment();
+                task.run();
+            }
+        }
+    }
+
+    private void drop() {
+        droppedTasks.increment();
+        long dropped = droppedTasks.sum();
+        if (dropped == 1 || dropped % 1000 == 0) {
+            log.warn("AuditDispatchExecutor: Audit dispatch queue is full (capacity {}, policy {}); {} event(s) dropped so far.", queueCapacity,
+                    overflowPolicy, dropped);
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Wraps a task with its enqueue time so the hand-off time can be recorded when it completes.
+     */
+    private final class DispatchTask implements Runnable {
+
+        private final Runnable task;
+        private final long enqueuedNanos;
+
+        DispatchTask(Runnable task, long enqueuedNanos) {
+            this.task = task;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                handoffRecorder.accept(System.nanoTime() - enqueuedNanos);
+            }
+        }
+    }
+}
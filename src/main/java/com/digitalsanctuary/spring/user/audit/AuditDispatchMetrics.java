@@ -0,0 +1,64 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exports the state of the {@link AuditDispatchExecutor} as Micrometer meters. Registered by {@link AuditExecutorConfiguration} only when
+ * Micrometer is on the classpath; Spring Boot's actuator binds it to every {@link MeterRegistry}.
+ *
+ * <ul>
+ * <li>{@code audit.dispatch.queue.size} (gauge): events waiting for a dispatch thread</li>
+ * <li>{@code audit.dispatch.queue.capacity} (gauge): the configured queue capacity, for a saturation ratio</li>
+ * <li>{@code audit.dispatch.dropped} (counter, tagged with the {@code policy}): events lost to the overflow policy</li>
+ * <li>{@code audit.dispatch.caller.runs} (counter): events processed on the publishing thread</li>
+ * <li>{@code audit.dispatch.handoff} (timer): time from enqueueing an event until it is handed off to its writer. It does not
+ * include the time the writer takes to make the event durable: an asynchronous writer buffers it and returns, and the file is only
+ * forced as {@code user.audit.durabilityPolicy} says</li>
+ * </ul>
+ *
+ * <p>Nothing is bound when the application replaced {@code dsAuditExecutor} with an executor of another type.
+ */
+public class AuditDispatchMetrics implements MeterBinder {
+
+    private final ObjectProvider<AuditDispatchExecutor> executorProvider;
+
+    /**
+     * Creates the binder.
+     *
+     * @param executorProvider resolves the library's dispatch executor, if it is in use
+     */
+    public AuditDispatchMetrics(ObjectProvider<AuditDispatchExecutor> executorProvider) {
+        this.executorProvider = executorProvider;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        AuditDispatchExecutor executor = executorProvider.getIfAvailable();
+        if (executor == null) {
+            return;
+        }
+        Gauge.builder("audit.dispatch.queue.size", executor, AuditDispatchExecutor::getQueueSize)
+                .description("Audit events waiting for a dispatch thread")
+                .register(registry);
+        Gauge.builder("audit.dispatch.queue.capacity", executor, AuditDispatchExecutor::getQueueCapacity)
+                .description("Capacity of the audit dispatch queue")
+                .register(registry);
+        FunctionCounter.builder("audit.dispatch.dropped", executor, AuditDispatchExecutor::getDroppedTaskCount)
+                .description("Audit events dropped because the dispatch queue was full")
+                .tag("policy", executor.getOverflowPolicy().name())
+                .register(registry);
+        FunctionCounter.builder("audit.dispatch.caller.runs", executor, AuditDispatchExecutor::getCallerRunTaskCount)
+                .description("Audit events processed on the publishing thread because the dispatch queue was full")
+                .register(registry);
+        Timer handoff = Timer.builder("audit.dispatch.handoff")
+                .description("Time from enqueueing an audit event until it is handed off to its writer, not until it is durable")
+                .register(registry);
+        executor.setHandoffRecorder(nanos -> handoff.record(nanos, TimeUnit.NANOSECONDS));
+    }
+}
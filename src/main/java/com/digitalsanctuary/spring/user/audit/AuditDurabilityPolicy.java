@@ -0,0 +1,34 @@
+package com.digitalsanctuary.spring.user.audit;
+
+/**
+ * When {@link FileAuditLogWriter} forces written audit records to stable storage ({@code fsync}), selected with
+ * {@code user.audit.durabilityPolicy}.
+ *
+ * <p>Flushing ({@code user.audit.flushOnWrite}, {@code user.audit.flushRate}) only hands buffered records to the operating
+ * system, which survives a JVM crash but not a kernel panic or power loss. A durability policy additionally calls
+ * {@link java.nio.channels.FileChannel#force(boolean) FileChannel.force(false)}, which returns only once the file content has
+ * reached the storage device. Each force is a comparatively expensive syscall, so the policies trade the size of the
+ * at-risk window against throughput.
+ *
+ * @see AuditConfig#getDurabilityPolicy()
+ */
+public enum AuditDurabilityPolicy {
+
+    /** Never force. Durability is whatever the flush settings and the operating system provide. This is the default. */
+    NONE,
+
+    /**
+     * Force at most once every {@code user.audit.durabilityIntervalMs} milliseconds, from a background timer, whenever records
+     * have been written since the last force. Writers never wait for the force.
+     */
+    INTERVAL,
+
+    /** Force after every {@code user.audit.durabilityEveryNEvents} records. */
+    EVERY_N_EVENTS,
+
+    /**
+     * Force after every write batch: after each event in synchronous mode, or once per drained batch in async mode (group
+     * commit). The strongest policy; no acknowledged record is at risk once {@code writeLog} (or the batch) completes.
+     */
+    EVERY_BATCH
+}
@@ -1,17 +1,18 @@
 package com.digitalsanctuary.spring.user.audit;
 
+import java.util.concurrent.Executor;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Spring event listener that processes {@link AuditEvent} instances asynchronously.
+ * Spring event listener that hands {@link AuditEvent} instances to the {@link AuditLogWriter} asynchronously.
  *
  * <p>This component listens for audit events and delegates the writing of event data
- * to an {@link AuditLogWriter} implementation. The processing is asynchronous to avoid
+ * to an {@link AuditLogWriter} implementation. The writing is asynchronous to avoid
  * impacting application performance.
  *
  * <p>The listener only processes events when audit logging is enabled via
@@ -29,24 +30,78 @@ import lombok.extern.slf4j.Slf4j;
  * cleanly and simply short-circuits on the {@code logEvents} flag (with a null guard as a
  * belt-and-suspenders safety) when no writer is available.
  *
+ * <p>The listener itself runs on the publishing thread and does only cheap work there: the
+ * rate limit check and, for an {@link AuditRecordWriter}, taking the {@link AuditRecord}
+ * snapshot while the event's {@code User} entity is still attached. The write is then handed
+ * to the bounded {@code dsAuditExecutor} ({@link AuditDispatchExecutor}), so an audit backlog
+ * is capped by {@code user.audit.dispatch.*} and visible in metrics instead of growing without
+ * bound, and only the snapshot, not the entity graph, waits in its queue. Writers that are not
+ * {@link AuditRecordWriter}s still receive the original event.
+ *
+ * <p>When {@code user.audit.rateLimit.enabled=true} an {@link AuditRateLimiter} bean exists and
+ * every event must pass it before it is queued; events over the limit are folded into
+ * periodic aggregate records by the limiter instead.
+ *
  * @see AuditEvent
  * @see AuditLogWriter
  * @see AuditConfig
  */
 @Slf4j
-@Async
 @Component
-@RequiredArgsConstructor
 public class AuditEventListener {
 
 	private final AuditConfig auditConfig;
 
 	private final ObjectProvider<AuditLogWriter> auditLogWriterProvider;
 
+	private final ObjectProvider<AuditRateLimiter> auditRateLimiterProvider;
+
+	private final ObjectProvider<Executor> dispatchExecutorProvider;
+
+	/**
+	 * Creates a listener without rate limiting that writes on the publishing thread.
+	 *
+	 * @param auditConfig the audit configuration
+	 * @param auditLogWriterProvider resolves the writer events are written to
+	 */
+	public AuditEventListener(AuditConfig auditConfig, ObjectProvider<AuditLogWriter> auditLogWriterProvider) {
+		this(auditConfig, auditLogWriterProvider, null, null);
+	}
+
+	/**
+	 * Creates a listener that applies the {@link AuditRateLimiter}, if one is available, and writes on the publishing thread.
+	 *
+	 * @param auditConfig the audit configuration
+	 * @param auditLogWriterProvider resolves the writer events are written to
+	 * @param auditRateLimiterProvider resolves the optional rate limiter; may be {@code null}
+	 */
+	public AuditEventListener(AuditConfig auditConfig, ObjectProvider<AuditLogWriter> auditLogWriterProvider,
+			ObjectProvider<AuditRateLimiter> auditRateLimiterProvider) {
+		this(auditConfig, auditLogWriterProvider, auditRateLimiterProvider, null);
+	}
+
+	/**
+	 * Creates a listener that applies the {@link AuditRateLimiter}, if one is available, and writes on the {@code dsAuditExecutor}.
+	 *
+	 * @param auditConfig the audit configuration
+	 * @param auditLogWriterProvider resolves the writer events are written to
+	 * @param auditRateLimiterProvider resolves the optional rate limiter; may be {@code null}
+	 * @param dispatchExecutorProvider resolves the executor writes run on; may be {@code null} to write on the publishing thread
+	 */
+	@Autowired
+	public AuditEventListener(AuditConfig auditConfig, ObjectProvider<AuditLogWriter> auditLogWriterProvider,
+			ObjectProvider<AuditRateLimiter> auditRateLimiterProvider,
+			@Qualifier("dsAuditExecutor") ObjectProvider<Executor> dispatchExecutorProvider) {
+		this.auditConfig = auditConfig;
+		this.auditLogWriterProvider = auditLogWriterProvider;
+		this.auditRateLimiterProvider = auditRateLimiterProvider;
+		this.dispatchExecutorProvider = dispatchExecutorProvider;
+	}
+
 	/**
 	 * Handle the AuditEvents.
 	 *
-	 * In this case we are writing the event data out to an audit log on the server, using pipe delimiters.
+	 * Checks the rate limit, snapshots the event if the writer consumes {@link AuditRecord}s, and queues the write.
 	 *
 	 * @param event the event
 	 */
@@ -55,17 +110,49 @@ public class AuditEventListener {
 		try {
 			log.debug("AuditEventListener.onApplicationEvent: called with event: {}", event);
 			if (auditConfig.isLogEvents() && event != null) {
+				AuditRateLimiter rateLimiter = auditRateLimiterProvider != null ? auditRateLimiterProvider.getIfAvailable() : null;
+				if (rateLimiter != null && !rateLimiter.tryAcquire(event)) {
+					log.debug("AuditEventListener.onApplicationEvent: event over the rate limit; folded into an aggregate record.");
+					return;
+				}
 				AuditLogWriter auditLogWriter = auditLogWriterProvider.getIfAvailable();
-				if (auditLogWriter != null) {
-					log.debug("AuditEventListener.onApplicationEvent: logging event...");
-					auditLogWriter.writeLog(event);
-				} else {
+				if (auditLogWriter == null) {
 					log.debug("AuditEventListener.onApplicationEvent: no AuditLogWriter available; skipping event.");
+					return;
+				}
+				Runnable write;
+				if (auditLogWriter instanceof AuditRecordWriter recordWriter) {
+					AuditRecord record = AuditRecord.of(event); // taken now, so the queued task does not retain the event or its User
+					write = () -> recordWriter.writeRecord(record);
+				} else {
+					write = () -> auditLogWriter.writeLog(event);
 				}
+				dispatch(write);
 			}
 		} catch (Exception e) {
 			// Never let audit failures impact application flow
 			log.error("AuditEventListener.onApplicationEvent: Failed to process audit event (suppressed): {}", e.getMessage(), e);
 		}
 	}
+
+	/**
+	 * Runs the write on the dispatch executor, or on the calling thread when there is none.
+	 */
+	private void dispatch(Runnable write) {
+		Runnable guarded = () -> {
+			try {
+				log.debug("AuditEventListener.onApplicationEvent: logging event...");
+				write.run();
+			} catch (Exception e) {
+				// Never let audit failures impact application flow
+				log.error("AuditEventListener.onApplicationEvent: Failed to process audit event (suppressed): {}", e.getMessage(), e);
+			}
+		};
+		Executor executor = dispatchExecutorProvider != null ? dispatchExecutorProvider.getIfAvailable() : null;
+		if (executor != null) {
+			executor.execute(guarded);
+		} else {
+			guarded.run();
+		}
+	}
 }
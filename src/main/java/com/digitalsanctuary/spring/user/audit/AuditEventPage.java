@@ -0,0 +1,46 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * One page of a user's audit events, newest first, returned by {@link AuditLogQueryService#findPage}.
+ *
+ * <p>{@link #getNextCursor()} is an opaque token that resumes the query just after the last event of this page. It is only
+ * meaningful to the {@link AuditLogQueryService} that issued it, and only for the same user and {@link AuditQuery}.
+ *
+ * @see AuditLogQueryService
+ */
+@Value
+public class AuditEventPage {
+
+    private static final AuditEventPage EMPTY = new AuditEventPage(List.of(), null);
+
+    /**
+     * The events of this page, newest first.
+     */
+    List<AuditEventDTO> events;
+
+    /**
+     * The cursor of the next page, or {@code null} if this is the last page.
+     */
+    String nextCursor;
+
+    /**
+     * Returns a last page without events.
+     *
+     * @return the empty page
+     */
+    public static AuditEventPage empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns whether older events may follow this page.
+     *
+     * @return {@code true} if {@link #getNextCursor()} is set
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
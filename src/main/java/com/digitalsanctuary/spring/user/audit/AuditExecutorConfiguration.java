@@ -0,0 +1,53 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the dedicated, bounded {@code dsAuditExecutor} that {@link AuditEventListener} hands audit writes to, and its metrics.
+ *
+ * <p>
+ * Like {@code dsMailExecutor}, the executor keeps a backlog of audit work from occupying Spring Boot's shared default task executor, whose
+ * queue is unbounded. Its size, queue capacity and overflow policy come from {@code user.audit.dispatch.*}. A consuming application that
+ * needs a different executor can supply its own {@code dsAuditExecutor} bean; the library's default then backs off via
+ * {@link ConditionalOnMissingBean}.
+ * </p>
+ */
+@Configuration
+public class AuditExecutorConfiguration {
+
+    /**
+     * Creates the bounded executor for audit event dispatch.
+     *
+     * @param auditConfig the audit configuration
+     * @return the {@link AuditDispatchExecutor}
+     */
+    @Bean("dsAuditExecutor")
+    @ConditionalOnMissingBean(name = "dsAuditExecutor")
+    public AuditDispatchExecutor dsAuditExecutor(AuditConfig auditConfig) {
+        return new AuditDispatchExecutor(auditConfig);
+    }
+
+    /**
+     * Registers the Micrometer meters of the dispatch executor when Micrometer is on the classpath.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class AuditDispatchMetricsConfiguration {
+
+        /**
+         * Creates the binder for the dispatch executor's queue depth, drop counts and hand-off time.
+         *
+         * @param executorProvider resolves the library's dispatch executor, if it is in use
+         * @return the {@link AuditDispatchMetrics} binder
+         */
+        @Bean
+        @ConditionalOnMissingBean(AuditDispatchMetrics.class)
+        public AuditDispatchMetrics auditDispatchMetrics(ObjectProvider<AuditDispatchExecutor> executorProvider) {
+            return new AuditDispatchMetrics(executorProvider);
+        }
+    }
+}
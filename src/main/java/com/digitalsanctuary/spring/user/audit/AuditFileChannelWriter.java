@@ -0,0 +1,141 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link Writer} that appends UTF-8 encoded text to a {@link FileChannel} through a reusable direct {@link ByteBuffer}.
+ *
+ * <p>Characters are encoded straight into the direct buffer, which is written to the channel only when it fills or on
+ * {@link #flush()}, so the channel sees large writes without an intermediate heap copy. Unlike the stream returned by
+ * {@code Files.newBufferedWriter}, this writer exposes {@link #force()}, which lets {@link FileAuditLogWriter} apply an
+ * {@link AuditDurabilityPolicy}.
+ *
+ * <p>Not thread-safe: callers serialize {@code write}/{@code flush}/{@code close}. {@link #force()} may be called from another
+ * thread, because {@link FileChannel#force(boolean)} is itself thread-safe.
+ */
+final class AuditFileChannelWriter extends Writer {
+
+    /** Default size of the direct encode buffer. */
+    static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /** A high surrogate left over at the end of the previous write, waiting for its low surrogate. */
+    private char pendingHighSurrogate;
+    private boolean hasPendingHighSurrogate;
+
+    private AuditFileChannelWriter(FileChannel channel, int bufferBytes) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    /**
+     * Opens (creating if needed) a file for appending.
+     *
+     * @param path the file to open
+     * @param bufferBytes the size of the direct encode buffer
+     * @return the writer
+     * @throws IOException if the file cannot be opened
+     */
+    static AuditFileChannelWriter open(Path path, int bufferBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        return new AuditFileChannelWriter(channel, bufferBytes);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        encode(CharBuffer.wrap(cbuf, off, len));
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        encode(CharBuffer.wrap(str, off, off + len));
+    }
+
+    /**
+     * Writes any buffered bytes to the channel. This hands the data to the operating system; it does not force it to disk.
+     *
+     * @throws IOException if the write fails
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drainBuffer();
+    }
+
+    /**
+     * Forces everything already written to the channel onto the storage device ({@code fsync} of the file content, without
+     * metadata). Does not flush this writer's buffer; call {@link #flush()} first.
+     *
+     * @throws IOException if the force fails or the channel is closed
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            drainBuffer(); // a lone high surrogate still pending here is malformed input and is dropped
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Encodes {@code chars} into the direct buffer, writing the buffer to the channel whenever it fills. A trailing high
+     * surrogate is held back until the next write so a surrogate pair split across two writes is still encoded correctly.
+     */
+    private void encode(CharBuffer chars) throws IOException {
+        if (hasPendingHighSurrogate && chars.hasRemaining()) {
+            hasPendingHighSurrogate = false;
+            encode(CharBuffer.wrap(new char[] {pendingHighSurrogate, chars.get()}));
+        }
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drainBuffer();
+            } else {
+                break;
+            }
+        }
+        if (chars.hasRemaining()) {
+            // Underflow with input left over: only a lone trailing high surrogate.
+            pendingHighSurrogate = chars.get();
+            hasPendingHighSurrogate = true;
+        }
+    }
+
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Audit log channel is closed");
+        }
+    }
+}
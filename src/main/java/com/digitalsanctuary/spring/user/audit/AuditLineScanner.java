@@ -0,0 +1,325 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Decides from the raw text of an audit log line whether the record can belong to a query's user (and actions), before the line is
+ * decoded into an {@link AuditEventDTO}.
+ *
+ * <p>For a per-user query nearly every line belongs to someone else. Rather than splitting each line into ten strings and building a
+ * DTO only for the query's filter to discard it, the scanner locates the user id, email and action in place, in either built-in
+ * format, and compares them with {@link String#regionMatches}, without creating a string. Only lines that may match are decoded; their DTO
+ * is still checked by the query's filter, so the scanner only has to be conservative: a line it cannot judge (an escaped JSON value,
+ * an unfamiliar layout) counts as a possible match.
+ *
+ * <p>The comparisons mirror {@link FileAuditLogQueryService}: the email is compared ignoring case, the user id and actions exactly,
+ * and pipe-delimited values are trimmed, with an empty value or {@code null} meaning absent. Immutable and thread-safe.
+ */
+final class AuditLineScanner {
+
+    /** Returned by {@link #timestampMillis} when a line's timestamp cannot be read in place. */
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final int FIELD_ACTION = 1;
+    private static final int FIELD_USER_ID = 3;
+    private static final int FIELD_EMAIL = 4;
+
+    /** Comparison outcomes. */
+    private static final int ABSENT = 0;
+    private static final int MATCH = 1;
+    private static final int MISMATCH = 2;
+    private static final int UNKNOWN = 3;
+
+    private final String userId;
+    private final String userEmail;
+    private final Set<String> actions;
+
+    /**
+     * Creates a scanner for one query.
+     *
+     * @param userId the user's id, or {@code null}
+     * @param userEmail the user's email, or {@code null}
+     * @param actions the actions the query is limited to, or {@code null} or empty for any
+     */
+    AuditLineScanner(String userId, String userEmail, Set<String> actions) {
+        this.userId = userId;
+        this.userEmail = userEmail;
+        this.actions = actions != null ? actions : Set.of();
+    }
+
+    /**
+     * Returns whether the line may hold a record of the query's user with one of the query's actions.
+     *
+     * @param line a line of the audit log
+     * @return {@code false} only if the line certainly does not hold such a record
+     */
+    boolean mayMatch(String line) {
+        if (line == null || line.isBlank()) {
+            return false;
+        }
+        return line.charAt(0) == '{' ? mayMatchJson(line) : mayMatchPipe(line);
+    }
+
+    /**
+     * Reads the timestamp of a line without decoding the rest of it.
+     *
+     * @param line a line of the audit log
+     * @param timestamps the timestamp parser of the segment being read, for pipe-delimited lines
+     * @return the timestamp in epoch milliseconds, or {@link #NO_TIMESTAMP}
+     */
+    static long timestampMillis(String line, AuditTimestampParser timestamps) {
+        if (line == null || line.isBlank()) {
+            return NO_TIMESTAMP;
+        }
+        if (line.charAt(0) == '{') {
+            return new JsonCursor(line).timestampMillis();
+        }
+        int end = line.indexOf('|');
+        if (end < 0 || PipeDelimitedAuditRecordCodec.isHeader(line)) {
+            return NO_TIMESTAMP;
+        }
+        Instant instant = timestamps.parse(line.substring(0, end));
+        return instant != null ? instant.toEpochMilli() : NO_TIMESTAMP;
+    }
+
+    private boolean mayMatchPipe(String line) {
+        if (PipeDelimitedAuditRecordCodec.isHeader(line)) {
+            return false;
+        }
+        int idState = ABSENT;
+        int emailState = ABSENT;
+        int actionState = ABSENT;
+        int start = 0;
+        for (int field = 0; field <= FIELD_EMAIL; field++) {
+            int end = line.indexOf('|', start);
+            if (end < 0) {
+                return false; // too few fields to be a record
+            }
+            switch (field) {
+                case FIELD_ACTION -> actionState = comparePipeAction(line, start, end);
+                case FIELD_USER_ID -> idState = comparePipe(line, start, end, userId, false);
+                case FIELD_EMAIL -> emailState = comparePipe(line, start, end, userEmail, true);
+                default -> {
+                    // timestamp and status do not decide the match
+                }
+            }
+            start = end + 1;
+        }
+        return decide(idState, emailState, actionState);
+    }
+
+    private boolean mayMatchJson(String line) {
+        JsonCursor cursor = new JsonCursor(line);
+        int idState = ABSENT;
+        int emailState = ABSENT;
+        int actionState = ABSENT;
+        while (cursor.next()) {
+            if (cursor.keyIs(NdjsonAuditRecordCodec.KEY_USER_ID)) {
+                idState = cursor.compareValue(userId, false);
+            } else if (cursor.keyIs(NdjsonAuditRecordCodec.KEY_EMAIL)) {
+                emailState = cursor.compareValue(userEmail, true);
+            } else if (cursor.keyIs(NdjsonAuditRecordCodec.KEY_ACTION)) {
+                actionState = compareJsonAction(cursor);
+            }
+        }
+        return cursor.malformed() || decide(idState, emailState, actionState);
+    }
+
+    private boolean decide(int idState, int emailState, int actionState) {
+        boolean userMayMatch = idState == MATCH || idState == UNKNOWN || emailState == MATCH || emailState == UNKNOWN;
+        boolean actionMayMatch = actions.isEmpty() || actionState == MATCH || actionState == UNKNOWN;
+        return userMayMatch && actionMayMatch;
+    }
+
+    /**
+     * Compares a pipe-delimited action with each of the query's actions; an absent value compares the same with all of them.
+     */
+    private int comparePipeAction(String line, int start, int end) {
+        if (actions.isEmpty()) {
+            return ABSENT; // not compared
+        }
+        for (String candidate : actions) {
+            int state = comparePipe(line, start, end, candidate, false);
+            if (state != MISMATCH) {
+                return state;
+            }
+        }
+        return MISMATCH;
+    }
+
+    private int compareJsonAction(JsonCursor cursor) {
+        if (actions.isEmpty()) {
+            return ABSENT; // not compared
+        }
+        for (String candidate : actions) {
+            int state = cursor.compareValue(candidate, false);
+            if (state != MISMATCH) {
+                return state;
+            }
+        }
+        return MISMATCH;
+    }
+
+    /**
+     * Compares a trimmed pipe-delimited value with the expected one.
+     */
+    private static int comparePipe(String line, int start, int end, String expected, boolean ignoreCase) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end || (end - start == 4 && line.startsWith("null", start))) {
+            return ABSENT;
+        }
+        if (expected == null) {
+            return MISMATCH;
+        }
+        return end - start == expected.length() && line.regionMatches(ignoreCase, start, expected, 0, expected.length()) ? MATCH
+                : MISMATCH;
+    }
+
+    /**
+     * Walks the keys of the flat JSON object {@link NdjsonAuditRecordCodec} writes by position, without creating strings. Anything it does not
+     * understand marks the line malformed, which callers treat as a possible match.
+     */
+    private static final class JsonCursor {
+
+        private final String line;
+        private int pos = 1; // past '{'
+        private int keyStart;
+        private int keyEnd;
+        private int valueStart;
+        private int valueEnd;
+        private boolean valueIsString;
+        private boolean valueEscaped;
+        private boolean malformed;
+
+        JsonCursor(String line) {
+            this.line = line;
+        }
+
+        /**
+         * Moves to the next key and value.
+         *
+         * @return {@code false} at the end of the object or when the line is malformed
+         */
+        boolean next() {
+            skipWhitespace();
+            if (pos >= line.length() || line.charAt(pos) == '}') {
+                return false;
+            }
+            if (line.charAt(pos) == ',') {
+                pos++;
+                skipWhitespace();
+            }
+            if (pos >= line.length() || line.charAt(pos) != '"') {
+                return fail();
+            }
+            keyStart = ++pos;
+            while (pos < line.length() && line.charAt(pos) != '"') {
+                if (line.charAt(pos) == '\\') {
+                    return fail();
+                }
+                pos++;
+            }
+            keyEnd = pos++;
+            skipWhitespace();
+            if (pos >= line.length() || line.charAt(pos) != ':') {
+                return fail();
+            }
+            pos++;
+            skipWhitespace();
+            if (pos >= line.length()) {
+                return fail();
+            }
+            valueIsString = line.charAt(pos) == '"';
+            valueEscaped = false;
+            if (valueIsString) {
+                valueStart = ++pos;
+                while (pos < line.length() && line.charAt(pos) != '"') {
+                    if (line.charAt(pos) == '\\') {
+                        valueEscaped = true;
+                        pos++;
+                    }
+                    pos++;
+                }
+                if (pos >= line.length()) {
+                    return fail();
+                }
+                valueEnd = pos++;
+            } else {
+                valueStart = pos;
+                while (pos < line.length() && ",} \t".indexOf(line.charAt(pos)) < 0) {
+                    pos++;
+                }
+                valueEnd = pos;
+            }
+            return true;
+        }
+
+        boolean keyIs(String key) {
+            return keyEnd - keyStart == key.length() && line.startsWith(key, keyStart);
+        }
+
+        int compareValue(String expected, boolean ignoreCase) {
+            if (!valueIsString) {
+                return valueEnd - valueStart == 4 && line.startsWith("null", valueStart) ? ABSENT : UNKNOWN;
+            }
+            if (valueEscaped) {
+                return UNKNOWN;
+            }
+            if (expected == null) {
+                return MISMATCH;
+            }
+            int length = valueEnd - valueStart;
+            return length == expected.length() && line.regionMatches(ignoreCase, valueStart, expected, 0, length) ? MATCH : MISMATCH;
+        }
+
+        long timestampMillis() {
+            while (next()) {
+                if (keyIs(NdjsonAuditRecordCodec.KEY_TIMESTAMP)) {
+                    return valueIsString ? NO_TIMESTAMP : parseMillis();
+                }
+            }
+            return NO_TIMESTAMP;
+        }
+
+        boolean malformed() {
+            return malformed;
+        }
+
+        private long parseMillis() {
+            int start = valueStart;
+            boolean negative = start < valueEnd && line.charAt(start) == '-';
+            if (negative) {
+                start++;
+            }
+            if (start == valueEnd || valueEnd - start > 18) {
+                return NO_TIMESTAMP;
+            }
+            long value = 0;
+            for (int i = start; i < valueEnd; i++) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    return NO_TIMESTAMP;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        private boolean fail() {
+            malformed = true;
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Archives closed audit log segments in the background on behalf of {@link FileAuditLogWriter}.
+ *
+ * <p>On rotation the writer only renames the active file to a <em>pending</em> segment ({@code <name>.pending-<seq>}) and
+ * reopens a fresh active file, so producers never wait for archive maintenance. Each pending segment is then handed to this
+ * archiver, whose single worker thread, in submission order:
+ * <ol>
+ *   <li>gzip-compresses the segment when {@code user.audit.compressArchives} is enabled (written to a temporary file first, so
+ *       a crash never leaves a truncated archive)</li>
+ *   <li>applies retention: deletes {@code <name>.<maxFiles>} and shifts {@code <name>.N -> <name>.N+1} (compressed or not)</li>
+ *   <li>moves the segment into place as {@code <name>.1} or {@code <name>.1.gz}</li>
+ *   <li>records the segment's time range, record count and size in the {@link AuditSegmentManifest}, renaming the entries of
+ *       shifted archives</li>
+ * </ol>
+ *
+ * <p>Before compressing a segment it builds the segment's {@link AuditSegmentBloomFilter} when
+ * {@code user.audit.segmentFilterFalsePositiveRate} is positive. Filters are named by segment sequence, so retention does not rename
+ * them; the filter of an archive that falls out of retention is deleted with it, and filters left without a manifest entry by a crash
+ * are removed after the next archive.
+ *
+ * <p>Pending segments left behind by a crash are picked up again by {@link #recoverPending()}. Segment sequence numbers are
+ * based on the wall clock and strictly increasing, so pending segments sort in rotation order even across restarts.
+ */
+@Slf4j
+final class AuditLogArchiver {
+
+    /** Infix of a pending (closed but not yet archived) segment's file name. */
+    static final String PENDING_INFIX = ".pending-";
+
+    /** Suffix of a compressed archive. */
+    static final String GZIP_SUFFIX = ".gz";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final String basePath;
+    private final int maxFiles;
+    private final boolean compress;
+    private final double filterFalsePositiveRate;
+    private final ExecutorService worker;
+
+    /** Total size of the segment filters on disk, as of the last archive; read by metrics. */
+    private volatile long filterBytes;
+
+    private long lastSequence;
+
+    /** Loaded on first use by the worker thread, which is its only writer. */
+    private AuditSegmentManifest manifest;
+
+    /**
+     * Creates an archiver for the log file at {@code basePath}.
+     *
+     * @param basePath the active log file path; archives are named relative to it
+     * @param maxFiles the number of archives to retain (at least 1)
+     * @param compress whether archives are gzip-compressed
+     */
+    AuditLogArchiver(String basePath, int maxFiles, boolean compress) {
+        this(basePath, maxFiles, compress, 0.0);
+    }
+
+    /**
+     * Creates an archiver for the log file at {@code basePath} that also builds an {@link AuditSegmentBloomFilter} per segment.
+     *
+     * @param basePath the active log file path; archives are named relative to it
+     * @param maxFiles the number of archives to retain (at least 1)
+     * @param compress whether archives are gzip-compressed
+     * @param filterFalsePositiveRate the false-positive rate of the segment filters; not between {@code 0} and {@code 1} for none
+     */
+    AuditLogArchiver(String basePath, int maxFiles, boolean compress, double filterFalsePositiveRate) {
+        this.basePath = basePath;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.compress = compress;
+        this.filterFalsePositiveRate = filterFalsePositiveRate > 0.0 && filterFalsePositiveRate < 1.0 ? filterFalsePositiveRate : 0.0;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ds-audit-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the active log file path this archiver serves.
+     *
+     * @return the base path
+     */
+    String getBasePath() {
+        return basePath;
+    }
+
+    /**
+     * Returns the total size of the segment filters on disk, as of the last archived segment.
+     *
+     * @return the size in bytes
+     */
+    long getFilterBytes() {
+        return filterBytes;
+    }
+
+    /**
+     * Returns a new, unused pending segment path. The caller renames the closed active file to it and then calls
+     * {@link #submit(Path, long, long, long)}.
+     *
+     * @return the pending segment path
+     */
+    synchronized Path nextPendingPath() {
+        lastSequence = Math.max(lastSequence + 1, System.currentTimeMillis());
+        return Path.of(basePath + PENDING_INFIX + lastSequence);
+    }
+
+    /**
+     * Queues a pending segment for compression and retention. Returns immediately.
+     *
+     * @param pending the closed segment, as returned by {@link #nextPendingPath()}
+     * @param firstTimestamp epoch millis of the segment's first record, or {@link AuditSegmentManifest#UNKNOWN_FIRST}
+     * @param lastTimestamp epoch millis of the segment's last record, or {@link AuditSegmentManifest#UNKNOWN_LAST}
+     * @param recordCount the number of records in the segment, or {@code -1} if unknown
+     */
+    void submit(Path pending, long firstTimestamp, long lastTimestamp, long recordCount) {
+        worker.execute(() -> archive(pending, firstTimestamp, lastTimestamp, recordCount));
+    }
+
+    /**
+     * Queues any pending segments left behind by an earlier run (for example after a crash), oldest first.
+     */
+    void recoverPending() {
+        Path base = Path.of(basePath);
+        Path directory = base.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        String prefix = base.getFileName() + PENDING_INFIX;
+        List<Path> leftovers = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path); // interrupted compression; the source segment is still there
+                } else if (!name.endsWith(GZIP_SUFFIX) || Files.notExists(stripGzip(path))) {
+                    leftovers.add(path);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("AuditLogArchiver.recoverPending: Could not scan {} for pending audit segments: {}", directory, e.getMessage());
+            return;
+        }
+        leftovers.sort(Comparator.comparingLong(path -> sequenceOf(path.getFileName().toString(), prefix)));
+        synchronized (this) {
+            for (Path leftover : leftovers) {
+                long sequence = sequenceOf(leftover.getFileName().toString(), prefix);
+                if (sequence != Long.MAX_VALUE) {
+                    lastSequence = Math.max(lastSequence, sequence); // keep new segments ordered after recovered ones
+                }
+            }
+        }
+        for (Path leftover : leftovers) {
+            log.info("AuditLogArchiver.recoverPending: Archiving audit segment left over from a previous run: {}", leftover);
+            submit(leftover, AuditSegmentManifest.UNKNOWN_FIRST, AuditSegmentManifest.UNKNOWN_LAST, -1L);
+        }
+        worker.execute(() -> sweepFilters(manifest()));
+    }
+
+    /**
+     * Waits until every segment submitted so far has been archived.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of {@code timeout}
+     * @return {@code true} if the archiver became idle in time
+     */
+    boolean awaitIdle(long timeout, TimeUnit unit) {
+        try {
+            worker.submit(() -> { }).get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stops accepting segments and waits up to {@code timeoutMillis} for queued ones to finish. Segments still pending
+     * afterwards are recovered on the next start.
+     *
+     * @param timeoutMillis the maximum time to wait
+     */
+    void shutdown(long timeoutMillis) {
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("AuditLogArchiver.shutdown: Audit archiving did not finish within {} ms; remaining segments will be archived on next start.",
+                        timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compresses (if enabled), applies retention, moves one pending segment into place as archive {@code .1} and updates the
+     * manifest. Failures are logged; the pending file is left in place so a later {@link #recoverPending()} can retry.
+     */
+    private void archive(Path pending, long firstTimestamp, long lastTimestamp, long recordCount) {
+        try {
+            String prefix = Path.of(basePath).getFileName() + PENDING_INFIX;
+            long sequence = sequenceOf(pending.getFileName().toString(), prefix);
+            if (filterFalsePositiveRate > 0.0 && sequence != Long.MAX_VALUE) {
+                writeFilter(pending, sequence);
+            }
+            Path segment = pending;
+            if (compress && !pending.getFileName().toString().endsWith(GZIP_SUFFIX)) {
+                segment = gzip(pending);
+            }
+            boolean compressed = segment.getFileName().toString().endsWith(GZIP_SUFFIX);
+            AuditSegmentManifest segments = manifest();
+            applyRetention(segments);
+            Path target = Path.of(basePath + ".1" + (compressed ? GZIP_SUFFIX : ""));
+            Files.move(segment, target, StandardCopyOption.REPLACE_EXISTING);
+            segments.put(new AuditSegmentManifest.Segment(sequence, target.getFileName().toString(), firstTimestamp, lastTimestamp,
+                    recordCount, Files.size(target)));
+            saveManifest(segments);
+            sweepFilters(segments);
+            log.debug("AuditLogArchiver.archive: Archived audit segment {} as {}", pending, target);
+        } catch (Exception e) {
+            log.error("AuditLogArchiver.archive: Failed to archive audit segment {}: {}", pending, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes the archive that would fall out of the retention window and shifts the rest up by one, mirroring every change in
+     * the manifest.
+     */
+    private void applyRetention(AuditSegmentManifest segments) throws IOException {
+        delete(Path.of(basePath + "." + maxFiles), segments);
+        delete(Path.of(basePath + "." + maxFiles + GZIP_SUFFIX), segments);
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            shift(Path.of(basePath + "." + i), Path.of(basePath + "." + (i + 1)), segments);
+            shift(Path.of(basePath + "." + i + GZIP_SUFFIX), Path.of(basePath + "." + (i + 1) + GZIP_SUFFIX), segments);
+        }
+    }
+
+    private void delete(Path archive, AuditSegmentManifest segments) throws IOException {
+        Files.deleteIfExists(archive);
+        AuditSegmentManifest.Segment entry = segments.findByFileName(archive.getFileName().toString());
+        if (entry != null) {
+            Files.deleteIfExists(AuditSegmentBloomFilter.pathFor(basePath, entry.sequence()));
+        }
+        segments.remove(archive.getFileName().toString());
+    }
+
+    /**
+     * Builds and writes the filter of a pending segment. A failure is logged and leaves the segment without a filter, which queries
+     * then scan.
+     */
+    private void writeFilter(Path pending, long sequence) {
+        try {
+            AuditSegmentBloomFilter.build(pending, filterFalsePositiveRate).save(AuditSegmentBloomFilter.pathFor(basePath, sequence));
+        } catch (IOException e) {
+            log.warn("AuditLogArchiver.writeFilter: Could not write the filter of audit segment {}: {}", pending, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes filters whose segment is no longer in the manifest, such as those left behind by a crash during retention, and totals
+     * the size of the rest.
+     */
+    private void sweepFilters(AuditSegmentManifest segments) {
+        Path base = Path.of(basePath);
+        Path directory = base.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        Set<Long> sequences = new HashSet<>();
+        for (AuditSegmentManifest.Segment segment : segments.segments()) {
+            sequences.add(segment.sequence());
+        }
+        String prefix = base.getFileName() + AuditSegmentBloomFilter.INFIX;
+        long total = 0L;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path path : stream) {
+                long sequence = sequenceOf(path.getFileName().toString(), prefix);
+                if (sequence == Long.MAX_VALUE || !sequences.contains(sequence)) {
+                    Files.deleteIfExists(path);
+                } else {
+                    total += Files.size(path);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("AuditLogArchiver.sweepFilters: Could not scan {} for audit segment filters: {}", directory, e.getMessage());
+            return;
+        }
+        filterBytes = total;
+    }
+
+    private static void shift(Path source, Path target, AuditSegmentManifest segments) throws IOException {
+        if (Files.exists(source)) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            segments.rename(source.getFileName().toString(), target.getFileName().toString());
+        }
+    }
+
+    private AuditSegmentManifest manifest() {
+        if (manifest == null) {
+            manifest = AuditSegmentManifest.load(AuditSegmentManifest.pathFor(basePath));
+        }
+        return manifest;
+    }
+
+    private void saveManifest(AuditSegmentManifest segments) {
+        try {
+            segments.save();
+        } catch (IOException e) {
+            // The manifest is only a query hint; readers scan segments it does not describe.
+            log.warn("AuditLogArchiver.saveManifest: Could not write audit segment manifest for {}: {}", basePath, e.getMessage());
+        }
+    }
+
+    /**
+     * Compresses {@code source} to {@code source.gz} via a temporary file and deletes the source.
+     *
+     * @return the compressed file
+     */
+    private static Path gzip(Path source) throws IOException {
+        Path target = Path.of(source + GZIP_SUFFIX);
+        Path temp = Path.of(target + TEMP_SUFFIX);
+        try (InputStream in = Files.newInputStream(source);
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), COPY_BUFFER_BYTES)) {
+            in.transferTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(source);
+        return target;
+    }
+
+    private static Path stripGzip(Path path) {
+        String name = path.toString();
+        return Path.of(name.substring(0, name.length() - GZIP_SUFFIX.length()));
+    }
+
+    private static long sequenceOf(String fileName, String prefix) {
+        String digits = fileName.substring(prefix.length());
+        if (digits.endsWith(GZIP_SUFFIX)) {
+            digits = digits.substring(0, digits.length() - GZIP_SUFFIX.length());
+        }
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
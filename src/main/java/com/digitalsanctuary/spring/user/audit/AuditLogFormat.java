@@ -0,0 +1,41 @@
+package com.digitalsanctuary.spring.user.audit;
+
+/**
+ * The built-in audit log file formats, selected with {@code user.audit.logFormat}.
+ *
+ * @see AuditRecordCodec
+ */
+public enum AuditLogFormat {
+
+    /**
+     * One JSON object per line (newline-delimited JSON). Every field is escaped rather than stripped, so values round-trip
+     * exactly.
+     */
+    NDJSON,
+
+    /**
+     * The legacy pipe-delimited format ({@code Date|Action|ActionStatus|UserId|Email|IPAddress|SessionId|Message|UserAgent|ExtraData})
+     * with a header line. CR, LF and {@code |} inside values are replaced with spaces. This is the default, as in earlier
+     * releases.
+     */
+    PIPE;
+
+    /**
+     * Creates the codec for this format.
+     *
+     * @return a new codec instance
+     */
+    public AuditRecordCodec newCodec() {
+        return this == PIPE ? new PipeDelimitedAuditRecordCodec() : new NdjsonAuditRecordCodec();
+    }
+
+    /**
+     * Returns the codec for the given format, falling back to {@link #PIPE} when the format is not set.
+     *
+     * @param format the configured format, may be {@code null}
+     * @return a new codec instance
+     */
+    public static AuditRecordCodec codecFor(AuditLogFormat format) {
+        return (format != null ? format : PIPE).newCodec();
+    }
+}
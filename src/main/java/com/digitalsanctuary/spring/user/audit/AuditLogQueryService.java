@@ -1,7 +1,14 @@
 package com.digitalsanctuary.spring.user.audit;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import com.digitalsanctuary.spring.user.persistence.model.User;
 
 /**
@@ -12,18 +19,26 @@ import com.digitalsanctuary.spring.user.persistence.model.User;
  * (file-based, database, Elasticsearch, etc.).
  *
  * <p>The default implementation {@link FileAuditLogQueryService} parses the
- * pipe-delimited log file created by {@link FileAuditLogWriter}. Applications
- * requiring more efficient queries for large volumes can provide their own
- * implementation backed by a database or log aggregation system.
+ * audit log file created by {@link FileAuditLogWriter}. Applications
+ * requiring more efficient queries for large volumes, or a history shared
+ * by several nodes, can switch to {@link JdbcAuditLogQueryService}
+ * ({@code user.audit.store=jdbc}) or provide their own implementation backed
+ * by a database or log aggregation system.
  *
  * <p>Primary use case is GDPR data export, where all audit events for a user
- * must be retrievable.
+ * must be retrievable. The {@code find} methods return at most {@code user.audit.maxQueryResults}
+ * events; {@link #findPage} and {@link #stream} page through a user's whole history with a resume
+ * cursor instead, holding one page in memory at a time.
  *
  * @see FileAuditLogQueryService
+ * @see JdbcAuditLogQueryService
  * @see AuditEventDTO
  */
 public interface AuditLogQueryService {
 
+    /** Events fetched per page by {@link #stream}. */
+    int DEFAULT_PAGE_SIZE = 500;
+
     /**
      * Find all audit events for a specific user.
      *
@@ -53,4 +68,93 @@ public interface AuditLogQueryService {
      */
     List<AuditEventDTO> findByUserAndAction(User user, String action);
 
+    /**
+     * Find a user's audit events that meet all criteria of a query, in one pass over the audit store.
+     *
+     * <p>Prefer this over several {@code findByUserAndAction} calls: a query for two actions costs one read of the store, not two.
+     * The result holds the most recent matching events, at most {@link AuditQuery#getLimit()} of them (or the service's own cap),
+     * in the query's {@link AuditQuery#getOrder() order}.
+     *
+     * <p>The default implementation narrows the query to the best matching {@code find} method and filters its result, so it is
+     * capped like that method. Implementations should override it to evaluate every criterion in the store.
+     *
+     * @param user the user whose audit events to retrieve
+     * @param query the criteria the events must meet
+     * @return the matching events; empty list if no events found
+     */
+    default List<AuditEventDTO> find(User user, AuditQuery query) {
+        if (user == null) {
+            return new ArrayList<>();
+        }
+        List<AuditEventDTO> events = findCandidates(user, query).stream().filter(query::matches)
+                .limit(query.getLimit() > 0 ? query.getLimit() : Long.MAX_VALUE).collect(Collectors.toCollection(ArrayList::new));
+        if (query.getOrder() == AuditQuery.Order.OLDEST_FIRST) {
+            Collections.reverse(events);
+        }
+        return events;
+    }
+
+    /**
+     * Find one page of a user's audit events, newest first, resuming after the page that returned {@code cursor}.
+     *
+     * <p>The page holds at most {@code pageSize} events and is not capped by {@code maxQueryResults}. A page that is full carries
+     * the cursor of the next one, which may turn out to be empty; the last page has none. Events written while a caller pages
+     * appear on no page: a cursor continues towards older events only.
+     *
+     * <p>The default implementation pages through the result of the {@code find} methods, so it is capped like they are and
+     * holds the whole result for every page. Implementations should override it with a query that resumes at the cursor.
+     *
+     * @param user the user whose audit events to retrieve
+     * @param query the criteria the events must meet
+     * @param cursor the {@link AuditEventPage#getNextCursor()} of the previous page, or {@code null} for the first page
+     * @param pageSize the maximum number of events on the page, at least {@code 1}
+     * @return the page; {@link AuditEventPage#empty()} if there are no (more) events
+     * @throws IllegalArgumentException if the cursor was not issued by this service, or {@code pageSize} is not positive
+     */
+    default AuditEventPage findPage(User user, AuditQuery query, String cursor, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        AuditCursor position = AuditCursor.decode(cursor, AuditCursor.LIST);
+        if (user == null) {
+            return AuditEventPage.empty();
+        }
+        List<AuditEventDTO> selected = findCandidates(user, query).stream().filter(query::matches).skip(position != null ? position.position() : 0L)
+                .limit(pageSize + 1L).collect(Collectors.toList());
+        if (selected.size() <= pageSize) {
+            return new AuditEventPage(selected, null);
+        }
+        long next = (position != null ? position.position() : 0L) + pageSize;
+        return new AuditEventPage(selected.subList(0, pageSize), new AuditCursor(AuditCursor.LIST, 0L, next).encode());
+    }
+
+    /**
+     * Stream a user's audit events, newest first, fetching them lazily one {@link #findPage page} of {@link #DEFAULT_PAGE_SIZE}
+     * events at a time. The stream is not capped by {@code maxQueryResults}, so consuming it walks the user's whole history in
+     * memory proportional to one page.
+     *
+     * @param user the user whose audit events to retrieve
+     * @param query the criteria the events must meet
+     * @param cursor a page cursor to resume from, or {@code null} to start with the newest event
+     * @return a sequential, ordered stream of the events; nothing is read until it is consumed
+     * @throws IllegalArgumentException if the cursor was not issued by this service, when the stream is consumed
+     */
+    default Stream<AuditEventDTO> stream(User user, AuditQuery query, String cursor) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new AuditPageIterator(this, user, query, cursor,
+                DEFAULT_PAGE_SIZE), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns the result of the {@code find} method that narrows a query the most, for the default implementations.
+     */
+    private List<AuditEventDTO> findCandidates(User user, AuditQuery query) {
+        if (query.getSince() != null) {
+            return findByUserSince(user, query.getSince());
+        }
+        if (query.getActions().size() == 1) {
+            return findByUserAndAction(user, query.getActions().iterator().next());
+        }
+        return findByUser(user);
+    }
+
 }
@@ -0,0 +1,145 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the lines of a log file backwards, newest first, so a query for the most recent records stops after reading the end of the
+ * file instead of all of it.
+ *
+ * <p>The file is read in large chunks with positional {@link FileChannel} reads, from the end towards the start, and each chunk is
+ * split on {@code \n}; a line that spans chunks is joined before it is decoded, so multi-byte UTF-8 characters are never cut. A
+ * trailing {@code \r} is removed. A last line without a line separator is returned like any other, as it is by a forward
+ * {@link java.io.BufferedReader}.
+ *
+ * <p>The reader does not own the channel. Not thread-safe.
+ */
+final class AuditLogReverseReader {
+
+    /** Bytes read per positional read. */
+    static final int DEFAULT_CHUNK_BYTES = 256 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final FileChannel channel;
+    private final byte[] chunk;
+
+    /** File offset of {@code chunk[0]}. */
+    private long chunkStart;
+
+    /** End (exclusive) of the bytes in {@code chunk} not yet returned. */
+    private int cursor;
+
+    /** The start of the line being assembled, read from later chunks. */
+    private byte[] carry = EMPTY;
+
+    private long lineOffset = -1L;
+    private boolean done;
+
+    /**
+     * Creates a reader over the whole file.
+     *
+     * @param channel the log file
+     * @throws IOException if the file cannot be read
+     */
+    AuditLogReverseReader(FileChannel channel) throws IOException {
+        this(channel, channel.size(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Creates a reader over the start of a file.
+     *
+     * @param channel the log file
+     * @param end the offset just after the last byte to read
+     * @param chunkBytes the bytes read per positional read
+     * @throws IOException if the file cannot be read
+     */
+    AuditLogReverseReader(FileChannel channel, long end, int chunkBytes) throws IOException {
+        this.channel = channel;
+        this.chunk = new byte[Math.max(1, chunkBytes)];
+        this.chunkStart = end;
+        if (end <= 0) {
+            done = true;
+            return;
+        }
+        loadPreviousChunk();
+        if (chunk[cursor - 1] == '\n') {
+            cursor--; // the separator of the last line, not an empty line after it
+        }
+    }
+
+    /**
+     * Returns the line before the one returned last.
+     *
+     * @return the line, without its line separator, or {@code null} once the start of the file has been passed
+     * @throws IOException if the file cannot be read
+     */
+    String readLine() throws IOException {
+        if (done) {
+            return null;
+        }
+        while (true) {
+            for (int i = cursor - 1; i >= 0; i--) {
+                if (chunk[i] == '\n') {
+                    String line = decode(i + 1, cursor);
+                    lineOffset = chunkStart + i + 1;
+                    cursor = i;
+                    return line;
+                }
+            }
+            if (chunkStart == 0) {
+                String line = decode(0, cursor);
+                lineOffset = 0L;
+                done = true;
+                return line;
+            }
+            byte[] joined = new byte[cursor + carry.length];
+            System.arraycopy(chunk, 0, joined, 0, cursor);
+            System.arraycopy(carry, 0, joined, cursor, carry.length);
+            carry = joined;
+            loadPreviousChunk();
+        }
+    }
+
+    /**
+     * Returns the byte offset of the line returned last.
+     *
+     * @return the offset, or {@code -1} before the first line has been read
+     */
+    long lineOffset() {
+        return lineOffset;
+    }
+
+    private void loadPreviousChunk() throws IOException {
+        int length = (int) Math.min(chunk.length, chunkStart);
+        long start = chunkStart - length;
+        ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Audit log shrank while it was read backwards");
+            }
+        }
+        chunkStart = start;
+        cursor = length;
+    }
+
+    private String decode(int from, int to) {
+        byte[] bytes = chunk;
+        int start = from;
+        int end = to;
+        if (carry.length > 0) {
+            bytes = new byte[to - from + carry.length];
+            System.arraycopy(chunk, from, bytes, 0, to - from);
+            System.arraycopy(carry, 0, bytes, to - from, carry.length);
+            carry = EMPTY;
+            start = 0;
+            end = bytes.length;
+        }
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+}
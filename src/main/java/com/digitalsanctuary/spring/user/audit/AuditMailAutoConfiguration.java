@@ -1,12 +1,16 @@
 package com.digitalsanctuary.spring.user.audit;
 
+import java.util.concurrent.Executor;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.mail.javamail.JavaMailSender;
 import com.digitalsanctuary.spring.user.UserConfiguration;
 import com.digitalsanctuary.spring.user.mail.MailContentBuilder;
@@ -40,8 +44,69 @@ import com.digitalsanctuary.spring.user.mail.MailService;
 public class AuditMailAutoConfiguration {
 
     /**
-     * Creates the library's default {@link AuditLogWriter}, a {@link FileAuditLogWriter} that writes pipe-delimited audit events to a log file. Backs
-     * off entirely if the consuming application defines its own {@link AuditLogWriter}.
+     * Creates the default {@link AuditRecordCodec} for the format selected by {@code user.audit.logFormat}. Backs off if the consuming application
+     * defines its own codec, which {@link FileAuditLogWriter} then uses instead. Gated by {@code user.audit.logEvents} like the writer it serves.
+     *
+     * @param auditConfig the audit configuration properties
+     * @return the codec for the configured format
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditRecordCodec.class)
+    @ConditionalOnProperty(name = "user.audit.logEvents", havingValue = "true", matchIfMissing = true)
+    public AuditRecordCodec auditRecordCodec(AuditConfig auditConfig) {
+        return AuditLogFormat.codecFor(auditConfig.getLogFormat());
+    }
+
+    /**
+     * Creates the {@link AuditRecentActivityCache} that the {@link FileAuditLogWriter} feeds and {@link FileAuditLogQueryService} answers
+     * recent-activity queries from. Only created for the file store with audit logging enabled and
+     * {@code user.audit.recentActivity.enabled} (default {@code true}); backs off if the consuming application defines its own cache.
+     *
+     * @param auditConfig the audit configuration properties
+     * @return the cache
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditRecentActivityCache.class)
+    @ConditionalOnExpression("${user.audit.logEvents:true} && ${user.audit.recentActivity.enabled:true}"
+            + " && '${user.audit.store:file}'.equalsIgnoreCase('file')")
+    public AuditRecentActivityCache auditRecentActivityCache(AuditConfig auditConfig) {
+        AuditConfig.RecentActivity recentActivity = auditConfig.getRecentActivity();
+        return new AuditRecentActivityCache(recentActivity.getEventsPerUser(), recentActivity.getMaxBytes());
+    }
+
+    /**
+     * Creates the {@link AuditRollups}, the per-minute counts that the writer of {@code user.audit.store} feeds and
+     * {@link AuditAnalyticsService} answers aggregate queries from. Only created with audit logging enabled and
+     * {@code user.audit.rollups.enabled} (default {@code true}); backs off if the consuming application defines its own rollups.
+     *
+     * @param auditConfig the audit configuration properties
+     * @return the rollups
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditRollups.class)
+    @ConditionalOnExpression("${user.audit.logEvents:true} && ${user.audit.rollups.enabled:true}")
+    public AuditRollups auditRollups(AuditConfig auditConfig) {
+        AuditConfig.Rollups rollups = auditConfig.getRollups();
+        return new AuditRollups(rollups.getRetentionMinutes(), rollups.getMaxGroups());
+    }
+
+    /**
+     * Creates the {@link AuditAnalyticsService} for cross-user aggregate queries, under the same conditions as the {@link AuditRollups}
+     * it reads. Its counts cover this node's writes only, also with {@code user.audit.store=jdbc}.
+     *
+     * @param auditRollups the rollups
+     * @return the analytics service
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditAnalyticsService.class)
+    @ConditionalOnExpression("${user.audit.logEvents:true} && ${user.audit.rollups.enabled:true}")
+    public AuditAnalyticsService auditAnalyticsService(AuditRollups auditRollups) {
+        return new AuditAnalyticsService(auditRollups);
+    }
+
+    /**
+     * Creates the library's default {@link AuditLogWriter}, a {@link FileAuditLogWriter} that writes audit events to a log file, one record per line
+     * in the format of the {@link AuditRecordCodec}. Backs off entirely if the consuming application defines its own {@link AuditLogWriter}.
      *
      * <p>
      * Gated by {@code user.audit.logEvents} (default {@code true}): when audit logging is disabled the writer bean is not created at all, which in turn
@@ -50,13 +115,35 @@ public class AuditMailAutoConfiguration {
      * </p>
      *
      * @param auditConfig the audit configuration properties
+     * @param auditRecordCodec the codec used to encode each record
+     * @param recentActivityCacheProvider resolves the cache the writer feeds, if recent activity is cached
+     * @param rollupsProvider resolves the {@link AuditRollups} the writer feeds, if kept
      * @return the default {@link FileAuditLogWriter}
      */
     @Bean
     @ConditionalOnMissingBean(AuditLogWriter.class)
     @ConditionalOnProperty(name = "user.audit.logEvents", havingValue = "true", matchIfMissing = true)
-    public FileAuditLogWriter fileAuditLogWriter(AuditConfig auditConfig) {
-        return new FileAuditLogWriter(auditConfig);
+    public FileAuditLogWriter fileAuditLogWriter(AuditConfig auditConfig, AuditRecordCodec auditRecordCodec,
+            ObjectProvider<AuditRecentActivityCache> recentActivityCacheProvider, ObjectProvider<AuditRollups> rollupsProvider) {
+        return new FileAuditLogWriter(auditConfig, auditRecordCodec, recentActivityCacheProvider.getIfAvailable(),
+                rollupsProvider.getIfAvailable());
+    }
+
+    /**
+     * Creates the {@link AuditRateLimiter} that {@link AuditEventListener} consults before writing each event. Only created when
+     * {@code user.audit.rate-limit.enabled=true}; backs off if the consuming application defines its own limiter.
+     *
+     * @param auditConfig the audit configuration properties
+     * @param auditLogWriterProvider resolves the writer that receives aggregate records
+     * @param dispatchExecutorProvider resolves the {@code dsAuditExecutor} that aggregate flushes noticed on the event path run on
+     * @return the rate limiter
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditRateLimiter.class)
+    @ConditionalOnProperty(name = "user.audit.rate-limit.enabled", havingValue = "true")
+    public AuditRateLimiter auditRateLimiter(AuditConfig auditConfig, ObjectProvider<AuditLogWriter> auditLogWriterProvider,
+            @Qualifier("dsAuditExecutor") ObjectProvider<Executor> dispatchExecutorProvider) {
+        return new AuditRateLimiter(auditConfig, auditLogWriterProvider, dispatchExecutorProvider);
     }
 
     /**
@@ -65,7 +152,7 @@ public class AuditMailAutoConfiguration {
      * <p>
      * Only created when the library's {@link FileAuditLogWriter} is present ({@link ConditionalOnBean}) &mdash; so it backs off cleanly when a consumer
      * replaces the writer with their own {@link AuditLogWriter} &mdash; and only when audit logging is enabled and flush-on-write is disabled, because
-     * immediate flushing makes the scheduler unnecessary. Declared after {@link #fileAuditLogWriter(AuditConfig)} so {@code @ConditionalOnBean} reliably
+     * immediate flushing makes the scheduler unnecessary. Declared after {@link #fileAuditLogWriter(AuditConfig, AuditRecordCodec, ObjectProvider, ObjectProvider)} so {@code @ConditionalOnBean} reliably
      * observes the writer.
      * </p>
      *
@@ -92,4 +179,24 @@ public class AuditMailAutoConfiguration {
     public MailService mailService(ObjectProvider<JavaMailSender> mailSenderProvider, MailContentBuilder mailContentBuilder) {
         return new MailService(mailSenderProvider, mailContentBuilder);
     }
+
+    /**
+     * Registers the Micrometer meter of the segment filters when Micrometer is on the classpath.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class AuditSegmentFilterMetricsConfiguration {
+
+        /**
+         * Creates the binder for the total size of the segment filters.
+         *
+         * @param writerProvider resolves the audit writer, if there is one
+         * @return the {@link AuditSegmentFilterMetrics} binder
+         */
+        @Bean
+        @ConditionalOnMissingBean(AuditSegmentFilterMetrics.class)
+        public AuditSegmentFilterMetrics auditSegmentFilterMetrics(ObjectProvider<AuditLogWriter> writerProvider) {
+            return new AuditSegmentFilterMetrics(writerProvider);
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.digitalsanctuary.spring.user.audit;
+
+/**
+ * What {@link AuditDispatchExecutor} does with an audit event when its queue is full, selected with
+ * {@code user.audit.dispatch.overflowPolicy}.
+ *
+ * <p>The queue fills only when events are published faster than the writer can take them. Every policy other than
+ * {@link #CALLER_RUNS} can lose events in that case; each lost event is counted and exported as the
+ * {@code audit.dispatch.dropped} metric when Micrometer is present.
+ *
+ * @see AuditConfig.Dispatch#getOverflowPolicy()
+ */
+public enum AuditOverflowPolicy {
+
+    /**
+     * Wait up to {@code user.audit.dispatch.blockTimeoutMs} for queue space, then drop the event. Bounds both memory and the
+     * delay a publishing request thread can suffer. This is the default.
+     */
+    BLOCK,
+
+    /** Drop the oldest queued event to make room, keeping the most recent activity. */
+    DROP_OLDEST,
+
+    /** Drop the event being published, keeping the events already queued. */
+    DROP_NEWEST,
+
+    /**
+     * Process the event on the publishing thread. Never loses events, but a slow writer then slows the requests that publish
+     * events.
+     */
+    CALLER_RUNS
+}
@@ -0,0 +1,59 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+
+/**
+ * Iterates a user's audit events page by page through {@link AuditLogQueryService#findPage}, fetching the next page only when the
+ * current one has been consumed. Backs {@link AuditLogQueryService#stream}. Not thread-safe.
+ */
+final class AuditPageIterator implements Iterator<AuditEventDTO> {
+
+    private final AuditLogQueryService service;
+    private final User user;
+    private final AuditQuery query;
+    private final int pageSize;
+    private String cursor;
+    private boolean lastPage;
+    private List<AuditEventDTO> page = List.of();
+    private int next;
+
+    /**
+     * Creates the iterator. No page is fetched until {@link #hasNext()} is called.
+     *
+     * @param service the service to page through
+     * @param user the user whose events to iterate
+     * @param query the criteria the events must meet
+     * @param cursor the cursor to start from, or {@code null} for the newest event
+     * @param pageSize the events fetched per page
+     */
+    AuditPageIterator(AuditLogQueryService service, User user, AuditQuery query, String cursor, int pageSize) {
+        this.service = service;
+        this.user = user;
+        this.query = query;
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == page.size() && !lastPage) {
+            AuditEventPage fetched = service.findPage(user, query, cursor, pageSize);
+            page = fetched.getEvents();
+            next = 0;
+            cursor = fetched.getNextCursor();
+            lastPage = !fetched.hasNext();
+        }
+        return next < page.size();
+    }
+
+    @Override
+    public AuditEventDTO next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(next++);
+    }
+}
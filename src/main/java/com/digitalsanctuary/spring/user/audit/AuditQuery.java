@@ -0,0 +1,110 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+/**
+ * Criteria of an audit query, answered in a single pass over the audit store by {@link AuditLogQueryService#find},
+ * {@link AuditLogQueryService#findPage} and {@link AuditLogQueryService#stream}.
+ *
+ * <p>Every criterion is optional; a query built without any returns the user's whole history. Criteria combine with AND, the
+ * values of a set criterion with OR, so one query can ask for, say, both {@code CONSENT_GRANTED} and {@code CONSENT_WITHDRAWN}
+ * events in the last year instead of running one query per action. Immutable.
+ *
+ * <pre>{@code
+ * AuditQuery consentChanges = AuditQuery.builder()
+ *         .action("CONSENT_GRANTED")
+ *         .action("CONSENT_WITHDRAWN")
+ *         .since(Instant.now().minus(365, ChronoUnit.DAYS))
+ *         .order(AuditQuery.Order.OLDEST_FIRST)
+ *         .build();
+ * }</pre>
+ *
+ * @see AuditLogQueryService
+ */
+@Value
+@Builder
+public class AuditQuery {
+
+    private static final AuditQuery ALL = AuditQuery.builder().build();
+
+    /**
+     * The order in which {@link AuditLogQueryService#find} returns events.
+     */
+    public enum Order {
+
+        /** Most recent event first. */
+        NEWEST_FIRST,
+
+        /** Chronological order. */
+        OLDEST_FIRST
+    }
+
+    /**
+     * Only events with one of these actions (e.g., "CONSENT_GRANTED", "Login"); empty for any action.
+     */
+    @Singular
+    Set<String> actions;
+
+    /**
+     * Only events with one of these action statuses (e.g., "Success", "Failure"); empty for any status.
+     */
+    @Singular
+    Set<String> statuses;
+
+    /**
+     * Only events from this IP address, or {@code null} for any address.
+     */
+    String ipAddress;
+
+    /**
+     * Only events at or after this instant, or {@code null} for no lower bound.
+     */
+    Instant since;
+
+    /**
+     * Only events before this instant, or {@code null} for no upper bound.
+     */
+    Instant until;
+
+    /**
+     * The maximum number of events {@link AuditLogQueryService#find} returns, keeping the most recent ones; {@code 0} for the
+     * service's own cap ({@code user.audit.maxQueryResults} for the built-in services). Paged queries ignore it.
+     */
+    int limit;
+
+    /**
+     * The order of the events {@link AuditLogQueryService#find} returns. Applied after {@link #limit}, so it never changes which
+     * events are returned. Paged queries are always newest first.
+     */
+    @Builder.Default
+    Order order = Order.NEWEST_FIRST;
+
+    /**
+     * Returns the query without criteria, which selects a user's whole history.
+     *
+     * @return the query
+     */
+    public static AuditQuery all() {
+        return ALL;
+    }
+
+    /**
+     * Returns whether an event of the queried user meets the criteria. Events without a timestamp are not excluded by the time
+     * range.
+     *
+     * @param event the event
+     * @return {@code true} if the query selects the event
+     */
+    public boolean matches(AuditEventDTO event) {
+        Instant timestamp = event.getTimestamp();
+        return (actions.isEmpty() || actions.contains(event.getAction()))
+                && (statuses.isEmpty() || statuses.contains(event.getActionStatus()))
+                && (ipAddress == null || ipAddress.equals(event.getIpAddress()))
+                && (since == null || timestamp == null || !timestamp.isBefore(since))
+                && (until == null || timestamp == null || timestamp.isBefore(until));
+    }
+}
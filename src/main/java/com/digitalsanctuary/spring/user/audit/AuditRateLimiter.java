@@ -0,0 +1,307 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Token-bucket rate limiter for audit events, enabled with {@code user.audit.rateLimit.enabled=true}.
+ *
+ * <p>During a bot attack a single rejected-request path (for example a failing CAPTCHA) can emit thousands of identical audit events a
+ * second, and the audit pipeline becomes the bottleneck. {@link AuditEventListener} asks {@link #tryAcquire(AuditEvent)} before writing
+ * each event. An event is written only if both its action bucket (keyed by action and status) and its source bucket (keyed by client
+ * network: the {@code /24} of an IPv4 address or the {@code /64} of an IPv6 address) have a token left. Events over either limit are
+ * not written individually; they are counted and folded into one aggregate record per action, status and source network every
+ * {@code aggregateIntervalMs}, for example {@code "CaptchaValidation Failure x 18,422 from 203.0.113.0/24 in last 60s"}.
+ *
+ * <p>Actions listed in {@code exemptActions} (as {@code Action} or {@code Action:Status}) always pass; by default these are successful
+ * logins and consent changes. Aggregates are written by {@link #flushAggregates()}, which runs on the Spring scheduler when scheduling is
+ * enabled. The event path also notices when an interval has elapsed, so aggregates are produced either way, but it only hands the flush
+ * to the {@code dsAuditExecutor}: the request thread that notices never writes the aggregates itself.
+ *
+ * <p>At most {@code maxTrackedSources} source networks are tracked; beyond that, further networks share a single bucket and aggregate
+ * so an attack from many addresses cannot grow the limiter without bound. Idle buckets are discarded when aggregates are flushed.
+ */
+@Slf4j
+public class AuditRateLimiter {
+
+    /** Source label used for events without an IP address. */
+    static final String UNKNOWN_SOURCE = "unknown";
+
+    /** Source label shared by all networks beyond {@code maxTrackedSources}. */
+    static final String OVERFLOW_SOURCE = "other networks";
+
+    private final AuditConfig.RateLimit settings;
+    private final ObjectProvider<AuditLogWriter> auditLogWriterProvider;
+    private final Executor flushExecutor;
+    private final LongSupplier nanoClock;
+    private final Set<String> exemptions;
+    private final long intervalNanos;
+
+    private final Map<String, TokenBucket> actionBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> sourceBuckets = new ConcurrentHashMap<>();
+    private final Map<AggregateKey, LongAdder> suppressed = new ConcurrentHashMap<>();
+    private final AtomicLong nextFlushAtNanos;
+    private final AtomicLong totalSuppressed = new AtomicLong();
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param auditConfig the audit configuration; its {@link AuditConfig#getRateLimit()} settings are read once
+     * @param auditLogWriterProvider resolves the writer that receives aggregate records
+     */
+    public AuditRateLimiter(AuditConfig auditConfig, ObjectProvider<AuditLogWriter> auditLogWriterProvider) {
+        this(auditConfig, auditLogWriterProvider, null);
+    }
+
+    /**
+     * Creates a rate limiter whose event-path flushes run on the given executor.
+     *
+     * @param auditConfig the audit configuration; its {@link AuditConfig#getRateLimit()} settings are read once
+     * @param auditLogWriterProvider resolves the writer that receives aggregate records
+     * @param dispatchExecutorProvider resolves the {@code dsAuditExecutor}; may be {@code null}, or empty, to flush on a virtual thread
+     */
+    public AuditRateLimiter(AuditConfig auditConfig, ObjectProvider<AuditLogWriter> auditLogWriterProvider,
+            ObjectProvider<Executor> dispatchExecutorProvider) {
+        this(auditConfig.getRateLimit(), auditLogWriterProvider, dispatchExecutorOrVirtualThread(dispatchExecutorProvider), System::nanoTime);
+    }
+
+    AuditRateLimiter(AuditConfig.RateLimit settings, ObjectProvider<AuditLogWriter> auditLogWriterProvider, Executor flushExecutor,
+            LongSupplier nanoClock) {
+        this.settings = settings;
+        this.auditLogWriterProvider = auditLogWriterProvider;
+        this.flushExecutor = flushExecutor;
+        this.nanoClock = nanoClock;
+        this.exemptions = settings.getExemptActions() == null ? Set.of()
+                : settings.getExemptActions().stream().map(String::trim).filter(s -> !s.isEmpty()).map(s -> s.toLowerCase(Locale.ROOT))
+                        .collect(Collectors.toUnmodifiableSet());
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000L, settings.getAggregateIntervalMs()));
+        this.nextFlushAtNanos = new AtomicLong(nanoClock.getAsLong() + intervalNanos);
+    }
+
+    /**
+     * Decides whether an event is written. Exempt events always pass. Any other event takes a token from its action bucket and its
+     * source bucket; if either is empty the event is counted towards the next aggregate record instead.
+     *
+     * @param event the audit event
+     * @return {@code true} if the event should be written, {@code false} if it was folded into an aggregate
+     */
+    public boolean tryAcquire(AuditEvent event) {
+        long now = nanoClock.getAsLong();
+        long due = nextFlushAtNanos.get();
+        if (now - due >= 0 && nextFlushAtNanos.compareAndSet(due, now + intervalNanos)) {
+            // Exactly one caller wins the interval, so this also works with scheduling disabled. The write is I/O, so it is handed off
+            // rather than done on a request thread in the middle of the flood being absorbed.
+            try {
+                flushExecutor.execute(() -> flush(now));
+            } catch (Exception e) {
+                log.warn("AuditRateLimiter.tryAcquire: Could not queue the aggregate flush; the next flush will include them: {}",
+                        e.getMessage());
+            }
+        }
+        if (isExempt(event.getAction(), event.getActionStatus())) {
+            return true;
+        }
+        String actionKey = event.getAction() + '|' + event.getActionStatus();
+        String source = trackedSource(sourceOf(event.getIpAddress()));
+        TokenBucket actionBucket = actionBuckets.computeIfAbsent(actionKey,
+                k -> new TokenBucket(settings.getActionEventsPerSecond(), settings.getActionBurst(), now));
+        TokenBucket sourceBucket = sourceBuckets.computeIfAbsent(source,
+                k -> new TokenBucket(settings.getSourceEventsPerSecond(), settings.getSourceBurst(), now));
+        // Take from both so a flood from one network cannot hide behind a quiet action, or the other way round.
+        boolean actionAllowed = actionBucket.tryConsume(now);
+        boolean sourceAllowed = sourceBucket.tryConsume(now);
+        if (actionAllowed && sourceAllowed) {
+            return true;
+        }
+        suppressed.computeIfAbsent(new AggregateKey(event.getAction(), event.getActionStatus(), source), k -> new LongAdder())
+                .increment();
+        totalSuppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the number of events folded into aggregates since startup.
+     *
+     * @return the suppressed event count
+     */
+    public long getSuppressedEventCount() {
+        return totalSuppressed.get();
+    }
+
+    /**
+     * Writes one aggregate record for every action, status and source that had events suppressed since the previous flush, and
+     * discards idle buckets. Safe to call concurrently; each suppressed event is reported exactly once.
+     */
+    @Scheduled(fixedRateString = "#{@auditConfig.rateLimit.aggregateIntervalMs}")
+    public void flushAggregates() {
+        long now = nanoClock.getAsLong();
+        nextFlushAtNanos.set(now + intervalNanos);
+        flush(now);
+    }
+
+    private static Executor dispatchExecutorOrVirtualThread(ObjectProvider<Executor> dispatchExecutorProvider) {
+        Executor dispatchExecutor = dispatchExecutorProvider != null ? dispatchExecutorProvider.getIfAvailable() : null;
+        return dispatchExecutor != null ? dispatchExecutor : task -> Thread.ofVirtual().name("ds-audit-aggregate-flush").start(task);
+    }
+
+    private void flush(long now) {
+        List<AuditEvent> aggregates = drainAggregates();
+        actionBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+        sourceBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+        if (aggregates.isEmpty()) {
+            return;
+        }
+        AuditLogWriter writer = auditLogWriterProvider.getIfAvailable();
+        if (writer == null) {
+            return;
+        }
+        for (AuditEvent aggregate : aggregates) {
+            try {
+                writer.writeLog(aggregate);
+            } catch (Exception e) {
+                log.error("AuditRateLimiter.flushAggregates: Failed to write aggregate audit record: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Removes the current suppression counts and turns each non-zero one into an aggregate audit event.
+     *
+     * @return the aggregate events, possibly empty
+     */
+    List<AuditEvent> drainAggregates() {
+        List<AuditEvent> aggregates = new ArrayList<>();
+        long windowSeconds = TimeUnit.NANOSECONDS.toSeconds(intervalNanos);
+        for (AggregateKey key : List.copyOf(suppressed.keySet())) {
+            LongAdder counter = suppressed.remove(key);
+            long count = counter != null ? counter.sumThenReset() : 0L;
+            if (count == 0) {
+                continue;
+            }
+            String message = String.format(Locale.ROOT, "%s %s x %,d from %s in last %ds", key.action(), key.status(), count, key.source(),
+                    windowSeconds);
+            String extraData = "{\"aggregate\":true,\"suppressed\":" + count + ",\"windowSeconds\":" + windowSeconds + "}";
+            boolean network = !UNKNOWN_SOURCE.equals(key.source()) && !OVERFLOW_SOURCE.equals(key.source());
+            aggregates.add(AuditEvent.builder()
+                    .source(this)
+                    .action(key.action())
+                    .actionStatus(key.status())
+                    .ipAddress(network ? key.source() : null)
+                    .message(message)
+                    .extraData(extraData)
+                    .build());
+        }
+        return aggregates;
+    }
+
+    private boolean isExempt(String action, String status) {
+        if (exemptions.isEmpty() || action == null) {
+            return false;
+        }
+        String normalizedAction = action.toLowerCase(Locale.ROOT);
+        return exemptions.contains(normalizedAction)
+                || (status != null && exemptions.contains(normalizedAction + ':' + status.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Returns the source itself while fewer than {@code maxTrackedSources} networks are tracked (or it is already tracked), else the
+     * shared {@value #OVERFLOW_SOURCE} key.
+     */
+    private String trackedSource(String source) {
+        if (sourceBuckets.containsKey(source) || sourceBuckets.size() < Math.max(1, settings.getMaxTrackedSources())) {
+            return source;
+        }
+        return OVERFLOW_SOURCE;
+    }
+
+    /**
+     * Maps a client address to the network it is limited and reported by: {@code a.b.c.0/24} for IPv4, the {@code /64} for IPv6.
+     * Anything that is not an IP literal is used as-is (truncated), and a missing address maps to {@value #UNKNOWN_SOURCE}.
+     *
+     * @param ipAddress the client address from the event
+     * @return the source label
+     */
+    static String sourceOf(String ipAddress) {
+        if (ipAddress == null || ipAddress.isBlank()) {
+            return UNKNOWN_SOURCE;
+        }
+        String ip = ipAddress.trim();
+        String[] octets = ip.split("\\.", -1);
+        if (octets.length == 4 && ip.chars().allMatch(c -> c == '.' || Character.isDigit(c))) {
+            return octets[0] + '.' + octets[1] + '.' + octets[2] + ".0/24";
+        }
+        if (ip.indexOf(':') >= 0 && ip.chars().allMatch(c -> c == ':' || c == '.' || Character.digit(c, 16) >= 0)) {
+            try {
+                // Only hex digits, colons and dots reach this point, so this parses a literal and never performs a DNS lookup.
+                byte[] address = InetAddress.getByName(ip).getAddress();
+                if (address.length == 16) {
+                    byte[] network = new byte[16];
+                    System.arraycopy(address, 0, network, 0, 8);
+                    return InetAddress.getByAddress(network).getHostAddress() + "/64";
+                }
+            } catch (UnknownHostException e) {
+                // fall through to the raw value
+            }
+        }
+        return ip.length() > 64 ? ip.substring(0, 64) : ip;
+    }
+
+    private record AggregateKey(String action, String status, String source) {
+    }
+
+    /**
+     * A classic token bucket: holds up to {@code capacity} tokens and refills at {@code tokensPerSecond}.
+     */
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double tokensPerSecond, int burst, long now) {
+            this.capacity = Math.max(1, burst);
+            this.tokensPerNano = Math.max(0d, tokensPerSecond) / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefillNanos = now;
+        }
+
+        synchronized boolean tryConsume(long now) {
+            refill(now);
+            if (tokens >= 1d) {
+                tokens -= 1d;
+                return true;
+            }
+            return false;
+        }
+
+        /** A bucket that has refilled completely carries no state worth keeping. */
+        synchronized boolean isIdle(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefillNanos;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+                lastRefillNanos = now;
+            }
+        }
+    }
+}
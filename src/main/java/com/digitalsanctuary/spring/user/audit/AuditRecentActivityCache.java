@@ -0,0 +1,291 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * In-memory cache of each user's most recent audit records, fed by {@link FileAuditLogWriter} as it appends them and consulted by
+ * {@link FileAuditLogQueryService} before it reads the log. The writer passes each record in the form the codec reads it back
+ * ({@link AuditRecordCodec#decodedForm}), so a hit returns the same values, sanitized by the codec, as reading the log would.
+ *
+ * <p>Each cached user keeps the last {@code user.audit.recentActivity.eventsPerUser} records written for their id, plus those written
+ * under another subject with the same email, which the query service also returns for the user. Users are evicted least recently used
+ * first, by writes and queries alike, once the estimated size of all cached records exceeds {@code user.audit.recentActivity.maxBytes}.
+ *
+ * <p>A user's entry only knows what was written since it was created, so it tracks the instant from which it is complete: every record
+ * of the user at or after it is held. That instant starts {@link FileAuditLogQueryService#SINCE_CUTOFF_SLACK_MILLIS} after the first
+ * record the entry saw, to allow for records written slightly out of timestamp order, and moves past each record dropped to stay within
+ * the per-user limit. A query is answered from the entry only when that is provably the same answer the log would give: its
+ * {@code since} lies within the complete range, or the complete range alone holds as many matches as the query returns. Anything else,
+ * such as a full history or a user not seen since startup, is a miss, and the caller reads the log.
+ *
+ * <p>Thread-safe: writes and lookups are serialized on the cache, and each holds the lock only for the few records of one user.
+ */
+public final class AuditRecentActivityCache {
+
+    /** Estimated heap cost of one cached record beyond its strings: the record object and its queue slot. */
+    private static final int RECORD_OVERHEAD_BYTES = 80;
+
+    /** Estimated heap cost of one non-null string beyond its characters. */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    /** Estimated heap cost of one cached user beyond their records. */
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private static final Comparator<AuditRecord> NEWEST_FIRST = Comparator.comparingLong(AuditRecord::timestamp).reversed();
+
+    private final int eventsPerUser;
+    private final long maxBytes;
+
+    /** Entries by subject, least recently used first. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Subjects of the entries whose latest record carries each lower-cased email. */
+    private final Map<String, Set<String>> subjectsByEmail = new HashMap<>();
+
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param eventsPerUser the most recent records kept per user; must be positive
+     * @param maxBytes the estimated size of all cached records above which the least recently used users are evicted
+     */
+    public AuditRecentActivityCache(int eventsPerUser, long maxBytes) {
+        if (eventsPerUser < 1) {
+            throw new IllegalArgumentException("eventsPerUser must be positive: " + eventsPerUser);
+        }
+        this.eventsPerUser = eventsPerUser;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a record just written to the log. Records without a subject, such as rate limit aggregates, are ignored.
+     *
+     * @param record the record
+     */
+    public synchronized void record(AuditRecord record) {
+        String subject = record.userId();
+        if (subject == null || AuditRecord.UNKNOWN_USER.equals(subject)) {
+            return;
+        }
+        String email = record.userEmail() != null ? record.userEmail().toLowerCase(Locale.ROOT) : null;
+        Entry entry = entries.get(subject);
+        if (entry == null) {
+            entry = new Entry(subject, record.timestamp() + FileAuditLogQueryService.SINCE_CUTOFF_SLACK_MILLIS);
+            entries.put(subject, entry);
+            bytes += ENTRY_OVERHEAD_BYTES;
+        }
+        if (email != null && !email.equals(entry.email)) {
+            assignEmail(entry, email, record.timestamp());
+        }
+        append(entry, record);
+        if (email != null) {
+            for (String other : subjectsByEmail.get(email)) {
+                if (!other.equals(subject)) {
+                    append(entries.get(other), record); // the query service matches the other subject's user by email
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Answers a query from the cache if the cached records are known to hold its whole answer.
+     *
+     * @param userId the user's id, or {@code null} for a user that is not persisted
+     * @param userEmail the user's email, or {@code null}
+     * @param query the criteria
+     * @param maxResults the maximum number of events to return; {@code 0} for no limit
+     * @return the matching events, newest first, or {@code null} on a miss
+     */
+    public synchronized List<AuditEventDTO> find(String userId, String userEmail, AuditQuery query, int maxResults) {
+        String subject = userId != null ? userId : userEmail;
+        Entry entry = subject != null ? entries.get(subject) : null;
+        String email = userEmail != null ? userEmail.toLowerCase(Locale.ROOT) : null;
+        if (entry == null || !Objects.equals(entry.email, email)) {
+            misses++;
+            return null;
+        }
+        List<AuditRecord> complete = new ArrayList<>(entry.records.size());
+        for (AuditRecord record : entry.records) {
+            if (record.timestamp() >= entry.completeFromMillis) {
+                complete.add(record);
+            }
+        }
+        complete.sort(NEWEST_FIRST);
+        List<AuditEventDTO> events = new ArrayList<>();
+        for (AuditRecord record : complete) {
+            AuditEventDTO event = toEvent(record);
+            if (query.matches(event)) {
+                events.add(event);
+                if (events.size() == maxResults) {
+                    hits++;
+                    return events; // nothing older than the complete range can displace these
+                }
+            }
+        }
+        if (query.getSince() != null && query.getSince().toEpochMilli() >= entry.completeFromMillis) {
+            hits++;
+            return events;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Removes every cached user.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        subjectsByEmail.clear();
+        bytes = 0L;
+    }
+
+    /**
+     * Returns the number of cached users.
+     *
+     * @return the user count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated heap size of the cached records.
+     *
+     * @return the estimate, in bytes
+     */
+    public synchronized long estimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     *
+     * @return the hit count since startup
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries that had to read the log.
+     *
+     * @return the miss count since startup
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Changes the email an entry is matched by. Records with that email written under other subjects before now were not routed to
+     * the entry, so it is only complete from this record on.
+     */
+    private void assignEmail(Entry entry, String email, long timestamp) {
+        unlinkEmail(entry);
+        subjectsByEmail.computeIfAbsent(email, key -> new HashSet<>()).add(entry.subject);
+        if (!entry.records.isEmpty()) {
+            entry.completeFromMillis = Math.max(entry.completeFromMillis, timestamp + FileAuditLogQueryService.SINCE_CUTOFF_SLACK_MILLIS);
+        }
+        entry.email = email;
+    }
+
+    private void append(Entry entry, AuditRecord record) {
+        entry.records.addLast(record);
+        bytes += sizeOf(record);
+        while (entry.records.size() > eventsPerUser) {
+            AuditRecord dropped = entry.records.removeFirst();
+            bytes -= sizeOf(dropped);
+            entry.completeFromMillis = Math.max(entry.completeFromMillis, dropped.timestamp() + 1);
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            release(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        unlinkEmail(entry);
+        bytes -= ENTRY_OVERHEAD_BYTES;
+        for (AuditRecord record : entry.records) {
+            bytes -= sizeOf(record);
+        }
+    }
+
+    private void unlinkEmail(Entry entry) {
+        Set<String> subjects = entry.email != null ? subjectsByEmail.get(entry.email) : null;
+        if (subjects != null) {
+            subjects.remove(entry.subject);
+            if (subjects.isEmpty()) {
+                subjectsByEmail.remove(entry.email);
+            }
+        }
+    }
+
+    private static long sizeOf(AuditRecord record) {
+        return RECORD_OVERHEAD_BYTES + sizeOf(record.userId()) + sizeOf(record.userEmail()) + sizeOf(record.sessionId())
+                + sizeOf(record.ipAddress()) + sizeOf(record.userAgent()) + sizeOf(record.action()) + sizeOf(record.actionStatus())
+                + sizeOf(record.message()) + sizeOf(record.extraData());
+    }
+
+    private static long sizeOf(String value) {
+        return value != null ? STRING_OVERHEAD_BYTES + 2L * value.length() : 0L;
+    }
+
+    /**
+     * Builds the event the query service would decode from the record's line.
+     */
+    private static AuditEventDTO toEvent(AuditRecord record) {
+        return AuditEventDTO.builder()
+                .timestamp(Instant.ofEpochMilli(record.timestamp()))
+                .action(record.action())
+                .actionStatus(record.actionStatus())
+                .userId(record.userId())
+                .userEmail(record.userEmail())
+                .ipAddress(record.ipAddress())
+                .sessionId(record.sessionId())
+                .message(record.message())
+                .userAgent(record.userAgent())
+                .extraData(record.extraData())
+                .build();
+    }
+
+    /**
+     * The cached records of one subject.
+     */
+    private static final class Entry {
+
+        private final String subject;
+        private final ArrayDeque<AuditRecord> records = new ArrayDeque<>();
+
+        /** Every record of the user at or after this instant (epoch millis) is in {@link #records}. */
+        private long completeFromMillis;
+
+        /** The lower-cased email of the subject's latest record, or {@code null}. */
+        private String email;
+
+        private Entry(String subject, long completeFromMillis) {
+            this.subject = subject;
+            this.completeFromMillis = completeFromMillis;
+        }
+    }
+}
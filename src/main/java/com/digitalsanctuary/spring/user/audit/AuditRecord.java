@@ -0,0 +1,48 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import com.digitalsanctuary.spring.user.persistence.model.User;
+
+/**
+ * An immutable snapshot of an {@link AuditEvent}: plain strings and an epoch timestamp, with no reference to the {@link User} entity.
+ *
+ * <p>{@link AuditEventListener} takes the snapshot on the publishing thread, while the entity is still attached, and only the snapshot
+ * waits in the dispatch queue. A queued event therefore retains a few short strings instead of a whole entity graph (roles, lazy
+ * collections and the persistence context behind them), and the writer thread never touches JPA state. Writers that implement
+ * {@link AuditRecordWriter} consume snapshots directly, as do the {@link AuditRecordCodec}s.
+ *
+ * <p>The subject is identified the same way by every built-in format: {@link #userId()} is the user's id, else the user's email (for
+ * users not yet persisted), else {@value #UNKNOWN_USER}.
+ *
+ * @param timestamp epoch milliseconds at which the event was created
+ * @param userId the subject identifier, never {@code null}
+ * @param userEmail the user's email, or {@code null}
+ * @param sessionId the session id, or {@code null}
+ * @param ipAddress the client address, or {@code null}
+ * @param userAgent the user agent, or {@code null}
+ * @param action the action
+ * @param actionStatus the action status
+ * @param message the message, or {@code null}
+ * @param extraData the extra data, or {@code null}
+ */
+public record AuditRecord(long timestamp, String userId, String userEmail, String sessionId, String ipAddress, String userAgent, String action,
+        String actionStatus, String message, String extraData) {
+
+    /** Subject identifier recorded when an event carries neither a user id nor an email. */
+    public static final String UNKNOWN_USER = "unknown";
+
+    /**
+     * Takes a snapshot of an event. Reads only the user's id and email.
+     *
+     * @param event the audit event
+     * @return the snapshot
+     */
+    public static AuditRecord of(AuditEvent event) {
+        long timestamp = event.getDate() != null ? event.getDate().getTime() : System.currentTimeMillis();
+        User user = event.getUser();
+        String email = user != null ? user.getEmail() : null;
+        Long id = user != null ? user.getId() : null;
+        String userId = id != null ? id.toString() : email != null ? email : UNKNOWN_USER;
+        return new AuditRecord(timestamp, userId, email, event.getSessionId(), event.getIpAddress(), event.getUserAgent(), event.getAction(),
+                event.getActionStatus(), event.getMessage(), event.getExtraData());
+    }
+}
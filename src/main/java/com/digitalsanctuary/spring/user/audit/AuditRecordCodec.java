@@ -0,0 +1,83 @@
+package com.digitalsanctuary.spring.user.audit;
+
+/**
+ * Service provider interface for the on-disk representation of a single audit record.
+ *
+ * <p>{@link FileAuditLogWriter} encodes each {@link AuditRecord} with the configured codec and writes the result as one line;
+ * {@link FileAuditLogQueryService} decodes lines back into {@link AuditEventDTO}s. Two codecs ship with the library, selected
+ * with {@code user.audit.logFormat}:
+ * <ul>
+ *   <li>{@link PipeDelimitedAuditRecordCodec} (the default) writes the legacy {@code Date|Action|...} format</li>
+ *   <li>{@link NdjsonAuditRecordCodec} writes one JSON object per line</li>
+ * </ul>
+ *
+ * <p>A consuming application can supply its own {@code AuditRecordCodec} bean to change the file format. The query service
+ * recognizes both built-in formats line by line, so a file that switched formats mid-way (for example after an upgrade)
+ * remains fully queryable. Files written with a custom codec need a matching custom {@link AuditLogQueryService}.
+ *
+ * <p>Implementations must be thread-safe. {@link #encode(AuditRecord, StringBuilder)} appends to a caller-owned buffer so the
+ * writer can reuse one buffer for every record instead of allocating an intermediate {@code String} per event.
+ *
+ * @see AuditLogFormat
+ * @see FileAuditLogWriter
+ * @see FileAuditLogQueryService
+ */
+public interface AuditRecordCodec {
+
+    /**
+     * Appends the encoded form of a record to {@code out}. The encoding must be a single line: it must not contain CR or LF,
+     * and must not include the line terminator, which the writer adds.
+     *
+     * @param record the audit record to encode
+     * @param out the buffer to append to
+     */
+    void encode(AuditRecord record, StringBuilder out);
+
+    /**
+     * Returns whether {@code line} looks like a record written by this codec. Used to pick a decoder per line.
+     *
+     * @param line a line read from the audit log
+     * @return {@code true} if this codec should decode the line
+     */
+    boolean canDecode(String line);
+
+    /**
+     * Decodes one line into an event.
+     *
+     * @param line a line read from the audit log
+     * @return the decoded event, or {@code null} if the line is a header, blank or malformed
+     */
+    AuditEventDTO decode(String line);
+
+    /**
+     * Returns the record as {@link #decode(String)} reads it back from this codec's encoding, so a cache fed at write time answers
+     * with the same, possibly sanitized, values a query of the file does. Falls back to the record itself if the encoding cannot
+     * be decoded or has no subject.
+     *
+     * <p>The default encodes and decodes the record. The built-in codecs override it to apply their sanitization directly, and
+     * return the record itself, without allocating, when it needs none.
+     *
+     * @param record the record being written
+     * @return the record as it will be read back
+     */
+    default AuditRecord decodedForm(AuditRecord record) {
+        StringBuilder line = new StringBuilder(256);
+        encode(record, line);
+        AuditEventDTO decoded = decode(line.toString());
+        if (decoded == null || decoded.getTimestamp() == null || decoded.getUserId() == null) {
+            return record;
+        }
+        return new AuditRecord(decoded.getTimestamp().toEpochMilli(), decoded.getUserId(), decoded.getUserEmail(), decoded.getSessionId(),
+                decoded.getIpAddress(), decoded.getUserAgent(), decoded.getAction(), decoded.getActionStatus(), decoded.getMessage(),
+                decoded.getExtraData());
+    }
+
+    /**
+     * Returns the header line written at the top of each new log file, or {@code null} if the format has no header.
+     *
+     * @return the header line without a terminator, or {@code null}
+     */
+    default String header() {
+        return null;
+    }
+}
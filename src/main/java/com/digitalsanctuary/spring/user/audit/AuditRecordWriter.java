@@ -0,0 +1,45 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.List;
+
+/**
+ * An {@link AuditLogWriter} that consumes {@link AuditRecord} snapshots instead of {@link AuditEvent}s.
+ *
+ * <p>For a writer of this type, {@link AuditEventListener} snapshots each event on the publishing thread and queues only the snapshot,
+ * so the event and its {@code User} entity are not retained while the event waits to be written. Writers that need the entity itself
+ * implement plain {@link AuditLogWriter} and keep receiving the event. Both built-in writers, {@link FileAuditLogWriter} and
+ * {@link JdbcAuditLogWriter}, implement this interface.
+ */
+public interface AuditRecordWriter extends AuditLogWriter {
+
+    /**
+     * Writes an audit record.
+     *
+     * @param record the snapshot to write
+     */
+    void writeRecord(AuditRecord record);
+
+    /**
+     * Writes several audit records, in order. The default writes them one by one; writers that can store a batch more cheaply, such as
+     * with a single flush or a single JDBC batch, override it. Used by {@link AuditSink} to hand over what it drained from its queue.
+     *
+     * @param records the snapshots to write
+     */
+    default void writeRecords(List<AuditRecord> records) {
+        for (AuditRecord record : records) {
+            writeRecord(record);
+        }
+    }
+
+    /**
+     * Snapshots the event and writes the snapshot.
+     *
+     * @param event the audit event to log
+     */
+    @Override
+    default void writeLog(AuditEvent event) {
+        if (event != null) {
+            writeRecord(AuditRecord.of(event));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free, multi-producer/single-consumer ring buffer used by {@link FileAuditLogWriter} in async mode.
+ *
+ * <p>Each slot carries a sequence number (the classic bounded-queue sequencing scheme): a producer claims a position with a
+ * single CAS on the tail counter, stores its element and then publishes the slot by advancing the slot sequence. The single
+ * consumer observes published slots in order, hands them to a sink and releases them back to producers. Producers never
+ * block and never take a lock; when the buffer is full {@link #offer(Object)} simply returns {@code false} so the caller can
+ * decide what to do with the element.
+ *
+ * <p>Only one thread may call {@link #drainTo(Consumer, int)}. {@link #offer(Object)} is safe from any number of threads.
+ *
+ * @param <E> the element type
+ */
+final class AuditRingBuffer<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next position to consume. Written only by the consumer thread; volatile so {@link #size()} can read it. */
+    private volatile long head;
+
+    /**
+     * Creates a ring buffer. The capacity is rounded up to the next power of two so slot indexing is a mask.
+     *
+     * @param requestedCapacity the minimum number of elements the buffer must hold; must be positive
+     */
+    AuditRingBuffer(int requestedCapacity) {
+        if (requestedCapacity <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity must be positive: " + requestedCapacity);
+        }
+        int capacity = Integer.highestOneBit(Math.min(requestedCapacity, 1 << 30));
+        if (capacity < requestedCapacity) {
+            capacity <<= 1;
+        }
+        this.slots = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Attempts to append an element without blocking.
+     *
+     * @param element the element to append; must not be null
+     * @return {@code true} if the element was enqueued, {@code false} if the buffer is full
+     */
+    boolean offer(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Ring buffer does not accept null elements");
+        }
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                return false; // the consumer has not yet released this slot: buffer is full
+            }
+            // Otherwise another producer claimed this position first; reload the tail and retry.
+            Thread.onSpinWait();
+        }
+        slots[index] = element;
+        sequences.lazySet(index, position + 1); // publish to the consumer
+        return true;
+    }
+
+    /**
+     * Removes up to {@code maxElements} published elements in FIFO order and passes each one to {@code sink}. Must only be
+     * called from the single consumer thread.
+     *
+     * @param sink receives each drained element
+     * @param maxElements the maximum number of elements to drain
+     * @return the number of elements drained
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(Consumer<? super E> sink, int maxElements) {
+        int drained = 0;
+        long position = head;
+        while (drained < maxElements) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break; // not yet published
+            }
+            E element = (E) slots[index];
+            slots[index] = null;
+            sequences.lazySet(index, position + slots.length); // release the slot to producers
+            position++;
+            head = position;
+            sink.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns an approximate count of buffered elements. Exact only when no producer or consumer is active.
+     *
+     * @return the approximate number of buffered elements
+     */
+    int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0L, Math.min(size, slots.length));
+    }
+
+    /**
+     * Returns whether the buffer currently appears empty.
+     *
+     * @return {@code true} if no elements are buffered
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the capacity of the buffer (the requested capacity rounded up to a power of two).
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return slots.length;
+    }
+}
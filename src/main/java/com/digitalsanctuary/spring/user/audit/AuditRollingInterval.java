@@ -0,0 +1,41 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Time-based rolling for the file audit log, selected with {@code user.audit.rollingInterval}. Applies in addition to
+ * size-based rotation ({@code user.audit.maxFileSizeMb}): the active file is rotated at whichever limit is reached first.
+ * Boundaries are calendar hours or days in the JVM's default time zone.
+ */
+public enum AuditRollingInterval {
+
+    /** No time-based rolling. This is the default. */
+    NONE,
+
+    /** Roll at the start of every hour. */
+    HOURLY,
+
+    /** Roll at midnight. */
+    DAILY;
+
+    /**
+     * Returns the first rolling boundary strictly after {@code epochMillis}.
+     *
+     * @param epochMillis the reference time
+     * @param zone the time zone that defines hour and day boundaries
+     * @return the next boundary in epoch milliseconds, or {@link Long#MAX_VALUE} for {@link #NONE}
+     */
+    long nextBoundary(long epochMillis, ZoneId zone) {
+        if (this == NONE) {
+            return Long.MAX_VALUE;
+        }
+        ZonedDateTime time = Instant.ofEpochMilli(epochMillis).atZone(zone);
+        ZonedDateTime next = this == HOURLY
+                ? time.truncatedTo(ChronoUnit.HOURS).plusHours(1)
+                : time.toLocalDate().plusDays(1).atStartOfDay(zone);
+        return next.toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,216 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-minute counts of audit records by action, status and IP address, kept up to date by the writer of the audit store and read by
+ * {@link AuditAnalyticsService}.
+ *
+ * <p>The writer of {@code user.audit.store} ({@link FileAuditLogWriter} or {@link JdbcAuditLogWriter}) calls {@link #record} for each
+ * record it has stored, which increments one counter in the record's minute. An aggregate query then adds up the counters of the
+ * minutes it covers, so its cost depends on the number of minutes and groups, never on the number of events, and the raw log is not
+ * read. An aggregate record written by the {@link AuditRateLimiter} counts as the number of events it stands for.
+ *
+ * <p>Minutes older than {@code user.audit.rollups.retentionMinutes} are discarded, as are records that arrive for them. Once
+ * {@code user.audit.rollups.maxGroups} distinct groups are held, records of a new group are counted under their action and status with
+ * the IP address {@value #OTHER_IP_ADDRESS}, so a scan from many addresses cannot exhaust the heap. The counts are in memory and start
+ * empty: they cover what this node's writer stored since startup ({@link #getCoverageStart()}), never records written by other nodes,
+ * even when they share the {@link JdbcAuditLogWriter} table.
+ *
+ * <p>Thread-safe: updates and queries are serialized on the rollups.
+ */
+public final class AuditRollups {
+
+    /** IP address of the group that collects records once {@code user.audit.rollups.maxGroups} is reached. */
+    public static final String OTHER_IP_ADDRESS = "other";
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** Prefix of the extra data of {@link AuditRateLimiter} aggregate records, followed by the suppressed event count. */
+    private static final String SUPPRESSED_PREFIX = "{\"aggregate\":true,\"suppressed\":";
+
+    private final int retentionMinutes;
+    private final int maxGroups;
+    private final LongSupplier clock;
+    private final long startedAtMillis;
+
+    /** Counts by epoch minute, then by group. */
+    private final TreeMap<Long, Map<Group, long[]>> minutes = new TreeMap<>();
+
+    private int groupCount;
+
+    /**
+     * Creates empty rollups.
+     *
+     * @param retentionMinutes the number of most recent minutes kept; must be positive
+     * @param maxGroups the number of distinct groups held before new addresses are folded into {@value #OTHER_IP_ADDRESS}
+     */
+    public AuditRollups(int retentionMinutes, int maxGroups) {
+        this(retentionMinutes, maxGroups, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates empty rollups that read the time from the given clock.
+     *
+     * @param retentionMinutes the number of most recent minutes kept; must be positive
+     * @param maxGroups the number of distinct groups held before new addresses are folded into {@value #OTHER_IP_ADDRESS}
+     * @param clock returns the current time in epoch milliseconds
+     */
+    AuditRollups(int retentionMinutes, int maxGroups, LongSupplier clock) {
+        if (retentionMinutes < 1) {
+            throw new IllegalArgumentException("retentionMinutes must be positive: " + retentionMinutes);
+        }
+        this.retentionMinutes = retentionMinutes;
+        this.maxGroups = Math.max(1, maxGroups);
+        this.clock = clock;
+        this.startedAtMillis = clock.getAsLong();
+    }
+
+    /**
+     * Counts a record the writer has stored.
+     *
+     * @param record the record
+     */
+    public synchronized void record(AuditRecord record) {
+        long minute = Math.floorDiv(record.timestamp(), MINUTE_MILLIS);
+        long oldestMinute = evict();
+        if (minute < oldestMinute) {
+            return; // its minute has already been discarded
+        }
+        Map<Group, long[]> groups = minutes.computeIfAbsent(minute, key -> new HashMap<>());
+        Group group = new Group(record.action(), record.actionStatus(), record.ipAddress());
+        long[] count = groups.get(group);
+        if (count == null) {
+            if (groupCount >= maxGroups) {
+                group = new Group(record.action(), record.actionStatus(), OTHER_IP_ADDRESS);
+                count = groups.get(group);
+            }
+            if (count == null) {
+                count = new long[1];
+                groups.put(group, count);
+                groupCount++;
+            }
+        }
+        count[0] += weightOf(record);
+    }
+
+    /**
+     * Adds up the counts selected by a query.
+     *
+     * @param query the criteria and grouping
+     * @return the groups, by bucket start and then by descending count; buckets without a matching record are left out
+     */
+    public synchronized List<AuditAggregate> aggregate(AuditAggregateQuery query) {
+        long oldestMinute = evict();
+        long bucketMinutes = query.getBucket() != null ? query.getBucket().toMinutes() : 0L;
+        long fromMinute = query.getSince() != null
+                ? Math.max(oldestMinute, Math.floorDiv(query.getSince().toEpochMilli(), MINUTE_MILLIS))
+                : oldestMinute;
+        NavigableMap<Long, Map<Group, long[]>> range = query.getUntil() != null
+                ? minutes.subMap(fromMinute, true, ceilMinute(query.getUntil()), false)
+                : minutes.tailMap(fromMinute, true);
+        Map<Long, Map<Group, long[]>> buckets = new TreeMap<>();
+        for (Map.Entry<Long, Map<Group, long[]>> minute : range.entrySet()) {
+            long bucket = bucketMinutes > 0 ? Math.floorDiv(minute.getKey(), bucketMinutes) * bucketMinutes : Long.MIN_VALUE;
+            Map<Group, long[]> totals = buckets.computeIfAbsent(bucket, key -> new HashMap<>());
+            for (Map.Entry<Group, long[]> group : minute.getValue().entrySet()) {
+                if (query.matches(group.getKey().action(), group.getKey().status(), group.getKey().ipAddress())) {
+                    totals.computeIfAbsent(group.getKey().project(query), key -> new long[1])[0] += group.getValue()[0];
+                }
+            }
+        }
+        List<AuditAggregate> result = new ArrayList<>();
+        for (Map.Entry<Long, Map<Group, long[]>> bucket : buckets.entrySet()) {
+            Instant bucketStart = bucket.getKey() != Long.MIN_VALUE ? Instant.ofEpochMilli(bucket.getKey() * MINUTE_MILLIS) : null;
+            List<AuditAggregate> rows = new ArrayList<>(bucket.getValue().size());
+            for (Map.Entry<Group, long[]> group : bucket.getValue().entrySet()) {
+                rows.add(AuditAggregate.builder()
+                        .bucketStart(bucketStart)
+                        .action(group.getKey().action())
+                        .actionStatus(group.getKey().status())
+                        .ipAddress(group.getKey().ipAddress())
+                        .count(group.getValue()[0])
+                        .build());
+            }
+            rows.sort(Comparator.comparingLong(AuditAggregate::getCount).reversed());
+            result.addAll(query.getLimit() > 0 && rows.size() > query.getLimit() ? rows.subList(0, query.getLimit()) : rows);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the earliest instant from which the counts are complete: the later of startup and the start of the retention window.
+     *
+     * @return the coverage start
+     */
+    public synchronized Instant getCoverageStart() {
+        return Instant.ofEpochMilli(Math.max(startedAtMillis, evict() * MINUTE_MILLIS));
+    }
+
+    /**
+     * Returns the number of distinct groups held across all retained minutes.
+     *
+     * @return the group count
+     */
+    public synchronized int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Discards the minutes that fell out of the retention window.
+     *
+     * @return the oldest retained epoch minute
+     */
+    private long evict() {
+        long oldestMinute = Math.floorDiv(clock.getAsLong(), MINUTE_MILLIS) - retentionMinutes + 1;
+        while (!minutes.isEmpty() && minutes.firstKey() < oldestMinute) {
+            groupCount -= minutes.pollFirstEntry().getValue().size();
+        }
+        return oldestMinute;
+    }
+
+    private static long ceilMinute(Instant instant) {
+        return Math.floorDiv(instant.toEpochMilli() + MINUTE_MILLIS - 1, MINUTE_MILLIS);
+    }
+
+    /**
+     * Returns the number of events a record stands for: the suppressed count of a rate limiter aggregate, else one.
+     */
+    private static long weightOf(AuditRecord record) {
+        String extraData = record.extraData();
+        if (extraData == null || !extraData.startsWith(SUPPRESSED_PREFIX)) {
+            return 1L;
+        }
+        long count = 0L;
+        for (int i = SUPPRESSED_PREFIX.length(); i < extraData.length(); i++) {
+            char c = extraData.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            count = count * 10 + (c - '0');
+        }
+        return Math.max(1L, count);
+    }
+
+    /**
+     * One counted combination of action, status and IP address.
+     */
+    private record Group(String action, String status, String ipAddress) {
+
+        /** Returns the group with the dimensions the query does not group by left out. */
+        Group project(AuditAggregateQuery query) {
+            return new Group(query.groupsBy(AuditAggregateQuery.Dimension.ACTION) ? action : null,
+                    query.groupsBy(AuditAggregateQuery.Dimension.STATUS) ? status : null,
+                    query.groupsBy(AuditAggregateQuery.Dimension.IP_ADDRESS) ? ipAddress : null);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bloom filter over the users of one archived audit segment, stored next to the log as {@code <name>.bloom-<sequence>}.
+ *
+ * <p>{@link AuditLogArchiver} builds it from the segment's records when it archives the segment: each record contributes its user id and
+ * its lower-cased email, the two keys {@link FileAuditLogQueryService} matches a user by. The filter is named by the segment's immutable
+ * sequence number from the {@link AuditSegmentManifest} rather than by the archive's file name, so retention can shift archives
+ * ({@code .1 -> .2}) without touching their filters. A query looks up an archive's sequence in the manifest and skips the archive when
+ * its filter shows that neither of the user's keys is in it. A filter never misses a key it was built with, so a skipped archive holds
+ * none of the user's records; a false positive only costs the scan that would have happened anyway.
+ *
+ * <p>The file is a 20-byte header (magic, version, hash count and bit count) followed by the bit array as big-endian longs. It is written
+ * via a temporary file and an atomic move, and never changes afterwards. A missing or unreadable filter rules nothing out.
+ */
+@Slf4j
+final class AuditSegmentBloomFilter {
+
+    /** Infix between the active log file path and the segment sequence in a filter's file name. */
+    static final String INFIX = ".bloom-";
+
+    private static final int MAGIC = 0x41554246; // "AUBF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+
+    /** Most hash functions used, reached only with very low false-positive rates. */
+    private static final int MAX_HASH_COUNT = 30;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int hashCount;
+    private final long bitCount;
+    private final long[] words;
+
+    private AuditSegmentBloomFilter(int hashCount, long[] words) {
+        this.hashCount = hashCount;
+        this.bitCount = (long) words.length * Long.SIZE;
+        this.words = words;
+    }
+
+    /**
+     * Returns the filter path of a segment.
+     *
+     * @param logFilePath the active log file path
+     * @param sequence the segment's sequence number
+     * @return the filter path
+     */
+    static Path pathFor(String logFilePath, long sequence) {
+        return Path.of(logFilePath + INFIX + sequence);
+    }
+
+    /**
+     * Creates an empty filter sized for a number of keys.
+     *
+     * @param expectedKeys the number of distinct keys that will be added
+     * @param falsePositiveRate the target false-positive rate, between {@code 0} and {@code 1} exclusive
+     * @return the filter
+     */
+    static AuditSegmentBloomFilter create(int expectedKeys, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        int keys = Math.max(1, expectedKeys);
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int wordCount = (int) Math.max(1L, (bits + Long.SIZE - 1) / Long.SIZE);
+        int hashCount = (int) Math.min(MAX_HASH_COUNT, Math.max(1L, Math.round((double) wordCount * Long.SIZE / keys * ln2)));
+        return new AuditSegmentBloomFilter(hashCount, new long[wordCount]);
+    }
+
+    /**
+     * Builds the filter of a segment from the user ids and emails of its records.
+     *
+     * @param segment the segment, plain or gzip-compressed
+     * @param falsePositiveRate the target false-positive rate
+     * @return the filter
+     * @throws IOException if the segment cannot be read
+     */
+    static AuditSegmentBloomFilter build(Path segment, double falsePositiveRate) throws IOException {
+        Set<String> keys = new HashSet<>();
+        AuditTimestampParser timestamps = new AuditTimestampParser();
+        try (BufferedReader reader = open(segment)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AuditEventDTO event = FileAuditLogQueryService.parseLine(line, timestamps);
+                if (event != null) {
+                    if (event.getUserId() != null) {
+                        keys.add(idKey(event.getUserId()));
+                    }
+                    if (event.getUserEmail() != null) {
+                        keys.add(emailKey(event.getUserEmail()));
+                    }
+                }
+            }
+        }
+        AuditSegmentBloomFilter filter = create(keys.size(), falsePositiveRate);
+        keys.forEach(filter::add);
+        return filter;
+    }
+
+    /**
+     * Loads a filter, logging rather than propagating read failures.
+     *
+     * @param path the filter file
+     * @return the filter, or {@code null} if it does not exist or is invalid
+     */
+    static AuditSegmentBloomFilter load(Path path) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int hashCount = in.readInt();
+            long bitCount = in.readLong();
+            if (hashCount < 1 || hashCount > MAX_HASH_COUNT || bitCount < Long.SIZE || bitCount % Long.SIZE != 0
+                    || HEADER_BYTES + bitCount / Byte.SIZE != Files.size(path)) {
+                return null;
+            }
+            long[] words = new long[(int) (bitCount / Long.SIZE)];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new AuditSegmentBloomFilter(hashCount, words);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("AuditSegmentBloomFilter.load: Could not read audit segment filter {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the filter key of a user id.
+     *
+     * @param userId the user id as written in the record
+     * @return the key
+     */
+    static String idKey(String userId) {
+        return "i:" + userId;
+    }
+
+    /**
+     * Returns the filter key of an email. Each character is folded the way {@link String#equalsIgnoreCase} compares it, so two emails
+     * the query service treats as equal always share a key.
+     *
+     * @param email the email
+     * @return the key
+     */
+    static String emailKey(String email) {
+        StringBuilder key = new StringBuilder(email.length() + 2).append("e:");
+        email.codePoints().forEach(c -> key.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return key.toString();
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key the key
+     */
+    void add(String key) {
+        long hash = hash(key);
+        long step = stepOf(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * step, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns whether a key may have been added.
+     *
+     * @param key the key
+     * @return {@code false} only if the key was certainly never added
+     */
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        long step = stepOf(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * step, bitCount);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the segment may hold records of a user, who is matched by id or by email.
+     *
+     * @param userId the user's id, or {@code null}
+     * @param userEmail the user's email, or {@code null}
+     * @return {@code false} only if the segment certainly holds none of the user's records
+     */
+    boolean mightContainUser(String userId, String userEmail) {
+        return userId != null && mightContain(idKey(userId)) || userEmail != null && mightContain(emailKey(userEmail));
+    }
+
+    /**
+     * Returns the size of the filter's file.
+     *
+     * @return the size in bytes
+     */
+    long byteSize() {
+        return HEADER_BYTES + bitCount / Byte.SIZE;
+    }
+
+    /**
+     * Writes the filter via a temporary file and an atomic move.
+     *
+     * @param path the filter file
+     * @throws IOException if the filter cannot be written
+     */
+    void save(Path path) throws IOException {
+        Path temp = Path.of(path + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(hashCount);
+            out.writeLong(bitCount);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the key's UTF-8 bytes, finished with the SplitMix64 mixer so every bit depends on every byte.
+     */
+    private static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Returns the odd step between the bit positions of one key (double hashing), taken from the upper half of its hash.
+     */
+    private static long stepOf(long hash) {
+        return (hash >>> 32) | 1L;
+    }
+
+    private static BufferedReader open(Path segment) throws IOException {
+        InputStream in = Files.newInputStream(segment);
+        if (!segment.getFileName().toString().endsWith(AuditLogArchiver.GZIP_SUFFIX)) {
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        try {
+            return new BufferedReader(new InputStreamReader(new GZIPInputStream(in), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            in.close(); // not a valid gzip stream
+            throw e;
+        }
+    }
+}
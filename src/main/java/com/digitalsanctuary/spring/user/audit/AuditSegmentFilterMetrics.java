@@ -0,0 +1,57 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exports the size of the {@link AuditSegmentBloomFilter}s of the file audit log as a Micrometer meter. Registered by
+ * {@link AuditMailAutoConfiguration} only when Micrometer is on the classpath.
+ *
+ * <ul>
+ * <li>{@code audit.segment.filter.bytes} (gauge): total size of the filters of the archived segments on disk</li>
+ * </ul>
+ *
+ * <p>The library's {@link FileAuditLogWriter} is found either as the writer itself or as the writer of the {@code file} sink of a
+ * {@link CompositeAuditLogWriter}. Nothing is bound when neither is in use.
+ */
+public class AuditSegmentFilterMetrics implements MeterBinder {
+
+    private final ObjectProvider<AuditLogWriter> writerProvider;
+
+    /**
+     * Creates the binder.
+     *
+     * @param writerProvider resolves the audit writer, if there is one
+     */
+    public AuditSegmentFilterMetrics(ObjectProvider<AuditLogWriter> writerProvider) {
+        this.writerProvider = writerProvider;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FileAuditLogWriter writer = fileWriter(writerProvider.getIfAvailable());
+        if (writer == null) {
+            return;
+        }
+        Gauge.builder("audit.segment.filter.bytes", writer, FileAuditLogWriter::getSegmentFilterBytes)
+                .description("Total size of the Bloom filters of the archived audit log segments")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static FileAuditLogWriter fileWriter(AuditLogWriter writer) {
+        if (writer instanceof FileAuditLogWriter fileWriter) {
+            return fileWriter;
+        }
+        if (writer instanceof CompositeAuditLogWriter composite) {
+            for (AuditSink sink : composite.getSinks()) {
+                if (sink.getWriter() instanceof FileAuditLogWriter fileWriter) {
+                    return fileWriter;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,212 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Small index of the archived segments of a file audit log, stored next to it as {@code <name>.manifest}.
+ *
+ * <p>Each archived segment gets one tab-separated line:
+ * {@code sequence fileName firstTimestamp lastTimestamp recordCount byteSize}. The sequence number is assigned when the segment
+ * is rotated and never changes; the file name changes as retention shifts archives ({@code .1 -> .2}). Timestamps are epoch
+ * millis of the first and last record in the segment; {@link #UNKNOWN_FIRST}/{@link #UNKNOWN_LAST} mark bounds that are not
+ * known (for example a segment recovered after a crash, or a file that was appended to across a restart).
+ *
+ * <p>The manifest is only written by the {@link AuditLogArchiver} thread, always via a temporary file and an atomic move, so
+ * {@link FileAuditLogQueryService} can read it at any time without locking. Readers must still treat it as a hint: a segment
+ * without an entry, or whose size on disk differs from the recorded {@code byteSize}, has to be scanned.
+ */
+@Slf4j
+final class AuditSegmentManifest {
+
+    /** Suffix appended to the active log file path to name the manifest. */
+    static final String SUFFIX = ".manifest";
+
+    /** {@code firstTimestamp} of a segment whose earliest record is not known. */
+    static final long UNKNOWN_FIRST = Long.MIN_VALUE;
+
+    /** {@code lastTimestamp} of a segment whose latest record is not known. */
+    static final long UNKNOWN_LAST = Long.MAX_VALUE;
+
+    private static final String HEADER = "# sequence\tfileName\tfirstTimestamp\tlastTimestamp\trecordCount\tbyteSize";
+
+    /**
+     * One archived segment.
+     *
+     * @param sequence the immutable segment sequence number
+     * @param fileName the archive's current file name (without directory)
+     * @param firstTimestamp epoch millis of the first record, or {@link #UNKNOWN_FIRST}
+     * @param lastTimestamp epoch millis of the last record, or {@link #UNKNOWN_LAST}
+     * @param recordCount number of records in the segment, or {@code -1} if unknown
+     * @param byteSize size of the archive file on disk
+     */
+    record Segment(long sequence, String fileName, long firstTimestamp, long lastTimestamp, long recordCount, long byteSize) {
+
+        /**
+         * Returns whether the segment may hold a record at or after {@code sinceMillis}.
+         *
+         * @param sinceMillis the lower bound, in epoch millis
+         * @return {@code false} only if the segment is known to end before {@code sinceMillis}
+         */
+        boolean mayContainSince(long sinceMillis) {
+            return lastTimestamp >= sinceMillis;
+        }
+
+        /**
+         * Returns whether the segment may hold a record before {@code untilMillis}.
+         *
+         * @param untilMillis the upper bound (exclusive), in epoch millis
+         * @return {@code false} only if the segment is known to start at or after {@code untilMillis}
+         */
+        boolean mayContainBefore(long untilMillis) {
+            return firstTimestamp < untilMillis;
+        }
+
+        Segment withFileName(String newFileName) {
+            return new Segment(sequence, newFileName, firstTimestamp, lastTimestamp, recordCount, byteSize);
+        }
+    }
+
+    private final Path path;
+    private final List<Segment> segments;
+
+    private AuditSegmentManifest(Path path, List<Segment> segments) {
+        this.path = path;
+        this.segments = segments;
+    }
+
+    /**
+     * Returns the manifest path for an active log file.
+     *
+     * @param logFilePath the active log file path
+     * @return the manifest path
+     */
+    static Path pathFor(String logFilePath) {
+        return Path.of(logFilePath + SUFFIX);
+    }
+
+    /**
+     * Loads a manifest. A missing file yields an empty manifest; unparseable lines are skipped.
+     *
+     * @param path the manifest file
+     * @return the manifest
+     */
+    static AuditSegmentManifest load(Path path) {
+        List<Segment> segments = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                Segment segment = parse(line);
+                if (segment != null) {
+                    segments.add(segment);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // no segments archived yet
+        } catch (IOException e) {
+            log.warn("AuditSegmentManifest.load: Could not read audit segment manifest {}: {}", path, e.getMessage());
+        }
+        return new AuditSegmentManifest(path, segments);
+    }
+
+    /**
+     * Returns the segments, in no particular order.
+     *
+     * @return an unmodifiable view of the segments
+     */
+    List<Segment> segments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Returns the entry for an archive file name, or {@code null} if there is none.
+     *
+     * @param fileName the archive file name (without directory)
+     * @return the entry, or {@code null}
+     */
+    Segment findByFileName(String fileName) {
+        for (Segment segment : segments) {
+            if (segment.fileName().equals(fileName)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records that an archive was renamed.
+     *
+     * @param fromFileName the old file name
+     * @param toFileName the new file name
+     */
+    void rename(String fromFileName, String toFileName) {
+        segments.removeIf(segment -> segment.fileName().equals(toFileName));
+        segments.replaceAll(segment -> segment.fileName().equals(fromFileName) ? segment.withFileName(toFileName) : segment);
+    }
+
+    /**
+     * Records that an archive was deleted.
+     *
+     * @param fileName the deleted file name
+     */
+    void remove(String fileName) {
+        segments.removeIf(segment -> segment.fileName().equals(fileName));
+    }
+
+    /**
+     * Adds an entry, replacing any entry with the same file name.
+     *
+     * @param segment the entry to add
+     */
+    void put(Segment segment) {
+        remove(segment.fileName());
+        segments.add(segment);
+    }
+
+    /**
+     * Writes the manifest via a temporary file and an atomic move.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    void save() throws IOException {
+        Path temp = Path.of(path + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Segment segment : segments) {
+                writer.write(format(segment));
+                writer.newLine();
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String format(Segment segment) {
+        return segment.sequence() + "\t" + segment.fileName() + "\t" + segment.firstTimestamp() + "\t" + segment.lastTimestamp()
+                + "\t" + segment.recordCount() + "\t" + segment.byteSize();
+    }
+
+    private static Segment parse(String line) {
+        if (line.isBlank() || line.startsWith("#")) {
+            return null;
+        }
+        String[] parts = line.split("\t", -1);
+        if (parts.length < 6) {
+            return null;
+        }
+        try {
+            return new Segment(Long.parseLong(parts[0]), parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                    Long.parseLong(parts[4]), Long.parseLong(parts[5]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Collects the matches of one query from one log segment, newest first, and tells the reader when to stop: once {@code maxResults}
+ * matches are collected, once a record older than the cutoff has been read, or once the query no longer needs the segment.
+ *
+ * <p>Used by {@link FileAuditLogQueryService} through {@link AuditSegmentQuery}. Not thread-safe; each segment is read by one thread.
+ */
+final class AuditSegmentMatches {
+
+    private final List<AuditEventDTO> events = new ArrayList<>();
+    private final Predicate<AuditEventDTO> filter;
+    private final Instant cutoff;
+    private final int maxResults;
+    private final BooleanSupplier cancelled;
+    private boolean complete;
+
+    /**
+     * Creates the matches of a segment.
+     *
+     * @param filter selects the records the query returns
+     * @param cutoff records before this instant end the read, or {@code null} to read to the start of the segment
+     * @param maxResults the number of matches after which the read ends; {@code 0} or less for no limit
+     * @param cancelled reports that the query no longer needs this segment
+     */
+    AuditSegmentMatches(Predicate<AuditEventDTO> filter, Instant cutoff, int maxResults, BooleanSupplier cancelled) {
+        this.filter = filter;
+        this.cutoff = cutoff;
+        this.maxResults = maxResults;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Takes the next older record.
+     *
+     * @param event the parsed record, or {@code null} for a line that is not one
+     * @return {@code false} once no older record can change the result
+     */
+    boolean offer(AuditEventDTO event) {
+        if (complete || cancelled.getAsBoolean()) {
+            return false;
+        }
+        if (event != null) {
+            if (isBeforeCutoff(event)) {
+                complete = true;
+            } else if (filter.test(event)) {
+                events.add(event);
+                complete = maxResults > 0 && events.size() >= maxResults;
+            }
+        }
+        return !complete;
+    }
+
+    /**
+     * Takes the next older record when the line scanner has already ruled it out, so only the cutoff is checked.
+     *
+     * @param timestampMillis the record's timestamp, or {@link AuditLineScanner#NO_TIMESTAMP} if it is not known
+     * @return {@code false} once no older record can change the result
+     */
+    boolean skip(long timestampMillis) {
+        if (complete || cancelled.getAsBoolean()) {
+            return false;
+        }
+        complete = isBeforeCutoff(timestampMillis);
+        return !complete;
+    }
+
+    /**
+     * Returns whether records that are skipped need their timestamp, which is the case when the query has a cutoff.
+     *
+     * @return {@code true} if {@link #skip(long)} uses the timestamp
+     */
+    boolean needsTimestamps() {
+        return cutoff != null;
+    }
+
+    /**
+     * Returns whether older segments cannot change the result: the limit was filled or the cutoff was passed in this segment.
+     *
+     * @return {@code true} if older segments need not be read
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the matches collected so far.
+     *
+     * @return the matches, newest first in append order
+     */
+    List<AuditEventDTO> events() {
+        return events;
+    }
+
+    /**
+     * Creates a window for reading a segment forward.
+     *
+     * @return the window
+     */
+    Window newWindow() {
+        return new Window();
+    }
+
+    private boolean isBeforeCutoff(AuditEventDTO event) {
+        return cutoff != null && event.getTimestamp() != null && event.getTimestamp().isBefore(cutoff);
+    }
+
+    private boolean isBeforeCutoff(long timestampMillis) {
+        return cutoff != null && timestampMillis != AuditLineScanner.NO_TIMESTAMP && timestampMillis < cutoff.toEpochMilli();
+    }
+
+    /**
+     * Keeps the last matches of a segment read forward, as many as are still missing, and hands them on newest first.
+     */
+    final class Window {
+
+        private final Deque<AuditEventDTO> window = new ArrayDeque<>();
+        private boolean passedCutoff;
+
+        /**
+         * Takes the next newer record.
+         *
+         * @param event the parsed record, or {@code null} for a line that is not one
+         */
+        void add(AuditEventDTO event) {
+            if (event == null) {
+                return;
+            }
+            if (isBeforeCutoff(event)) {
+                passedCutoff = true;
+            } else if (filter.test(event)) {
+                window.addLast(event);
+                if (maxResults > 0 && window.size() > maxResults - events.size()) {
+                    window.removeFirst(); // evict oldest to keep only the most recent matches
+                }
+            }
+        }
+
+        /**
+         * Takes the next newer record when the line scanner has already ruled it out.
+         *
+         * @param timestampMillis the record's timestamp, or {@link AuditLineScanner#NO_TIMESTAMP} if it is not known
+         */
+        void skip(long timestampMillis) {
+            passedCutoff |= isBeforeCutoff(timestampMillis);
+        }
+
+        /**
+         * Hands the kept matches on, newest first.
+         */
+        void drain() {
+            for (Iterator<AuditEventDTO> newestFirst = window.descendingIterator(); newestFirst.hasNext();) {
+                if (!offer(newestFirst.next())) {
+                    break;
+                }
+            }
+            complete |= passedCutoff;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads one page of a paged query from the segments of a file audit log, newest first, and names the position after its last
+ * event as an {@link AuditCursor}.
+ *
+ * <p>A cursor names a segment by a fingerprint of its first record rather than by its file name, because rotation renames the
+ * active file to a pending segment and then to {@code <name>.1}, retention shifts archives up by one, and compression replaces a
+ * segment by its {@code .gz}; none of these changes the segment's content, so a cursor keeps pointing at the same records. Its
+ * position is the byte offset of the last returned line in the uncompressed segment. The next page reads the segment backwards
+ * from that offset, or, for a gzip archive, streams it forward up to that offset, keeping only the last matches it needs. A cursor
+ * whose segment has since fallen out of retention ends the query.
+ *
+ * <p>Used by {@link FileAuditLogQueryService#findPage}. Single use; not thread-safe.
+ */
+final class AuditSegmentPager {
+
+    /** Longest prefix of a segment's first record that goes into its fingerprint. */
+    private static final int FINGERPRINT_BYTES = 4096;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<Path> segments;
+    private final AuditLineScanner scanner;
+    private final Predicate<AuditEventDTO> filter;
+    private final Instant cutoff;
+    private final int pageSize;
+    private final List<AuditEventDTO> events = new ArrayList<>();
+
+    /**
+     * Creates the pager of one page.
+     *
+     * @param segmentsNewestFirst the segments of the log, the active file first
+     * @param scanner rules out lines of other users before they are decoded
+     * @param filter selects the records the query returns
+     * @param cutoff records before this instant end the query, or {@code null} to read the whole history
+     * @param pageSize the maximum number of events on the page
+     */
+    AuditSegmentPager(List<Path> segmentsNewestFirst, AuditLineScanner scanner, Predicate<AuditEventDTO> filter, Instant cutoff,
+            int pageSize) {
+        this.segments = segmentsNewestFirst;
+        this.scanner = scanner;
+        this.filter = filter;
+        this.cutoff = cutoff;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Reads the page after {@code cursor}.
+     *
+     * @param cursor the position after the previous page, or {@code null} for the first page
+     * @return the page
+     * @throws IOException if a segment cannot be read
+     */
+    AuditEventPage read(AuditCursor cursor) throws IOException {
+        int first = 0;
+        long end = -1L;
+        if (cursor != null) {
+            first = indexOf(cursor.key());
+            if (first < 0) {
+                return AuditEventPage.empty(); // the segment was deleted by retention; nothing older is left
+            }
+            end = cursor.position();
+        }
+        for (int i = first; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long segmentEnd = i == first ? end : -1L;
+            SegmentResult result;
+            try {
+                result = segment.getFileName().toString().endsWith(AuditLogArchiver.GZIP_SUFFIX)
+                        ? readCompressed(segment, segmentEnd)
+                        : readBackwards(segment, segmentEnd);
+            } catch (NoSuchFileException e) {
+                continue; // rotated away since the segments were listed
+            }
+            if (events.size() >= pageSize) {
+                return new AuditEventPage(events, new AuditCursor(AuditCursor.FILE, fingerprint(segment), result.lastOffset()).encode());
+            }
+            if (result.passedCutoff()) {
+                break;
+            }
+        }
+        return new AuditEventPage(events, null);
+    }
+
+    /**
+     * Returns the fingerprint of a segment: a 64-bit FNV-1a hash of the start of its first record. The pipe-delimited header, which
+     * every segment of that format starts with, and blank lines are skipped.
+     *
+     * @param segment the segment, plain or gzip-compressed
+     * @return the fingerprint; {@code 0} for a segment without records
+     * @throws IOException if the segment cannot be read
+     */
+    static long fingerprint(Path segment) throws IOException {
+        try (LineInput lines = LineInput.open(segment)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (!line.isBlank() && !PipeDelimitedAuditRecordCodec.isHeader(line)) {
+                    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                    long hash = FNV_OFFSET_BASIS;
+                    for (int i = 0; i < Math.min(bytes.length, FINGERPRINT_BYTES); i++) {
+                        hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+                    }
+                    return hash;
+                }
+            }
+        }
+        return 0L;
+    }
+
+    private int indexOf(long fingerprint) throws IOException {
+        for (int i = 0; i < segments.size(); i++) {
+            try {
+                if (fingerprint(segments.get(i)) == fingerprint) {
+                    return i;
+                }
+            } catch (NoSuchFileException e) {
+                // rotated away since the segments were listed
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a plain segment backwards from {@code end}, or from its end, until the page is full or the cutoff is passed.
+     */
+    private SegmentResult readBackwards(Path segment, long end) throws IOException {
+        int missing = pageSize - events.size();
+        AuditSegmentMatches matches = new AuditSegmentMatches(filter, cutoff, missing, () -> false);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long limit = end < 0 ? channel.size() : Math.min(end, channel.size());
+            AuditLogReverseReader reader = new AuditLogReverseReader(channel, limit, AuditLogReverseReader.DEFAULT_CHUNK_BYTES);
+            AuditTimestampParser timestamps = new AuditTimestampParser();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!FileAuditLogQueryService.offerLine(line, scanner, timestamps, matches)) {
+                    events.addAll(matches.events());
+                    return new SegmentResult(reader.lineOffset(), matches.events().size() < missing);
+                }
+            }
+        }
+        events.addAll(matches.events());
+        return new SegmentResult(0L, false);
+    }
+
+    /**
+     * Streams a gzip archive forward up to {@code end}, or to its end, keeping the last matches the page is missing with their
+     * offsets, and adds them newest first.
+     */
+    private SegmentResult readCompressed(Path segment, long end) throws IOException {
+        int missing = pageSize - events.size();
+        Deque<Match> window = new ArrayDeque<>();
+        boolean passedCutoff = false;
+        AuditTimestampParser timestamps = new AuditTimestampParser();
+        try (LineInput lines = LineInput.open(segment)) {
+            String line;
+            while ((line = lines.readLine()) != null && (end < 0 || lines.lineOffset() < end)) {
+                if (scanner.mayMatch(line)) {
+                    AuditEventDTO event = FileAuditLogQueryService.parseLine(line, timestamps);
+                    if (event == null) {
+                        continue;
+                    }
+                    if (cutoff != null && event.getTimestamp() != null && event.getTimestamp().isBefore(cutoff)) {
+                        passedCutoff = true;
+                    } else if (filter.test(event)) {
+                        window.addLast(new Match(lines.lineOffset(), event));
+                        if (window.size() > missing) {
+                            window.removeFirst(); // keep only the newest matches
+                        }
+                    }
+                } else if (cutoff != null) {
+                    long timestamp = AuditLineScanner.timestampMillis(line, timestamps);
+                    passedCutoff |= timestamp != AuditLineScanner.NO_TIMESTAMP && timestamp < cutoff.toEpochMilli();
+                }
+            }
+        }
+        long lastOffset = 0L;
+        for (Iterator<Match> newestFirst = window.descendingIterator(); newestFirst.hasNext();) {
+            Match match = newestFirst.next();
+            events.add(match.event());
+            lastOffset = match.offset();
+        }
+        return new SegmentResult(lastOffset, passedCutoff);
+    }
+
+    /**
+     * Outcome of reading one segment.
+     *
+     * @param lastOffset the offset of the oldest line added to the page
+     * @param passedCutoff whether a record before the cutoff was read, so older segments are not needed
+     */
+    private record SegmentResult(long lastOffset, boolean passedCutoff) {
+    }
+
+    private record Match(long offset, AuditEventDTO event) {
+    }
+
+    /**
+     * Reads the lines of a segment forward with their byte offsets in the uncompressed content, decompressing {@code .gz} archives.
+     */
+    private static final class LineInput implements AutoCloseable {
+
+        private final InputStream in;
+        private byte[] line = new byte[256];
+        private long offset;
+        private long lineOffset = -1L;
+
+        private LineInput(InputStream in) {
+            this.in = in;
+        }
+
+        static LineInput open(Path segment) throws IOException {
+            InputStream in = Files.newInputStream(segment);
+            if (!segment.getFileName().toString().endsWith(AuditLogArchiver.GZIP_SUFFIX)) {
+                return new LineInput(new BufferedInputStream(in));
+            }
+            try {
+                return new LineInput(new BufferedInputStream(new GZIPInputStream(in)));
+            } catch (IOException e) {
+                in.close(); // not a valid gzip stream
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the next line without its line separator, or {@code null} at the end of the segment.
+         */
+        String readLine() throws IOException {
+            int length = 0;
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            lineOffset = offset;
+            while (b >= 0 && b != '\n') {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = (byte) b;
+                b = in.read();
+            }
+            offset += length + (b < 0 ? 0 : 1);
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the offset of the line returned last.
+         */
+        long lineOffset() {
+            return lineOffset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
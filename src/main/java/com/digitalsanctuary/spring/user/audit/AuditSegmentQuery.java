@@ -0,0 +1,203 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads the segments of one {@link FileAuditLogQueryService} query, several at a time, and merges their matches.
+ *
+ * <p>Segments are handed out newest first to up to {@code parallelism} readers: the calling thread and virtual threads named
+ * {@code ds-audit-query-N}. Each segment is read into its own {@link AuditSegmentMatches}. As soon as the newest segments are known to
+ * hold the whole answer (together they filled the limit, or one of them passed the {@code since} cutoff) the older segments are
+ * cancelled, and readers still in them stop at their next record. The matches of the segments that are needed are then combined by a
+ * k-way merge on timestamp, newest first.
+ *
+ * <p>With a parallelism of {@code 1} the segments are read one after another on the calling thread, which reads no segment that the
+ * answer does not need. Higher values trade some wasted reads of older segments for latency when several archives are needed.
+ */
+@Slf4j
+final class AuditSegmentQuery {
+
+    /**
+     * Reads one segment into its matches.
+     */
+    @FunctionalInterface
+    interface SegmentReader {
+
+        /**
+         * Reads a segment, newest record first where the segment allows it.
+         *
+         * @param segment the segment
+         * @param matches receives the segment's records
+         * @throws IOException if the segment cannot be read
+         */
+        void read(Path segment, AuditSegmentMatches matches) throws IOException;
+    }
+
+    private static final ThreadFactory READER_THREADS = Thread.ofVirtual().name("ds-audit-query-", 0).factory();
+
+    private static final Comparator<AuditEventDTO> NEWEST_FIRST = Comparator.comparing(AuditEventDTO::getTimestamp,
+            Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final List<Path> segments;
+    private final Function<BooleanSupplier, AuditSegmentMatches> newMatches;
+    private final SegmentReader reader;
+    private final int maxResults;
+    private final AuditSegmentMatches[] results;
+    private final AtomicInteger nextSegment = new AtomicInteger();
+
+    /** Segments at this index and above are not needed for the answer. */
+    private volatile int needed;
+
+    private Exception failure;
+
+    /**
+     * Creates the query.
+     *
+     * @param segments the segments, newest first
+     * @param newMatches creates the matches of a segment, given the signal that the segment is no longer needed
+     * @param reader reads a segment
+     * @param maxResults the number of matches the query returns; {@code 0} or less for no limit
+     */
+    AuditSegmentQuery(List<Path> segments, Function<BooleanSupplier, AuditSegmentMatches> newMatches, SegmentReader reader,
+            int maxResults) {
+        this.segments = List.copyOf(segments);
+        this.newMatches = newMatches;
+        this.reader = reader;
+        this.maxResults = maxResults;
+        this.results = new AuditSegmentMatches[this.segments.size()];
+        this.needed = this.segments.size();
+    }
+
+    /**
+     * Reads the segments and merges their matches.
+     *
+     * @param parallelism the maximum number of segments read at the same time
+     * @return the matches, newest first, at most {@code maxResults}
+     * @throws IOException if a segment cannot be read
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the other readers
+     */
+    List<AuditEventDTO> run(int parallelism) throws IOException, InterruptedException {
+        int helpers = Math.min(Math.max(1, parallelism), segments.size()) - 1;
+        List<Thread> threads = new ArrayList<>(Math.max(0, helpers));
+        for (int i = 0; i < helpers; i++) {
+            Thread thread = READER_THREADS.newThread(this::readSegments);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            readSegments();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            needed = 0; // stop the helpers at their next record
+            throw e;
+        }
+        synchronized (this) {
+            if (failure instanceof IOException e) {
+                throw e;
+            }
+            if (failure instanceof RuntimeException e) {
+                throw e;
+            }
+        }
+        return merge();
+    }
+
+    private void readSegments() {
+        int index;
+        while ((index = nextSegment.getAndIncrement()) < segments.size() && index < needed) {
+            int segmentIndex = index;
+            AuditSegmentMatches matches = newMatches.apply(() -> segmentIndex >= needed);
+            Path segment = segments.get(segmentIndex);
+            try {
+                reader.read(segment, matches);
+            } catch (NoSuchFileException e) {
+                // An archive deleted by retention between listing and reading; its events are gone.
+                log.debug("AuditSegmentQuery.readSegments: Audit log segment disappeared: {}", segment);
+            } catch (IOException | RuntimeException e) {
+                failed(segment, e);
+                return;
+            }
+            finished(segmentIndex, matches);
+        }
+    }
+
+    private synchronized void failed(Path segment, Exception e) {
+        if (failure == null) {
+            Exception cause = e instanceof UncheckedIOException unchecked ? unchecked.getCause() : e;
+            failure = cause instanceof IOException ? new IOException("Could not read audit log segment " + segment, cause) : cause;
+        }
+        needed = 0;
+    }
+
+    /**
+     * Records a read segment and, once the segments read so far without gaps from the newest hold the whole answer, cancels the older
+     * ones.
+     */
+    private synchronized void finished(int index, AuditSegmentMatches matches) {
+        results[index] = matches;
+        int count = 0;
+        for (int i = 0; i < needed && results[i] != null; i++) {
+            count += results[i].events().size();
+            if (results[i].isComplete() || (maxResults > 0 && count >= maxResults)) {
+                needed = i + 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Merges the per-segment matches of the needed segments by timestamp, newest first.
+     */
+    private synchronized List<AuditEventDTO> merge() {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> NEWEST_FIRST.compare(a.head(), b.head()));
+        for (int i = 0; i < needed; i++) {
+            if (results[i] != null && !results[i].events().isEmpty()) {
+                List<AuditEventDTO> events = new ArrayList<>(results[i].events());
+                events.sort(NEWEST_FIRST);
+                heads.add(new Cursor(events));
+            }
+        }
+        List<AuditEventDTO> merged = new ArrayList<>();
+        while (!heads.isEmpty() && (maxResults <= 0 || merged.size() < maxResults)) {
+            Cursor cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /** Position in one segment's sorted matches. */
+    private static final class Cursor {
+
+        private final List<AuditEventDTO> events;
+        private int position;
+
+        Cursor(List<AuditEventDTO> events) {
+            this.events = events;
+        }
+
+        AuditEventDTO head() {
+            return events.get(position);
+        }
+
+        boolean advance() {
+            return ++position < events.size();
+        }
+    }
+}
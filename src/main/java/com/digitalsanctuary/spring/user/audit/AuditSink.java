@@ -0,0 +1,255 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One destination of a {@link CompositeAuditLogWriter}, with its own bounded queue and thread.
+ *
+ * <p>{@link #offer(AuditRecord)} only places the record in a lock-free {@link AuditRingBuffer} and returns. A dedicated
+ * {@code ds-audit-sink-<name>} thread drains the buffer and hands up to {@code batchSize} records at a time to the sink's writer
+ * ({@link AuditRecordWriter#writeRecords(List)}). A slow or failing writer therefore only fills its own queue: it never delays the other
+ * sinks or the thread that published the event. When the queue is full the record is dropped for this sink only and counted.
+ *
+ * <p>Each sink reports its own health: it is {@linkplain #isHealthy() healthy} unless its most recent batch failed, either because the
+ * writer threw or because the writer's own failure counter (for example {@link JdbcAuditLogWriter#getFailedEventCount()}) went up.
+ * {@link #getLagMillis()} is the age of the oldest record in the batch being written, so it grows for as long as a writer is stuck.
+ */
+@Slf4j
+public class AuditSink {
+
+    /** How long the idle sink thread parks before re-checking its queue when no producer has woken it. */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** How long {@link #stop()} waits for the sink thread to drain its queue. */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000L;
+
+    private final String name;
+    private final AuditRecordWriter writer;
+    private final int capacity;
+    private final int batchSize;
+    private final LongSupplier writerFailures;
+
+    /** Serializes writes; separate from the monitor held by {@link #stop()} while it joins the sink thread. */
+    private final Object writeLock = new Object();
+
+    /** The queue; {@code null} before {@link #start()} and after {@link #stop()}, when records are written by the caller. */
+    private volatile AuditRingBuffer<AuditRecord> buffer;
+    private Thread thread;
+    private volatile boolean running;
+
+    private final AtomicLong writtenRecords = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private volatile boolean lastBatchFailed;
+
+    /** Timestamp of the oldest record in the batch being written, or {@code 0} while the sink is idle. */
+    private volatile long inFlightSince;
+
+    /** Value of {@link #writerFailures} after the previous batch. Guarded by {@link #writeLock}. */
+    private long seenWriterFailures;
+
+    /**
+     * Creates a sink.
+     *
+     * @param name the sink name, used for its thread and metric tags
+     * @param writer the writer records are delivered to
+     * @param capacity the queue capacity, rounded up to a power of two
+     * @param batchSize the maximum number of records handed to the writer at once
+     * @param writerFailures reports records the writer failed to store without throwing, such as a failed JDBC batch; may be
+     *            {@code null}
+     */
+    public AuditSink(String name, AuditRecordWriter writer, int capacity, int batchSize, LongSupplier writerFailures) {
+        this.name = name;
+        this.writer = writer;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.writerFailures = writerFailures != null ? writerFailures : () -> 0L;
+    }
+
+    /**
+     * Sets up the writer and starts the sink thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        writer.setup();
+        seenWriterFailures = writerFailures.getAsLong();
+        AuditRingBuffer<AuditRecord> queue = new AuditRingBuffer<>(capacity);
+        running = true;
+        thread = new Thread(() -> runLoop(queue), "ds-audit-sink-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        buffer = queue;
+    }
+
+    /**
+     * Stops the sink thread after it has written everything already queued, then cleans up the writer.
+     */
+    public synchronized void stop() {
+        Thread current = thread;
+        AuditRingBuffer<AuditRecord> queue = buffer;
+        if (current == null || queue == null) {
+            return;
+        }
+        buffer = null;
+        running = false;
+        LockSupport.unpark(current);
+        try {
+            current.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (current.isAlive()) {
+            log.warn("AuditSink.stop: Audit sink '{}' did not finish draining within {} ms.", name, SHUTDOWN_TIMEOUT_MILLIS);
+        } else {
+            // A producer that read the buffer reference just before it was cleared may have offered after the thread exited.
+            List<AuditRecord> remaining = new ArrayList<>();
+            queue.drainTo(remaining::add, Integer.MAX_VALUE);
+            if (!remaining.isEmpty()) {
+                deliver(remaining);
+            }
+        }
+        thread = null;
+        writer.cleanup();
+    }
+
+    /**
+     * Queues a record for this sink. Never blocks; drops and counts the record when the queue is full.
+     *
+     * @param record the record to deliver
+     */
+    public void offer(AuditRecord record) {
+        AuditRingBuffer<AuditRecord> queue = buffer;
+        if (queue == null) {
+            deliver(List.of(record));
+            return;
+        }
+        if (queue.offer(record)) {
+            LockSupport.unpark(thread);
+            return;
+        }
+        long dropped = droppedRecords.incrementAndGet();
+        if (dropped == 1 || dropped % 1000 == 0) {
+            log.warn("AuditSink.offer: Queue of audit sink '{}' is full (capacity {}); {} record(s) dropped so far.", name, queue.capacity(),
+                    dropped);
+        }
+    }
+
+    /**
+     * Returns the sink name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the writer this sink delivers to.
+     *
+     * @return the writer
+     */
+    public AuditRecordWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns the number of records waiting in this sink's queue.
+     *
+     * @return the queue depth
+     */
+    public int getQueueSize() {
+        AuditRingBuffer<AuditRecord> queue = buffer;
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Returns how far this sink is behind: the age of the oldest record in the batch being written, or {@code 0} when the sink is idle.
+     *
+     * @return the lag in milliseconds
+     */
+    public long getLagMillis() {
+        long since = inFlightSince;
+        return since == 0L ? 0L : Math.max(0L, System.currentTimeMillis() - since);
+    }
+
+    /**
+     * Returns whether the sink's most recent batch was stored successfully.
+     *
+     * @return {@code true} if the sink is healthy
+     */
+    public boolean isHealthy() {
+        return !lastBatchFailed;
+    }
+
+    /**
+     * Returns the number of records handed to the writer without a failure being reported.
+     *
+     * @return the written record count since startup
+     */
+    public long getWrittenRecordCount() {
+        return writtenRecords.get();
+    }
+
+    /**
+     * Returns the number of records dropped because this sink's queue was full.
+     *
+     * @return the dropped record count since startup
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * Returns the number of records this sink's writer failed to store.
+     *
+     * @return the failed record count since startup
+     */
+    public long getFailedRecordCount() {
+        return failedRecords.get();
+    }
+
+    private void runLoop(AuditRingBuffer<AuditRecord> queue) {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            queue.drainTo(batch::add, batchSize);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            deliver(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Hands a batch to the writer and updates the sink's counters and health.
+     */
+    private void deliver(List<AuditRecord> batch) {
+        synchronized (writeLock) {
+            inFlightSince = Math.max(1L, batch.get(0).timestamp());
+            try {
+                writer.writeRecords(batch);
+                long failures = writerFailures.getAsLong();
+                long failed = Math.min(batch.size(), Math.max(0L, failures - seenWriterFailures));
+                seenWriterFailures = failures;
+                failedRecords.addAndGet(failed);
+                writtenRecords.addAndGet(batch.size() - failed);
+                lastBatchFailed = failed > 0;
+            } catch (Exception e) {
+                failedRecords.addAndGet(batch.size());
+                lastBatchFailed = true;
+                log.error("AuditSink.deliver: Audit sink '{}' failed to write {} record(s): {}", name, batch.size(), e.getMessage(), e);
+            } finally {
+                inFlightSince = 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exports the state of each {@link AuditSink} of the {@link CompositeAuditLogWriter} as Micrometer meters, tagged with the {@code sink}
+ * name. Registered by {@link CompositeAuditAutoConfiguration} only when Micrometer is on the classpath.
+ *
+ * <ul>
+ * <li>{@code audit.sink.queue.size} (gauge): records waiting in the sink's queue</li>
+ * <li>{@code audit.sink.lag} (time gauge): age of the oldest record the sink is currently writing; {@code 0} when idle</li>
+ * <li>{@code audit.sink.healthy} (gauge): {@code 1} if the sink's most recent batch was stored, {@code 0} if it failed</li>
+ * <li>{@code audit.sink.written} (counter): records the sink stored</li>
+ * <li>{@code audit.sink.dropped} (counter): records dropped because the sink's queue was full</li>
+ * <li>{@code audit.sink.failed} (counter): records the sink's writer failed to store</li>
+ * </ul>
+ *
+ * <p>Nothing is bound when the application replaced the composite writer.
+ */
+public class AuditSinkMetrics implements MeterBinder {
+
+    private final ObjectProvider<CompositeAuditLogWriter> writerProvider;
+
+    /**
+     * Creates the binder.
+     *
+     * @param writerProvider resolves the library's composite writer, if it is in use
+     */
+    public AuditSinkMetrics(ObjectProvider<CompositeAuditLogWriter> writerProvider) {
+        this.writerProvider = writerProvider;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CompositeAuditLogWriter writer = writerProvider.getIfAvailable();
+        if (writer == null) {
+            return;
+        }
+        for (AuditSink sink : writer.getSinks()) {
+            String name = sink.getName();
+            Gauge.builder("audit.sink.queue.size", sink, AuditSink::getQueueSize)
+                    .description("Audit records waiting in the sink's queue")
+                    .tag("sink", name)
+                    .register(registry);
+            TimeGauge.builder("audit.sink.lag", sink, TimeUnit.MILLISECONDS, AuditSink::getLagMillis)
+                    .description("Age of the oldest audit record the sink is currently writing")
+                    .tag("sink", name)
+                    .register(registry);
+            Gauge.builder("audit.sink.healthy", sink, s -> s.isHealthy() ? 1 : 0)
+                    .description("Whether the sink's most recent batch was stored (1) or failed (0)")
+                    .tag("sink", name)
+                    .register(registry);
+            FunctionCounter.builder("audit.sink.written", sink, AuditSink::getWrittenRecordCount)
+                    .description("Audit records stored by the sink")
+                    .tag("sink", name)
+                    .register(registry);
+            FunctionCounter.builder("audit.sink.dropped", sink, AuditSink::getDroppedRecordCount)
+                    .description("Audit records dropped because the sink's queue was full")
+                    .tag("sink", name)
+                    .register(registry);
+            FunctionCounter.builder("audit.sink.failed", sink, AuditSink::getFailedRecordCount)
+                    .description("Audit records the sink's writer failed to store")
+                    .tag("sink", name)
+                    .register(registry);
+        }
+    }
+}
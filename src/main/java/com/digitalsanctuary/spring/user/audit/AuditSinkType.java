@@ -0,0 +1,21 @@
+package com.digitalsanctuary.spring.user.audit;
+
+/**
+ * A destination {@link CompositeAuditLogWriter} can fan audit records out to, listed in {@code user.audit.sinks}.
+ *
+ * @see AuditConfig#getSinks()
+ */
+public enum AuditSinkType {
+
+    /** The audit log file, written by a {@link FileAuditLogWriter} with the {@code user.audit.*} file settings. */
+    FILE,
+
+    /** The {@code audit_event} table, written by a {@link JdbcAuditLogWriter} through the application's {@code DataSource}. */
+    JDBC,
+
+    /**
+     * One NDJSON line per record on an SLF4J logger ({@code user.audit.sinkLoggerName}), written by a {@link Slf4jAuditLogWriter}. Route
+     * that logger to stdout or a dedicated appender to ship records to a log pipeline.
+     */
+    LOG
+}
@@ -0,0 +1,19 @@
+package com.digitalsanctuary.spring.user.audit;
+
+/**
+ * The built-in audit storage backends, selected with {@code user.audit.store}. A consuming application can still replace either half by
+ * defining its own {@link AuditLogWriter} or {@link AuditLogQueryService} bean.
+ */
+public enum AuditStore {
+
+    /**
+     * A log file per node, written by {@link FileAuditLogWriter} and read by {@link FileAuditLogQueryService}. This is the default.
+     */
+    FILE,
+
+    /**
+     * The {@code audit_event} table in the application's {@code DataSource}, written by {@link JdbcAuditLogWriter} and read by
+     * {@link JdbcAuditLogQueryService}. Every node sees the same history. The table must exist; see {@code db-scripts/}.
+     */
+    JDBC
+}
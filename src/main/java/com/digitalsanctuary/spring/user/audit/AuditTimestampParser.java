@@ -0,0 +1,266 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Parses the date column of the pipe-delimited audit format in a single pass, without exceptions on the hot path.
+ *
+ * <p>{@link PipeDelimitedAuditRecordCodec} now writes ISO-8601 instants, but files written by earlier releases hold
+ * {@link java.util.Date#toString()} renderings, {@code MessageFormat} (short or medium) renderings, or epoch milliseconds. The first
+ * timestamp a parser sees picks the {@link Format}, and later timestamps are parsed with that format only, so a segment costs one
+ * parse per line. A timestamp the remembered format cannot read triggers detection again, which keeps a file that changed format
+ * part-way through readable. Formats that rely on {@link DateTimeFormatter} are tried with
+ * {@link DateTimeFormatter#parseUnresolved(CharSequence, ParsePosition)}, which reports a mismatch instead of throwing.
+ *
+ * <p>Create one parser per segment read. Not thread-safe.
+ */
+final class AuditTimestampParser {
+
+    /** The timestamp renderings found in audit logs, in detection order. */
+    enum Format {
+
+        /** ISO-8601 with a {@code Z} or numeric offset, as written now, or a local ISO date-time read in the system zone. */
+        ISO {
+            @Override
+            Instant parse(String text) {
+                return parseIso(text);
+            }
+        },
+
+        /** Epoch milliseconds. */
+        EPOCH_MILLIS {
+            @Override
+            Instant parse(String text) {
+                return parseEpochMillis(text);
+            }
+        },
+
+        /** {@link java.util.Date#toString()}, for example {@code Thu Jan 15 10:30:00 EST 2025}. */
+        DATE_TO_STRING {
+            @Override
+            Instant parse(String text) {
+                return parseWith(DATE_TO_STRING_FORMATTER, text);
+            }
+        },
+
+        /** The medium {@code MessageFormat} rendering, for example {@code Jan 15, 2025, 3:45:30 PM}. */
+        MEDIUM {
+            @Override
+            Instant parse(String text) {
+                return parseWith(MEDIUM_FORMATTER, text);
+            }
+        },
+
+        /**
+         * The short {@code MessageFormat} rendering in the JVM's default locale, for example {@code 1/15/25, 3:45 PM}, which
+         * {@link PipeDelimitedAuditRecordCodec} wrote before it switched to ISO-8601.
+         */
+        SHORT {
+            @Override
+            Instant parse(String text) {
+                ParsePosition position = new ParsePosition(0);
+                Date date = SHORT_FORMAT.get().parse(text, position);
+                return date != null && position.getIndex() == text.length() ? date.toInstant() : null;
+            }
+        },
+
+        /** Any other ISO-8601 date-time, such as one with a region id: {@code 2025-01-15T10:30:00+01:00[Europe/Paris]}. */
+        ISO_DATE_TIME {
+            @Override
+            Instant parse(String text) {
+                return parseWith(DateTimeFormatter.ISO_DATE_TIME, text);
+            }
+        };
+
+        /**
+         * Parses a timestamp in this format.
+         *
+         * @param text the trimmed timestamp
+         * @return the instant, or {@code null} if the text is not in this format
+         */
+        abstract Instant parse(String text);
+    }
+
+    private static final DateTimeFormatter DATE_TO_STRING_FORMATTER = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy",
+            Locale.US);
+    private static final DateTimeFormatter MEDIUM_FORMATTER = DateTimeFormatter.ofPattern("MMM d, yyyy, h:mm:ss a", Locale.US);
+
+    /** {@link DateFormat} is not thread-safe, so each reader thread gets its own instance. */
+    private static final ThreadLocal<DateFormat> SHORT_FORMAT = ThreadLocal.withInitial(() -> {
+        DateFormat format = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+        format.setLenient(false);
+        return format;
+    });
+
+    private static final Format[] FORMATS = Format.values();
+
+    private Format format;
+
+    /**
+     * Parses a timestamp, with the format detected for this parser when it fits.
+     *
+     * @param text the timestamp, possibly surrounded by whitespace
+     * @return the instant, or {@code null} if the text is blank, {@code "null"} or not a known rendering
+     */
+    Instant parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty() || "null".equals(trimmed)) {
+            return null;
+        }
+        if (format != null) {
+            Instant instant = format.parse(trimmed);
+            if (instant != null) {
+                return instant;
+            }
+        }
+        for (Format candidate : FORMATS) {
+            if (candidate != format) {
+                Instant instant = candidate.parse(trimmed);
+                if (instant != null) {
+                    format = candidate;
+                    return instant;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the format of the timestamp parsed last.
+     *
+     * @return the format, or {@code null} before a timestamp was parsed
+     */
+    Format format() {
+        return format;
+    }
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm[:ss[.fraction]]} followed by {@code Z}, {@code +HH:MM}, {@code -HH:MM} or nothing.
+     */
+    private static Instant parseIso(String text) {
+        int length = text.length();
+        if (length < 16 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T' || text.charAt(13) != ':') {
+            return null;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        int hour = digits(text, 11, 13);
+        int minute = digits(text, 14, 16);
+        int second = 0;
+        int nanos = 0;
+        int position = 16;
+        if (position < length && text.charAt(position) == ':') {
+            second = digits(text, position + 1, position + 3);
+            position += 3;
+            if (position < length && text.charAt(position) == '.') {
+                int start = ++position;
+                while (position < length && position - start < 9 && isDigit(text.charAt(position))) {
+                    nanos = nanos * 10 + (text.charAt(position++) - '0');
+                }
+                if (position == start) {
+                    return null;
+                }
+                for (int i = position - start; i < 9; i++) {
+                    nanos *= 10;
+                }
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0
+                || second > 59) {
+            return null;
+        }
+        if (day > 28 && day > LocalDate.of(year, month, 1).lengthOfMonth()) {
+            return null;
+        }
+        long localSeconds = LocalDate.of(year, month, day).toEpochDay() * 86_400L + hour * 3_600L + minute * 60L + second;
+        if (position == length) {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nanos).atZone(ZoneId.systemDefault()).toInstant();
+        }
+        char zone = text.charAt(position);
+        if (zone == 'Z' && position + 1 == length) {
+            return Instant.ofEpochSecond(localSeconds, nanos);
+        }
+        if ((zone == '+' || zone == '-') && position + 6 == length && text.charAt(position + 3) == ':') {
+            int offsetHours = digits(text, position + 1, position + 3);
+            int offsetMinutes = digits(text, position + 4, position + 6);
+            if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return null;
+            }
+            long offsetSeconds = (offsetHours * 3_600L + offsetMinutes * 60L) * (zone == '+' ? 1 : -1);
+            return Instant.ofEpochSecond(localSeconds - offsetSeconds, nanos);
+        }
+        return null;
+    }
+
+    private static Instant parseEpochMillis(String text) {
+        int length = text.length();
+        int start = text.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 18) {
+            return null;
+        }
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return Instant.ofEpochMilli(start == 1 ? -value : value);
+    }
+
+    /**
+     * Parses with a formatter only once {@link DateTimeFormatter#parseUnresolved} has shown that the whole text fits its pattern.
+     */
+    private static Instant parseWith(DateTimeFormatter formatter, String text) {
+        ParsePosition position = new ParsePosition(0);
+        if (formatter.parseUnresolved(text, position) == null || position.getErrorIndex() >= 0 || position.getIndex() != text.length()) {
+            return null;
+        }
+        try {
+            TemporalAccessor parsed = formatter.parse(text);
+            if (parsed.isSupported(ChronoField.INSTANT_SECONDS)) {
+                return Instant.from(parsed);
+            }
+            return LocalDateTime.from(parsed).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeException e) {
+            // The text fits the pattern but names an impossible date, such as Feb 30.
+            return null;
+        }
+    }
+
+    /** Returns the non-negative number in {@code text[from, to)}, or {@code -1} if it is not all digits. */
+    private static int digits(String text, int from, int to) {
+        if (to > text.length()) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
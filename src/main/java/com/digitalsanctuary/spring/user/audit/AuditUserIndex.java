@@ -0,0 +1,474 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sidecar index of the active audit log file, stored next to it as {@code <name>.idx}, that maps users to the byte offsets of their
+ * records.
+ *
+ * <p>The file starts with a 16-byte header (magic, version and a random generation number that changes whenever the index is
+ * recreated), followed by fixed 12-byte entries: the hash of a user key and the byte offset of the record's line in the log file.
+ * Each record gets one entry for its user id and one for its lower-cased email. Entries are only ever appended, in offset order, by
+ * {@link FileAuditLogWriter} through an {@link Appender}; the index is deleted when the active file is rotated and rebuilt from the
+ * log file on startup if it is missing or does not match it.
+ *
+ * <p>{@link FileAuditLogQueryService} reads it through a {@link Reader}, which loads only the entries appended since its previous
+ * refresh, and then reads just the lines at a user's offsets. Records the index does not cover yet (everything after the last indexed
+ * offset) are found by scanning the tail of the log file, so an index that lags behind the log is never wrong, only slower. Hashes may
+ * collide; callers must still check that a record really belongs to the user.
+ */
+@Slf4j
+final class AuditUserIndex {
+
+    /** Suffix appended to the active log file path to name the index. */
+    static final String SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x41554958; // "AUIX"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 12;
+
+    /** Entries buffered by the {@link Appender} before they are written to the channel. */
+    private static final int APPEND_BUFFER_ENTRIES = 4096;
+
+    /** Size of the buffer used to scan log lines. */
+    private static final int SCAN_BUFFER_BYTES = 64 * 1024;
+
+    private AuditUserIndex() {
+    }
+
+    /**
+     * Returns the index path for an active log file.
+     *
+     * @param logFilePath the active log file path
+     * @return the index path
+     */
+    static Path pathFor(String logFilePath) {
+        return Path.of(logFilePath + SUFFIX);
+    }
+
+    /**
+     * Deletes the index of a log file, logging rather than propagating failures.
+     *
+     * @param logFilePath the active log file path
+     */
+    static void delete(String logFilePath) {
+        try {
+            Files.deleteIfExists(pathFor(logFilePath));
+        } catch (IOException e) {
+            log.warn("AuditUserIndex.delete: Could not delete audit user index of {}: {}", logFilePath, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the key hash of a user id.
+     *
+     * @param userId the user id as written in the record
+     * @return the hash
+     */
+    static int idHash(String userId) {
+        return ("i:" + userId).hashCode();
+    }
+
+    /**
+     * Returns the key hash of an email, which is matched case-insensitively.
+     *
+     * @param email the email
+     * @return the hash
+     */
+    static int emailHash(String email) {
+        return ("e:" + email.toLowerCase(Locale.ROOT)).hashCode();
+    }
+
+    /**
+     * Receives the lines of a log file with the byte offset each starts at.
+     */
+    @FunctionalInterface
+    interface LineVisitor {
+
+        /**
+         * Visits one line.
+         *
+         * @param offset the byte offset of the first byte of the line
+         * @param line the line, without its line separator
+         * @return {@code true} to continue with the next line
+         */
+        boolean visit(long offset, String line);
+    }
+
+    /**
+     * Scans the lines of a log file from a byte offset. Lines are split on {@code \n}; a preceding {@code \r} is removed.
+     *
+     * @param channel the log file
+     * @param from the offset to start at; must be the start of a line
+     * @param includeUnterminated whether to visit a last line that has no line separator yet
+     * @param visitor receives each line
+     * @return the offset just after the last complete line visited
+     * @throws IOException if the file cannot be read
+     */
+    static long scanLines(FileChannel channel, long from, boolean includeUnterminated, LineVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long position = from;
+        long lineStart = from;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            position += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b != '\n') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                    continue;
+                }
+                boolean more = visitor.visit(lineStart, decode(line, lineLength));
+                lineStart += lineLength + 1L;
+                lineLength = 0;
+                if (!more) {
+                    return lineStart;
+                }
+            }
+            buffer.clear();
+        }
+        if (includeUnterminated && lineLength > 0) {
+            visitor.visit(lineStart, decode(line, lineLength));
+        }
+        return lineStart;
+    }
+
+    /**
+     * Reads the line starting at a byte offset.
+     *
+     * @param channel the log file
+     * @param offset the offset of the line
+     * @return the line, or {@code null} if there is no complete line at that offset
+     * @throws IOException if the file cannot be read
+     */
+    static String readLineAt(FileChannel channel, long offset) throws IOException {
+        String[] found = new String[1];
+        scanLines(channel, offset, false, (lineOffset, line) -> {
+            found[0] = line;
+            return false;
+        });
+        return found[0];
+    }
+
+    private static String decode(byte[] bytes, int length) {
+        int end = length > 0 && bytes[length - 1] == '\r' ? length - 1 : length;
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends entries for the records {@link FileAuditLogWriter} writes. Not thread-safe; the writer calls it under its monitor.
+     */
+    static final class Appender implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(APPEND_BUFFER_ENTRIES * ENTRY_BYTES);
+
+        private Appender(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Opens the index of a log file for appending, first bringing it up to date with the log. An index whose header is invalid,
+         * whose last entry does not point at a matching record, or that is missing is rebuilt from the whole log file; otherwise only
+         * the records after its last entry are indexed.
+         *
+         * @param indexPath the index file
+         * @param logPath the log file, whose content must be fully written
+         * @return the appender
+         * @throws IOException if the index cannot be written or the log cannot be read
+         */
+        static Appender open(Path indexPath, Path logPath) throws IOException {
+            FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                Appender appender = new Appender(channel);
+                appender.catchUp(logPath);
+                return appender;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Adds the entries for a record.
+         *
+         * @param record the record
+         * @param offset the byte offset of the record's line in the log file
+         * @throws IOException if the buffered entries cannot be written
+         */
+        void append(AuditRecord record, long offset) throws IOException {
+            append(record.userId(), record.userEmail(), offset);
+        }
+
+        /**
+         * Writes the buffered entries to the index file. They are not forced to disk; a lost tail is rebuilt on the next start.
+         *
+         * @throws IOException if the write fails
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void append(String userId, String email, long offset) throws IOException {
+            if (userId != null && !AuditRecord.UNKNOWN_USER.equals(userId)) {
+                put(idHash(userId), offset);
+            }
+            if (email != null) {
+                put(emailHash(email), offset);
+            }
+        }
+
+        private void put(int keyHash, long offset) throws IOException {
+            if (buffer.remaining() < ENTRY_BYTES) {
+                flush();
+            }
+            buffer.putInt(keyHash).putLong(offset);
+        }
+
+        private void catchUp(Path logPath) throws IOException {
+            long started = System.currentTimeMillis();
+            long from = validate(logPath);
+            if (from < 0) {
+                reset();
+                from = 0L;
+            }
+            long[] indexed = new long[1];
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                scanLines(log, from, false, (offset, line) -> {
+                    AuditEventDTO event = FileAuditLogQueryService.parseLine(line);
+                    if (event != null) {
+                        try {
+                            append(event.getUserId(), event.getUserEmail(), offset);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        indexed[0]++;
+                    }
+                    return true;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            flush();
+            if (indexed[0] > 0) {
+                log.info("AuditUserIndex.open: Indexed {} audit record(s) of {} in {} ms.", indexed[0], logPath,
+                        System.currentTimeMillis() - started);
+            }
+        }
+
+        /**
+         * Checks the existing index against the log and positions the channel at its end.
+         *
+         * @return the log offset to continue indexing from, or {@code -1} if the index must be rebuilt
+         */
+        private long validate(Path logPath) throws IOException {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return -1L;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0L);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return -1L;
+            }
+            long end = HEADER_BYTES + (size - HEADER_BYTES) / ENTRY_BYTES * ENTRY_BYTES;
+            if (end == HEADER_BYTES) {
+                channel.truncate(end).position(end);
+                return 0L;
+            }
+            ByteBuffer last = ByteBuffer.allocate(ENTRY_BYTES);
+            channel.read(last, end - ENTRY_BYTES);
+            last.flip();
+            int keyHash = last.getInt();
+            long offset = last.getLong();
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                String line = offset < log.size() ? readLineAt(log, offset) : null;
+                AuditEventDTO event = line != null ? FileAuditLogQueryService.parseLine(line) : null;
+                if (event == null || !belongsTo(event, keyHash)) {
+                    return -1L;
+                }
+                channel.truncate(end).position(end);
+                return scanLines(log, offset, false, (lineOffset, text) -> false); // just past the last indexed record
+            }
+        }
+
+        private static boolean belongsTo(AuditEventDTO event, int keyHash) {
+            return event.getUserId() != null && idHash(event.getUserId()) == keyHash
+                    || event.getUserEmail() != null && emailHash(event.getUserEmail()) == keyHash;
+        }
+
+        private void reset() throws IOException {
+            channel.truncate(0L);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(ThreadLocalRandom.current().nextLong());
+            header.flip();
+            channel.position(0L);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+    }
+
+    /**
+     * Read side of an index, kept by {@link FileAuditLogQueryService} across queries. Each {@link #refresh()} loads only the entries
+     * appended since the previous one, or reloads the whole index after it was recreated.
+     */
+    static final class Reader {
+
+        private final Path path;
+
+        /** Generation of the loaded entries; compared with the header to detect a recreated index. */
+        private long generation;
+
+        /** Bytes of the index file already loaded; {@code 0} when nothing is loaded. */
+        private long loadedBytes;
+
+        /** Offsets per key hash; element {@code 0} of each array holds the number of offsets that follow. */
+        private final Map<Integer, long[]> offsetsByKey = new HashMap<>();
+
+        private long lastOffset = -1L;
+
+        /**
+         * Creates a reader.
+         *
+         * @param path the index file
+         */
+        Reader(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Loads the entries appended since the previous refresh.
+         *
+         * @return {@code false} if there is no usable index, in which case the log has to be scanned
+         */
+        synchronized boolean refresh() {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_BYTES) {
+                    clear();
+                    return false;
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(header, 0L);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    clear();
+                    return false;
+                }
+                long fileGeneration = header.getLong();
+                if (loadedBytes == 0L || fileGeneration != generation || size < loadedBytes) {
+                    clear();
+                    generation = fileGeneration;
+                    loadedBytes = HEADER_BYTES;
+                }
+                long end = HEADER_BYTES + (size - HEADER_BYTES) / ENTRY_BYTES * ENTRY_BYTES;
+                ByteBuffer entries = ByteBuffer.allocate(APPEND_BUFFER_ENTRIES * ENTRY_BYTES);
+                while (loadedBytes < end) {
+                    entries.clear().limit((int) Math.min(entries.capacity(), end - loadedBytes));
+                    int read = channel.read(entries, loadedBytes);
+                    if (read <= 0) {
+                        break;
+                    }
+                    entries.flip();
+                    int whole = entries.remaining() / ENTRY_BYTES;
+                    for (int i = 0; i < whole; i++) {
+                        add(entries.getInt(), entries.getLong());
+                    }
+                    loadedBytes += (long) whole * ENTRY_BYTES;
+                }
+                return true;
+            } catch (NoSuchFileException e) {
+                clear();
+                return false;
+            } catch (IOException e) {
+                log.warn("AuditUserIndex.refresh: Could not read audit user index {}: {}", path, e.getMessage());
+                clear();
+                return false;
+            }
+        }
+
+        /**
+         * Returns the distinct offsets recorded for any of the given key hashes, ascending.
+         *
+         * @param keyHashes the key hashes
+         * @return the offsets
+         */
+        synchronized long[] offsetsFor(int... keyHashes) {
+            long[] merged = new long[0];
+            for (int keyHash : keyHashes) {
+                long[] offsets = offsetsByKey.get(keyHash);
+                if (offsets != null) {
+                    int base = merged.length;
+                    merged = Arrays.copyOf(merged, base + (int) offsets[0]);
+                    System.arraycopy(offsets, 1, merged, base, (int) offsets[0]);
+                }
+            }
+            Arrays.sort(merged);
+            return Arrays.stream(merged).distinct().toArray();
+        }
+
+        /**
+         * Returns the offset of the last indexed record, or {@code -1} if the index is empty. Records after it are not indexed yet.
+         *
+         * @return the last indexed offset
+         */
+        synchronized long lastOffset() {
+            return lastOffset;
+        }
+
+        private void add(int keyHash, long offset) {
+            long[] offsets = offsetsByKey.get(keyHash);
+            if (offsets == null) {
+                offsets = new long[4];
+                offsetsByKey.put(keyHash, offsets);
+            } else if (offsets[0] + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsetsByKey.put(keyHash, offsets);
+            }
+            offsets[(int) ++offsets[0]] = offset;
+            lastOffset = Math.max(lastOffset, offset);
+        }
+
+        private void clear() {
+            offsetsByKey.clear();
+            loadedBytes = 0L;
+            lastOffset = -1L;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ClassUtils;
+import com.digitalsanctuary.spring.user.UserConfiguration;
+
+/**
+ * Auto-configuration for fanning audit records out to several sinks, active when {@code user.audit.sinks} is set: a
+ * {@link CompositeAuditLogWriter} with one {@link AuditSink} per listed {@link AuditSinkType}.
+ *
+ * <p>
+ * Runs before {@link JdbcAuditAutoConfiguration} and {@link AuditMailAutoConfiguration}, so the single writer those would contribute backs
+ * off through its {@code @ConditionalOnMissingBean(AuditLogWriter.class)}. The query service is unaffected and still follows
+ * {@code user.audit.store}. A consumer-defined {@link AuditLogWriter} still wins over the composite.
+ * </p>
+ */
+@AutoConfiguration(after = UserConfiguration.class, before = {JdbcAuditAutoConfiguration.class, AuditMailAutoConfiguration.class})
+@ConditionalOnProperty(name = "user.audit.sinks")
+public class CompositeAuditAutoConfiguration {
+
+    /**
+     * Creates the composite writer and its sinks. Gated by {@code user.audit.logEvents} like the single writers.
+     *
+     * @param auditConfig the audit configuration properties
+     * @param auditRecordCodecProvider resolves the codec for the file sink; defaults to the one for {@code user.audit.logFormat}
+     * @param dataSourceProvider resolves the {@link DataSource} for the JDBC sink
+     * @param recentActivityCacheProvider resolves the cache the file sink feeds, if recent activity is cached
+     * @param rollupsProvider resolves the {@link AuditRollups}, if kept; fed by the sink of {@code user.audit.store}, or by the first
+     *        file or JDBC sink when that one is not listed, so every record is counted once
+     * @return the {@link CompositeAuditLogWriter}
+     * @throws IllegalStateException if the JDBC sink is listed but spring-jdbc or a {@link DataSource} is missing
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditLogWriter.class)
+    @ConditionalOnProperty(name = "user.audit.logEvents", havingValue = "true", matchIfMissing = true)
+    public CompositeAuditLogWriter compositeAuditLogWriter(AuditConfig auditConfig, ObjectProvider<AuditRecordCodec> auditRecordCodecProvider,
+            ObjectProvider<DataSource> dataSourceProvider, ObjectProvider<AuditRecentActivityCache> recentActivityCacheProvider,
+            ObjectProvider<AuditRollups> rollupsProvider) {
+        List<AuditSink> sinks = new ArrayList<>();
+        LinkedHashSet<AuditSinkType> types = new LinkedHashSet<>(auditConfig.getSinks());
+        AuditSinkType rollupSink = rollupSink(types, auditConfig.getStore());
+        AuditRollups rollups = rollupsProvider.getIfAvailable();
+        for (AuditSinkType type : types) {
+            AuditRollups sinkRollups = type == rollupSink ? rollups : null;
+            AuditSink sink = switch (type) {
+                case FILE -> newSink(auditConfig, type, new FileAuditLogWriter(auditConfig,
+                        auditRecordCodecProvider.getIfAvailable(() -> AuditLogFormat.codecFor(auditConfig.getLogFormat())),
+                        recentActivityCacheProvider.getIfAvailable(), sinkRollups), null);
+                case JDBC -> JdbcSinkFactory.newSink(auditConfig, dataSourceProvider.getIfAvailable(), sinkRollups);
+                case LOG -> newSink(auditConfig, type, new Slf4jAuditLogWriter(auditConfig), null);
+            };
+            sinks.add(sink);
+        }
+        return new CompositeAuditLogWriter(sinks);
+    }
+
+    /**
+     * Creates the {@link FileAuditLogFlushScheduler} for the composite's file sink, under the same conditions as the one
+     * {@link AuditMailAutoConfiguration} creates for a single {@link FileAuditLogWriter}.
+     *
+     * @param compositeAuditLogWriter the library's composite writer
+     * @return the flush scheduler
+     */
+    @Bean
+    @ConditionalOnBean(CompositeAuditLogWriter.class)
+    @ConditionalOnExpression("${user.audit.logEvents:true} && !${user.audit.flushOnWrite:false}")
+    public FileAuditLogFlushScheduler compositeAuditLogFlushScheduler(CompositeAuditLogWriter compositeAuditLogWriter) {
+        return new FileAuditLogFlushScheduler(compositeAuditLogWriter);
+    }
+
+    /**
+     * Returns the sink that feeds the {@link AuditRollups}: the one of the store, else the first file or JDBC sink, else none.
+     */
+    private static AuditSinkType rollupSink(Set<AuditSinkType> types, AuditStore store) {
+        AuditSinkType storeSink = store == AuditStore.JDBC ? AuditSinkType.JDBC : AuditSinkType.FILE;
+        if (types.contains(storeSink)) {
+            return storeSink;
+        }
+        return types.stream().filter(type -> type != AuditSinkType.LOG).findFirst().orElse(null);
+    }
+
+    private static AuditSink newSink(AuditConfig auditConfig, AuditSinkType type, AuditRecordWriter writer,
+            LongSupplier writerFailures) {
+        return new AuditSink(type.name().toLowerCase(Locale.ROOT), writer, auditConfig.getSinkBufferSize(), auditConfig.getSinkBatchSize(),
+                writerFailures);
+    }
+
+    /**
+     * Builds the JDBC sink. Kept in its own class so spring-jdbc is only loaded when that sink is listed.
+     */
+    private static final class JdbcSinkFactory {
+
+        private static final String JDBC_TEMPLATE_CLASS = "org.springframework.jdbc.core.JdbcTemplate";
+
+        static AuditSink newSink(AuditConfig auditConfig, DataSource dataSource, AuditRollups rollups) {
+            if (!ClassUtils.isPresent(JDBC_TEMPLATE_CLASS, CompositeAuditAutoConfiguration.class.getClassLoader())) {
+                throw new IllegalStateException("user.audit.sinks lists jdbc, but spring-jdbc is not on the classpath.");
+            }
+            if (dataSource == null) {
+                throw new IllegalStateException("user.audit.sinks lists jdbc, but no DataSource bean is available.");
+            }
+            // Unbuffered: the sink's own queue and thread stand in for the writer's, so database slowness shows as this sink's lag.
+            JdbcAuditLogWriter writer = new JdbcAuditLogWriter(auditConfig, new JdbcTemplate(dataSource), false, rollups);
+            return CompositeAuditAutoConfiguration.newSink(auditConfig, AuditSinkType.JDBC, writer, writer::getFailedEventCount);
+        }
+    }
+
+    /**
+     * Registers the Micrometer meters of the sinks when Micrometer is on the classpath.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class AuditSinkMetricsConfiguration {
+
+        /**
+         * Creates the binder for each sink's queue depth, lag, health and record counts.
+         *
+         * @param writerProvider resolves the library's composite writer, if it is in use
+         * @return the {@link AuditSinkMetrics} binder
+         */
+        @Bean
+        @ConditionalOnMissingBean(AuditSinkMetrics.class)
+        public AuditSinkMetrics auditSinkMetrics(ObjectProvider<CompositeAuditLogWriter> writerProvider) {
+            return new AuditSinkMetrics(writerProvider);
+        }
+    }
+}
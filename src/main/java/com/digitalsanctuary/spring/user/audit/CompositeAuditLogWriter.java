@@ -0,0 +1,98 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.util.List;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link AuditLogWriter} that fans every audit record out to several {@link AuditSink}s, selected with {@code user.audit.sinks}.
+ *
+ * <p>Writing a record only offers it to each sink's own bounded queue, so the cost on the dispatching thread does not depend on how
+ * fast any sink is. Each sink writes on its own thread: a degraded database slows and eventually fills only the JDBC sink's queue, while
+ * the file and log sinks keep up. Per-sink queue depth, lag, health and drop counts are available from {@link #getSinks()} and exported by
+ * {@link AuditSinkMetrics}.
+ *
+ * @see CompositeAuditAutoConfiguration
+ * @see AuditSinkType
+ */
+@Slf4j
+public class CompositeAuditLogWriter implements AuditRecordWriter {
+
+    private final List<AuditSink> sinks;
+
+    /**
+     * Creates the writer.
+     *
+     * @param sinks the sinks records are fanned out to
+     */
+    public CompositeAuditLogWriter(List<AuditSink> sinks) {
+        this.sinks = List.copyOf(sinks);
+    }
+
+    /**
+     * Starts every sink. A sink that fails to start is logged and keeps writing on the dispatching thread; the others are unaffected.
+     */
+    @PostConstruct
+    @Override
+    public void setup() {
+        for (AuditSink sink : sinks) {
+            try {
+                sink.start();
+            } catch (Exception e) {
+                log.error("CompositeAuditLogWriter.setup: Failed to start audit sink '{}': {}", sink.getName(), e.getMessage(), e);
+            }
+        }
+        log.info("CompositeAuditLogWriter.setup: Fanning audit records out to sinks {}.", sinks.stream().map(AuditSink::getName).toList());
+    }
+
+    /**
+     * Stops every sink after it has written what it already queued.
+     */
+    @PreDestroy
+    @Override
+    public void cleanup() {
+        for (AuditSink sink : sinks) {
+            try {
+                sink.stop();
+            } catch (Exception e) {
+                log.error("CompositeAuditLogWriter.cleanup: Failed to stop audit sink '{}': {}", sink.getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Offers the record to every sink.
+     *
+     * @param record the audit record to write
+     */
+    @Override
+    public void writeRecord(AuditRecord record) {
+        if (record == null) {
+            return;
+        }
+        for (AuditSink sink : sinks) {
+            sink.offer(record);
+        }
+    }
+
+    /**
+     * Flushes the buffered output of the {@link FileAuditLogWriter} sinks. Called by {@link FileAuditLogFlushScheduler}.
+     */
+    public void flushWriter() {
+        for (AuditSink sink : sinks) {
+            if (sink.getWriter() instanceof FileAuditLogWriter fileWriter) {
+                fileWriter.flushWriter();
+            }
+        }
+    }
+
+    /**
+     * Returns the sinks, in the order of {@code user.audit.sinks}.
+     *
+     * @return the sinks
+     */
+    public List<AuditSink> getSinks() {
+        return sinks;
+    }
+}
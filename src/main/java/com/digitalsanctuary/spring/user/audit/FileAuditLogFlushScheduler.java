@@ -1,7 +1,6 @@
 package com.digitalsanctuary.spring.user.audit;
 
 import org.springframework.scheduling.annotation.Scheduled;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -18,6 +17,9 @@ import lombok.extern.slf4j.Slf4j;
  *   <li>a {@link FileAuditLogWriter} bean is present (i.e. a consumer has not replaced the writer)</li>
  * </ul>
  *
+ * <p>{@link CompositeAuditAutoConfiguration} contributes one under the same conditions for a {@link CompositeAuditLogWriter}, where it
+ * flushes the {@link AuditSinkType#FILE} sink.
+ *
  * <p>When flush-on-write is enabled, logs are flushed immediately after each write,
  * making this scheduler unnecessary. The flush frequency is controlled by
  * {@code user.audit.flushRate} (in milliseconds). It is not component-scanned because it depends on the
@@ -28,10 +30,27 @@ import lombok.extern.slf4j.Slf4j;
  * @see AuditMailAutoConfiguration
  */
 @Slf4j
-@RequiredArgsConstructor
 public class FileAuditLogFlushScheduler {
 
-    private final FileAuditLogWriter fileAuditLogWriter;
+    private final Runnable flush;
+
+    /**
+     * Creates a scheduler that flushes the given file writer.
+     *
+     * @param fileAuditLogWriter the writer to flush
+     */
+    public FileAuditLogFlushScheduler(FileAuditLogWriter fileAuditLogWriter) {
+        this.flush = fileAuditLogWriter::flushWriter;
+    }
+
+    /**
+     * Creates a scheduler that flushes the file sinks of a {@link CompositeAuditLogWriter}.
+     *
+     * @param compositeAuditLogWriter the composite writer to flush
+     */
+    public FileAuditLogFlushScheduler(CompositeAuditLogWriter compositeAuditLogWriter) {
+        this.flush = compositeAuditLogWriter::flushWriter;
+    }
 
     /**
      * Flushes the audit log buffer to the file. This method is called on a schedule to ensure that the buffer is flushed periodically to balance
@@ -40,6 +59,6 @@ public class FileAuditLogFlushScheduler {
     @Scheduled(fixedRateString = "#{@auditConfig.flushRate}")
     public void flushAuditLog() {
         log.info("FileAuditLogFlushScheduler.flushAuditLog: Flushing audit log buffer to file.");
-        fileAuditLogWriter.flushWriter();
+        flush.run();
     }
 }
@@ -1,53 +1,84 @@
 package com.digitalsanctuary.spring.user.audit;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import com.digitalsanctuary.spring.user.persistence.model.User;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * File-based implementation of {@link AuditLogQueryService} that parses the
- * pipe-delimited audit log file created by {@link FileAuditLogWriter}.
+ * audit log file created by {@link FileAuditLogWriter}.
  *
- * <p>This implementation streams the active log file once per query, filtering
- * results by user email or ID. To bound memory and CPU on large files, it retains
- * only the most recent {@code user.audit.maxQueryResults} matching events in a
- * bounded ring buffer rather than loading and sorting the whole file. While
+ * <p>This implementation reads the active log file and then the retained archives
+ * backwards, newest first and several segments at a time, filtering results by user email or ID, and stops once it has the most recent
+ * {@code user.audit.maxQueryResults} matching events or has passed the start of a {@code since} window.
+ * Memory and CPU are therefore bounded by the result rather than by the size of the log. While
  * suitable for small to medium audit volumes (&lt;50MB, &lt;100K events),
  * applications with high audit volumes or frequent export requests should consider
  * implementing a database-backed query service for better performance.
  *
- * <p><strong>Performance Note:</strong> GDPR export operations call this service
- * multiple times (findByUser, findByUserAndAction); each call streams the active
- * log file once. Memory per call is bounded to {@code maxQueryResults} events. For
+ * <p><strong>Performance Note:</strong> Each call reads the log segments at most once, whatever the
+ * {@link AuditQuery} asks for: a GDPR export pages through the history once with {@link #stream}, and a
+ * consent lookup asks for both consent actions with one {@link #find}. Memory per call is bounded to
+ * {@code maxQueryResults} events, or to one page. For
  * production deployments with large audit logs, consider:
  * <ul>
- *   <li>Implementing a database-backed {@link AuditLogQueryService}</li>
- *   <li>Adding log rotation to keep file sizes manageable</li>
+ *   <li>Switching to the JDBC store ({@code user.audit.store=jdbc}) or another database-backed {@link AuditLogQueryService}</li>
+ *   <li>Adding log rotation, so time-bounded queries ({@code since}/{@code until}) can skip old segments</li>
  *   <li>Using indexed storage for audit events</li>
  * </ul>
  *
- * <p>The log file format is:
- * {@code Date|Action|ActionStatus|UserId|Email|IPAddress|SessionId|Message|UserAgent|ExtraData}
+ * <p>Both built-in formats are recognized line by line: lines starting with {@code &#123;} are decoded by
+ * {@link NdjsonAuditRecordCodec}, anything else by {@link PipeDelimitedAuditRecordCodec}
+ * ({@code Date|Action|ActionStatus|UserId|Email|IPAddress|SessionId|Message|UserAgent|ExtraData}), whose
+ * header line is skipped. A file that changed format part-way through therefore remains fully queryable.
+ *
+ * <p>Active while {@code user.audit.store} is {@code file} (the default); {@link JdbcAuditLogQueryService} replaces it for
+ * {@code jdbc}.
+ *
+ * <p>Rotated archives ({@code <name>.1}, {@code <name>.2.gz}, ...) are read as well, gzip-compressed ones through
+ * {@link GZIPInputStream}. For time-bounded queries the {@link AuditSegmentManifest} written by the archiver is
+ * consulted, and archives whose last record is older than the requested window are not opened at all. Archives that have an
+ * {@link AuditSegmentBloomFilter} ({@code user.audit.segmentFilterFalsePositiveRate} above {@code 0}, the default) are skipped
+ * unless the filter shows they may hold the user's records.
+ *
+ * <p>When {@link FileAuditLogWriter} maintains an {@link AuditUserIndex} for the active file ({@code user.audit.userIndex}, the
+ * default), the active file is not scanned: only the lines at the user's indexed byte offsets are read, plus the few records
+ * written since the index was last flushed. A lookup then costs in proportion to the user's own events in the active file
+ * rather than to its size. Without an index the file is scanned as before.
+ *
+ * <p>With the {@link AuditRecentActivityCache} ({@code user.audit.recentActivity.enabled}, the default), which the writer keeps filled
+ * with each user's latest records, queries for a user's recent activity are answered from memory; any query the cache cannot answer
+ * exactly reads the log as described above.
+ *
+ * <p>{@link #findPage} (and {@link #stream}, which builds on it) is not capped by {@code maxQueryResults}: each page reads the
+ * segments only as far as it needs and ends with a cursor naming a segment and byte offset, from which the next page continues.
  *
  * @see AuditLogQueryService
  * @see FileAuditLogWriter
@@ -55,105 +86,306 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user.audit.store", havingValue = "file", matchIfMissing = true)
 public class FileAuditLogQueryService implements AuditLogQueryService {
 
     private final AuditConfig auditConfig;
 
+    private final ObjectProvider<AuditRecentActivityCache> recentActivityCacheProvider;
+
+    /** User index readers by index path, kept so each query loads only the entries appended since the previous one. */
+    private final Map<Path, AuditUserIndex.Reader> userIndexes = new ConcurrentHashMap<>();
+
+    /** Loaded segment filters by path. A filter never changes once written, so it is loaded once and kept while its segment is. */
+    private final Map<Path, AuditSegmentBloomFilter> segmentFilters = new ConcurrentHashMap<>();
+
+    private static final AuditRecordCodec NDJSON_CODEC = new NdjsonAuditRecordCodec();
+    private static final PipeDelimitedAuditRecordCodec PIPE_CODEC = new PipeDelimitedAuditRecordCodec();
+
     /**
-     * DateTimeFormatter patterns to try when parsing dates from the log file.
-     * MessageFormat produces dates like "Jan 15, 2025, 3:45:30 PM" or similar.
+     * How far before {@code since} a record must be before a time-bounded query stops reading. Records can reach the log slightly out
+     * of timestamp order, for example with several dispatch threads, so reading does not stop at the first record before
+     * {@code since}.
+     */
+    static final long SINCE_CUTOFF_SLACK_MILLIS = 60_000L;
+
+    /**
+     * Creates a query service that always reads the log.
+     *
+     * @param auditConfig the audit configuration
+     */
+    public FileAuditLogQueryService(AuditConfig auditConfig) {
+        this(auditConfig, null);
+    }
+
+    /**
+     * Creates a query service that answers from the {@link AuditRecentActivityCache}, if one is available, before it reads the log.
+     *
+     * @param auditConfig the audit configuration
+     * @param recentActivityCacheProvider resolves the optional cache; may be {@code null}
      */
-    private static final DateTimeFormatter[] DATE_FORMATTERS = {
-            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US),
-            DateTimeFormatter.ofPattern("MMM d, yyyy, h:mm:ss a", Locale.US),
-            DateTimeFormatter.ofPattern("MMM dd, yyyy, h:mm:ss a", Locale.US),
-            DateTimeFormatter.ISO_INSTANT,
-            DateTimeFormatter.ISO_DATE_TIME
-    };
+    @Autowired
+    public FileAuditLogQueryService(AuditConfig auditConfig, ObjectProvider<AuditRecentActivityCache> recentActivityCacheProvider) {
+        this.auditConfig = auditConfig;
+        this.recentActivityCacheProvider = recentActivityCacheProvider;
+    }
 
     @Override
     public List<AuditEventDTO> findByUser(User user) {
-        return findByUser(user, null, null);
+        return find(user, AuditQuery.all());
     }
 
     @Override
     public List<AuditEventDTO> findByUserSince(User user, Instant since) {
-        return findByUser(user, since, null);
+        return find(user, AuditQuery.builder().since(since).build());
     }
 
     @Override
     public List<AuditEventDTO> findByUserAndAction(User user, String action) {
-        return findByUser(user, null, action);
+        return find(user, action != null ? AuditQuery.builder().action(action).build() : AuditQuery.all());
     }
 
     /**
-     * Internal method to find audit events with optional filtering.
-     *
-     * <p><strong>Bounded memory/CPU:</strong> The log file is written in append order (oldest first,
-     * newest last). Rather than parsing and sorting the entire file in memory, this method streams the
-     * file once and retains only the last {@code maxQueryResults} <em>matching</em> raw lines in a bounded
-     * {@link ArrayDeque} ring buffer. Only that bounded window is then parsed and sorted by timestamp
-     * descending. Memory is therefore {@code O(maxQueryResults)} regardless of file size, and the sort
-     * cost is bounded to the result window rather than the whole file.
+     * {@inheritDoc}
      *
-     * <p>For result sets {@code <= maxQueryResults} the observable output (filters + newest-first
-     * ordering) is identical to the previous full-file implementation. For larger sets, the most-recent
-     * {@code maxQueryResults} matches (by file/append order) are returned, then ordered newest-first.
+     * <p><strong>Newest first:</strong> The log is written in append order (oldest first, newest last), and a query wants the most
+     * recent matches, up to the query's limit or {@code maxQueryResults}, so each segment is read backwards, from its end, through
+     * {@link AuditLogReverseReader}. Reading stops as soon as the limit is filled or, for a query with {@code since}, once a record
+     * older than {@code since} (less {@link #SINCE_CUTOFF_SLACK_MILLIS}) has been passed. A query for recent activity therefore reads
+     * only the end of the log, and its cost follows the size of the answer rather than of the file. Gzip-compressed archives cannot be
+     * read backwards; each is streamed forward, keeping only its last matches. The active file is read through its
+     * {@link AuditUserIndex} when one exists. Lines are decoded only when {@link AuditLineScanner} cannot rule out the user and
+     * actions from the raw text, so other users' records cost no allocation; the remaining criteria are checked on the decoded event.
+     * Archives the manifest shows to lie outside the query's time range are not opened.
      *
-     * <p><strong>Scope:</strong> Only the active log file is queried; rotated archive files
-     * ({@code <name>.1}, {@code <name>.2}, ...) are not included. This preserves the prior behavior; query
-     * results reflect only the currently-active audit log.
+     * <p><strong>Segments in parallel:</strong> The active file and the archives {@code <name>.1} to {@code <name>.N} are handed out
+     * newest first to up to {@code user.audit.queryParallelism} readers by {@link AuditSegmentQuery}, which cancels the older
+     * segments once the newer ones hold the answer and merges the per-segment matches by timestamp, newest first.
      *
-     * @param user the user to filter by
-     * @param since optional timestamp filter
-     * @param action optional action filter
-     * @return filtered list of audit events, newest first, capped at {@code maxQueryResults}
+     * <p><strong>Recent activity:</strong> When an {@link AuditRecentActivityCache} is available, it is asked first, and a query its
+     * cached window fully answers, such as the last few events of an active user, does not touch the log at all.
      */
-    private List<AuditEventDTO> findByUser(User user, Instant since, String action) {
+    @Override
+    public List<AuditEventDTO> find(User user, AuditQuery query) {
         if (user == null) {
             return Collections.emptyList();
         }
 
+        String userEmail = user.getEmail();
+        String userId = user.getId() != null ? user.getId().toString() : null;
+        int maxResults = query.getLimit() > 0 ? query.getLimit() : auditConfig.getMaxQueryResults();
+        AuditRecentActivityCache cache = recentActivityCacheProvider != null ? recentActivityCacheProvider.getIfAvailable() : null;
+        List<AuditEventDTO> cached = cache != null ? cache.find(userId, userEmail, query, maxResults) : null;
+        if (cached != null) {
+            return inOrder(cached, query);
+        }
+
         Path logPath = getLogFilePath();
         if (logPath == null || !Files.exists(logPath)) {
-            log.debug("FileAuditLogQueryService.findByUser: Audit log file not found");
+            log.debug("FileAuditLogQueryService.find: Audit log file not found");
+            return Collections.emptyList();
+        }
+
+        Predicate<AuditEventDTO> filter = event -> matchesUser(event, userEmail, userId) && query.matches(event);
+        Instant cutoff = query.getSince() != null ? query.getSince().minusMillis(SINCE_CUTOFF_SLACK_MILLIS) : null;
+        AuditLineScanner scanner = new AuditLineScanner(userId, userEmail, query.getActions());
+
+        List<Path> segments = listSegments(logPath, query.getSince(), query.getUntil(), userId, userEmail);
+        Collections.reverse(segments);
+        AuditSegmentQuery segmentQuery = new AuditSegmentQuery(segments,
+                cancelled -> new AuditSegmentMatches(filter, cutoff, maxResults, cancelled),
+                (segment, matches) -> {
+                    if (!segment.equals(logPath) || !readIndexed(logPath, userEmail, userId, scanner, matches)) {
+                        scanSegment(segment, scanner, matches);
+                    }
+                }, maxResults);
+        try {
+            return inOrder(segmentQuery.run(auditConfig.getQueryParallelism()), query);
+        } catch (IOException e) {
+            log.error("FileAuditLogQueryService.find: Error reading audit log file {}", logPath, e);
+            return Collections.emptyList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("FileAuditLogQueryService.find: Interrupted while reading audit log file {}", logPath);
             return Collections.emptyList();
         }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Reads the segments newest first, like the {@code find} methods, but sequentially and only until the page is full; the
+     * cursor names the segment and the byte offset at which the next page continues, and survives rotation, see
+     * {@link AuditSegmentPager}. The user index is not used.
+     */
+    @Override
+    public AuditEventPage findPage(User user, AuditQuery query, String cursor, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        AuditCursor position = AuditCursor.decode(cursor, AuditCursor.FILE);
+        if (user == null) {
+            return AuditEventPage.empty();
+        }
+
+        Path logPath = getLogFilePath();
+        if (logPath == null || !Files.exists(logPath)) {
+            log.debug("FileAuditLogQueryService.findPage: Audit log file not found");
+            return AuditEventPage.empty();
+        }
 
         String userEmail = user.getEmail();
         String userId = user.getId() != null ? user.getId().toString() : null;
-
-        int maxResults = auditConfig.getMaxQueryResults();
-
-        // Bounded ring buffer of the most recent matching parsed events in file (append) order.
-        // When maxResults <= 0 the limit is disabled and all matching events are retained.
-        Deque<AuditEventDTO> window = new ArrayDeque<>();
-
-        try (Stream<String> lines = Files.lines(logPath)) {
-            lines.skip(1) // Skip header line
-                    .map(this::parseLine)
-                    .filter(Objects::nonNull)
-                    .filter(event -> matchesUser(event, userEmail, userId))
-                    .filter(event -> since == null || event.getTimestamp() == null ||
-                            !event.getTimestamp().isBefore(since))
-                    .filter(event -> action == null || action.equals(event.getAction()))
-                    .forEach(event -> {
-                        window.addLast(event);
-                        if (maxResults > 0 && window.size() > maxResults) {
-                            window.removeFirst(); // evict oldest to keep only the most recent N
-                        }
-                    });
+        Predicate<AuditEventDTO> filter = event -> matchesUser(event, userEmail, userId) && query.matches(event);
+        Instant cutoff = query.getSince() != null ? query.getSince().minusMillis(SINCE_CUTOFF_SLACK_MILLIS) : null;
+        List<Path> segments = listSegments(logPath, query.getSince(), query.getUntil(), userId, userEmail);
+        Collections.reverse(segments);
+        try {
+            return new AuditSegmentPager(segments, new AuditLineScanner(userId, userEmail, query.getActions()), filter, cutoff, pageSize)
+                    .read(position);
         } catch (IOException e) {
-            log.error("FileAuditLogQueryService.findByUser: Error reading audit log file", e);
-            return Collections.emptyList();
+            log.error("FileAuditLogQueryService.findPage: Error reading audit log file {}", logPath, e);
+            return AuditEventPage.empty();
+        }
+    }
+
+    /**
+     * Returns newest-first events in the order the query asks for.
+     */
+    private static List<AuditEventDTO> inOrder(List<AuditEventDTO> newestFirst, AuditQuery query) {
+        if (query.getOrder() != AuditQuery.Order.OLDEST_FIRST) {
+            return newestFirst;
+        }
+        List<AuditEventDTO> oldestFirst = new ArrayList<>(newestFirst);
+        Collections.reverse(oldestFirst);
+        return oldestFirst;
+    }
+
+    /**
+     * Reads every line of a segment, newest first where the segment allows it.
+     *
+     * @param segment the segment
+     * @param scanner rules out lines of other users before they are decoded
+     * @param matches receives each parsed record
+     * @throws IOException if the segment cannot be read
+     */
+    private static void scanSegment(Path segment, AuditLineScanner scanner, AuditSegmentMatches matches) throws IOException {
+        if (segment.getFileName().toString().endsWith(AuditLogArchiver.GZIP_SUFFIX)) {
+            scanCompressedSegment(segment, scanner, matches);
+        } else {
+            scanSegmentBackwards(segment, scanner, matches);
+        }
+    }
+
+    /**
+     * Reads a plain segment from its end.
+     *
+     * @param segment the segment
+     * @param scanner rules out lines of other users before they are decoded
+     * @param matches receives each parsed record, newest first
+     * @throws IOException if the segment cannot be read
+     */
+    private static void scanSegmentBackwards(Path segment, AuditLineScanner scanner, AuditSegmentMatches matches) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            AuditLogReverseReader reader = new AuditLogReverseReader(channel);
+            AuditTimestampParser timestamps = new AuditTimestampParser();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!offerLine(line, scanner, timestamps, matches)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams a gzip-compressed archive forward, keeping only its last matches, and hands those on newest first.
+     *
+     * @param segment the archive
+     * @param scanner rules out lines of other users before they are decoded
+     * @param matches receives the archive's matches, newest first
+     * @throws IOException if the archive cannot be read
+     */
+    private static void scanCompressedSegment(Path segment, AuditLineScanner scanner, AuditSegmentMatches matches) throws IOException {
+        AuditSegmentMatches.Window window = matches.newWindow();
+        AuditTimestampParser timestamps = new AuditTimestampParser();
+        try (BufferedReader reader = openSegment(segment); Stream<String> lines = reader.lines()) {
+            lines.forEach(line -> {
+                if (scanner.mayMatch(line)) {
+                    window.add(parseLine(line, timestamps));
+                } else if (matches.needsTimestamps()) {
+                    window.skip(AuditLineScanner.timestampMillis(line, timestamps));
+                }
+            });
         }
+        window.drain();
+    }
 
-        // Sort only the bounded window by timestamp descending (newest first).
-        return window.stream()
-                .sorted(Comparator.comparing(AuditEventDTO::getTimestamp,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .collect(Collectors.toList());
+    /**
+     * Hands the next older line to the matches. The line is decoded only if the scanner cannot rule it out; otherwise at most its
+     * timestamp is read, for the {@code since} cutoff.
+     *
+     * @param line the line
+     * @param scanner rules out lines of other users
+     * @param timestamps the timestamp parser of the segment being read
+     * @param matches receives the line's record
+     * @return {@code false} once no older record can change the result
+     */
+    static boolean offerLine(String line, AuditLineScanner scanner, AuditTimestampParser timestamps, AuditSegmentMatches matches) {
+        if (scanner.mayMatch(line)) {
+            return matches.offer(parseLine(line, timestamps));
+        }
+        return matches.skip(matches.needsTimestamps() ? AuditLineScanner.timestampMillis(line, timestamps) : AuditLineScanner.NO_TIMESTAMP);
+    }
+
+    /**
+     * Reads a user's records from the active file through its {@link AuditUserIndex}, newest first: the lines after the last indexed
+     * record, which the writer has not indexed yet, then the lines at the user's indexed offsets from the last to the first.
+     *
+     * @param logPath the active log file
+     * @param userEmail the user's email, or {@code null}
+     * @param userId the user's id, or {@code null}
+     * @param scanner rules out lines of other users, which key hash collisions and the unindexed tail bring in
+     * @param matches receives each parsed record
+     * @return {@code false} if there is no usable index and the file has to be scanned instead
+     * @throws IOException if the file cannot be read
+     */
+    private boolean readIndexed(Path logPath, String userEmail, String userId, AuditLineScanner scanner, AuditSegmentMatches matches)
+            throws IOException {
+        AuditUserIndex.Reader index = userIndexes.computeIfAbsent(AuditUserIndex.pathFor(logPath.toString()), AuditUserIndex.Reader::new);
+        if (!index.refresh()) {
+            return false;
+        }
+        List<Integer> keys = new ArrayList<>(2);
+        if (userId != null) {
+            keys.add(AuditUserIndex.idHash(userId));
+        }
+        if (userEmail != null) {
+            keys.add(AuditUserIndex.emailHash(userEmail));
+        }
+        long[] offsets = index.offsetsFor(keys.stream().mapToInt(Integer::intValue).toArray());
+        long lastIndexed = index.lastOffset();
+        AuditTimestampParser timestamps = new AuditTimestampParser();
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            long tailStart = lastIndexed < 0 ? 0L : AuditUserIndex.scanLines(channel, lastIndexed, false, (offset, line) -> false);
+            if (tailStart == lastIndexed) {
+                tailStart = channel.size(); // the indexed line is not complete yet
+            }
+            AuditLogReverseReader tail = new AuditLogReverseReader(channel, channel.size(), AuditLogReverseReader.DEFAULT_CHUNK_BYTES);
+            String line;
+            while ((line = tail.readLine()) != null && tail.lineOffset() >= tailStart) {
+                if (!offerLine(line, scanner, timestamps, matches)) {
+                    return true;
+                }
+            }
+            for (int i = offsets.length - 1; i >= 0; i--) {
+                line = AuditUserIndex.readLineAt(channel, offsets[i]);
+                if (line != null && !offerLine(line, scanner, timestamps, matches)) {
+                    return true;
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -181,104 +413,155 @@ public class FileAuditLogQueryService implements AuditLogQueryService {
     }
 
     /**
-     * Parses a single line from the audit log file.
-     *
-     * <p><b>Note:</b> {@code FileAuditLogWriter} sanitizes each field (stripping CR/LF and the {@code |}
-     * delimiter) before writing, so records produced by this library always have exactly ten fields on a
-     * single line. The defensive rejoin below remains only to tolerate pre-existing log files written before
-     * that sanitization, or files produced by other tooling. A structured format (JSON lines) is still the
-     * better long-term choice for deployments that ingest fully untrusted audit input.
+     * Lists the segments a query has to read, oldest first: the retained archives from {@code <name>.N} down to
+     * {@code <name>.1} (plain or {@code .gz}), then the active file. Archives whose manifest entry shows they end before
+     * {@code since} or start at or after {@code until}, and archives whose {@link AuditSegmentBloomFilter} shows they hold no
+     * record of the user, are left out.
      *
-     * @param line the line to parse
-     * @return the parsed AuditEventDTO, or null if parsing fails
+     * @param logPath the active log file
+     * @param since optional lower bound of the query window
+     * @param until optional upper bound (exclusive) of the query window
+     * @param userId the user's id, or {@code null}
+     * @param userEmail the user's email, or {@code null}
+     * @return the segments to read, in append order
      */
-    private AuditEventDTO parseLine(String line) {
-        if (line == null || line.isBlank()) {
-            return null;
+    private List<Path> listSegments(Path logPath, Instant since, Instant until, String userId, String userEmail) {
+        List<Path> segments = new ArrayList<>();
+        Path directory = logPath.toAbsolutePath().getParent();
+        String baseName = logPath.getFileName().toString();
+        if (directory != null) {
+            AuditSegmentManifest manifest = AuditSegmentManifest.load(AuditSegmentManifest.pathFor(logPath.toString()));
+            TreeMap<Integer, Path> archives = new TreeMap<>(Comparator.reverseOrder());
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, baseName + ".*")) {
+                for (Path path : stream) {
+                    int index = archiveIndex(path.getFileName().toString(), baseName);
+                    AuditSegmentManifest.Segment entry = index > 0 ? unchangedEntry(path, manifest) : null;
+                    if (index > 0
+                            && (entry == null || mayOverlap(entry, since, until) && mayHoldUser(logPath, entry, userId, userEmail))) {
+                        archives.put(index, path);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("FileAuditLogQueryService.listSegments: Could not list audit log archives in {}: {}", directory,
+                        e.getMessage());
+            }
+            segments.addAll(archives.values());
+            forgetFilters(logPath, manifest);
         }
+        segments.add(logPath);
+        return segments;
+    }
 
-        String[] parts = line.split("\\|", -1); // -1 to keep trailing empty strings
-        if (parts.length < 10) {
-            log.debug("FileAuditLogQueryService.parseLine: Invalid line format, expected 10 fields but got {}: {}",
-                    parts.length, line);
-            return null;
+    /**
+     * Returns the archive number of {@code <baseName>.N} or {@code <baseName>.N.gz}, or {@code -1} for any other file
+     * (the manifest, pending segments, temporary files).
+     */
+    private static int archiveIndex(String fileName, String baseName) {
+        String suffix = fileName.substring(baseName.length() + 1);
+        if (suffix.endsWith(AuditLogArchiver.GZIP_SUFFIX)) {
+            suffix = suffix.substring(0, suffix.length() - AuditLogArchiver.GZIP_SUFFIX.length());
         }
-
-        // Defensive: If more than 10 fields exist due to unescaped pipes in message,
-        // join the extra parts back into the message field
-        if (parts.length > 10) {
-            log.debug("FileAuditLogQueryService.parseLine: Line has {} fields (expected 10), " +
-                    "likely due to unescaped pipes in message content", parts.length);
-            // Join parts[7] through parts[parts.length-3] as the message
-            StringBuilder messageBuilder = new StringBuilder(parts[7]);
-            for (int i = 8; i < parts.length - 2; i++) {
-                messageBuilder.append("|").append(parts[i]);
-            }
-            parts[7] = messageBuilder.toString();
-            // Shift the last two fields (userAgent and extraData) to their expected positions
-            parts[8] = parts[parts.length - 2];
-            parts[9] = parts[parts.length - 1];
+        if (suffix.isEmpty() || suffix.length() > 9 || !suffix.chars().allMatch(Character::isDigit)) {
+            return -1;
         }
+        return Integer.parseInt(suffix);
+    }
 
+    /**
+     * Returns the manifest entry of an archive if its size still matches the file on disk. Only an archive with such an entry can be
+     * ruled out; anything else is read.
+     */
+    private static AuditSegmentManifest.Segment unchangedEntry(Path archive, AuditSegmentManifest manifest) {
+        AuditSegmentManifest.Segment entry = manifest.findByFileName(archive.getFileName().toString());
+        if (entry == null) {
+            return null;
+        }
         try {
-            return AuditEventDTO.builder()
-                    .timestamp(parseTimestamp(parts[0]))
-                    .action(nullIfEmpty(parts[1]))
-                    .actionStatus(nullIfEmpty(parts[2]))
-                    .userId(nullIfEmpty(parts[3]))
-                    .userEmail(nullIfEmpty(parts[4]))
-                    .ipAddress(nullIfEmpty(parts[5]))
-                    .sessionId(nullIfEmpty(parts[6]))
-                    .message(nullIfEmpty(parts[7]))
-                    .userAgent(nullIfEmpty(parts[8]))
-                    .extraData(nullIfEmpty(parts[9]))
-                    .build();
-        } catch (Exception e) {
-            log.debug("FileAuditLogQueryService.parseLine: Error parsing line: {}", line, e);
+            return Files.size(archive) == entry.byteSize() ? entry : null;
+        } catch (IOException e) {
             return null;
         }
     }
 
     /**
-     * Parses a timestamp string from the log file.
-     *
-     * @param dateStr the date string to parse
-     * @return the parsed Instant, or null if parsing fails
+     * Returns whether an archive may hold records at or after {@code since} and before {@code until}.
      */
-    private Instant parseTimestamp(String dateStr) {
-        if (dateStr == null || dateStr.isBlank() || "null".equals(dateStr)) {
-            return null;
+    private static boolean mayOverlap(AuditSegmentManifest.Segment entry, Instant since, Instant until) {
+        return (since == null || entry.mayContainSince(since.toEpochMilli()))
+                && (until == null || entry.mayContainBefore(until.toEpochMilli()));
+    }
+
+    /**
+     * Returns whether an archive may hold records of the user, according to its {@link AuditSegmentBloomFilter}. An archive without a
+     * filter may.
+     */
+    private boolean mayHoldUser(Path logPath, AuditSegmentManifest.Segment entry, String userId, String userEmail) {
+        if (userId == null && userEmail == null) {
+            return true;
         }
+        Path filterPath = AuditSegmentBloomFilter.pathFor(logPath.toString(), entry.sequence());
+        AuditSegmentBloomFilter filter = segmentFilters.computeIfAbsent(filterPath, AuditSegmentBloomFilter::load);
+        return filter == null || filter.mightContainUser(userId, userEmail);
+    }
 
-        // Try each formatter - first as ZonedDateTime, then as LocalDateTime
-        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
-            // Try parsing as ZonedDateTime (for formats with timezone info)
-            try {
-                ZonedDateTime zdt = ZonedDateTime.parse(dateStr.trim(), formatter);
-                return zdt.toInstant();
-            } catch (DateTimeParseException e) {
-                // Try next approach
-            }
+    /**
+     * Drops loaded filters whose segment has left the manifest, so the cache never outgrows the retained archives.
+     */
+    private void forgetFilters(Path logPath, AuditSegmentManifest manifest) {
+        if (segmentFilters.isEmpty()) {
+            return;
+        }
+        Set<Path> retained = new HashSet<>();
+        for (AuditSegmentManifest.Segment segment : manifest.segments()) {
+            retained.add(AuditSegmentBloomFilter.pathFor(logPath.toString(), segment.sequence()));
+        }
+        segmentFilters.keySet().removeIf(path -> !retained.contains(path));
+    }
 
-            // Try parsing as LocalDateTime (for formats without timezone info like MessageFormat output)
+    /**
+     * Opens a segment for reading, decompressing {@code .gz} archives.
+     *
+     * @param segment the segment to open
+     * @return a UTF-8 reader over the segment's lines
+     * @throws IOException if the segment cannot be opened
+     */
+    private static BufferedReader openSegment(Path segment) throws IOException {
+        if (segment.getFileName().toString().endsWith(AuditLogArchiver.GZIP_SUFFIX)) {
+            InputStream in = Files.newInputStream(segment);
             try {
-                LocalDateTime ldt = LocalDateTime.parse(dateStr.trim(), formatter);
-                return ldt.atZone(ZoneId.systemDefault()).toInstant();
-            } catch (DateTimeParseException e) {
-                // Try next formatter
+                return new BufferedReader(new InputStreamReader(new GZIPInputStream(in), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                in.close(); // not a valid gzip stream
+                throw e;
             }
         }
+        return Files.newBufferedReader(segment, StandardCharsets.UTF_8);
+    }
 
-        // Try parsing as epoch millis
-        try {
-            long epochMillis = Long.parseLong(dateStr.trim());
-            return Instant.ofEpochMilli(epochMillis);
-        } catch (NumberFormatException e) {
-            // Not a number
-        }
+    /**
+     * Parses a single line from the audit log file with the codec matching its format. Header, blank and
+     * malformed lines yield {@code null}.
+     *
+     * @param line the line to parse
+     * @return the parsed AuditEventDTO, or null if the line is not a record
+     */
+    static AuditEventDTO parseLine(String line) {
+        return parseLine(line, new AuditTimestampParser());
+    }
 
-        log.debug("FileAuditLogQueryService.parseTimestamp: Could not parse date: {}", dateStr);
-        return null;
+    /**
+     * Parses a single line of a segment, reading pipe-delimited timestamps with the segment's parser so their format is detected
+     * once per segment.
+     *
+     * @param line the line to parse
+     * @param timestamps the timestamp parser of the segment being read
+     * @return the parsed AuditEventDTO, or null if the line is not a record
+     */
+    static AuditEventDTO parseLine(String line, AuditTimestampParser timestamps) {
+        if (NDJSON_CODEC.canDecode(line)) {
+            return NDJSON_CODEC.decode(line);
+        }
+        return PIPE_CODEC.decode(line, timestamps);
     }
 
     /**
@@ -289,7 +572,7 @@ public class FileAuditLogQueryService implements AuditLogQueryService {
      * @param userId the user's ID
      * @return true if the event matches the user
      */
-    private boolean matchesUser(AuditEventDTO event, String userEmail, String userId) {
+    private static boolean matchesUser(AuditEventDTO event, String userEmail, String userId) {
         // Match by email
         if (userEmail != null && userEmail.equalsIgnoreCase(event.getUserEmail())) {
             return true;
@@ -303,14 +586,4 @@ public class FileAuditLogQueryService implements AuditLogQueryService {
         return false;
     }
 
-    /**
-     * Returns null if the string is empty or "null".
-     */
-    private String nullIfEmpty(String value) {
-        if (value == null || value.isBlank() || "null".equals(value)) {
-            return null;
-        }
-        return value.trim();
-    }
-
 }
@@ -3,12 +3,19 @@ package com.digitalsanctuary.spring.user.audit;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.file.Files;
-import java.nio.file.OpenOption;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
-import java.text.MessageFormat;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import org.springframework.util.StringUtils;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -20,11 +27,35 @@ import lombok.extern.slf4j.Slf4j;
  * <p>This component manages the complete lifecycle of the audit log file, including:
  * <ul>
  *   <li>Opening and creating the log file on startup ({@code @PostConstruct})</li>
- *   <li>Writing formatted audit events with pipe-delimited fields</li>
+ *   <li>Writing audit events one record per line, encoded by the configured {@link AuditRecordCodec}</li>
  *   <li>Periodic buffer flushing via {@link FileAuditLogFlushScheduler}</li>
  *   <li>Graceful cleanup on shutdown ({@code @PreDestroy})</li>
  * </ul>
  *
+ * <p><strong>Record format:</strong> Each event is encoded by an {@link AuditRecordCodec}: the legacy pipe-delimited format by
+ * default, or NDJSON with {@code user.audit.logFormat=ndjson}. The codec appends into a single reused
+ * {@link StringBuilder}, which is then copied into a reused {@code char[]} and handed to the {@link BufferedWriter}, so the
+ * steady-state write path allocates no per-event strings.
+ *
+ * <p><strong>Async mode:</strong> By default {@link #writeRecord(AuditRecord)} formats and writes the record on the calling
+ * thread while holding the writer's monitor. With {@code user.audit.asyncWrite=true} the calling thread instead appends the
+ * event to a bounded, lock-free {@link AuditRingBuffer} and returns immediately; a single dedicated writer thread drains the
+ * buffer and writes each drained batch under the monitor, flushing once per batch when {@code flushOnWrite} is enabled
+ * (group commit). Producers therefore never block on file I/O or on each other. If the buffer is full the event is dropped
+ * and counted (see {@link #getDroppedEventCount()}) rather than stalling the caller. {@link FileAuditLogFlushScheduler}
+ * behaves the same in both modes: it flushes whatever the writer has written so far.
+ *
+ * <p><strong>Durability:</strong> The file is written through an {@link AuditFileChannelWriter}, which encodes into a direct
+ * buffer and appends to a {@link java.nio.channels.FileChannel}. Flushing only hands records to the operating system; the
+ * configured {@link AuditDurabilityPolicy} decides when the channel is additionally forced to the storage device
+ * ({@code force(false)}): never, on a background interval, every N events, or after every write batch. The active file is
+ * always forced before it is closed or rotated when a policy other than {@link AuditDurabilityPolicy#NONE} is configured.
+ *
+ * <p><strong>Rotation:</strong> The active file is rotated when it exceeds {@code user.audit.maxFileSizeMb} or crosses a
+ * {@code user.audit.rollingInterval} boundary. Under the monitor, rotation only closes the file, renames it to a pending
+ * segment and opens a fresh active file; compression and the {@code maxFiles} retention shuffle run afterwards on the
+ * {@link AuditLogArchiver}'s background thread, so producers never wait for archive maintenance.
+ *
  * <p>If the configured log path is not writable, the writer falls back to a temporary
  * directory location.
  *
@@ -38,23 +69,46 @@ import lombok.extern.slf4j.Slf4j;
  * @see AuditMailAutoConfiguration
  */
 @Slf4j
-public class FileAuditLogWriter implements AuditLogWriter {
+public class FileAuditLogWriter implements AuditRecordWriter {
 
     private final AuditConfig auditConfig;
     private BufferedWriter bufferedWriter;
 
+    /** The channel-backed writer underneath {@link #bufferedWriter}; used to force written records to disk. */
+    private AuditFileChannelWriter channelWriter;
+
+    /** Encodes each event as one line. Supplied by the constructor or resolved from {@code user.audit.logFormat} in {@link #setup()}. */
+    private AuditRecordCodec codec;
+
+    /** Reused encode buffer; only touched while holding the monitor. */
+    private final StringBuilder lineBuffer = new StringBuilder(256);
+
+    /** Reused copy of {@link #lineBuffer} passed to the writer; grown on demand, only touched while holding the monitor. */
+    private char[] lineChars = new char[256];
+
     /** Absolute/relative path of the currently-open active log file (set by {@link #tryOpenLogFile}). */
     private String activeFilePath;
 
     /**
-     * Approximate number of bytes written to the active log file since it was opened. Tracked
-     * incrementally (rather than calling {@code Files.size} on every write) to keep the hot write path
-     * cheap. The estimate uses {@link String#length()} as a byte approximation; this is sufficient for a
-     * size-based rotation trigger and intentionally avoids per-write {@code stat} syscalls. Resets on open
-     * and rotation.
+     * Size of the active log file in bytes, including records still in the write buffers. Tracked incrementally
+     * from the UTF-8 length of each line (rather than calling {@code Files.size} on every write) to keep the hot
+     * write path cheap, and exact, so it doubles as the byte offset of the next record for the
+     * {@link AuditUserIndex}. Seeded from the file size on open; resets on rotation.
      */
     private long currentFileBytes = 0L;
 
+    /** UTF-8 length of the line separator written by {@link BufferedWriter#newLine()}. */
+    private static final int LINE_SEPARATOR_BYTES = System.lineSeparator().length();
+
+    /** Appends the byte offset of each record to the {@link AuditUserIndex}; {@code null} when the index is disabled or failed. */
+    private AuditUserIndex.Appender userIndex;
+
+    /** Receives each record once it is appended; {@code null} when recent activity is not cached. */
+    private final AuditRecentActivityCache recentActivityCache;
+
+    /** Counts each record once it is appended; {@code null} when this writer does not feed the rollups. */
+    private final AuditRollups rollups;
+
     /**
      * Effective rotation threshold in bytes, derived from {@link AuditConfig#getMaxFileSizeMb()} at open
      * time. A value {@code <= 0} disables rotation. Package-private so tests can set a tiny threshold
@@ -65,13 +119,124 @@ public class FileAuditLogWriter implements AuditLogWriter {
     /** When true, {@link #maxFileSizeBytes} was set via the test hook and must not be overwritten on (re)open. */
     private boolean maxFileSizeBytesOverridden = false;
 
+    /** Default ring buffer capacity used when {@link AuditConfig#getAsyncBufferSize()} is not positive. */
+    static final int DEFAULT_ASYNC_BUFFER_SIZE = 8192;
+
+    /** Default group-commit batch size used when {@link AuditConfig#getAsyncBatchSize()} is not positive. */
+    static final int DEFAULT_ASYNC_BATCH_SIZE = 256;
+
+    /** How long the idle writer thread parks before re-checking the buffer when no producer has woken it. */
+    private static final long WRITER_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** How long {@link #cleanup()} waits for the writer thread to drain the buffer before giving up. */
+    private static final long WRITER_SHUTDOWN_TIMEOUT_MILLIS = 5000L;
+
+    /** The async hand-off buffer; {@code null} unless async mode is active. */
+    private volatile AuditRingBuffer<AuditRecord> ringBuffer;
+
+    /** The dedicated writer thread that drains {@link #ringBuffer}; {@code null} unless async mode is active. */
+    private Thread writerThread;
+
+    /** Keeps the writer thread looping; cleared by {@link #stopAsyncWriter()}. */
+    private volatile boolean writerRunning;
+
+    /** Number of events dropped because the async buffer was full. */
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    /** Default force interval used when {@link AuditConfig#getDurabilityIntervalMs()} is not positive. */
+    static final long DEFAULT_DURABILITY_INTERVAL_MS = 1000L;
+
+    /** Default event count used when {@link AuditConfig#getDurabilityEveryNEvents()} is not positive. */
+    static final int DEFAULT_DURABILITY_EVERY_N_EVENTS = 100;
+
+    /** The effective durability policy, resolved in {@link #setup()}. */
+    private AuditDurabilityPolicy durabilityPolicy = AuditDurabilityPolicy.NONE;
+
+    /** Effective event count for {@link AuditDurabilityPolicy#EVERY_N_EVENTS}, resolved in {@link #setup()}. */
+    private int durabilityEveryNEvents = DEFAULT_DURABILITY_EVERY_N_EVENTS;
+
+    /** Events appended since the file was last forced. Only touched while holding the monitor. */
+    private long eventsSinceSync;
+
+    /** Set when records have been written that the {@link AuditDurabilityPolicy#INTERVAL} timer has not forced yet. */
+    private volatile boolean syncPending;
+
+    /** Background timer for {@link AuditDurabilityPolicy#INTERVAL}; {@code null} for every other policy. */
+    private ScheduledExecutorService syncTimer;
+
+    /** How long {@link #cleanup()} waits for queued archive work (compression, retention) to finish. */
+    private static final long ARCHIVER_SHUTDOWN_TIMEOUT_MILLIS = 30_000L;
+
+    /** The effective time-based rolling interval, resolved in {@link #setup()}. */
+    private AuditRollingInterval rollingInterval = AuditRollingInterval.NONE;
+
+    /** Epoch millis of the next time-based rolling boundary; {@link Long#MAX_VALUE} when time-based rolling is off. */
+    private long nextRollAtMillis = Long.MAX_VALUE;
+
+    /** Whether the active file holds any records (as opposed to just a header); an empty file is never rolled. */
+    private boolean activeFileHasRecords;
+
+    /** Compresses and retains rotated segments in the background; created on first use for the active path. */
+    private AuditLogArchiver archiver;
+
     /**
-     * Constructs the writer with the audit configuration it depends on.
+     * Whether the record statistics below describe the whole active file. {@code false} when the file was appended to across a
+     * restart, in which case the earliest timestamp and the record count are unknown.
+     */
+    private boolean activeStatsComplete;
+
+    /** Records appended to the active file since it was opened. */
+    private long activeRecordCount;
+
+    /** Earliest and latest record timestamps (epoch millis) appended to the active file since it was opened. */
+    private long activeFirstTimestamp = Long.MAX_VALUE;
+    private long activeLastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Constructs the writer with the audit configuration it depends on. The record format is taken from
+     * {@code user.audit.logFormat}.
      *
      * @param auditConfig the audit configuration properties
      */
     public FileAuditLogWriter(AuditConfig auditConfig) {
+        this(auditConfig, null);
+    }
+
+    /**
+     * Constructs the writer with an explicit record codec.
+     *
+     * @param auditConfig the audit configuration properties
+     * @param codec the codec used to encode each record, or {@code null} to use {@code user.audit.logFormat}
+     */
+    public FileAuditLogWriter(AuditConfig auditConfig, AuditRecordCodec codec) {
+        this(auditConfig, codec, null);
+    }
+
+    /**
+     * Constructs the writer with an explicit record codec and a cache of each user's recent records.
+     *
+     * @param auditConfig the audit configuration properties
+     * @param codec the codec used to encode each record, or {@code null} to use {@code user.audit.logFormat}
+     * @param recentActivityCache receives each record once it is appended, or {@code null}
+     */
+    public FileAuditLogWriter(AuditConfig auditConfig, AuditRecordCodec codec, AuditRecentActivityCache recentActivityCache) {
+        this(auditConfig, codec, recentActivityCache, null);
+    }
+
+    /**
+     * Constructs the writer with an explicit record codec, a cache of each user's recent records and the per-minute rollups.
+     *
+     * @param auditConfig the audit configuration properties
+     * @param codec the codec used to encode each record, or {@code null} to use {@code user.audit.logFormat}
+     * @param recentActivityCache receives each record once it is appended, or {@code null}
+     * @param rollups counts each record once it is appended, or {@code null}
+     */
+    public FileAuditLogWriter(AuditConfig auditConfig, AuditRecordCodec codec, AuditRecentActivityCache recentActivityCache,
+            AuditRollups rollups) {
         this.auditConfig = auditConfig;
+        this.codec = codec;
+        this.recentActivityCache = recentActivityCache;
+        this.rollups = rollups;
     }
 
     /**
@@ -96,7 +261,28 @@ public class FileAuditLogWriter implements AuditLogWriter {
         if (!validateConfig()) {
             return;
         }
+        if (codec == null) {
+            codec = AuditLogFormat.codecFor(auditConfig.getLogFormat());
+        }
+        if (auditConfig.getDurabilityPolicy() != null) {
+            durabilityPolicy = auditConfig.getDurabilityPolicy();
+        }
+        if (auditConfig.getDurabilityEveryNEvents() > 0) {
+            durabilityEveryNEvents = auditConfig.getDurabilityEveryNEvents();
+        }
+        if (auditConfig.getRollingInterval() != null) {
+            rollingInterval = auditConfig.getRollingInterval();
+        }
         openLogFile();
+        if (activeFilePath != null && (maxFileSizeBytes > 0 || rollingInterval != AuditRollingInterval.NONE)) {
+            archiver(activeFilePath).recoverPending();
+        }
+        if (bufferedWriter != null && auditConfig.isAsyncWrite() && writerThread == null) {
+            startAsyncWriter();
+        }
+        if (bufferedWriter != null && durabilityPolicy == AuditDurabilityPolicy.INTERVAL && syncTimer == null) {
+            startSyncTimer();
+        }
     }
 
     /**
@@ -105,57 +291,154 @@ public class FileAuditLogWriter implements AuditLogWriter {
      */
     @PreDestroy
     @Override
-    public synchronized void cleanup() {
-        log.info("FileAuditLogWriter.cleanup: Closing log file.");
-        closeLogFile();
+    public void cleanup() {
+        // Stop the writer thread first, without holding the monitor: it needs the monitor to write its final batches.
+        stopAsyncWriter();
+        stopSyncTimer();
+        AuditLogArchiver pendingArchiver;
+        synchronized (this) {
+            log.info("FileAuditLogWriter.cleanup: Closing log file.");
+            closeLogFile();
+            pendingArchiver = archiver;
+            archiver = null;
+        }
+        if (pendingArchiver != null) {
+            pendingArchiver.shutdown(ARCHIVER_SHUTDOWN_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Returns the total size of the {@link AuditSegmentBloomFilter}s of the archived segments, as of the last archived segment.
+     *
+     * @return the size in bytes; {@code 0} when rotation is disabled or no filters are built
+     */
+    public long getSegmentFilterBytes() {
+        AuditLogArchiver current;
+        synchronized (this) {
+            current = archiver;
+        }
+        return current != null ? current.getFilterBytes() : 0L;
+    }
+
+    /**
+     * Test-only hook that waits until every rotated segment handed to the background archiver so far has been compressed and
+     * moved into place. Not part of the public API.
+     *
+     * @param timeoutMillis the maximum time to wait
+     * @return {@code true} if archiving finished in time (or nothing was ever rotated)
+     */
+    boolean awaitArchivingForTesting(long timeoutMillis) {
+        AuditLogArchiver current;
+        synchronized (this) {
+            current = archiver;
+        }
+        return current == null || current.awaitIdle(timeoutMillis, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Writes an audit event to the log file. The event data is formatted and written as a single line. If the buffered writer is not initialized, an
-     * error is logged.
+     * Writes an audit record to the log file as a single line. If the buffered writer is not initialized, an error is logged.
+     *
+     * <p>In async mode the record is only handed to the ring buffer here; the dedicated writer thread performs the actual write.
      *
-     * @param event the audit event to write
+     * @param record the audit record to write
      */
     @Override
-    public synchronized void writeLog(AuditEvent event) {
-        if (bufferedWriter == null) {
-            log.error("FileAuditLogWriter.writeLog: BufferedWriter is not initialized.");
+    public void writeRecord(AuditRecord record) {
+        if (record == null) {
             return;
         }
-        try {
-            // Null-safe extraction of user ID and email
-            String userId = null;
-            String userEmail = null;
-            
-            if (event.getUser() != null) {
-                Long id = event.getUser().getId();
-                userId = (id != null) ? id.toString() : null;
-                userEmail = event.getUser().getEmail();
+        AuditRingBuffer<AuditRecord> buffer = ringBuffer;
+        if (buffer != null) {
+            enqueue(buffer, record);
+            return;
+        }
+        synchronized (this) {
+            if (bufferedWriter == null) {
+                log.error("FileAuditLogWriter.writeRecord: BufferedWriter is not initialized.");
+                return;
             }
-            
-            // If no user ID available, use email or "unknown" for the userId field
-            if (userId == null) {
-                if (userEmail != null) {
-                    userId = userEmail;  // Use email as identifier when ID is null
-                } else {
-                    userId = "unknown";  // Fallback when both are null
+            appendEvent(record);
+            afterWrite(1);
+        }
+    }
+
+    /**
+     * Writes several records. In synchronous mode they are appended under one lock acquisition and flushed (with {@code flushOnWrite})
+     * once for the whole batch; in async mode each is handed to the ring buffer.
+     *
+     * @param records the audit records to write, in order
+     */
+    @Override
+    public void writeRecords(List<AuditRecord> records) {
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        AuditRingBuffer<AuditRecord> buffer = ringBuffer;
+        if (buffer != null) {
+            for (AuditRecord record : records) {
+                if (record != null) {
+                    enqueue(buffer, record);
                 }
             }
-            
-            // Sanitize every text field before writing it into the pipe-delimited, line-oriented record.
-            // Fields such as user-agent, message, email and extra data can be attacker-influenced; an embedded
-            // newline would forge a fake record and an embedded pipe would shift columns. Stripping CR/LF and the
-            // delimiter guarantees each record stays on one line with exactly ten fields. The date is rendered by
-            // MessageFormat (no user content) so the query-service timestamp parser remains compatible.
-            String output = MessageFormat.format("{0}|{1}|{2}|{3}|{4}|{5}|{6}|{7}|{8}|{9}", event.getDate(),
-                    sanitizeField(event.getAction()), sanitizeField(event.getActionStatus()), sanitizeField(userId),
-                    sanitizeField(userEmail), sanitizeField(event.getIpAddress()), sanitizeField(event.getSessionId()),
-                    sanitizeField(event.getMessage()), sanitizeField(event.getUserAgent()), sanitizeField(event.getExtraData()));
-            bufferedWriter.write(output);
-            bufferedWriter.newLine();
-            currentFileBytes += output.length() + 1L; // +1 approximates the newline
-            if (auditConfig.isFlushOnWrite()) {
-                bufferedWriter.flush();
+            return;
+        }
+        writeBatch(records.stream().filter(Objects::nonNull).toList());
+    }
+
+    /**
+     * Returns the number of events dropped because the async ring buffer was full. Always {@code 0} in synchronous mode.
+     *
+     * @return the dropped event count since startup
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Hands a record to the async writer thread. Never blocks: when the buffer is full the record is dropped and counted, so a
+     * stalled disk can never back up into request or listener threads.
+     *
+     * @param buffer the active ring buffer
+     * @param record the record to enqueue
+     */
+    private void enqueue(AuditRingBuffer<AuditRecord> buffer, AuditRecord record) {
+        if (buffer.offer(record)) {
+            LockSupport.unpark(writerThread);
+            return;
+        }
+        long dropped = droppedEvents.incrementAndGet();
+        if (dropped == 1 || dropped % 1000 == 0) {
+            log.warn("FileAuditLogWriter.writeRecord: Async audit buffer is full (capacity {}); {} event(s) dropped so far.",
+                    buffer.capacity(), dropped);
+        }
+    }
+
+    /**
+     * Encodes and appends one record to the active file, applying time-based rolling before and size-based rotation after the
+     * write. Must be called while holding the monitor with an open {@link #bufferedWriter}. Does not flush; callers decide
+     * whether to flush per event or per batch.
+     *
+     * @param record the audit record to write
+     */
+    private void appendEvent(AuditRecord record) {
+        try {
+            if (nextRollAtMillis != Long.MAX_VALUE) {
+                rollIfDue();
+            }
+            lineBuffer.setLength(0);
+            codec.encode(record, lineBuffer);
+            long offset = currentFileBytes;
+            writeLineBuffer();
+            currentFileBytes += utf8Length(lineBuffer) + LINE_SEPARATOR_BYTES;
+            activeFileHasRecords = true;
+            trackRecord(record);
+            indexRecord(record, offset);
+            if (recentActivityCache != null) {
+                // As the query service will read it back, without re-parsing the line just written
+                recentActivityCache.record(codec.decodedForm(record));
+            }
+            if (rollups != null) {
+                rollups.record(record);
             }
             rotateIfNeeded();
         } catch (IOException e) {
@@ -166,21 +449,132 @@ public class FileAuditLogWriter implements AuditLogWriter {
         }
     }
 
+    /**
+     * Adds a record to the {@link AuditUserIndex}. A failing index is disabled and deleted, so queries fall back to scanning the
+     * file rather than trusting an index with gaps.
+     *
+     * @param record the record just appended
+     * @param offset the byte offset of its line
+     */
+    private void indexRecord(AuditRecord record, long offset) {
+        if (userIndex == null) {
+            return;
+        }
+        try {
+            userIndex.append(record, offset);
+        } catch (IOException e) {
+            disableUserIndex(e);
+        }
+    }
+
+    /**
+     * Writes the buffered {@link AuditUserIndex} entries. Called after the log itself has been flushed, so the index never gets
+     * ahead of what readers can see in the log. Must be called while holding the monitor.
+     */
+    private void flushUserIndex() {
+        if (userIndex == null) {
+            return;
+        }
+        try {
+            userIndex.flush();
+        } catch (IOException e) {
+            disableUserIndex(e);
+        }
+    }
+
+    /**
+     * Closes and deletes the {@link AuditUserIndex} after a failure. It is rebuilt when the file is next opened.
+     */
+    private void disableUserIndex(IOException cause) {
+        log.error("FileAuditLogWriter.userIndex: Disabling the audit user index of {}: {}", activeFilePath, cause.getMessage(), cause);
+        closeUserIndex();
+        AuditUserIndex.delete(activeFilePath);
+    }
 
     /**
-     * Sanitizes a single field for the pipe-delimited, line-oriented audit format by removing CR, LF and the
-     * {@code |} delimiter (each replaced with a single space). This prevents log forging (an injected newline
-     * starting a fake record) and field corruption (an injected delimiter shifting columns) from
-     * attacker-influenced values such as the user agent, message, email, or extra data.
+     * Opens the {@link AuditUserIndex} of the just-opened active file, bringing it up to date with the file's content.
+     */
+    private void openUserIndex(String filePath) {
+        if (!auditConfig.isUserIndex()) {
+            AuditUserIndex.delete(filePath); // a stale index would outlive the records it describes
+            return;
+        }
+        try {
+            userIndex = AuditUserIndex.Appender.open(AuditUserIndex.pathFor(filePath), Path.of(filePath));
+        } catch (IOException | RuntimeException e) {
+            log.error("FileAuditLogWriter.setup: Could not open the audit user index of {}; queries will scan the file: {}", filePath,
+                    e.getMessage(), e);
+            AuditUserIndex.delete(filePath);
+        }
+    }
+
+    private void closeUserIndex() {
+        AuditUserIndex.Appender index = userIndex;
+        userIndex = null;
+        if (index == null) {
+            return;
+        }
+        try {
+            index.close();
+        } catch (IOException e) {
+            log.error("FileAuditLogWriter.cleanup: IOException closing the audit user index of {}", activeFilePath, e);
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@code chars} occupies in UTF-8, as {@link AuditFileChannelWriter} encodes it: a lone surrogate
+     * is replaced by a single {@code ?}.
      *
-     * @param value the raw field value (may be {@code null})
-     * @return the value with CR/LF/{@code |} replaced by spaces, or an empty string when {@code value} is null
+     * @param chars the characters
+     * @return the encoded length
      */
-    private static String sanitizeField(final Object value) {
-        if (value == null) {
-            return "";
+    static long utf8Length(CharSequence chars) {
+        long bytes = 0;
+        int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes += 1;
+            } else {
+                bytes += 3;
+            }
         }
-        return value.toString().replaceAll("[\\r\\n|]", " ");
+        return bytes;
+    }
+
+    /**
+     * Updates the active segment's record count and time range for the {@link AuditSegmentManifest}.
+     *
+     * @param record the record just appended
+     */
+    private void trackRecord(AuditRecord record) {
+        long timestamp = record.timestamp();
+        activeRecordCount++;
+        activeFirstTimestamp = Math.min(activeFirstTimestamp, timestamp);
+        activeLastTimestamp = Math.max(activeLastTimestamp, timestamp);
+    }
+
+    /**
+     * Writes the contents of {@link #lineBuffer} followed by a line separator. The buffer is copied into the reused
+     * {@link #lineChars} array rather than converted to a {@code String}. Must be called while holding the monitor.
+     *
+     * @throws IOException if the write fails
+     */
+    private void writeLineBuffer() throws IOException {
+        int length = lineBuffer.length();
+        if (lineChars.length < length) {
+            lineChars = new char[Math.max(length, lineChars.length * 2)];
+        }
+        lineBuffer.getChars(0, length, lineChars, 0);
+        bufferedWriter.write(lineChars, 0, length);
+        bufferedWriter.newLine();
     }
 
     /**
@@ -189,14 +583,233 @@ public class FileAuditLogWriter implements AuditLogWriter {
      */
     public synchronized void flushWriter() {
         if (bufferedWriter != null) {
+            if (durabilityPolicy != AuditDurabilityPolicy.NONE && (eventsSinceSync > 0 || syncPending)) {
+                syncQuietly(); // also force records a count- or timer-based policy has not forced yet
+                return;
+            }
             try {
                 bufferedWriter.flush();
+                flushUserIndex();
             } catch (IOException e) {
                 log.error("FileAuditLogWriter.flushWriter: IOException flushing buffer!", e);
             }
         }
     }
 
+    /**
+     * Applies {@code flushOnWrite} and the durability policy after {@code eventCount} events have been appended as one batch
+     * (a single event in synchronous mode). Must be called while holding the monitor.
+     *
+     * @param eventCount the number of events just appended
+     */
+    private void afterWrite(int eventCount) {
+        switch (durabilityPolicy) {
+            case EVERY_BATCH -> syncQuietly();
+            case EVERY_N_EVENTS -> {
+                eventsSinceSync += eventCount;
+                if (eventsSinceSync >= durabilityEveryNEvents) {
+                    syncQuietly();
+                } else if (auditConfig.isFlushOnWrite()) {
+                    flushQuietly();
+                }
+            }
+            case INTERVAL -> {
+                eventsSinceSync += eventCount;
+                syncPending = true;
+                if (auditConfig.isFlushOnWrite()) {
+                    flushQuietly();
+                }
+            }
+            default -> {
+                if (auditConfig.isFlushOnWrite()) {
+                    flushQuietly();
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffered writer and forces the file content to the storage device, logging rather than propagating failures.
+     * Must be called while holding the monitor.
+     */
+    private void syncQuietly() {
+        if (bufferedWriter == null) {
+            return;
+        }
+        try {
+            bufferedWriter.flush();
+            flushUserIndex();
+            if (channelWriter != null) {
+                channelWriter.force();
+            }
+            eventsSinceSync = 0;
+            syncPending = false;
+        } catch (IOException e) {
+            log.error("FileAuditLogWriter.sync: IOException forcing log file to disk: {}", auditConfig.getLogFilePath(), e);
+        }
+    }
+
+    /**
+     * Body of the {@link AuditDurabilityPolicy#INTERVAL} timer. Flushes under the monitor, then forces outside it so writers
+     * are not held up by the {@code fsync}.
+     */
+    private void syncIfPending() {
+        if (!syncPending) {
+            return;
+        }
+        AuditFileChannelWriter target;
+        synchronized (this) {
+            if (bufferedWriter == null || !syncPending) {
+                return;
+            }
+            flushQuietly();
+            eventsSinceSync = 0;
+            syncPending = false;
+            target = channelWriter;
+        }
+        if (target == null) {
+            return;
+        }
+        try {
+            target.force();
+        } catch (ClosedChannelException e) {
+            // Rotated or closed in the meantime; closeLogFile() forces before closing.
+        } catch (IOException e) {
+            log.error("FileAuditLogWriter.sync: IOException forcing log file to disk: {}", auditConfig.getLogFilePath(), e);
+        }
+    }
+
+    /**
+     * Starts the background timer for {@link AuditDurabilityPolicy#INTERVAL}.
+     */
+    private void startSyncTimer() {
+        long intervalMs = auditConfig.getDurabilityIntervalMs() > 0 ? auditConfig.getDurabilityIntervalMs() : DEFAULT_DURABILITY_INTERVAL_MS;
+        syncTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ds-audit-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncTimer.scheduleWithFixedDelay(this::syncIfPending, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("FileAuditLogWriter.setup: Audit log will be forced to disk every {} ms.", intervalMs);
+    }
+
+    /**
+     * Stops the {@link AuditDurabilityPolicy#INTERVAL} timer, if running. The final force happens in {@link #closeLogFile()}.
+     */
+    private void stopSyncTimer() {
+        ScheduledExecutorService timer = syncTimer;
+        if (timer == null) {
+            return;
+        }
+        timer.shutdown();
+        try {
+            timer.awaitTermination(WRITER_SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncTimer = null;
+    }
+
+    /**
+     * Flushes the buffered writer after a write when {@code flushOnWrite} is enabled, logging rather than propagating failures.
+     * Must be called while holding the monitor.
+     */
+    private void flushQuietly() {
+        if (bufferedWriter == null) {
+            return;
+        }
+        try {
+            bufferedWriter.flush();
+            flushUserIndex();
+        } catch (IOException e) {
+            log.error("FileAuditLogWriter.writeLog: IOException flushing log file: {}", auditConfig.getLogFilePath(), e);
+        }
+    }
+
+    /**
+     * Creates the ring buffer and starts the dedicated writer thread. Called from {@link #setup()} once the log file is open.
+     */
+    private void startAsyncWriter() {
+        int bufferSize = auditConfig.getAsyncBufferSize() > 0 ? auditConfig.getAsyncBufferSize() : DEFAULT_ASYNC_BUFFER_SIZE;
+        int batchSize = auditConfig.getAsyncBatchSize() > 0 ? auditConfig.getAsyncBatchSize() : DEFAULT_ASYNC_BATCH_SIZE;
+        AuditRingBuffer<AuditRecord> buffer = new AuditRingBuffer<>(bufferSize);
+        writerRunning = true;
+        writerThread = new Thread(() -> runWriterLoop(buffer, batchSize), "ds-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        ringBuffer = buffer;
+        log.info("FileAuditLogWriter.setup: Async audit writer started (buffer capacity {}, batch size {}).", buffer.capacity(), batchSize);
+    }
+
+    /**
+     * Stops the writer thread, letting it drain everything already buffered. Events offered after this point are written
+     * synchronously by the caller.
+     */
+    private void stopAsyncWriter() {
+        Thread thread = writerThread;
+        AuditRingBuffer<AuditRecord> buffer = ringBuffer;
+        if (thread == null || buffer == null) {
+            return;
+        }
+        ringBuffer = null;
+        writerRunning = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(WRITER_SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("FileAuditLogWriter.cleanup: Async audit writer did not finish draining within {} ms.", WRITER_SHUTDOWN_TIMEOUT_MILLIS);
+        } else {
+            // A producer that read the buffer reference just before it was cleared may have offered after the writer exited;
+            // the writer thread is gone, so this thread is now the only consumer and can write the stragglers itself.
+            List<AuditRecord> remaining = new ArrayList<>();
+            buffer.drainTo(remaining::add, Integer.MAX_VALUE);
+            if (!remaining.isEmpty()) {
+                writeBatch(remaining);
+            }
+        }
+        writerThread = null;
+    }
+
+    /**
+     * Body of the dedicated writer thread: drains up to {@code batchSize} events at a time and writes each batch under the
+     * monitor (group commit), parking briefly when the buffer is empty. Keeps draining after shutdown is requested until the
+     * buffer is empty so no accepted event is lost.
+     *
+     * @param buffer the ring buffer to drain
+     * @param batchSize the maximum number of events per batch
+     */
+    private void runWriterLoop(AuditRingBuffer<AuditRecord> buffer, int batchSize) {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        while (writerRunning || !buffer.isEmpty()) {
+            buffer.drainTo(batch::add, batchSize);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, WRITER_IDLE_PARK_NANOS);
+                continue;
+            }
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a drained batch and, when {@code flushOnWrite} is enabled, flushes once for the whole batch.
+     *
+     * @param batch the records to write, in enqueue order
+     */
+    private synchronized void writeBatch(List<AuditRecord> batch) {
+        if (bufferedWriter == null) {
+            log.error("FileAuditLogWriter.writeBatch: BufferedWriter is not initialized; {} event(s) lost.", batch.size());
+            return;
+        }
+        for (AuditRecord record : batch) {
+            appendEvent(record);
+        }
+        afterWrite(batch.size());
+    }
+
     /**
      * Validates the audit configuration to ensure it is properly set up. Logs errors if the configuration is invalid.
      *
@@ -261,9 +874,9 @@ public class FileAuditLogWriter implements AuditLogWriter {
                 Files.createDirectories(parentDir);
             }
             
-            OpenOption[] fileOptions = {StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE};
             boolean newFile = Files.notExists(path);
-            bufferedWriter = Files.newBufferedWriter(path, fileOptions);
+            channelWriter = AuditFileChannelWriter.open(path, AuditFileChannelWriter.DEFAULT_BUFFER_BYTES);
+            bufferedWriter = new BufferedWriter(channelWriter);
             this.activeFilePath = filePath;
 
             // Initialize the rotation threshold (derived from MB config) and the byte counter. For an
@@ -273,10 +886,19 @@ public class FileAuditLogWriter implements AuditLogWriter {
                 this.maxFileSizeBytes = (long) auditConfig.getMaxFileSizeMb() * 1024L * 1024L;
             }
             this.currentFileBytes = newFile ? 0L : sizeQuietly(path);
+            // An appended file keeps the rolling period it was last written in; an empty one never rolls.
+            this.activeFileHasRecords = !newFile && currentFileBytes > 0;
+            long periodReference = newFile ? System.currentTimeMillis() : lastModifiedQuietly(path);
+            this.nextRollAtMillis = rollingInterval.nextBoundary(periodReference, ZoneId.systemDefault());
+            this.activeStatsComplete = !activeFileHasRecords;
+            this.activeRecordCount = 0L;
+            this.activeFirstTimestamp = Long.MAX_VALUE;
+            this.activeLastTimestamp = Long.MIN_VALUE;
 
             if (newFile) {
                 writeHeader();
             }
+            openUserIndex(filePath);
 
             log.info("FileAuditLogWriter.setup: Log file opened successfully: {}", filePath);
             return true;
@@ -289,7 +911,7 @@ public class FileAuditLogWriter implements AuditLogWriter {
 
     /**
      * Checks the tracked size of the active log file and rotates it if it has exceeded the configured
-     * threshold. Called from within the synchronized {@link #writeLog(AuditEvent)} after each write.
+     * threshold. Called while holding the monitor after each appended event.
      *
      * <p>Rotation is disabled when {@link #maxFileSizeBytes} is {@code <= 0} (i.e.
      * {@link AuditConfig#getMaxFileSizeMb()} is {@code <= 0}). Rotation failures are caught and logged so
@@ -312,40 +934,61 @@ public class FileAuditLogWriter implements AuditLogWriter {
     }
 
     /**
-     * Performs size-based rotation of the active log file: flushes and closes the current writer, shifts
-     * existing archives ({@code name.(N-1) -> name.N}, deleting the oldest beyond {@code maxFiles}),
-     * renames the active file to {@code name.1}, then reopens a fresh active file (writing the header
-     * again via {@link #openLogFile()} semantics).
+     * Rotates the active file if the time-based rolling boundary has passed. A file without records is not rotated; its
+     * boundary simply moves forward. Called while holding the monitor before each appended event.
+     */
+    private void rollIfDue() {
+        long now = System.currentTimeMillis();
+        if (now < nextRollAtMillis || activeFilePath == null) {
+            return;
+        }
+        if (!activeFileHasRecords) {
+            nextRollAtMillis = rollingInterval.nextBoundary(now, ZoneId.systemDefault());
+            return;
+        }
+        try {
+            rotateLogFiles();
+        } catch (Exception e) {
+            // Rolling must never break audit writing; log, keep the current file and retry at the next boundary.
+            nextRollAtMillis = rollingInterval.nextBoundary(now, ZoneId.systemDefault());
+            log.error("FileAuditLogWriter.rollIfDue: Failed to roll audit log file '{}' (continuing without rotation): {}",
+                    activeFilePath, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rotates the active log file: flushes and closes the current writer, renames the file to a pending segment, reopens a
+     * fresh active file (writing the header again via {@link #openLogFile()} semantics) and hands the segment to the
+     * {@link AuditLogArchiver}. Only the close, one rename and the reopen happen here, under the monitor; compression and the
+     * {@code maxFiles} retention shuffle ({@code name.(N-1) -> name.N}, deleting the oldest) run in the background, which
+     * also records the segment's time range and record count in the {@link AuditSegmentManifest}.
      *
-     * @throws IOException if the file shuffling fails irrecoverably
+     * @throws IOException if the active file cannot be renamed
      */
     private void rotateLogFiles() throws IOException {
         String basePath = activeFilePath;
-        int maxFiles = Math.max(1, auditConfig.getMaxFiles());
+        AuditLogArchiver segmentArchiver = archiver(basePath);
 
-        // Flush and close the current writer before moving the file.
+        // Flush and close the current writer before moving the file. The user index only describes the active file.
         closeLogFile();
         bufferedWriter = null;
+        channelWriter = null;
+        AuditUserIndex.delete(basePath);
 
-        // Delete the oldest archive that would be pushed out of the retention window.
-        Path oldest = Path.of(basePath + "." + maxFiles);
-        Files.deleteIfExists(oldest);
-
-        // Shift archives upward: name.(N-1) -> name.N for N from maxFiles down to 2.
-        for (int i = maxFiles - 1; i >= 1; i--) {
-            Path src = Path.of(basePath + "." + i);
-            Path dst = Path.of(basePath + "." + (i + 1));
-            if (Files.exists(src)) {
-                Files.move(src, dst, StandardCopyOption.REPLACE_EXISTING);
-            }
-        }
-
-        // Move the current active file to name.1.
+        // Move the closed file aside; a same-directory rename is a cheap metadata operation.
         Path active = Path.of(basePath);
+        Path pending = null;
         if (Files.exists(active)) {
-            Files.move(active, Path.of(basePath + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            pending = segmentArchiver.nextPendingPath();
+            Files.move(active, pending);
         }
 
+        // Capture the closed segment's statistics for the manifest before the reopen resets them.
+        boolean hasRecords = activeRecordCount > 0;
+        long firstTimestamp = activeStatsComplete && hasRecords ? activeFirstTimestamp : AuditSegmentManifest.UNKNOWN_FIRST;
+        long lastTimestamp = hasRecords ? activeLastTimestamp : AuditSegmentManifest.UNKNOWN_LAST;
+        long recordCount = activeStatsComplete ? activeRecordCount : -1L;
+
         // Reopen a fresh active file at the same configured path (rewrites the header for the new file).
         currentFileBytes = 0L;
         if (!tryOpenLogFile(basePath)) {
@@ -353,6 +996,42 @@ public class FileAuditLogWriter implements AuditLogWriter {
         } else {
             log.info("FileAuditLogWriter.rotateLogFiles: Rotated audit log file: {}", basePath);
         }
+        if (pending != null) {
+            segmentArchiver.submit(pending, firstTimestamp, lastTimestamp, recordCount);
+        }
+    }
+
+    /**
+     * Returns the archiver for {@code basePath}, creating it on first use or when the active path changed (for example after
+     * falling back to the temp directory). Must be called while holding the monitor.
+     *
+     * @param basePath the active log file path
+     * @return the archiver
+     */
+    private AuditLogArchiver archiver(String basePath) {
+        if (archiver == null || !archiver.getBasePath().equals(basePath)) {
+            if (archiver != null) {
+                archiver.shutdown(0L);
+            }
+            archiver = new AuditLogArchiver(basePath, auditConfig.getMaxFiles(), auditConfig.isCompressArchives(),
+                    auditConfig.getSegmentFilterFalsePositiveRate());
+        }
+        return archiver;
+    }
+
+    /**
+     * Returns the last-modified time of the given file in epoch millis, or the current time if it cannot be determined.
+     *
+     * @param path the file
+     * @return the last-modified time
+     */
+    private long lastModifiedQuietly(Path path) {
+        try {
+            FileTime modified = Files.getLastModifiedTime(path);
+            return modified.toMillis();
+        } catch (IOException e) {
+            return System.currentTimeMillis();
+        }
     }
 
     /**
@@ -371,34 +1050,40 @@ public class FileAuditLogWriter implements AuditLogWriter {
     }
 
     /**
-     * Closes the log file to ensure all data is flushed and resources are released.
+     * Closes the log file to ensure all data is flushed and resources are released. When a durability policy is configured
+     * the file is forced to disk first, so a rotated or shut-down file never holds unforced records.
      */
     private void closeLogFile() {
         try {
             if (bufferedWriter != null) {
+                if (durabilityPolicy != AuditDurabilityPolicy.NONE) {
+                    syncQuietly();
+                }
                 bufferedWriter.close();
             }
         } catch (IOException e) {
             log.error("FileAuditLogWriter.cleanup: IOException closing log file: {}", auditConfig.getLogFilePath(), e);
         }
+        closeUserIndex(); // after the log, so the index never points past what was written
     }
 
     /**
-     * Writes a header to the log file. This method is called when the log file is newly created.
+     * Writes the codec's header line to the log file, if the format has one. This method is called when the log file is newly
+     * created.
      */
     private void writeHeader() {
+        String header = codec != null ? codec.header() : null;
+        if (bufferedWriter == null || header == null) {
+            return;
+        }
         log.debug("FileAuditLogWriter.writeHeader: writing header.");
-        if (bufferedWriter != null) {
-            String output = MessageFormat.format("{0}|{1}|{2}|{3}|{4}|{5}|{6}|{7}|{8}|{9}", "Date", "Action", "Action Status", "User ID", "Email",
-                    "IP Address", "SessionId", "Message", "User Agent", "Extra Data");
-            try {
-                bufferedWriter.write(output);
-                bufferedWriter.newLine();
-                bufferedWriter.flush();
-                currentFileBytes += output.length() + 1L; // count header toward rotation threshold
-            } catch (IOException e) {
-                log.error("FileAuditLogWriter.writeHeader: IOException writing header: {}", output, e);
-            }
+        try {
+            bufferedWriter.write(header);
+            bufferedWriter.newLine();
+            bufferedWriter.flush();
+            currentFileBytes += utf8Length(header) + LINE_SEPARATOR_BYTES; // count header toward rotation threshold
+        } catch (IOException e) {
+            log.error("FileAuditLogWriter.writeHeader: IOException writing header: {}", header, e);
         }
     }
 }
@@ -0,0 +1,57 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.digitalsanctuary.spring.user.UserConfiguration;
+
+/**
+ * Auto-configuration for the JDBC audit store, active when {@code user.audit.store=jdbc}: a {@link JdbcAuditLogWriter} and a
+ * {@link JdbcAuditLogQueryService} backed by the consuming application's {@link DataSource}.
+ *
+ * <p>
+ * Runs before {@link AuditMailAutoConfiguration}, so the library's {@link FileAuditLogWriter} backs off through its own
+ * {@code @ConditionalOnMissingBean(AuditLogWriter.class)}; {@link FileAuditLogQueryService} is gated on the same property. Both beans here are
+ * guarded by {@link ConditionalOnMissingBean} as well, so a consumer-defined {@link AuditLogWriter} or {@link AuditLogQueryService} still wins.
+ * The {@code audit_event} table is not created by the library (see {@code db-scripts/}).
+ * </p>
+ */
+@AutoConfiguration(after = UserConfiguration.class, before = AuditMailAutoConfiguration.class)
+@ConditionalOnClass(JdbcTemplate.class)
+@ConditionalOnProperty(name = "user.audit.store", havingValue = "jdbc")
+public class JdbcAuditAutoConfiguration {
+
+    /**
+     * Creates the JDBC {@link AuditLogWriter}. Gated by {@code user.audit.logEvents} like the file writer.
+     *
+     * @param auditConfig the audit configuration properties
+     * @param dataSource the consuming application's {@link DataSource}
+     * @param rollupsProvider resolves the {@link AuditRollups} the writer feeds, if kept
+     * @return the {@link JdbcAuditLogWriter}
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditLogWriter.class)
+    @ConditionalOnProperty(name = "user.audit.logEvents", havingValue = "true", matchIfMissing = true)
+    public JdbcAuditLogWriter jdbcAuditLogWriter(AuditConfig auditConfig, DataSource dataSource,
+            ObjectProvider<AuditRollups> rollupsProvider) {
+        return new JdbcAuditLogWriter(auditConfig, new JdbcTemplate(dataSource), true, rollupsProvider.getIfAvailable());
+    }
+
+    /**
+     * Creates the JDBC {@link AuditLogQueryService}.
+     *
+     * @param auditConfig the audit configuration properties
+     * @param dataSource the consuming application's {@link DataSource}
+     * @return the {@link JdbcAuditLogQueryService}
+     */
+    @Bean
+    @ConditionalOnMissingBean(AuditLogQueryService.class)
+    public JdbcAuditLogQueryService jdbcAuditLogQueryService(AuditConfig auditConfig, DataSource dataSource) {
+        return new JdbcAuditLogQueryService(auditConfig, new JdbcTemplate(dataSource));
+    }
+}
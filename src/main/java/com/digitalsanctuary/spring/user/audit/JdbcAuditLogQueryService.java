@@ -0,0 +1,241 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link AuditLogQueryService} that reads the {@code audit_event} table written by {@link JdbcAuditLogWriter}, selected with
+ * {@code user.audit.store=jdbc}.
+ *
+ * <p>Each query is a single indexed lookup: the user is matched by id (or, for events recorded before the user was persisted, by the
+ * email the file formats also use as a fallback id) through the {@code (user_id, ts)} index, or by email through {@code (user_email, ts)}.
+ * Results are ordered newest first by the database and capped at {@code user.audit.maxQueryResults} with
+ * {@link PreparedStatement#setMaxRows(int)}, so only the returned rows are ever transferred. Because the table is shared, every node
+ * sees the full history, unlike {@link FileAuditLogQueryService}, which only sees its local file.
+ *
+ * <p>{@link #findPage} uses keyset pagination: its cursor holds the {@code ts} and {@code id} of the last row returned, and the next
+ * page continues with the rows ordered after it, so every page is the same indexed lookup however deep the caller pages.
+ *
+ * @see JdbcAuditLogWriter
+ * @see AuditStore#JDBC
+ */
+@Slf4j
+public class JdbcAuditLogQueryService implements AuditLogQueryService {
+
+    private static final String SELECT_SQL = "SELECT id, ts, action, action_status, user_id, user_email, ip_address, session_id, message, "
+            + "user_agent, extra_data FROM audit_event WHERE ";
+
+    private static final String ORDER_BY_SQL = " ORDER BY ts DESC, id DESC";
+
+    private static final RowMapper<AuditEventDTO> ROW_MAPPER = JdbcAuditLogQueryService::mapRow;
+
+    private final AuditConfig auditConfig;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the query service.
+     *
+     * @param auditConfig the audit configuration
+     * @param jdbcTemplate the template for the database holding the {@code audit_event} table
+     */
+    public JdbcAuditLogQueryService(AuditConfig auditConfig, JdbcTemplate jdbcTemplate) {
+        this.auditConfig = auditConfig;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<AuditEventDTO> findByUser(User user) {
+        return find(user, AuditQuery.all());
+    }
+
+    @Override
+    public List<AuditEventDTO> findByUserSince(User user, Instant since) {
+        return find(user, AuditQuery.builder().since(since).build());
+    }
+
+    @Override
+    public List<AuditEventDTO> findByUserAndAction(User user, String action) {
+        return find(user, action != null ? AuditQuery.builder().action(action).build() : AuditQuery.all());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Continues after the {@code (ts, id)} of the previous page's last row. One row more than the page is fetched, so the last
+     * page is recognized without a further query.
+     */
+    @Override
+    public AuditEventPage findPage(User user, AuditQuery query, String cursor, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        AuditCursor position = AuditCursor.decode(cursor, AuditCursor.JDBC);
+        if (user == null) {
+            return AuditEventPage.empty();
+        }
+        String email = user.getEmail() != null ? user.getEmail().toLowerCase(Locale.ROOT) : null;
+        String userId = user.getId() != null ? user.getId().toString() : null;
+        if (email == null && userId == null) {
+            return AuditEventPage.empty();
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> args = new ArrayList<>(8);
+        appendSubject(sql, args, userId, email);
+        appendCriteria(sql, args, query);
+        if (position != null) {
+            sql.append(" AND (ts < ? OR (ts = ? AND id < ?))");
+            args.add(position.key());
+            args.add(position.key());
+            args.add(position.position());
+        }
+        sql.append(ORDER_BY_SQL);
+
+        try {
+            List<PageRow> rows = query(sql.toString(), args, pageSize + 1,
+                    (rs, rowNum) -> new PageRow(rs.getLong("id"), mapRow(rs, rowNum)));
+            if (rows.size() <= pageSize) {
+                return new AuditEventPage(rows.stream().map(PageRow::event).toList(), null);
+            }
+            PageRow last = rows.get(pageSize - 1);
+            return new AuditEventPage(rows.subList(0, pageSize).stream().map(PageRow::event).toList(),
+                    new AuditCursor(AuditCursor.JDBC, last.event().getTimestamp().toEpochMilli(), last.id()).encode());
+        } catch (DataAccessException e) {
+            log.error("JdbcAuditLogQueryService.findPage: Error querying audit events", e);
+            return AuditEventPage.empty();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Every criterion becomes part of one {@code SELECT}; the most recent rows are fetched, up to the query's limit or
+     * {@code maxQueryResults}, and reversed in memory for {@link AuditQuery.Order#OLDEST_FIRST}.
+     */
+    @Override
+    public List<AuditEventDTO> find(User user, AuditQuery query) {
+        if (user == null) {
+            return Collections.emptyList();
+        }
+        String email = user.getEmail() != null ? user.getEmail().toLowerCase(Locale.ROOT) : null;
+        String userId = user.getId() != null ? user.getId().toString() : null;
+        if (email == null && userId == null) {
+            return Collections.emptyList();
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> args = new ArrayList<>(8);
+        appendSubject(sql, args, userId, email);
+        appendCriteria(sql, args, query);
+        sql.append(ORDER_BY_SQL);
+
+        try {
+            List<AuditEventDTO> events = query(sql.toString(), args,
+                    query.getLimit() > 0 ? query.getLimit() : auditConfig.getMaxQueryResults(), ROW_MAPPER);
+            if (query.getOrder() == AuditQuery.Order.OLDEST_FIRST) {
+                Collections.reverse(events);
+            }
+            return events;
+        } catch (DataAccessException e) {
+            log.error("JdbcAuditLogQueryService.find: Error querying audit events", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Runs a query, transferring at most {@code maxRows} rows.
+     */
+    private <T> List<T> query(String sql, List<Object> args, int maxRows, RowMapper<T> rowMapper) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            if (maxRows > 0) {
+                statement.setMaxRows(maxRows);
+            }
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, rowMapper);
+    }
+
+    /**
+     * Appends the criteria of a query other than the user.
+     */
+    private static void appendCriteria(StringBuilder sql, List<Object> args, AuditQuery query) {
+        appendIn(sql, args, "action", query.getActions());
+        appendIn(sql, args, "action_status", query.getStatuses());
+        if (query.getIpAddress() != null) {
+            sql.append(" AND ip_address = ?");
+            args.add(query.getIpAddress());
+        }
+        if (query.getSince() != null) {
+            sql.append(" AND ts >= ?");
+            args.add(query.getSince().toEpochMilli());
+        }
+        if (query.getUntil() != null) {
+            sql.append(" AND ts < ?");
+            args.add(query.getUntil().toEpochMilli());
+        }
+    }
+
+    private static void appendIn(StringBuilder sql, List<Object> args, String column, Collection<String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        sql.append(" AND ").append(column).append(values.size() == 1 ? " = ?" : " IN (" + "?, ".repeat(values.size() - 1) + "?)");
+        args.addAll(values);
+    }
+
+    /**
+     * Appends the user predicate: the id or the email-as-id in {@code user_id}, or the email in {@code user_email}.
+     */
+    private static void appendSubject(StringBuilder sql, List<Object> args, String userId, String email) {
+        List<String> ids = new ArrayList<>(2);
+        if (userId != null) {
+            ids.add(userId);
+        }
+        if (email != null) {
+            ids.add(email);
+        }
+        sql.append("(user_id IN (").append(ids.size() == 2 ? "?, ?" : "?").append(')');
+        args.addAll(ids);
+        if (email != null) {
+            sql.append(" OR user_email = ?");
+            args.add(email);
+        }
+        sql.append(')');
+    }
+
+    /**
+     * A row of a page with the id its cursor needs.
+     */
+    private record PageRow(long id, AuditEventDTO event) {
+    }
+
+    private static AuditEventDTO mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return AuditEventDTO.builder()
+                .timestamp(Instant.ofEpochMilli(rs.getLong("ts")))
+                .action(rs.getString("action"))
+                .actionStatus(rs.getString("action_status"))
+                .userId(rs.getString("user_id"))
+                .userEmail(rs.getString("user_email"))
+                .ipAddress(rs.getString("ip_address"))
+                .sessionId(rs.getString("session_id"))
+                .message(rs.getString("message"))
+                .userAgent(rs.getString("user_agent"))
+                .extraData(rs.getString("extra_data"))
+                .build();
+    }
+}
@@ -0,0 +1,300 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link AuditLogWriter} that stores audit events in the {@code audit_event} table, selected with {@code user.audit.store=jdbc}.
+ *
+ * <p>{@link #writeRecord(AuditRecord)} never touches the database: it hands the record to a bounded, lock-free {@link AuditRingBuffer} and
+ * returns. A dedicated {@code ds-audit-jdbc} thread drains the buffer and inserts up to {@code user.audit.jdbcBatchSize} events per
+ * JDBC batch, so a burst of events costs one round trip per batch rather than one per event, and a slow or unavailable database never
+ * backs up into request threads. When the buffer is full the event is dropped and counted ({@link #getDroppedEventCount()}); when a
+ * batch insert fails, the batch is logged and counted ({@link #getFailedEventCount()}) and the writer carries on with the next one.
+ *
+ * <p>The table is not created by the library; see {@code db-scripts/} for the DDL and its indexes on {@code (user_id, ts)},
+ * {@code (user_email, ts)} and {@code (action, ts)}, which serve {@link JdbcAuditLogQueryService}.
+ *
+ * @see JdbcAuditLogQueryService
+ * @see AuditStore#JDBC
+ */
+@Slf4j
+public class JdbcAuditLogWriter implements AuditRecordWriter {
+
+    /** Inserts one audit record; the column order matches {@link #toRow(AuditRecord)}. */
+    static final String INSERT_SQL = "INSERT INTO audit_event (ts, action, action_status, user_id, user_email, ip_address, session_id, "
+            + "message, user_agent, extra_data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int[] INSERT_TYPES = {Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR};
+
+    /** Width of the {@code VARCHAR} columns; longer values are truncated rather than failing the whole batch. */
+    static final int MAX_VARCHAR_LENGTH = 255;
+
+    /** Default queue capacity used when {@link AuditConfig#getJdbcBufferSize()} is not positive. */
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** Default batch size used when {@link AuditConfig#getJdbcBatchSize()} is not positive. */
+    static final int DEFAULT_BATCH_SIZE = 200;
+
+    /** How long the idle writer thread parks before re-checking the buffer when no producer has woken it. */
+    private static final long WRITER_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** How long {@link #cleanup()} waits for the writer thread to drain the buffer before giving up. */
+    private static final long WRITER_SHUTDOWN_TIMEOUT_MILLIS = 5000L;
+
+    private final AuditConfig auditConfig;
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Whether {@link #setup()} starts the {@code ds-audit-jdbc} thread; {@code false} when an {@link AuditSink} already provides one. */
+    private final boolean buffered;
+
+    /** Counts each record once its batch is inserted; {@code null} when this writer does not feed the rollups. */
+    private final AuditRollups rollups;
+
+    /** The hand-off buffer; {@code null} before {@link #setup()} and after {@link #cleanup()}. */
+    private volatile AuditRingBuffer<AuditRecord> ringBuffer;
+
+    /** The dedicated writer thread that drains {@link #ringBuffer}. */
+    private Thread writerThread;
+
+    /** Keeps the writer thread looping; cleared by {@link #cleanup()}. */
+    private volatile boolean writerRunning;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    /**
+     * Creates the writer.
+     *
+     * @param auditConfig the audit configuration
+     * @param jdbcTemplate the template for the database holding the {@code audit_event} table
+     */
+    public JdbcAuditLogWriter(AuditConfig auditConfig, JdbcTemplate jdbcTemplate) {
+        this(auditConfig, jdbcTemplate, true);
+    }
+
+    /**
+     * Creates the writer, optionally without its own buffer and thread. An unbuffered writer inserts on the calling thread; it is meant
+     * for an {@link AuditSink}, whose queue and thread already keep the database off request threads, so a slow database shows up as
+     * that sink's lag rather than being hidden behind a second queue.
+     *
+     * @param auditConfig the audit configuration
+     * @param jdbcTemplate the template for the database holding the {@code audit_event} table
+     * @param buffered whether to buffer records and insert them on a dedicated thread
+     */
+    public JdbcAuditLogWriter(AuditConfig auditConfig, JdbcTemplate jdbcTemplate, boolean buffered) {
+        this(auditConfig, jdbcTemplate, buffered, null);
+    }
+
+    /**
+     * Creates the writer, optionally without its own buffer and thread, that also feeds the per-minute {@link AuditRollups}.
+     *
+     * @param auditConfig the audit configuration
+     * @param jdbcTemplate the template for the database holding the {@code audit_event} table
+     * @param buffered whether to buffer records and insert them on a dedicated thread
+     * @param rollups counts each record once its batch is inserted, or {@code null}
+     */
+    public JdbcAuditLogWriter(AuditConfig auditConfig, JdbcTemplate jdbcTemplate, boolean buffered, AuditRollups rollups) {
+        this.auditConfig = auditConfig;
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffered = buffered;
+        this.rollups = rollups;
+    }
+
+    /**
+     * Starts the writer thread. Does nothing when audit logging is disabled.
+     */
+    @PostConstruct
+    @Override
+    public synchronized void setup() {
+        if (auditConfig == null || !auditConfig.isLogEvents()) {
+            log.info("JdbcAuditLogWriter.setup: Audit logging is disabled.");
+            return;
+        }
+        if (!buffered || writerThread != null) {
+            return;
+        }
+        int bufferSize = auditConfig.getJdbcBufferSize() > 0 ? auditConfig.getJdbcBufferSize() : DEFAULT_BUFFER_SIZE;
+        int batchSize = auditConfig.getJdbcBatchSize() > 0 ? auditConfig.getJdbcBatchSize() : DEFAULT_BATCH_SIZE;
+        AuditRingBuffer<AuditRecord> buffer = new AuditRingBuffer<>(bufferSize);
+        writerRunning = true;
+        writerThread = new Thread(() -> runWriterLoop(buffer, batchSize), "ds-audit-jdbc");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        ringBuffer = buffer;
+        log.info("JdbcAuditLogWriter.setup: JDBC audit writer started (buffer capacity {}, batch size {}).", buffer.capacity(), batchSize);
+    }
+
+    /**
+     * Stops the writer thread after it has inserted everything already buffered. Events written afterwards are inserted on the calling
+     * thread.
+     */
+    @PreDestroy
+    @Override
+    public synchronized void cleanup() {
+        Thread thread = writerThread;
+        AuditRingBuffer<AuditRecord> buffer = ringBuffer;
+        if (thread == null || buffer == null) {
+            return;
+        }
+        ringBuffer = null;
+        writerRunning = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(WRITER_SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("JdbcAuditLogWriter.cleanup: JDBC audit writer did not finish draining within {} ms.", WRITER_SHUTDOWN_TIMEOUT_MILLIS);
+        } else {
+            // A producer that read the buffer reference just before it was cleared may have offered after the writer exited.
+            List<AuditRecord> remaining = new ArrayList<>();
+            buffer.drainTo(remaining::add, Integer.MAX_VALUE);
+            if (!remaining.isEmpty()) {
+                insertBatch(remaining);
+            }
+        }
+        writerThread = null;
+    }
+
+    /**
+     * Queues an audit record for insertion. Never blocks on the database.
+     *
+     * @param record the audit record to write
+     */
+    @Override
+    public void writeRecord(AuditRecord record) {
+        if (record == null) {
+            return;
+        }
+        AuditRingBuffer<AuditRecord> buffer = ringBuffer;
+        if (buffer == null) {
+            insertBatch(List.of(record));
+            return;
+        }
+        if (buffer.offer(record)) {
+            LockSupport.unpark(writerThread);
+            return;
+        }
+        long dropped = droppedEvents.incrementAndGet();
+        if (dropped == 1 || dropped % 1000 == 0) {
+            log.warn("JdbcAuditLogWriter.writeRecord: JDBC audit buffer is full (capacity {}); {} event(s) dropped so far.", buffer.capacity(),
+                    dropped);
+        }
+    }
+
+    /**
+     * Writes several records. While the writer thread runs each is queued; otherwise they are inserted on the calling thread, in JDBC
+     * batches of up to {@code user.audit.jdbcBatchSize}.
+     *
+     * @param records the audit records to write, in order
+     */
+    @Override
+    public void writeRecords(List<AuditRecord> records) {
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        if (ringBuffer != null) {
+            for (AuditRecord record : records) {
+                writeRecord(record);
+            }
+            return;
+        }
+        int batchSize = auditConfig != null && auditConfig.getJdbcBatchSize() > 0 ? auditConfig.getJdbcBatchSize() : DEFAULT_BATCH_SIZE;
+        List<AuditRecord> present = records.stream().filter(Objects::nonNull).toList();
+        for (int from = 0; from < present.size(); from += batchSize) {
+            insertBatch(present.subList(from, Math.min(present.size(), from + batchSize)));
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     *
+     * @return the dropped event count since startup
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Returns the number of events lost because their batch insert failed.
+     *
+     * @return the failed event count since startup
+     */
+    public long getFailedEventCount() {
+        return failedEvents.get();
+    }
+
+    /**
+     * Body of the writer thread: drains up to {@code batchSize} events at a time and inserts each batch, parking briefly when the buffer
+     * is empty. Keeps draining after shutdown is requested until the buffer is empty.
+     */
+    private void runWriterLoop(AuditRingBuffer<AuditRecord> buffer, int batchSize) {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        while (writerRunning || !buffer.isEmpty()) {
+            buffer.drainTo(batch::add, batchSize);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, WRITER_IDLE_PARK_NANOS);
+                continue;
+            }
+            insertBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Inserts the records with a single JDBC batch. Failures are logged and counted rather than propagated.
+     *
+     * @param batch the records to insert, in enqueue order
+     */
+    private void insertBatch(List<AuditRecord> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (AuditRecord record : batch) {
+            rows.add(toRow(record));
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows, INSERT_TYPES);
+            if (rollups != null) {
+                batch.forEach(rollups::record);
+            }
+        } catch (DataAccessException e) {
+            long failed = failedEvents.addAndGet(rows.size());
+            log.error("JdbcAuditLogWriter.insertBatch: Failed to insert {} audit event(s) ({} lost so far): {}", rows.size(), failed,
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Maps a record to the {@link #INSERT_SQL} parameters. The subject is identified as in the file formats; emails (including an email
+     * standing in for the id of an unsaved user) are stored lower-cased so they can be matched case-insensitively through an index.
+     */
+    static Object[] toRow(AuditRecord record) {
+        String email = record.userEmail();
+        String userId = record.userId();
+        if (email != null) {
+            String normalizedEmail = email.toLowerCase(Locale.ROOT);
+            userId = userId.equals(email) ? normalizedEmail : userId; // the email stands in for the id of an unsaved user
+            email = normalizedEmail;
+        }
+        return new Object[] {record.timestamp(), truncate(record.action()), truncate(record.actionStatus()), truncate(userId), truncate(email),
+                truncate(record.ipAddress()),
+                truncate(record.sessionId()), record.message(), record.userAgent(), record.extraData()};
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_VARCHAR_LENGTH ? value.substring(0, MAX_VARCHAR_LENGTH) : value;
+    }
+}
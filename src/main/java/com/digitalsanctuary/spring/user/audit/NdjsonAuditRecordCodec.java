@@ -0,0 +1,308 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * {@link AuditRecordCodec} that writes each audit record as one JSON object per line (NDJSON), for example:
+ *
+ * <pre>{@code
+ * {"ts":1736955000000,"action":"Login","status":"Success","userId":"1","email":"a@example.com","ip":"127.0.0.1"}
+ * }</pre>
+ *
+ * <p>The timestamp is epoch milliseconds. Fields whose value is {@code null} are omitted. String values are escaped by a
+ * hand-written scanner that copies unescaped runs in bulk, so encoding allocates nothing beyond the caller's reused buffer,
+ * and CR/LF inside values are escaped (not stripped) so no value can start a forged record. Decoding is an equally small
+ * single-pass scanner over the flat object this codec writes; unknown keys are ignored.
+ *
+ * @see AuditLogFormat#NDJSON
+ */
+public class NdjsonAuditRecordCodec implements AuditRecordCodec {
+
+    static final String KEY_TIMESTAMP = "ts";
+    static final String KEY_ACTION = "action";
+    static final String KEY_STATUS = "status";
+    static final String KEY_USER_ID = "userId";
+    static final String KEY_EMAIL = "email";
+    static final String KEY_IP = "ip";
+    static final String KEY_SESSION_ID = "sessionId";
+    static final String KEY_MESSAGE = "message";
+    static final String KEY_USER_AGENT = "userAgent";
+    static final String KEY_EXTRA_DATA = "extraData";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public void encode(AuditRecord record, StringBuilder out) {
+        out.append("{\"").append(KEY_TIMESTAMP).append("\":").append(record.timestamp());
+        appendField(out, KEY_ACTION, record.action());
+        appendField(out, KEY_STATUS, record.actionStatus());
+        appendField(out, KEY_USER_ID, record.userId());
+        appendField(out, KEY_EMAIL, record.userEmail());
+        appendField(out, KEY_IP, record.ipAddress());
+        appendField(out, KEY_SESSION_ID, record.sessionId());
+        appendField(out, KEY_MESSAGE, record.message());
+        appendField(out, KEY_USER_AGENT, record.userAgent());
+        appendField(out, KEY_EXTRA_DATA, record.extraData());
+        out.append('}');
+    }
+
+    /**
+     * Returns the record itself: values are escaped, not altered, so every field reads back exactly as written.
+     */
+    @Override
+    public AuditRecord decodedForm(AuditRecord record) {
+        return record;
+    }
+
+    @Override
+    public boolean canDecode(String line) {
+        return line != null && !line.isEmpty() && line.charAt(0) == '{';
+    }
+
+    @Override
+    public AuditEventDTO decode(String line) {
+        if (!canDecode(line)) {
+            return null;
+        }
+        return new Scanner(line).readRecord();
+    }
+
+    /**
+     * Appends {@code ,"key":"value"} with the value escaped, or nothing when the value is {@code null}.
+     */
+    private static void appendField(StringBuilder out, String key, String value) {
+        if (value == null) {
+            return;
+        }
+        out.append(",\"").append(key).append("\":\"");
+        appendEscaped(out, value);
+        out.append('"');
+    }
+
+    /**
+     * Appends {@code value} as the body of a JSON string. Runs of characters that need no escaping are copied in one call;
+     * quotes, backslashes, control characters and the JavaScript line separators U+2028/U+2029 are escaped.
+     *
+     * @param out the buffer to append to
+     * @param value the raw value
+     */
+    static void appendEscaped(StringBuilder out, CharSequence value) {
+        int length = value.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            out.append(value, runStart, i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> out.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                        .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+            runStart = i + 1;
+        }
+        out.append(value, runStart, length);
+    }
+
+    /**
+     * Single-use cursor over one NDJSON line. Understands the flat object shape this codec writes (string, number, boolean and
+     * null values); anything else makes the line malformed.
+     */
+    private static final class Scanner {
+
+        private final String line;
+        private int pos;
+        private StringBuilder scratch;
+
+        Scanner(String line) {
+            this.line = line;
+        }
+
+        AuditEventDTO readRecord() {
+            AuditEventDTO event = new AuditEventDTO();
+            pos = 1; // past '{'
+            skipWhitespace();
+            if (peek() == '}') {
+                return event;
+            }
+            while (pos < line.length()) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    return null;
+                }
+                String key = readString();
+                skipWhitespace();
+                if (key == null || peek() != ':') {
+                    return null;
+                }
+                pos++;
+                skipWhitespace();
+                if (!readValueInto(event, key)) {
+                    return null;
+                }
+                skipWhitespace();
+                char next = peek();
+                pos++;
+                if (next == '}') {
+                    return event;
+                }
+                if (next != ',') {
+                    return null;
+                }
+            }
+            return null; // unterminated object
+        }
+
+        private boolean readValueInto(AuditEventDTO event, String key) {
+            char c = peek();
+            if (c == '"') {
+                String value = readString();
+                if (value == null) {
+                    return false;
+                }
+                assign(event, key, value);
+                return true;
+            }
+            int start = pos;
+            while (pos < line.length() && ",} \t".indexOf(line.charAt(pos)) < 0) {
+                pos++;
+            }
+            if (start == pos) {
+                return false;
+            }
+            if (KEY_TIMESTAMP.equals(key)) {
+                event.setTimestamp(parseEpochMillis(start, pos));
+            }
+            // null/true/false or numbers for other keys carry no information we keep
+            return true;
+        }
+
+        private void assign(AuditEventDTO event, String key, String value) {
+            switch (key) {
+                case KEY_TIMESTAMP -> event.setTimestamp(parseIsoInstant(value));
+                case KEY_ACTION -> event.setAction(value);
+                case KEY_STATUS -> event.setActionStatus(value);
+                case KEY_USER_ID -> event.setUserId(value);
+                case KEY_EMAIL -> event.setUserEmail(value);
+                case KEY_IP -> event.setIpAddress(value);
+                case KEY_SESSION_ID -> event.setSessionId(value);
+                case KEY_MESSAGE -> event.setMessage(value);
+                case KEY_USER_AGENT -> event.setUserAgent(value);
+                case KEY_EXTRA_DATA -> event.setExtraData(value);
+                default -> {
+                    // unknown key: ignored for forward compatibility
+                }
+            }
+        }
+
+        /**
+         * Reads a JSON string starting at the opening quote. Strings without escapes are returned as a substring; only
+         * strings containing escapes go through the scratch buffer.
+         */
+        private String readString() {
+            int start = ++pos; // past opening quote
+            while (pos < line.length()) {
+                char c = line.charAt(pos);
+                if (c == '"') {
+                    return line.substring(start, pos++);
+                }
+                if (c == '\\') {
+                    return readEscapedString(start);
+                }
+                pos++;
+            }
+            return null;
+        }
+
+        private String readEscapedString(int start) {
+            if (scratch == null) {
+                scratch = new StringBuilder(Math.max(16, line.length() - start));
+            }
+            scratch.setLength(0);
+            scratch.append(line, start, pos);
+            while (pos < line.length()) {
+                char c = line.charAt(pos++);
+                if (c == '"') {
+                    return scratch.toString();
+                }
+                if (c != '\\') {
+                    scratch.append(c);
+                    continue;
+                }
+                if (pos >= line.length()) {
+                    return null;
+                }
+                char escape = line.charAt(pos++);
+                switch (escape) {
+                    case '"', '\\', '/' -> scratch.append(escape);
+                    case 'n' -> scratch.append('\n');
+                    case 'r' -> scratch.append('\r');
+                    case 't' -> scratch.append('\t');
+                    case 'b' -> scratch.append('\b');
+                    case 'f' -> scratch.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > line.length()) {
+                            return null;
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(line.charAt(pos++), 16);
+                            if (digit < 0) {
+                                return null;
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        scratch.append((char) code);
+                    }
+                    default -> {
+                        return null;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private Instant parseEpochMillis(int start, int end) {
+            long value = 0;
+            boolean negative = line.charAt(start) == '-';
+            int i = negative ? start + 1 : start;
+            if (i == end || end - i > 18) {
+                return null;
+            }
+            for (; i < end; i++) {
+                int digit = line.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return null;
+                }
+                value = value * 10 + digit;
+            }
+            return Instant.ofEpochMilli(negative ? -value : value);
+        }
+
+        private static Instant parseIsoInstant(String value) {
+            try {
+                return Instant.parse(value);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        private char peek() {
+            return pos < line.length() ? line.charAt(pos) : '\0';
+        }
+
+        private void skipWhitespace() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link AuditRecordCodec} for the legacy pipe-delimited format:
+ * {@code Date|Action|ActionStatus|UserId|Email|IPAddress|SessionId|Message|UserAgent|ExtraData}, preceded by a header line.
+ *
+ * <p>Every text field is sanitized before it is written: CR, LF and the {@code |} delimiter are each replaced with a single
+ * space. Fields such as the user agent, message, email and extra data can be attacker-influenced; an embedded newline would
+ * forge a fake record and an embedded pipe would shift columns. The date is written as an ISO-8601 instant, for example
+ * {@code 2025-01-15T15:45:30.123Z}, which reads back exactly and independently of the JVM's locale and time zone. Earlier releases
+ * wrote a locale-dependent {@code MessageFormat} rendering; {@link AuditTimestampParser} still reads it.
+ *
+ * @see AuditLogFormat#PIPE
+ */
+@Slf4j
+public class PipeDelimitedAuditRecordCodec implements AuditRecordCodec {
+
+    /** The header line written at the top of each new file. */
+    static final String HEADER = "Date|Action|Action Status|User ID|Email|IP Address|SessionId|Message|User Agent|Extra Data";
+
+    private static final int FIELD_COUNT = 10;
+
+    @Override
+    public void encode(AuditRecord record, StringBuilder out) {
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(record.timestamp()), out);
+        appendField(out, record.action());
+        appendField(out, record.actionStatus());
+        appendField(out, record.userId());
+        appendField(out, record.userEmail());
+        appendField(out, record.ipAddress());
+        appendField(out, record.sessionId());
+        appendField(out, record.message());
+        appendField(out, record.userAgent());
+        appendField(out, record.extraData());
+    }
+
+    /**
+     * Applies the same sanitization {@link #encode} and {@link #decode} do, field by field, without writing or parsing a line.
+     * Returns the record itself when no field changes.
+     */
+    @Override
+    public AuditRecord decodedForm(AuditRecord record) {
+        String userId = readBack(record.userId());
+        String userEmail = readBack(record.userEmail());
+        String sessionId = readBack(record.sessionId());
+        String ipAddress = readBack(record.ipAddress());
+        String userAgent = readBack(record.userAgent());
+        String action = readBack(record.action());
+        String actionStatus = readBack(record.actionStatus());
+        String message = readBack(record.message());
+        String extraData = readBack(record.extraData());
+        if (userId == null || (userId == record.userId() && userEmail == record.userEmail() && sessionId == record.sessionId()
+                && ipAddress == record.ipAddress() && userAgent == record.userAgent() && action == record.action()
+                && actionStatus == record.actionStatus() && message == record.message() && extraData == record.extraData())) {
+            return record;
+        }
+        return new AuditRecord(record.timestamp(), userId, userEmail, sessionId, ipAddress, userAgent, action, actionStatus, message,
+                extraData);
+    }
+
+    @Override
+    public boolean canDecode(String line) {
+        return line != null && !line.isBlank() && line.charAt(0) != '{';
+    }
+
+    @Override
+    public String header() {
+        return HEADER;
+    }
+
+    /**
+     * Parses a single line from the audit log file.
+     *
+     * <p><b>Note:</b> this codec sanitizes each field (stripping CR/LF and the {@code |} delimiter) before writing, so records
+     * it produces always have exactly ten fields on a single line. The defensive rejoin below remains only to tolerate
+     * pre-existing log files written before that sanitization, or files produced by other tooling.
+     *
+     * @param line the line to parse
+     * @return the parsed AuditEventDTO, or null if the line is the header or parsing fails
+     */
+    @Override
+    public AuditEventDTO decode(String line) {
+        return decode(line, new AuditTimestampParser());
+    }
+
+    /**
+     * Parses a single line from the audit log file with a timestamp parser shared by the lines of one segment, so the timestamp
+     * format is detected once per segment rather than once per line.
+     *
+     * @param line the line to parse
+     * @param timestamps the parser for the segment's timestamps
+     * @return the parsed AuditEventDTO, or null if the line is the header or parsing fails
+     */
+    AuditEventDTO decode(String line, AuditTimestampParser timestamps) {
+        if (!canDecode(line) || isHeader(line)) {
+            return null;
+        }
+
+        String[] parts = line.split("\\|", -1); // -1 to keep trailing empty strings
+        if (parts.length < FIELD_COUNT) {
+            log.debug("PipeDelimitedAuditRecordCodec.decode: Invalid line format, expected 10 fields but got {}: {}",
+                    parts.length, line);
+            return null;
+        }
+
+        // Defensive: If more than 10 fields exist due to unescaped pipes in message,
+        // join the extra parts back into the message field
+        if (parts.length > FIELD_COUNT) {
+            log.debug("PipeDelimitedAuditRecordCodec.decode: Line has {} fields (expected 10), " +
+                    "likely due to unescaped pipes in message content", parts.length);
+            // Join parts[7] through parts[parts.length-3] as the message
+            StringBuilder messageBuilder = new StringBuilder(parts[7]);
+            for (int i = 8; i < parts.length - 2; i++) {
+                messageBuilder.append("|").append(parts[i]);
+            }
+            parts[7] = messageBuilder.toString();
+            // Shift the last two fields (userAgent and extraData) to their expected positions
+            parts[8] = parts[parts.length - 2];
+            parts[9] = parts[parts.length - 1];
+        }
+
+        try {
+            return AuditEventDTO.builder()
+                    .timestamp(timestamps.parse(parts[0]))
+                    .action(nullIfEmpty(parts[1]))
+                    .actionStatus(nullIfEmpty(parts[2]))
+                    .userId(nullIfEmpty(parts[3]))
+                    .userEmail(nullIfEmpty(parts[4]))
+                    .ipAddress(nullIfEmpty(parts[5]))
+                    .sessionId(nullIfEmpty(parts[6]))
+                    .message(nullIfEmpty(parts[7]))
+                    .userAgent(nullIfEmpty(parts[8]))
+                    .extraData(nullIfEmpty(parts[9]))
+                    .build();
+        } catch (Exception e) {
+            log.debug("PipeDelimitedAuditRecordCodec.decode: Error parsing line: {}", line, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the line is the header written at the top of each file.
+     *
+     * @param line the line to check
+     * @return {@code true} for the header line
+     */
+    static boolean isHeader(String line) {
+        return line.startsWith("Date|Action|");
+    }
+
+    /**
+     * Appends the {@code |} delimiter followed by the sanitized value. CR, LF and {@code |} are replaced with a space; a
+     * {@code null} value is written as an empty field.
+     */
+    private static void appendField(StringBuilder out, String value) {
+        out.append('|');
+        if (value == null) {
+            return;
+        }
+        int length = value.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == '|') {
+                out.append(value, runStart, i).append(' ');
+                runStart = i + 1;
+            }
+        }
+        out.append(value, runStart, length);
+    }
+
+    /**
+     * Returns a value as it is read back: CR, LF and {@code |} replaced with a space, as {@link #appendField} writes it, then
+     * as {@link #nullIfEmpty} reads it. Returns the value itself when neither changes it.
+     */
+    private static String readBack(String value) {
+        if (value == null) {
+            return null;
+        }
+        String sanitized = value;
+        if (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('|') >= 0) {
+            sanitized = value.replace('\r', ' ').replace('\n', ' ').replace('|', ' ');
+        }
+        return nullIfEmpty(sanitized);
+    }
+
+    /**
+     * Returns null if the string is empty or "null".
+     */
+    private static String nullIfEmpty(String value) {
+        if (value == null || value.isBlank() || "null".equals(value)) {
+            return null;
+        }
+        return value.trim();
+    }
+}
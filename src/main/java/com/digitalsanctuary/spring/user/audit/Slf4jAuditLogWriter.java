@@ -0,0 +1,60 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AuditLogWriter} that logs each audit record as one NDJSON line at {@code INFO} on a dedicated SLF4J logger, for structured stdout
+ * or a log appender that ships records to a central pipeline. Selected as the {@link AuditSinkType#LOG} sink of a
+ * {@link CompositeAuditLogWriter}, or usable on its own as the application's writer bean.
+ *
+ * <p>The line is encoded with {@link NdjsonAuditRecordCodec} regardless of {@code user.audit.logFormat}, so it is always machine-readable.
+ * Nothing is encoded while the logger is disabled.
+ */
+public class Slf4jAuditLogWriter implements AuditRecordWriter {
+
+    /** Logger used when {@code user.audit.sinkLoggerName} is not set. */
+    static final String DEFAULT_LOGGER_NAME = "com.digitalsanctuary.spring.user.audit.AUDIT";
+
+    private final Logger auditLogger;
+    private final AuditRecordCodec codec = new NdjsonAuditRecordCodec();
+
+    /**
+     * Creates a writer for the logger named by {@code user.audit.sinkLoggerName}.
+     *
+     * @param auditConfig the audit configuration
+     */
+    public Slf4jAuditLogWriter(AuditConfig auditConfig) {
+        this(auditConfig.getSinkLoggerName() != null && !auditConfig.getSinkLoggerName().isBlank() ? auditConfig.getSinkLoggerName()
+                : DEFAULT_LOGGER_NAME);
+    }
+
+    /**
+     * Creates a writer for the given logger.
+     *
+     * @param loggerName the name of the SLF4J logger records are written to
+     */
+    public Slf4jAuditLogWriter(String loggerName) {
+        this.auditLogger = LoggerFactory.getLogger(loggerName);
+    }
+
+    @Override
+    public void writeRecord(AuditRecord record) {
+        if (record == null || !auditLogger.isInfoEnabled()) {
+            return;
+        }
+        StringBuilder line = new StringBuilder(256);
+        codec.encode(record, line);
+        auditLogger.info(line.toString());
+    }
+
+    @Override
+    public void setup() {
+        // nothing to open
+    }
+
+    @Override
+    public void cleanup() {
+        // nothing to close
+    }
+}
@@ -77,6 +77,12 @@ public class GdprExportDTO {
          * Name of the exporting service/application.
          */
         private String exportedBy;
+
+        /**
+         * Data keys of the contributors that did not finish within {@code user.gdpr.contributorTimeoutMs}, and whose data is
+         * therefore missing from {@code additionalData}. Empty when the export is complete.
+         */
+        private List<String> timedOutContributors;
     }
 
     /**
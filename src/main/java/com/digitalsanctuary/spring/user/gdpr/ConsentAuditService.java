@@ -2,15 +2,16 @@ package com.digitalsanctuary.spring.user.gdpr;
 
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import com.digitalsanctuary.spring.user.audit.AuditEvent;
 import com.digitalsanctuary.spring.user.audit.AuditEventDTO;
 import com.digitalsanctuary.spring.user.audit.AuditLogQueryService;
+import com.digitalsanctuary.spring.user.audit.AuditQuery;
 import com.digitalsanctuary.spring.user.event.ConsentChangedEvent;
 import com.digitalsanctuary.spring.user.persistence.model.User;
 import com.digitalsanctuary.spring.user.util.UserUtils;
@@ -53,11 +54,20 @@ public class ConsentAuditService {
     /** Action type for consent expired events. */
     public static final String ACTION_CONSENT_EXPIRED = "CONSENT_EXPIRED";
 
+    /** Both kinds of consent change, asked for in one query. */
+    private static final AuditQuery CONSENT_CHANGES = AuditQuery.builder()
+            .action(ACTION_CONSENT_GRANTED)
+            .action(ACTION_CONSENT_WITHDRAWN)
+            .build();
+
     private final GdprConfig gdprConfig;
     private final ApplicationEventPublisher eventPublisher;
     private final AuditLogQueryService auditLogQueryService;
     private final ObjectMapper objectMapper;
 
+    /** The materialized consent state store, absent when {@code user.gdpr.consentStateStore} is false. */
+    private final ObjectProvider<ConsentStateService> consentStateServiceProvider;
+
     /**
      * Records that a user has granted consent.
      *
@@ -224,9 +234,9 @@ public class ConsentAuditService {
     /**
      * Gets the current consent status for a user.
      *
-     * <p>This method queries the audit log to determine which consents
-     * are currently active (granted but not withdrawn) for the user.
-     * Events are fetched once and processed in a single pass for efficiency.
+     * <p>Answered from the materialized {@link ConsentStateService} store with one indexed query when it is enabled and has been
+     * backfilled from the audit log; otherwise the user's consent history is replayed from the audit log, as
+     * {@link #replayConsentStatus(User)} does.
      *
      * @param user the user to check
      * @return map of consent type names to their current status
@@ -236,49 +246,68 @@ public class ConsentAuditService {
             return new LinkedHashMap<>();
         }
 
-        Map<String, ConsentStatus> statusMap = new LinkedHashMap<>();
-
-        try {
-            // Fetch all consent events in a single combined list
-            List<AuditEventDTO> grantedEvents = auditLogQueryService.findByUserAndAction(user, ACTION_CONSENT_GRANTED);
-            List<AuditEventDTO> withdrawnEvents = auditLogQueryService.findByUserAndAction(user, ACTION_CONSENT_WITHDRAWN);
-
-            // Combine and sort by timestamp (most recent first)
-            List<AuditEventDTO> allEvents = new ArrayList<>(grantedEvents.size() + withdrawnEvents.size());
-            allEvents.addAll(grantedEvents);
-            allEvents.addAll(withdrawnEvents);
-            allEvents.sort(Comparator.comparing(AuditEventDTO::getTimestamp,
-                    Comparator.nullsLast(Comparator.reverseOrder())));
-
-            // Process in one pass - most recent event per type determines status
-            for (AuditEventDTO event : allEvents) {
-                String typeName = extractConsentType(event.getExtraData());
-                if (typeName == null || statusMap.containsKey(typeName)) {
-                    continue; // Skip if no type or already processed (newer event wins)
-                }
-
-                boolean isGrant = ACTION_CONSENT_GRANTED.equals(event.getAction());
-                if (isGrant) {
-                    statusMap.put(typeName, new ConsentStatus(typeName, true, event.getTimestamp(), null));
-                } else {
-                    // Withdrawal without a prior grant - still record it
-                    statusMap.put(typeName, new ConsentStatus(typeName, false, null, event.getTimestamp()));
+        ConsentStateService stateService = consentStateServiceProvider != null ? consentStateServiceProvider.getIfAvailable() : null;
+        if (stateService != null && user.getId() != null) {
+            try {
+                Map<String, ConsentStatus> statusMap = stateService.getConsentStatus(user.getId());
+                if (statusMap != null) {
+                    return statusMap;
                 }
+            } catch (Exception e) {
+                log.warn("ConsentAuditService.getConsentStatus: Failed to read consent state for user {}, replaying the audit log: {}",
+                        user.getId(), e.getMessage());
             }
+        }
 
+        try {
+            return replayConsentStatus(user);
         } catch (Exception e) {
             log.warn("ConsentAuditService.getConsentStatus: Failed to get consent status for user {}: {}",
                     user.getId(), e.getMessage());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Determines the current consent status of a user by replaying the consent history in the audit log.
+     *
+     * <p>Grants and withdrawals are fetched with one query, newest first, and processed in a single pass. Used when the consent
+     * state store is unavailable, and by the backfill that fills it.
+     *
+     * @param user the user to check
+     * @return map of consent type names to their current status, most recently changed first
+     * @throws RuntimeException if the audit log cannot be read
+     */
+    public Map<String, ConsentStatus> replayConsentStatus(User user) {
+        Map<String, ConsentStatus> statusMap = new LinkedHashMap<>();
+
+        // Fetch grants and withdrawals together, most recent first
+        List<AuditEventDTO> allEvents = auditLogQueryService.find(user, CONSENT_CHANGES);
+
+        // Process in one pass - most recent event per type determines status
+        for (AuditEventDTO event : allEvents) {
+            String typeName = extractConsentType(event.getExtraData());
+            if (typeName == null || statusMap.containsKey(typeName)) {
+                continue; // Skip if no type or already processed (newer event wins)
+            }
+
+            boolean isGrant = ACTION_CONSENT_GRANTED.equals(event.getAction());
+            if (isGrant) {
+                statusMap.put(typeName, new ConsentStatus(typeName, true, event.getTimestamp(), null));
+            } else {
+                // Withdrawal without a prior grant - still record it
+                statusMap.put(typeName, new ConsentStatus(typeName, false, null, event.getTimestamp()));
+            }
         }
 
         return statusMap;
     }
 
     /**
-     * Gets all consent records for a user.
+     * Gets all consent records for a user, fetched with one query.
      *
      * @param user the user to get consents for
-     * @return list of consent records
+     * @return list of consent records, most recent first
      */
     public List<ConsentRecord> getConsentRecords(User user) {
         if (user == null) {
@@ -288,11 +317,7 @@ public class ConsentAuditService {
         List<ConsentRecord> records = new ArrayList<>();
 
         try {
-            List<AuditEventDTO> allEvents = new ArrayList<>();
-            allEvents.addAll(auditLogQueryService.findByUserAndAction(user, ACTION_CONSENT_GRANTED));
-            allEvents.addAll(auditLogQueryService.findByUserAndAction(user, ACTION_CONSENT_WITHDRAWN));
-
-            for (AuditEventDTO event : allEvents) {
+            for (AuditEventDTO event : auditLogQueryService.find(user, CONSENT_CHANGES)) {
                 ConsentRecord record = parseConsentRecord(event);
                 if (record != null) {
                     records.add(record);
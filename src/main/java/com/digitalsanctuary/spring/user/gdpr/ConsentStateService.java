@@ -0,0 +1,324 @@
+package com.digitalsanctuary.spring.user.gdpr;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.digitalsanctuary.spring.user.event.ConsentChangedEvent;
+import com.digitalsanctuary.spring.user.event.UserPreDeleteEvent;
+import com.digitalsanctuary.spring.user.gdpr.ConsentAuditService.ConsentStatus;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Maintains the materialized current consent state of each user in the {@code user_consent_state} table, one row per user and
+ * consent type. Only created when {@code user.gdpr.consentStateStore=true}; the table is not mapped as an entity, so it is only
+ * required by applications that enable the store (see {@code db-scripts/}).
+ *
+ * <p>Each {@link ConsentChangedEvent} is applied once the caller's transaction commits, or as it is published if there is none,
+ * so a change the caller rolls back is never stored. It is applied in a transaction of its own, so a failure cannot affect the
+ * caller's. A change only replaces a row whose {@code changed_at} is not newer, which makes applying the same
+ * history twice, or out of order, harmless; if two changes for a new row insert it concurrently, the loser's unique key
+ * violation is retried as an update. The audit log remains the record of consent: if a change cannot be applied, it is logged,
+ * and the store is marked as needing a backfill, so reads fall back to replaying the audit log until the next backfill has
+ * repaired it. {@link ConsentAuditService#getConsentStatus} otherwise reads the state with one indexed query.
+ *
+ * <p>Consents recorded before the store existed are only in the audit log. Until the backfill run by
+ * {@link com.digitalsanctuary.spring.user.jobs.ConsentStateBackfillJob} has completed, {@link #getConsentStatus(Long)} returns
+ * {@code null} and callers fall back to the audit log. Its completion, and the lease that keeps two nodes from running it at the
+ * same time, are kept in the one row of the {@code user_consent_state_backfill} table.
+ *
+ * @see ConsentAuditService
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "user.gdpr.consentStateStore", havingValue = "true")
+public class ConsentStateService {
+
+    /** The name of the row in {@code user_consent_state_backfill} that records the backfill lease and its completion. */
+    static final String BACKFILL_NAME = "consent_state_backfill";
+
+    /** How long a node trusts what it last read about the backfill, so one node reopening it is seen by the others. */
+    static final long BACKFILL_RECHECK_MILLIS = 60_000L;
+
+    private static final String UPDATE_SQL = "UPDATE user_consent_state SET active = ?, granted_at = ?, withdrawn_at = ?, changed_at = ? "
+            + "WHERE user_id = ? AND consent_type = ? AND changed_at <= ?";
+
+    private static final String EXISTS_SQL = "SELECT COUNT(*) FROM user_consent_state WHERE user_id = ? AND consent_type = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO user_consent_state (user_id, consent_type, active, granted_at, withdrawn_at, "
+            + "changed_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_SQL = "SELECT consent_type, active, granted_at, withdrawn_at FROM user_consent_state "
+            + "WHERE user_id = ? ORDER BY changed_at DESC";
+
+    private static final String DELETE_SQL = "DELETE FROM user_consent_state WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Runs each change in a transaction of its own, suspending the caller's (or the committed one it runs after). */
+    private final TransactionTemplate changeTransaction;
+
+    /** Whether the backfill was complete when last read. */
+    private volatile boolean backfilled;
+
+    /** When {@link #backfilled} was last read, in epoch milliseconds; {@code 0} if never. */
+    private volatile long backfilledCheckedAt;
+
+    /** Set while a failed change still has to reopen the backfill; the store is not read until it has. */
+    private volatile boolean reopenPending;
+
+    /**
+     * Creates the service.
+     *
+     * @param dataSource the application's {@link DataSource}, holding the {@code user_consent_state} table
+     * @param transactionManager the transaction manager the changes are applied with
+     */
+    @Autowired
+    public ConsentStateService(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this(new JdbcTemplate(dataSource), transactionManager);
+    }
+
+    /**
+     * Creates the service with the given template.
+     *
+     * @param jdbcTemplate the template for the database holding the tables
+     * @param transactionManager the transaction manager the changes are applied with
+     */
+    ConsentStateService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeTransaction = new TransactionTemplate(transactionManager);
+        this.changeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Applies a consent change to the store after the caller's transaction commits, or at once if there is no transaction. Never
+     * throws: the change is already in the audit log, so a failure only reopens the backfill.
+     *
+     * @param event the consent changed event
+     */
+    @EventListener
+    public void onConsentChanged(ConsentChangedEvent event) {
+        ConsentRecord record = event.getConsentRecord();
+        if (event.getUserId() == null || record == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyChange(event, record);
+                }
+            });
+        } else {
+            applyChange(event, record);
+        }
+    }
+
+    private void applyChange(ConsentChangedEvent event, ConsentRecord record) {
+        Instant changedAt = event.isGranted() ? record.getGrantedAt() : record.getWithdrawnAt();
+        try {
+            apply(event.getUserId(), record.getEffectiveTypeName(), event.isGranted(), changedAt != null ? changedAt : Instant.now());
+        } catch (RuntimeException e) {
+            log.error("ConsentStateService.onConsentChanged: Failed to store {} consent change for user {}; reading consent from the audit "
+                    + "log until the store is backfilled again", record.getEffectiveTypeName(), event.getUserId(), e);
+            reopenBackfill();
+        }
+    }
+
+    /**
+     * Records that a user's consent of one type changed at the given instant, unless a newer change is already stored. Runs in a
+     * transaction of its own; if a concurrent change inserted the row first, it is retried once as an update.
+     *
+     * @param userId the user id
+     * @param consentType the effective consent type name
+     * @param active true if the consent was granted, false if withdrawn
+     * @param changedAt when the change happened
+     * @return true if the store was updated, false if it already held a newer change
+     * @throws DataAccessException if the change could not be stored
+     */
+    public boolean apply(Long userId, String consentType, boolean active, Instant changedAt) {
+        try {
+            return changeTransaction.execute(status -> upsert(userId, consentType, active, changedAt));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("ConsentStateService.apply: {} consent state for user {} was inserted concurrently, retrying as an update",
+                    consentType, userId);
+            return changeTransaction.execute(status -> upsert(userId, consentType, active, changedAt));
+        }
+    }
+
+    private boolean upsert(Long userId, String consentType, boolean active, Instant changedAt) {
+        Timestamp changed = Timestamp.from(changedAt);
+        Timestamp grantedAt = active ? changed : null;
+        Timestamp withdrawnAt = active ? null : changed;
+        if (jdbcTemplate.update(UPDATE_SQL, active, grantedAt, withdrawnAt, changed, userId, consentType, changed) > 0) {
+            return true;
+        }
+        Integer existing = jdbcTemplate.queryForObject(EXISTS_SQL, Integer.class, userId, consentType);
+        if (existing != null && existing > 0) {
+            return false; // the stored change is newer
+        }
+        jdbcTemplate.update(INSERT_SQL, userId, consentType, active, grantedAt, withdrawnAt, changed);
+        return true;
+    }
+
+    /**
+     * Gets the current consent status of a user from the store.
+     *
+     * @param userId the user id
+     * @return map of consent type names to their current status, most recently changed first, or {@code null} if the backfill
+     *         has not completed and the store may be missing consents
+     */
+    public Map<String, ConsentStatus> getConsentStatus(Long userId) {
+        if (!isBackfilled()) {
+            return null;
+        }
+        Map<String, ConsentStatus> statusMap = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_SQL, (ResultSet rs) -> {
+            String type = rs.getString("consent_type");
+            statusMap.put(type, new ConsentStatus(type, rs.getBoolean("active"), instant(rs, "granted_at"), instant(rs, "withdrawn_at")));
+        }, userId);
+        return statusMap;
+    }
+
+    /**
+     * Checks whether the backfill from the audit log has completed. What was read is trusted for
+     * {@link #BACKFILL_RECHECK_MILLIS}.
+     *
+     * @return true if the store holds every user's consent history
+     */
+    public boolean isBackfilled() {
+        if (reopenPending && !reopen()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (backfilledCheckedAt == 0L || now - backfilledCheckedAt >= BACKFILL_RECHECK_MILLIS) {
+            List<Timestamp> completed = jdbcTemplate.queryForList(
+                    "SELECT completed_at FROM user_consent_state_backfill WHERE name = ?", Timestamp.class, BACKFILL_NAME);
+            backfilled = !completed.isEmpty() && completed.get(0) != null;
+            backfilledCheckedAt = now;
+        }
+        return backfilled;
+    }
+
+    /**
+     * Takes the lease on running the backfill, unless it has completed or another node holds an unexpired lease.
+     *
+     * @param owner identifies the caller, unique per run
+     * @param lease how long the lease lasts unless extended; after that another node may take it over
+     * @return true if the caller now holds the lease
+     */
+    public boolean tryLockBackfill(String owner, Duration lease) {
+        Timestamp now = Timestamp.from(Instant.now());
+        Timestamp until = Timestamp.from(now.toInstant().plus(lease));
+        if (jdbcTemplate.update("UPDATE user_consent_state_backfill SET locked_by = ?, locked_until = ? "
+                + "WHERE name = ? AND completed_at IS NULL AND locked_until <= ?", owner, until, BACKFILL_NAME, now) > 0) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO user_consent_state_backfill (name, locked_by, locked_until) VALUES (?, ?, ?)", BACKFILL_NAME,
+                    owner, until);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false; // completed, or leased by another node
+        }
+    }
+
+    /**
+     * Extends the caller's lease on running the backfill.
+     *
+     * @param owner the owner the lease was taken with
+     * @param lease how long from now the lease lasts
+     * @return true if the caller still held the lease
+     */
+    public boolean extendBackfillLock(String owner, Duration lease) {
+        return jdbcTemplate.update("UPDATE user_consent_state_backfill SET locked_until = ? WHERE name = ? AND locked_by = ?",
+                Timestamp.from(Instant.now().plus(lease)), BACKFILL_NAME, owner) > 0;
+    }
+
+    /**
+     * Releases the caller's lease on running the backfill, so another node may run it.
+     *
+     * @param owner the owner the lease was taken with
+     */
+    public void unlockBackfill(String owner) {
+        jdbcTemplate.update("UPDATE user_consent_state_backfill SET locked_until = ? WHERE name = ? AND locked_by = ?",
+                Timestamp.from(Instant.now()), BACKFILL_NAME, owner);
+    }
+
+    /**
+     * Records that the backfill from the audit log has completed, after which reads are answered from the store.
+     *
+     * @param owner the owner the lease was taken with
+     * @return true if the caller still held the lease and the completion was recorded
+     */
+    public boolean markBackfilled(String owner) {
+        Timestamp now = Timestamp.from(Instant.now());
+        boolean marked = jdbcTemplate.update("UPDATE user_consent_state_backfill SET completed_at = ?, locked_until = ? "
+                + "WHERE name = ? AND locked_by = ?", now, now, BACKFILL_NAME, owner) > 0;
+        if (marked) {
+            backfilled = true;
+            backfilledCheckedAt = System.currentTimeMillis();
+        }
+        return marked;
+    }
+
+    /**
+     * Stops answering reads from the store, on this node at once and on the others within {@link #BACKFILL_RECHECK_MILLIS}, until
+     * the backfill has run again.
+     */
+    private void reopenBackfill() {
+        backfilled = false;
+        backfilledCheckedAt = System.currentTimeMillis();
+        reopenPending = true;
+        reopen();
+    }
+
+    /**
+     * Clears the backfill's completion, retried from {@link #isBackfilled()} until it succeeds.
+     *
+     * @return true if the backfill was reopened
+     */
+    private boolean reopen() {
+        try {
+            jdbcTemplate.update("UPDATE user_consent_state_backfill SET completed_at = NULL WHERE name = ?", BACKFILL_NAME);
+            reopenPending = false;
+            return true;
+        } catch (DataAccessException e) {
+            log.warn("ConsentStateService.reopen: Failed to reopen the consent state backfill, will retry: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the consent state of a user being deleted, in the deletion's transaction, so a failure rolls back the deletion.
+     *
+     * @param event the user pre-delete event
+     */
+    @EventListener
+    public void onUserPreDelete(UserPreDeleteEvent event) {
+        int deleted = jdbcTemplate.update(DELETE_SQL, event.getUserId());
+        log.debug("ConsentStateService.onUserPreDelete: Deleted {} consent states for user {}", deleted, event.getUserId());
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
@@ -41,4 +41,61 @@ public class GdprConfig {
      */
     private boolean consentTracking = true;
 
+    /**
+     * If true, the current consent state of each user is kept in the {@code user_consent_state} table, updated as consent
+     * changes, and consent status is read from it instead of replaying the audit log. The table and
+     * {@code user_consent_state_backfill} are not created by the library (see {@code db-scripts/}).
+     * Default: false
+     */
+    private boolean consentStateStore = false;
+
+    /**
+     * If true, the consent state store is filled once from the audit log at startup, in the background, so consents recorded
+     * before it existed are included. Consent status is read from the audit log until the backfill completes.
+     * Default: true
+     */
+    private boolean consentStateBackfill = true;
+
+    /**
+     * If true, the {@link GdprDataContributor}s of a data export are called at the same time, each on its own virtual thread,
+     * without the caller's transaction, persistence session or security context. Only enable it if every contributor's
+     * {@code exportUserData} works without them.
+     * Default: false
+     */
+    private boolean concurrentContributors = false;
+
+    /**
+     * How long concurrently called contributors may take, in milliseconds. An export reports a contributor still running
+     * after this as timed out and leaves its data out; the cleanup of an
+     * {@link GdprDataContributor#isIndependent() independent} contributor after a deletion is interrupted and logged.
+     * Default: 30000
+     */
+    private long contributorTimeoutMs = 30000L;
+
+    /**
+     * Directory where background export jobs write their compressed exports. Created if missing, readable by the application's
+     * user only where the file system supports POSIX permissions; use a directory no other user can list. Files are deleted
+     * once downloaded, after {@link #exportJobRetentionMinutes}, or when their user is deleted.
+     * Default: {@code .gdpr-exports} under {@code user.home}
+     */
+    private String exportJobDirectory = System.getProperty("user.home") + "/.gdpr-exports";
+
+    /**
+     * Maximum number of background export jobs written at the same time.
+     * Default: 2
+     */
+    private int exportJobConcurrency = 2;
+
+    /**
+     * Maximum number of background export jobs waiting for a worker. Further requests are rejected until a job finishes.
+     * Default: 50
+     */
+    private int exportJobQueueCapacity = 50;
+
+    /**
+     * How long, in minutes, a finished export is kept for download, and a job's status for polling.
+     * Default: 60
+     */
+    private int exportJobRetentionMinutes = 60;
+
 }
@@ -0,0 +1,102 @@
+package com.digitalsanctuary.spring.user.gdpr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Calls a set of {@link GdprDataContributor}s at the same time, one virtual thread each, and collects their outcomes in
+ * contributor order.
+ *
+ * <p>The calls start when the instance is created, so the caller can do its own work while they run. {@link #await()} then
+ * waits for them until a shared deadline, {@code timeoutMs} after the start; a call still running at the deadline is
+ * interrupted and reported as timed out rather than holding up the caller.
+ *
+ * <p>Contributors called this way run on threads named {@code ds-gdpr-contributor-N}, without the caller's transaction,
+ * security context or other thread-bound state.
+ *
+ * @param <T> the result of one call
+ */
+final class GdprContributorCalls<T> {
+
+    /**
+     * The outcome of calling one contributor.
+     *
+     * @param contributor the contributor
+     * @param value the result, or {@code null} if the call failed or timed out
+     * @param failure what the call threw, or {@code null}
+     * @param timedOut true if the call had not finished by the deadline
+     */
+    record Outcome<T>(GdprDataContributor contributor, T value, Throwable failure, boolean timedOut) {
+
+        /**
+         * Checks whether the call returned normally.
+         *
+         * @return true if the call neither failed nor timed out
+         */
+        boolean succeeded() {
+            return failure == null && !timedOut;
+        }
+    }
+
+    private static final ThreadFactory CONTRIBUTOR_THREADS = Thread.ofVirtual().name("ds-gdpr-contributor-", 0).factory();
+
+    private final List<GdprDataContributor> contributors;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(CONTRIBUTOR_THREADS);
+    private final List<Future<T>> futures = new ArrayList<>();
+    private final long deadline;
+
+    /**
+     * Starts calling the contributors.
+     *
+     * @param contributors the contributors, in the order their outcomes are returned
+     * @param call the call to make on each contributor
+     * @param timeoutMs how long the calls may take, in milliseconds from now
+     */
+    GdprContributorCalls(List<GdprDataContributor> contributors, Function<GdprDataContributor, T> call, long timeoutMs) {
+        this.contributors = List.copyOf(contributors);
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (GdprDataContributor contributor : this.contributors) {
+            futures.add(executor.submit(() -> call.apply(contributor)));
+        }
+    }
+
+    /**
+     * Waits for the calls until the deadline and returns their outcomes. Calls still running are interrupted.
+     *
+     * @return one outcome per contributor, in contributor order
+     */
+    List<Outcome<T>> await() {
+        List<Outcome<T>> outcomes = new ArrayList<>(contributors.size());
+        try {
+            for (int i = 0; i < contributors.size(); i++) {
+                outcomes.add(await(contributors.get(i), futures.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    private Outcome<T> await(GdprDataContributor contributor, Future<T> future) {
+        try {
+            return new Outcome<>(contributor, future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS), null, false);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return new Outcome<>(contributor, null, null, true);
+        } catch (ExecutionException e) {
+            return new Outcome<>(contributor, null, e.getCause(), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return new Outcome<>(contributor, null, e, false);
+        }
+    }
+}
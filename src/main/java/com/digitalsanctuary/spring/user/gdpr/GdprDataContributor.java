@@ -2,6 +2,7 @@ package com.digitalsanctuary.spring.user.gdpr;
 
 import java.util.Map;
 import com.digitalsanctuary.spring.user.persistence.model.User;
+import tools.jackson.core.JsonGenerator;
 
 /**
  * Interface for components that contribute user data to GDPR exports.
@@ -63,6 +64,10 @@ public interface GdprDataContributor {
      * The map structure should be suitable for JSON serialization.
      * Return null or an empty map if no data exists for this user.
      *
+     * <p>Called on the exporting thread, one contributor after another, unless {@code user.gdpr.concurrentContributors} is
+     * enabled. Then it is called on its own virtual thread, at the same time as the other contributors, without the caller's
+     * transaction, persistence session or security context, and must return within {@code user.gdpr.contributorTimeoutMs}.
+     *
      * <p>This method should include all data that:
      * <ul>
      *   <li>Is directly linked to the user's identity</li>
@@ -75,6 +80,58 @@ public interface GdprDataContributor {
      */
     Map<String, Object> exportUserData(User user);
 
+    /**
+     * Writes GDPR-relevant data for the given user to a streaming export.
+     *
+     * <p>Used by {@link GdprExportService#writeUserData} in place of {@link #exportUserData(User)}, so data can be written as it
+     * is read rather than collected into a map first. The generator is positioned inside this contributor's section object:
+     * write its properties (for example with {@code writePOJOProperty}, or {@code writeArrayPropertyStart} followed by one
+     * element per row) and leave the section object open; the framework closes it.
+     *
+     * <p>The default implementation writes the entries of {@link #exportUserData(User)}. Override it when a user can have more
+     * data than should be held in memory at once, e.g. by writing rows from a paged query or a repository {@code Stream}:
+     * <pre>{@code
+     * @Override
+     * public void writeUserData(User user, JsonGenerator generator) {
+     *     generator.writeArrayPropertyStart("orders");
+     *     try (Stream<Order> orders = orderRepository.streamByUserId(user.getId())) {
+     *         orders.map(this::toExportFormat).forEach(generator::writePOJO);
+     *     }
+     *     generator.writeEndArray();
+     * }
+     * }</pre>
+     *
+     * <p>Properties are written to the export as they are produced. If this method throws after writing some of them, they
+     * stay in the export and the framework adds an {@code "_exportError"} property to mark the section incomplete; if it throws
+     * inside an array or object it opened, the whole export fails. Do not use {@code "_exportError"} as a property name.
+     *
+     * @param user the user whose data to export
+     * @param generator the generator of the export document
+     */
+    default void writeUserData(User user, JsonGenerator generator) {
+        Map<String, Object> data = exportUserData(user);
+        if (data != null) {
+            data.forEach(generator::writePOJOProperty);
+        }
+    }
+
+    /**
+     * Whether this contributor's {@link #prepareForDeletion(User)} cleans up data outside the deletion transaction, such as in a
+     * remote service or another data source, and so must only run once the deletion has committed.
+     *
+     * <p>Contributors are dependent by default: they are called one after another on the deleting thread, inside the deletion
+     * transaction, and a failure rolls the deletion back. An independent contributor is instead called after the deletion
+     * commits, at the same time as the other independent contributors, each on its own virtual thread without the caller's
+     * transaction or security context, within {@code user.gdpr.contributorTimeoutMs}. The deletion can no longer be rolled back
+     * then, so a failure or timeout is logged, and the user is gone; the contributor must be able to clean up, or be retried,
+     * from the user's id and email alone.
+     *
+     * @return true if {@link #prepareForDeletion(User)} must be called after the deletion commits
+     */
+    default boolean isIndependent() {
+        return false;
+    }
+
     /**
      * Called before user deletion to clean up related data.
      *
@@ -82,8 +139,11 @@ public interface GdprDataContributor {
      * framework-managed data. Implementers should handle cleanup of their
      * own domain-specific tables and data.
      *
-     * <p>This method is called within the deletion transaction, so any
-     * exceptions will cause the entire deletion to roll back.
+     * <p>Unless {@link #isIndependent()} returns true, this method is called within
+     * the deletion transaction, so any exceptions will cause the entire deletion to
+     * roll back. It must then only change data in that transaction: a call to an
+     * external API could succeed while the deletion rolls back. Clean up such data
+     * from an independent contributor, which is called after the deletion commits.
      *
      * <p>Implementations should either:
      * <ul>
@@ -16,6 +16,7 @@ import com.digitalsanctuary.spring.user.persistence.model.VerificationToken;
 import com.digitalsanctuary.spring.user.persistence.repository.PasswordResetTokenRepository;
 import com.digitalsanctuary.spring.user.persistence.repository.UserRepository;
 import com.digitalsanctuary.spring.user.persistence.repository.VerificationTokenRepository;
+import java.util.ArrayList;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +31,7 @@ import lombok.extern.slf4j.Slf4j;
  *   <li>Publishing {@link UserPreDeleteEvent} for additional cleanup</li>
  *   <li>Deleting framework-managed data (user, tokens)</li>
  *   <li>Publishing {@link UserDeletedEvent} after successful deletion</li>
+ *   <li>Calling {@link GdprDataContributor#isIndependent() independent} contributors after the deletion commits</li>
  * </ul>
  *
  * @see GdprDataContributor
@@ -40,6 +42,9 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class GdprDeletionService {
 
+    /** The email domain of anonymized accounts, reserved by RFC 2606 so it never receives mail. */
+    public static final String ANONYMIZED_EMAIL_DOMAIN = "anonymized.invalid";
+
     private final GdprConfig gdprConfig;
     private final GdprExportService gdprExportService;
     private final UserRepository userRepository;
@@ -167,9 +172,10 @@ public class GdprDeletionService {
     protected DeletionResult executeUserDeletion(User user, GdprExportDTO exportedData, boolean wasExported) {
         Long userId = user.getId();
         String userEmail = user.getEmail();
+        User deletedUser = detachedCopy(user);
 
-        // Step 2: Notify all GdprDataContributors to prepare for deletion
-        prepareContributorsForDeletion(user);
+        // Step 2: Notify all GdprDataContributors to prepare for deletion; independent ones run after commit
+        List<GdprDataContributor> independent = prepareContributorsForDeletion(user);
 
         // Step 3: Publish UserPreDeleteEvent for additional cleanup
         log.debug("GdprDeletionService.deleteUser: Publishing UserPreDeleteEvent for user {}", userId);
@@ -188,12 +194,81 @@ public class GdprDeletionService {
         // (especially @Async ones) never observe a not-yet-committed deletion. If no transaction
         // is active, publish immediately.
         publishUserDeletedEventAfterCommit(userId, userEmail, wasExported);
+        cleanUpIndependentContributorsAfterCommit(deletedUser, independent);
 
         return wasExported
                 ? DeletionResult.successWithExport(exportedData)
                 : DeletionResult.success(null);
     }
 
+    /**
+     * Removes a user's personal data but keeps the account row, for applications whose own records must keep referring to it.
+     *
+     * <p>Contributors and {@link UserPreDeleteEvent} listeners are called, and framework-managed data deleted, exactly as for
+     * {@link #deleteUser(User)}. The account is then disabled and its name, password, password history and roles cleared; its
+     * email is replaced by {@code anonymized-<id>@}{@value #ANONYMIZED_EMAIL_DOMAIN}. A {@link UserDeletedEvent} is published
+     * after commit, since the account no longer identifies anyone.
+     *
+     * @param user the user to anonymize
+     * @return the result of the operation
+     * @throws IllegalArgumentException if user is null
+     */
+    public DeletionResult anonymizeUser(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+
+        Long userId = user.getId();
+        log.info("GdprDeletionService.anonymizeUser: Starting anonymization of user {}", userId);
+        try {
+            return self.executeUserAnonymization(user);
+        } catch (Exception e) {
+            log.error("GdprDeletionService.anonymizeUser: Failed to anonymize user {}: {}",
+                    userId, e.getMessage(), e);
+            return DeletionResult.failure("Failed to anonymize user: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Internal transactional method that performs the actual anonymization.
+     *
+     * @param user the user to anonymize
+     * @return the result of the operation
+     */
+    @Transactional
+    protected DeletionResult executeUserAnonymization(User user) {
+        Long userId = user.getId();
+        String userEmail = user.getEmail();
+        // Taken before the fields are cleared, so independent contributors still see the real email
+        User anonymizedUser = detachedCopy(user);
+
+        List<GdprDataContributor> independent = prepareContributorsForDeletion(user);
+
+        log.debug("GdprDeletionService.anonymizeUser: Publishing UserPreDeleteEvent for user {}", userId);
+        eventPublisher.publishEvent(new UserPreDeleteEvent(this, userId, userEmail));
+
+        deleteFrameworkData(user);
+
+        user.setFirstName(null);
+        user.setLastName(null);
+        user.setEmail("anonymized-" + userId + "@" + ANONYMIZED_EMAIL_DOMAIN);
+        user.setPassword(null);
+        user.setEnabled(false);
+        user.setLocked(false);
+        user.setLockedDate(null);
+        user.setFailedLoginAttempts(0);
+        user.getRolesAsSet().clear();
+        user.getPasswordHistoryEntries().clear();
+        userRepository.save(user);
+
+        log.info("GdprDeletionService.anonymizeUser: Successfully anonymized user {}", userId);
+
+        publishUserDeletedEventAfterCommit(userId, userEmail, false);
+        cleanUpIndependentContributorsAfterCommit(anonymizedUser, independent);
+
+        return DeletionResult.success(null);
+    }
+
     /**
      * Publishes a {@link UserDeletedEvent} after the current transaction commits.
      *
@@ -220,31 +295,112 @@ public class GdprDeletionService {
     /**
      * Notifies all GdprDataContributors to prepare for deletion.
      * <p>
-     * <b>IMPORTANT:</b> Contributors MUST only delete data within the same transactional context
-     * (i.e., database records in the same database). Avoid calling external APIs or services
-     * that could succeed while the main transaction fails, leading to partial deletion.
+     * <b>IMPORTANT:</b> Contributors that are not {@link GdprDataContributor#isIndependent() independent} are called one after
+     * another in the deletion transaction, and MUST only delete data within the same transactional context (i.e., database
+     * records in the same database). Avoid calling external APIs or services from them that could succeed while the main
+     * transaction fails, leading to partial deletion. A failure of any of them rolls the deletion back.
      * <p>
-     * If external data needs cleanup, consider implementing async event listeners for
-     * {@link com.digitalsanctuary.spring.user.event.UserDeletedEvent} instead.
+     * If external data needs cleanup, make its contributor independent instead: independent contributors are not called here,
+     * but returned, and called by {@link #cleanUpIndependentContributorsAfterCommit} once the deletion has committed.
+     *
+     * @return the independent contributors, still to be called
      */
-    private void prepareContributorsForDeletion(User user) {
+    private List<GdprDataContributor> prepareContributorsForDeletion(User user) {
+        List<GdprDataContributor> independent = new ArrayList<>();
         if (dataContributors == null || dataContributors.isEmpty()) {
-            return;
+            return independent;
         }
 
         for (GdprDataContributor contributor : dataContributors) {
+            if (contributor.isIndependent()) {
+                independent.add(contributor);
+                continue;
+            }
             try {
                 log.debug("GdprDeletionService.prepareContributorsForDeletion: Calling prepareForDeletion on '{}'",
                         contributor.getDataKey());
                 contributor.prepareForDeletion(user);
             } catch (Exception e) {
-                log.error("GdprDeletionService.prepareContributorsForDeletion: Contributor '{}' failed: {}",
-                        contributor.getDataKey(), e.getMessage(), e);
-                // Re-throw to trigger transaction rollback
-                throw new RuntimeException("Data contributor '" + contributor.getDataKey() +
-                        "' failed during deletion preparation: " + e.getMessage(), e);
+                throw contributorFailed(contributor, e);
             }
         }
+        return independent;
+    }
+
+    /**
+     * Copies a user's identifying fields into a new, detached {@link User}. Independent contributors are given this copy: they
+     * run after commit, off the caller's thread and persistence context, and, for an anonymization, after the entity's own fields
+     * have been cleared.
+     *
+     * @param user the user being deleted or anonymized
+     * @return the copy
+     */
+    private static User detachedCopy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setFirstName(user.getFirstName());
+        copy.setLastName(user.getLastName());
+        copy.setRegistrationDate(user.getRegistrationDate());
+        return copy;
+    }
+
+    /**
+     * Calls the independent contributors' {@link GdprDataContributor#prepareForDeletion(User)} after the current transaction
+     * commits, so no remote cleanup happens for a deletion that rolls back, and none runs while the deletion holds its row
+     * locks. If no transaction is active, they are called at once.
+     *
+     * @param user a detached copy of the deleted user
+     * @param independent the independent contributors
+     */
+    private void cleanUpIndependentContributorsAfterCommit(User user, List<GdprDataContributor> independent) {
+        if (independent.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cleanUpIndependentContributors(user, independent);
+                }
+            });
+        } else {
+            cleanUpIndependentContributors(user, independent);
+        }
+    }
+
+    /**
+     * Calls the independent contributors at the same time, each within {@code user.gdpr.contributorTimeoutMs}. The deletion has
+     * already committed, so a failure or timeout is logged rather than rethrown; a timed-out call is interrupted, but its cleanup
+     * may still complete.
+     */
+    private void cleanUpIndependentContributors(User user, List<GdprDataContributor> independent) {
+        log.debug("GdprDeletionService.cleanUpIndependentContributors: Calling prepareForDeletion on {} independent contributors",
+                independent.size());
+        GdprContributorCalls<Void> calls = new GdprContributorCalls<>(independent, contributor -> {
+            contributor.prepareForDeletion(user);
+            return null;
+        }, gdprConfig.getContributorTimeoutMs());
+        for (GdprContributorCalls.Outcome<Void> outcome : calls.await()) {
+            if (outcome.timedOut()) {
+                log.error("GdprDeletionService.cleanUpIndependentContributors: Contributor '{}' did not finish its cleanup for deleted user {} "
+                        + "within {} ms", outcome.contributor().getDataKey(), user.getId(), gdprConfig.getContributorTimeoutMs());
+            } else if (outcome.failure() != null) {
+                log.error("GdprDeletionService.cleanUpIndependentContributors: Contributor '{}' failed to clean up deleted user {}: {}",
+                        outcome.contributor().getDataKey(), user.getId(), outcome.failure().getMessage(), outcome.failure());
+            }
+        }
+    }
+
+    /**
+     * Logs a contributor failure and wraps it in the exception that rolls the deletion back.
+     */
+    private RuntimeException contributorFailed(GdprDataContributor contributor, Throwable e) {
+        log.error("GdprDeletionService.prepareContributorsForDeletion: Contributor '{}' failed: {}",
+                contributor.getDataKey(), e.getMessage(), e);
+        // Re-throw to trigger transaction rollback
+        return new RuntimeException("Data contributor '" + contributor.getDataKey() +
+                "' failed during deletion preparation: " + e.getMessage(), e);
     }
 
     /**
@@ -0,0 +1,175 @@
+package com.digitalsanctuary.spring.user.gdpr;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A background GDPR data export requested by a user, as tracked by {@link GdprExportJobService}.
+ *
+ * <p>Serialized as the job status returned to the client: its id, status and timestamps. The owning user and the location of
+ * the export file are not exposed. The user is kept by id and email only, not as an entity, so a job never holds a persistence
+ * session's state across threads; the worker loads the user when it runs.
+ */
+public class GdprExportJob {
+
+    /**
+     * The lifecycle of an export job.
+     */
+    public enum Status {
+        /** Waiting for a free worker. */
+        QUEUED,
+        /** Being written. */
+        RUNNING,
+        /** Written and ready to download. */
+        COMPLETED,
+        /** Being downloaded. */
+        DOWNLOADING,
+        /** Downloaded; the file has been deleted. */
+        DOWNLOADED,
+        /** The export failed; a new job can be requested. */
+        FAILED,
+        /** Not downloaded within the retention period; the file has been deleted. */
+        EXPIRED,
+        /** The user was deleted; the job was stopped and its file deleted. */
+        CANCELLED;
+
+        /**
+         * Checks whether a job in this status is still being worked on.
+         *
+         * @return true if queued or running
+         */
+        public boolean isActive() {
+            return this == QUEUED || this == RUNNING;
+        }
+    }
+
+    private final String id;
+    private final Long userId;
+    private final String userEmail;
+    private final Path file;
+    private final Instant createdAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant completedAt;
+    private volatile Instant expiresAt;
+    private volatile long sizeBytes;
+
+    /**
+     * Creates a queued job.
+     *
+     * @param id the job id
+     * @param userId the id of the user whose data is exported
+     * @param userEmail the email of that user, recorded in the job's audit events
+     * @param file where the compressed export is written
+     * @param createdAt when the job was requested
+     * @param expiresAt when the job is forgotten if it has not finished by then
+     */
+    GdprExportJob(String id, Long userId, String userEmail, Path file, Instant createdAt, Instant expiresAt) {
+        this.id = id;
+        this.userId = userId;
+        this.userEmail = userEmail;
+        this.file = file;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns the job id, used to poll the job and download its result.
+     *
+     * @return the job id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the status.
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns when the job was requested.
+     *
+     * @return the creation time
+     */
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Returns when the export finished, successfully or not.
+     *
+     * @return the completion time, or {@code null} while queued or running
+     */
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * Returns when the job and its file are discarded if not downloaded.
+     *
+     * @return the expiry time
+     */
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Returns the size of the compressed export.
+     *
+     * @return the size in bytes, or {@code 0} until completed
+     */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Returns the id of the user whose data is exported.
+     *
+     * @return the user id
+     */
+    Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * Returns the email of the user whose data is exported, as it was when the job was requested.
+     *
+     * @return the user email
+     */
+    String getUserEmail() {
+        return userEmail;
+    }
+
+    /**
+     * Returns where the compressed export is written.
+     *
+     * @return the export file
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Checks whether the job belongs to a user.
+     *
+     * @param userId the user id
+     * @return true if the job exports that user's data
+     */
+    boolean isOwnedBy(Long userId) {
+        return userId != null && userId.equals(this.userId);
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    void completed(Instant completedAt, Instant expiresAt, long sizeBytes) {
+        this.completedAt = completedAt;
+        this.expiresAt = expiresAt;
+        this.sizeBytes = sizeBytes;
+    }
+}
@@ -0,0 +1,468 @@
+package com.digitalsanctuary.spring.user.gdpr;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.digitalsanctuary.spring.user.audit.AuditEvent;
+import com.digitalsanctuary.spring.user.event.UserPreDeleteEvent;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.persistence.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs GDPR data exports as background jobs, so a client does not hold a request open while a large export is written.
+ *
+ * <p>{@link #submit(User)} queues a job and returns at once. A bounded pool of {@code user.gdpr.exportJobConcurrency} workers,
+ * named {@code ds-gdpr-export-N}, loads the user again in a read-only transaction of its own and writes each export with
+ * {@link GdprExportService#writeUserData} to a gzip-compressed file under {@code user.gdpr.exportJobDirectory}; at most
+ * {@code user.gdpr.exportJobQueueCapacity} jobs wait for a worker, and further requests are rejected. A user has at most one job queued or running at a time: asking again returns that job.
+ *
+ * <p>The client polls {@link #getJob(String, User)} and downloads the result once, through {@link #claimDownload} and
+ * {@link #finishDownload}; the file is deleted as soon as it has been delivered. Finished jobs and their files are discarded
+ * after {@code user.gdpr.exportJobRetentionMinutes} by {@link #purgeExpired()}. Each step is recorded as a
+ * {@value #AUDIT_ACTION} audit event.
+ *
+ * <p>Where the file system supports POSIX permissions, the export directory is created readable by the application's user
+ * only, and each export file is created with owner-only permissions. When a user is deleted, their jobs are cancelled and their
+ * files deleted once the deletion commits, see {@link #onUserPreDelete}.
+ *
+ * <p>Job state changes under the service's monitor; audit events are published after it is released, so a slow audit listener
+ * never holds up other requests or the workers.
+ *
+ * <p>Jobs are tracked in memory: they do not survive a restart, and a client must poll the instance that accepted its job.
+ * Files left behind by an earlier run are deleted once they are older than the retention period.
+ *
+ * @see GdprExportJob
+ */
+@Slf4j
+@Service
+public class GdprExportJobService {
+
+    /** The audit action of export job events. */
+    public static final String AUDIT_ACTION = "GdprExportJob";
+
+    /** The name prefix of export files. */
+    static final String FILE_PREFIX = "gdpr-export-";
+
+    /** The name suffix of export files. */
+    static final String FILE_SUFFIX = ".json.gz";
+
+    private static final String PART_SUFFIX = ".part";
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private final GdprConfig gdprConfig;
+    private final GdprExportService gdprExportService;
+    private final UserRepository userRepository;
+    private final TransactionTemplate exportTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, GdprExportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the service and its worker pool.
+     *
+     * @param gdprConfig the GDPR configuration
+     * @param gdprExportService writes the exports
+     * @param userRepository loads the exported user on the worker
+     * @param transactionManager the transaction manager each export is written in
+     * @param eventPublisher publishes the audit events
+     */
+    public GdprExportJobService(GdprConfig gdprConfig, GdprExportService gdprExportService, UserRepository userRepository,
+            PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher) {
+        this.gdprConfig = gdprConfig;
+        this.gdprExportService = gdprExportService;
+        this.userRepository = userRepository;
+        this.exportTransaction = new TransactionTemplate(transactionManager);
+        this.exportTransaction.setReadOnly(true);
+        this.eventPublisher = eventPublisher;
+        int concurrency = Math.max(1, gdprConfig.getExportJobConcurrency());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, gdprConfig.getExportJobQueueCapacity())), runnable -> {
+                    Thread thread = new Thread(runnable, "ds-gdpr-export-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Requests a background export of a user's data.
+     *
+     * @param user the user whose data to export
+     * @return the new job, or the user's job that is already queued or running
+     * @throws IllegalArgumentException if user is null
+     * @throws RejectedExecutionException if too many jobs are already waiting
+     * @throws UncheckedIOException if the export directory cannot be created
+     */
+    public GdprExportJob submit(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        purgeExpired();
+
+        GdprExportJob job;
+        synchronized (this) {
+            Optional<GdprExportJob> active = jobs.values().stream()
+                    .filter(candidate -> candidate.isOwnedBy(user.getId()) && candidate.getStatus().isActive())
+                    .findFirst();
+            if (active.isPresent()) {
+                return active.get();
+            }
+            job = createJob(user);
+        }
+        // Audited before the worker can start, so the job's events are recorded in order
+        audit(job, "Requested", "Export job " + job.getId() + " requested");
+        try {
+            startJob(job);
+        } catch (RejectedExecutionException e) {
+            audit(job, "Rejected", "Export job " + job.getId() + " rejected: too many jobs waiting");
+            throw e;
+        }
+        log.info("GdprExportJobService.submit: Queued export job {} for user {}", job.getId(), user.getId());
+        return job;
+    }
+
+    /**
+     * Registers a new queued job for a user, creating the export directory if needed. Called holding the service's monitor.
+     */
+    private GdprExportJob createJob(User user) {
+        Path directory = directory();
+        try {
+            if (isPosix(directory)) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            } else {
+                Files.createDirectories(directory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create GDPR export directory " + directory, e);
+        }
+
+        String id = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        GdprExportJob job = new GdprExportJob(id, user.getId(), user.getEmail(), directory.resolve(FILE_PREFIX + id + FILE_SUFFIX), now,
+                now.plus(retention()));
+        jobs.put(id, job);
+        return job;
+    }
+
+    /**
+     * Hands a new job to the workers, unless it was cancelled since it was created.
+     *
+     * @throws RejectedExecutionException if too many jobs are already waiting; the job is then forgotten
+     */
+    private synchronized void startJob(GdprExportJob job) {
+        if (job.getStatus() != GdprExportJob.Status.QUEUED) {
+            return;
+        }
+        try {
+            tasks.put(job.getId(), workers.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a user's job.
+     *
+     * @param id the job id
+     * @param user the user asking
+     * @return the job, if it exists and belongs to the user
+     */
+    public Optional<GdprExportJob> getJob(String id, User user) {
+        GdprExportJob job = id != null ? jobs.get(id) : null;
+        return job != null && user != null && job.isOwnedBy(user.getId()) ? Optional.of(job) : Optional.empty();
+    }
+
+    /**
+     * Reserves a completed job's file for download, so it is downloaded once. Call {@link #finishDownload} when done.
+     *
+     * @param id the job id
+     * @param user the user asking
+     * @return the export file, if the job belongs to the user and is completed and not already being downloaded
+     */
+    public synchronized Optional<Path> claimDownload(String id, User user) {
+        Optional<GdprExportJob> job = getJob(id, user).filter(candidate -> candidate.getStatus() == GdprExportJob.Status.COMPLETED);
+        job.ifPresent(claimed -> claimed.setStatus(GdprExportJob.Status.DOWNLOADING));
+        return job.map(GdprExportJob::getFile);
+    }
+
+    /**
+     * Ends a download started with {@link #claimDownload}. A delivered export's file is deleted; otherwise the job can be
+     * downloaded again.
+     *
+     * @param id the job id
+     * @param delivered true if the whole file was sent
+     */
+    public void finishDownload(String id, boolean delivered) {
+        GdprExportJob job;
+        synchronized (this) {
+            job = jobs.get(id);
+            if (job == null || job.getStatus() != GdprExportJob.Status.DOWNLOADING) {
+                return;
+            }
+            if (!delivered) {
+                job.setStatus(GdprExportJob.Status.COMPLETED);
+                return;
+            }
+            deleteQuietly(job.getFile());
+            job.setStatus(GdprExportJob.Status.DOWNLOADED);
+        }
+        audit(job, "Downloaded", "Export job " + id + " downloaded");
+    }
+
+    /**
+     * Discards finished jobs older than the retention period, with their files, and deletes export files no job refers to,
+     * such as those of a previous run, once they are as old.
+     */
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        for (GdprExportJob job : removeExpired(now)) {
+            audit(job, "Expired", "Export job " + job.getId() + " expired without being downloaded");
+        }
+
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant cutoff = now.minus(retention());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(FILE_PREFIX.length()).replace(PART_SUFFIX, "").replace(FILE_SUFFIX, "");
+                if (!jobs.containsKey(id) && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("GdprExportJobService.purgeExpired: Failed to list {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets the finished jobs older than the retention period and deletes the files of those never downloaded.
+     *
+     * @return the jobs that expired without being downloaded
+     */
+    private synchronized List<GdprExportJob> removeExpired(Instant now) {
+        List<GdprExportJob> expired = new ArrayList<>();
+        jobs.values().removeIf(job -> {
+            GdprExportJob.Status status = job.getStatus();
+            if (status.isActive() || status == GdprExportJob.Status.DOWNLOADING || job.getExpiresAt().isAfter(now)) {
+                return false;
+            }
+            if (status == GdprExportJob.Status.COMPLETED) {
+                deleteQuietly(job.getFile());
+                job.setStatus(GdprExportJob.Status.EXPIRED);
+                expired.add(job);
+            }
+            return true;
+        });
+        return expired;
+    }
+
+    /**
+     * Cancels the jobs of a user being deleted and deletes their files, so no export of a deleted account is left on disk or
+     * still being written. A running export is interrupted, and its partial file discarded once the worker stops.
+     *
+     * <p>Runs after the deletion's transaction commits, so a deletion that rolls back keeps the user's exports, and no file work
+     * happens while the deletion holds its locks; without a transaction it runs at once.
+     *
+     * @param event the user pre-delete event
+     */
+    @EventListener
+    public void onUserPreDelete(UserPreDeleteEvent event) {
+        Long userId = event.getUserId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cancelJobs(userId);
+                }
+            });
+        } else {
+            cancelJobs(userId);
+        }
+    }
+
+    /**
+     * Cancels a user's jobs and deletes their files.
+     */
+    private synchronized void cancelJobs(Long userId) {
+        jobs.values().removeIf(job -> {
+            if (!job.isOwnedBy(userId)) {
+                return false;
+            }
+            Future<?> task = tasks.remove(job.getId());
+            if (task != null) {
+                task.cancel(true);
+            }
+            job.setStatus(GdprExportJob.Status.CANCELLED);
+            deleteQuietly(job.getFile());
+            deleteQuietly(partFile(job));
+            log.info("GdprExportJobService.cancelJobs: Cancelled export job {} of deleted user {}", job.getId(), userId);
+            return true;
+        });
+    }
+
+    /**
+     * Stops the workers. Jobs not yet finished are abandoned.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Writes a job's export to a temporary file and moves it into place once complete, unless the job has been cancelled. The
+     * user is loaded, and the export written, in a read-only transaction of the worker's own.
+     */
+    private void run(GdprExportJob job) {
+        synchronized (this) {
+            if (job.getStatus() != GdprExportJob.Status.QUEUED) {
+                return;
+            }
+            job.setStatus(GdprExportJob.Status.RUNNING);
+        }
+        Path part = partFile(job);
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(createOwnerOnlyFile(part))))) {
+                exportTransaction.executeWithoutResult(status -> {
+                    User user = userRepository.findById(job.getUserId())
+                            .orElseThrow(() -> new IllegalStateException("User " + job.getUserId() + " no longer exists"));
+                    gdprExportService.writeUserData(user, out);
+                });
+            }
+            synchronized (this) {
+                if (discardIfCancelled(job, part)) {
+                    return;
+                }
+                Files.move(part, job.getFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Instant now = Instant.now();
+                job.completed(now, now.plus(retention()), Files.size(job.getFile()));
+            }
+            // Audited before the job can be downloaded, so the job's events are recorded in order
+            audit(job, "Success", "Export job " + job.getId() + " completed");
+            finish(job, GdprExportJob.Status.COMPLETED);
+            log.info("GdprExportJobService.run: Completed export job {} for user {}", job.getId(), job.getUserId());
+        } catch (Exception e) {
+            synchronized (this) {
+                if (discardIfCancelled(job, part)) {
+                    return;
+                }
+                deleteQuietly(part);
+                Instant now = Instant.now();
+                job.completed(now, now.plus(retention()), 0L);
+            }
+            audit(job, "Failure", "Export job " + job.getId() + " failed: " + e.getMessage());
+            finish(job, GdprExportJob.Status.FAILED);
+            log.error("GdprExportJobService.run: Export job {} for user {} failed: {}", job.getId(), job.getUserId(),
+                    e.getMessage(), e);
+        } finally {
+            tasks.remove(job.getId());
+        }
+    }
+
+    /**
+     * Moves a running job to its final status, unless it was cancelled meanwhile.
+     */
+    private synchronized void finish(GdprExportJob job, GdprExportJob.Status status) {
+        if (job.getStatus() == GdprExportJob.Status.RUNNING) {
+            job.setStatus(status);
+        }
+    }
+
+    /**
+     * Deletes the partial file of a job cancelled while it was being written.
+     *
+     * @return true if the job was cancelled
+     */
+    private boolean discardIfCancelled(GdprExportJob job, Path part) {
+        if (job.getStatus() != GdprExportJob.Status.CANCELLED) {
+            return false;
+        }
+        deleteQuietly(part);
+        log.info("GdprExportJobService.run: Discarded cancelled export job {}", job.getId());
+        return true;
+    }
+
+    /**
+     * Creates an empty file, with owner-only permissions where the file system supports them.
+     */
+    private static Path createOwnerOnlyFile(Path file) throws IOException {
+        return isPosix(file) ? Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE)) : Files.createFile(file);
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static Path partFile(GdprExportJob job) {
+        return job.getFile().resolveSibling(job.getFile().getFileName() + PART_SUFFIX);
+    }
+
+    private Path directory() {
+        return Paths.get(gdprConfig.getExportJobDirectory());
+    }
+
+    private Duration retention() {
+        return Duration.ofMinutes(Math.max(1, gdprConfig.getExportJobRetentionMinutes()));
+    }
+
+    private void audit(GdprExportJob job, String status, String message) {
+        User user = new User();
+        user.setId(job.getUserId());
+        user.setEmail(job.getUserEmail());
+        eventPublisher.publishEvent(AuditEvent.builder()
+                .source(this)
+                .user(user)
+                .action(AUDIT_ACTION)
+                .actionStatus(status)
+                .message(message)
+                .build());
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("GdprExportJobService.deleteQuietly: Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.digitalsanctuary.spring.user.gdpr;
 
+import java.io.OutputStream;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -7,10 +8,12 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import com.digitalsanctuary.spring.user.audit.AuditEventDTO;
 import com.digitalsanctuary.spring.user.audit.AuditLogQueryService;
+import com.digitalsanctuary.spring.user.audit.AuditQuery;
 import com.digitalsanctuary.spring.user.dto.GdprExportDTO;
 import com.digitalsanctuary.spring.user.event.UserDataExportedEvent;
 import com.digitalsanctuary.spring.user.persistence.model.PasswordResetToken;
@@ -23,6 +26,8 @@ import com.digitalsanctuary.spring.user.persistence.repository.VerificationToken
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
 import tools.jackson.databind.ObjectMapper;
 
 /**
@@ -41,6 +46,11 @@ import tools.jackson.databind.ObjectMapper;
  *   <li>Data from registered {@link GdprDataContributor} beans</li>
  * </ul>
  *
+ * <p>When {@code user.gdpr.concurrentContributors} is enabled, the contributors of an export are called at the same time, while
+ * the framework's own data is read, and their sections are merged in contributor order. A contributor that has not finished
+ * within {@code user.gdpr.contributorTimeoutMs} is left out and listed in the export metadata's {@code timedOutContributors}.
+ * Otherwise they are called one after another on the exporting thread.
+ *
  * @see GdprDataContributor
  * @see GdprExportDTO
  */
@@ -51,6 +61,8 @@ public class GdprExportService {
 
     private static final String EXPORT_FORMAT_VERSION = "1.0";
     private static final String EXPORTER_NAME = "Spring User Framework";
+    private static final String CONTRIBUTOR_ERROR_PROPERTY = "_exportError";
+    private static final String CONTRIBUTOR_ERROR_MESSAGE = "The contributor failed after writing part of this section";
 
     private final GdprConfig gdprConfig;
     private final AuditLogQueryService auditLogQueryService;
@@ -75,13 +87,20 @@ public class GdprExportService {
 
         log.info("GdprExportService.exportUserData: Starting export for user {}", user.getId());
 
+        GdprExportDTO.ExportMetadata metadata = buildMetadata();
+
+        // Start the contributors first, so they run while the framework's own data is read
+        GdprContributorCalls<Map<String, Object>> contributorCalls = startContributorExports(user);
+
+        List<AuditEventDTO> auditHistory = exportAuditHistory(user);
         GdprExportDTO export = GdprExportDTO.builder()
-                .metadata(buildMetadata())
+                .metadata(metadata)
                 .userData(buildUserData(user))
-                .auditHistory(exportAuditHistory(user))
-                .consents(exportConsents(user))
+                .auditHistory(auditHistory)
+                .consents(exportConsents(user, auditHistory))
                 .tokens(exportTokenMetadata(user))
-                .additionalData(exportContributorData(user))
+                .additionalData(contributorCalls != null ? collectContributorData(contributorCalls, metadata)
+                        : exportContributorData(user))
                 .build();
 
         // Publish event after successful export
@@ -91,6 +110,60 @@ public class GdprExportService {
         return export;
     }
 
+    /**
+     * Writes all GDPR-relevant data for a user to a stream as one JSON document, without holding the export in memory.
+     *
+     * <p>The document has the same properties as the {@link GdprExportDTO} returned by {@link #exportUserData(User)}, written
+     * section by section as each is produced: the audit history is paged from {@link AuditLogQueryService#stream} straight to the
+     * output, the consent records are derived from the consent events seen during that same pass, and each
+     * {@link GdprDataContributor} writes its section through {@link GdprDataContributor#writeUserData}. Every contributor's
+     * section is present, as an empty object if it has no data. Contributors write to the same generator, so they are called
+     * one after another, without {@code user.gdpr.contributorTimeoutMs}.
+     *
+     * <p>A contributor that fails before writing anything is skipped as in {@link #exportUserData(User)}, leaving its section
+     * empty. One that fails at the top level of its section after writing some of its properties keeps those properties, and
+     * its section ends with an {@code "_exportError"} property marking it incomplete. Any other failure, including one inside a
+     * nested structure of a section or while paging the audit history, is rethrown. The
+     * generator is closed without ending the structures still open ({@link StreamWriteFeature#AUTO_CLOSE_CONTENT} is off), so
+     * the output is left truncated, is not valid JSON, and cannot be mistaken for a complete export.
+     *
+     * @param user the user whose data to export
+     * @param out the stream to write to; it is flushed but not closed
+     * @throws IllegalArgumentException if user is null
+     * @throws JacksonException if the document cannot be written
+     * @throws RuntimeException if the audit history cannot be read, or a contributor fails part way through its section
+     */
+    public void writeUserData(User user, OutputStream out) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+
+        log.info("GdprExportService.writeUserData: Starting streaming export for user {}", user.getId());
+
+        try (JsonGenerator generator = objectMapper.writer()
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .without(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+                .createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writePOJOProperty("metadata", buildMetadata());
+            generator.writePOJOProperty("userData", buildUserData(user));
+
+            generator.writeName("auditHistory");
+            List<AuditEventDTO> consentEvents = writeAuditHistory(user, generator);
+            generator.writePOJOProperty("consents", exportConsents(user, consentEvents));
+
+            generator.writePOJOProperty("tokens", exportTokenMetadata(user));
+
+            generator.writeName("additionalData");
+            writeContributorData(user, generator);
+            generator.writeEndObject();
+        }
+
+        eventPublisher.publishEvent(new UserDataExportedEvent(this, user));
+
+        log.info("GdprExportService.writeUserData: Completed streaming export for user {}", user.getId());
+    }
+
     /**
      * Builds export metadata.
      */
@@ -99,6 +172,7 @@ public class GdprExportService {
                 .exportedAt(Instant.now())
                 .formatVersion(EXPORT_FORMAT_VERSION)
                 .exportedBy(EXPORTER_NAME)
+                .timedOutContributors(new ArrayList<>())
                 .build();
     }
 
@@ -131,11 +205,12 @@ public class GdprExportService {
     }
 
     /**
-     * Exports the user's audit history.
+     * Exports the user's whole audit history, paging through it with {@link AuditLogQueryService#stream} so it is not truncated
+     * at {@code user.audit.maxQueryResults}.
      */
     private List<AuditEventDTO> exportAuditHistory(User user) {
-        try {
-            return auditLogQueryService.findByUser(user);
+        try (Stream<AuditEventDTO> history = auditLogQueryService.stream(user, AuditQuery.all(), null)) {
+            return history.collect(Collectors.toCollection(ArrayList::new));
         } catch (Exception e) {
             log.warn("GdprExportService.exportAuditHistory: Failed to export audit history for user {}: {}",
                     user.getId(), e.getMessage());
@@ -144,31 +219,59 @@ public class GdprExportService {
     }
 
     /**
-     * Exports the user's consent records from audit logs.
-     * Fetches all consent events once and processes together for efficiency.
+     * Writes the user's whole audit history as a JSON array, one page at a time, and returns the consent events seen on the way.
+     * A failure part way through is rethrown with the array left open: unlike {@link #exportAuditHistory}, which falls back to
+     * an empty history, the events written so far cannot be taken back, and closing the array would present a partial history,
+     * and the consents derived from it, as complete.
+     */
+    private List<AuditEventDTO> writeAuditHistory(User user, JsonGenerator generator) {
+        List<AuditEventDTO> consentEvents = new ArrayList<>();
+        generator.writeStartArray();
+        try (Stream<AuditEventDTO> history = auditLogQueryService.stream(user, AuditQuery.all(), null)) {
+            history.forEach(event -> {
+                generator.writePOJO(event);
+                if (isConsentEvent(event)) {
+                    consentEvents.add(event);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("GdprExportService.writeAuditHistory: Failed to export audit history for user {}: {}",
+                    user.getId(), e.getMessage());
+            throw e;
+        }
+        generator.writeEndArray();
+        return consentEvents;
+    }
+
+    /**
+     * Checks whether an audit event records a consent grant or withdrawal.
      */
-    private List<ConsentRecord> exportConsents(User user) {
+    private static boolean isConsentEvent(AuditEventDTO event) {
+        return ConsentAuditService.ACTION_CONSENT_GRANTED.equals(event.getAction())
+                || ConsentAuditService.ACTION_CONSENT_WITHDRAWN.equals(event.getAction());
+    }
+
+    /**
+     * Exports the user's consent records, derived from the audit history the export has already read (or, when streaming, the
+     * consent events among it), so the audit store is read once per export.
+     */
+    private List<ConsentRecord> exportConsents(User user, List<AuditEventDTO> auditHistory) {
         if (!gdprConfig.isConsentTracking()) {
             return new ArrayList<>();
         }
 
         try {
-            // Fetch all consent-related audit events
-            List<AuditEventDTO> grantedEvents = auditLogQueryService.findByUserAndAction(user, "CONSENT_GRANTED");
-            List<AuditEventDTO> withdrawnEvents = auditLogQueryService.findByUserAndAction(user, "CONSENT_WITHDRAWN");
-
-            // Combine and sort by timestamp (oldest first for chronological processing)
-            List<AuditEventDTO> allEvents = new ArrayList<>(grantedEvents.size() + withdrawnEvents.size());
-            allEvents.addAll(grantedEvents);
-            allEvents.addAll(withdrawnEvents);
-            allEvents.sort(Comparator.comparing(AuditEventDTO::getTimestamp,
-                    Comparator.nullsFirst(Comparator.naturalOrder())));
+            // Select consent-related audit events, oldest first for chronological processing
+            List<AuditEventDTO> allEvents = auditHistory.stream()
+                    .filter(GdprExportService::isConsentEvent)
+                    .sorted(Comparator.comparing(AuditEventDTO::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .collect(Collectors.toList());
 
             // Build consent records from audit events (process in chronological order)
             Map<String, ConsentRecord> consentMap = new LinkedHashMap<>();
 
             for (AuditEventDTO event : allEvents) {
-                boolean isGrant = "CONSENT_GRANTED".equals(event.getAction());
+                boolean isGrant = ConsentAuditService.ACTION_CONSENT_GRANTED.equals(event.getAction());
                 ConsentRecord record = parseConsentFromAuditEvent(event, isGrant);
                 if (record == null) {
                     continue;
@@ -258,6 +361,45 @@ public class GdprExportService {
                 .build();
     }
 
+    /**
+     * Starts calling every registered GdprDataContributor concurrently, when configured to and there is more than one.
+     *
+     * @return the running calls, or {@code null} to call the contributors one after another
+     */
+    private GdprContributorCalls<Map<String, Object>> startContributorExports(User user) {
+        if (!gdprConfig.isConcurrentContributors() || dataContributors == null || dataContributors.size() < 2) {
+            return null;
+        }
+        return new GdprContributorCalls<>(dataContributors, contributor -> contributor.exportUserData(user),
+                gdprConfig.getContributorTimeoutMs());
+    }
+
+    /**
+     * Collects the data of concurrently called contributors in contributor order, recording those that timed out in the
+     * export metadata.
+     */
+    private Map<String, Object> collectContributorData(GdprContributorCalls<Map<String, Object>> contributorCalls,
+                                                       GdprExportDTO.ExportMetadata metadata) {
+        Map<String, Object> additionalData = new LinkedHashMap<>();
+
+        for (GdprContributorCalls.Outcome<Map<String, Object>> outcome : contributorCalls.await()) {
+            String key = outcome.contributor().getDataKey();
+            if (outcome.timedOut()) {
+                log.warn("GdprExportService.collectContributorData: Contributor {} timed out after {} ms",
+                        key, gdprConfig.getContributorTimeoutMs());
+                metadata.getTimedOutContributors().add(key);
+            } else if (outcome.failure() != null) {
+                log.warn("GdprExportService.collectContributorData: Contributor {} failed: {}",
+                        key, outcome.failure().getMessage());
+            } else if (outcome.value() != null && !outcome.value().isEmpty()) {
+                additionalData.put(key, outcome.value());
+                log.debug("GdprExportService.collectContributorData: Added data from contributor '{}'", key);
+            }
+        }
+
+        return additionalData;
+    }
+
     /**
      * Exports data from all registered GdprDataContributor beans.
      */
@@ -285,4 +427,33 @@ public class GdprExportService {
         return additionalData;
     }
 
+    /**
+     * Writes the data of all registered GdprDataContributor beans as a JSON object, one property per contributor. A section
+     * left incomplete by a failing contributor is marked with an {@code "_exportError"} property.
+     */
+    private void writeContributorData(User user, JsonGenerator generator) {
+        generator.writeStartObject();
+        if (dataContributors != null) {
+            for (GdprDataContributor contributor : dataContributors) {
+                generator.writeName(contributor.getDataKey());
+                generator.writeStartObject();
+                int depth = generator.streamWriteContext().getNestingDepth();
+                try {
+                    contributor.writeUserData(user, generator);
+                } catch (RuntimeException e) {
+                    if (generator.streamWriteContext().getNestingDepth() != depth) {
+                        throw e;
+                    }
+                    log.warn("GdprExportService.writeContributorData: Contributor {} failed: {}",
+                            contributor.getDataKey(), e.getMessage());
+                    if (generator.streamWriteContext().getEntryCount() > 0) {
+                        generator.writeStringProperty(CONTRIBUTOR_ERROR_PROPERTY, CONTRIBUTOR_ERROR_MESSAGE);
+                    }
+                }
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndObject();
+    }
+
 }
@@ -0,0 +1,148 @@
+package com.digitalsanctuary.spring.user.jobs;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import com.digitalsanctuary.spring.user.gdpr.ConsentAuditService;
+import com.digitalsanctuary.spring.user.gdpr.ConsentAuditService.ConsentStatus;
+import com.digitalsanctuary.spring.user.gdpr.ConsentStateService;
+import com.digitalsanctuary.spring.user.gdpr.GdprConfig;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.persistence.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One-time job that fills the consent state store from the audit log, so consents recorded before the store existed are read
+ * from it too. Runs in the background once the application is ready, when GDPR and consent tracking are enabled and the store
+ * has not been backfilled yet.
+ *
+ * <p>Only the node holding the lease in the {@code user_consent_state_backfill} table runs it; the lease is extended after each
+ * page and released when the job ends, and expires after {@link #LEASE} if a node dies mid-run, so another node can take over
+ * at its next startup. Users are read in id order, {@value #PAGE_SIZE} at a time, resuming after the last id of the previous
+ * page, so users registered or deleted while the job runs do not shift the remaining pages.
+ *
+ * <p>Each user's consent history is replayed from the audit log and applied with
+ * {@link ConsentStateService#apply(Long, String, boolean, Instant)}, which never overwrites a newer change, so consent
+ * changes recorded while the job runs are kept. Until the job completes without failures,
+ * {@link ConsentAuditService#getConsentStatus} keeps reading the audit log; if any user fails, the next startup runs it again.
+ *
+ * @see ConsentStateService
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "user.gdpr.consentStateStore", havingValue = "true")
+public class ConsentStateBackfillJob {
+
+	/** The number of users loaded per page. */
+	static final int PAGE_SIZE = 500;
+
+	/** How long the lease lasts without being extended. */
+	static final Duration LEASE = Duration.ofMinutes(10);
+
+	/** The GDPR configuration. */
+	private final GdprConfig gdprConfig;
+
+	/** The user repository. */
+	private final UserRepository userRepository;
+
+	/** The consent audit service, which replays a user's consent history. */
+	private final ConsentAuditService consentAuditService;
+
+	/** The consent state store. */
+	private final ConsentStateService consentStateService;
+
+	/**
+	 * Starts the backfill in the background if it is enabled.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		if (!gdprConfig.isEnabled() || !gdprConfig.isConsentTracking() || !gdprConfig.isConsentStateBackfill()) {
+			return;
+		}
+		Thread.ofVirtual().name("consent-state-backfill").start(this::run);
+	}
+
+	/**
+	 * Runs the backfill if it has not completed and no other node is running it. Never throws: it runs on its own thread, so a
+	 * failure is logged and left for the next startup.
+	 */
+	void run() {
+		try {
+			if (consentStateService.isBackfilled()) {
+				return;
+			}
+			String owner = UUID.randomUUID().toString();
+			if (!consentStateService.tryLockBackfill(owner, LEASE)) {
+				log.info("ConsentStateBackfillJob.run: the backfill is running on another node.");
+				return;
+			}
+			try {
+				backfill(owner);
+			} finally {
+				consentStateService.unlockBackfill(owner);
+			}
+		} catch (RuntimeException e) {
+			log.error("ConsentStateBackfillJob.run: the consent state backfill failed; it will run again at next startup.", e);
+		}
+	}
+
+	/**
+	 * Replays every user's consent history into the store, and marks the store backfilled if no user failed.
+	 *
+	 * @param owner the owner the lease was taken with
+	 * @return true if the backfill completed
+	 */
+	public boolean backfill(String owner) {
+		log.info("ConsentStateBackfillJob.backfill: running....");
+		int users = 0;
+		int failures = 0;
+		long afterId = 0L;
+		List<User> page;
+		do {
+			page = userRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(PAGE_SIZE));
+			for (User user : page) {
+				try {
+					for (Map.Entry<String, ConsentStatus> entry : consentAuditService.replayConsentStatus(user).entrySet()) {
+						ConsentStatus status = entry.getValue();
+						Instant changedAt = status.isActive() ? status.getGrantedAt() : status.getWithdrawnAt();
+						if (changedAt != null) {
+							consentStateService.apply(user.getId(), entry.getKey(), status.isActive(), changedAt);
+						}
+					}
+					users++;
+				} catch (RuntimeException e) {
+					failures++;
+					log.warn("ConsentStateBackfillJob.backfill: Failed to backfill consent state for user {}: {}", user.getId(), e.getMessage());
+				}
+			}
+			if (!page.isEmpty()) {
+				afterId = page.getLast().getId();
+				if (!consentStateService.extendBackfillLock(owner, LEASE)) {
+					log.warn("ConsentStateBackfillJob.backfill: lost the lease after {} users; another node is running the backfill.", users);
+					return false;
+				}
+			}
+		} while (page.size() == PAGE_SIZE);
+
+		if (failures > 0) {
+			log.warn("ConsentStateBackfillJob.backfill: {} users backfilled, {} failed; the backfill will run again at next startup.", users,
+					failures);
+			return false;
+		}
+		if (!consentStateService.markBackfilled(owner)) {
+			log.warn("ConsentStateBackfillJob.backfill: lost the lease before the backfill of {} users could be marked complete.", users);
+			return false;
+		}
+		log.info("ConsentStateBackfillJob.backfill: consent state of {} users backfilled.", users);
+		return true;
+	}
+}
@@ -0,0 +1,31 @@
+package com.digitalsanctuary.spring.user.jobs;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import com.digitalsanctuary.spring.user.gdpr.GdprExportJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Scheduled job service that discards expired background GDPR export jobs and deletes their files. Runs every
+ * {@code user.gdpr.exportJobCleanupIntervalMs} milliseconds.
+ *
+ * @see com.digitalsanctuary.spring.user.gdpr.GdprExportJobService#purgeExpired()
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GdprExportJobCleanJob {
+
+	/** The GDPR export job service. */
+	private final GdprExportJobService gdprExportJobService;
+
+	/**
+	 * Purge expired export jobs.
+	 */
+	@Scheduled(fixedDelayString = "${user.gdpr.exportJobCleanupIntervalMs:300000}")
+	public void purgeExpired() {
+		log.debug("GdprExportJobCleanJob.purgeExpired: running....");
+		gdprExportJobService.purgeExpired();
+	}
+}
@@ -0,0 +1,69 @@
+package com.digitalsanctuary.spring.user.jobs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+import lombok.Data;
+
+/**
+ * Configuration properties for the account retention job.
+ *
+ * <p>Properties are bound from the {@code user.retention.*} prefix in application configuration. The job is disabled by
+ * default, and each criterion is off while its number of days is {@code 0}.
+ *
+ * @see UserRetentionJob
+ */
+@Data
+@Component
+@PropertySource("classpath:config/dsspringuserconfig.properties")
+@ConfigurationProperties(prefix = "user.retention")
+public class UserRetentionConfig {
+
+	/**
+	 * What the retention job does with the accounts it selects.
+	 */
+	public enum Action {
+		/** Delete the account. */
+		DELETE,
+		/** Keep the account row but remove its personal data. */
+		ANONYMIZE
+	}
+
+	/**
+	 * Whether the retention job runs.
+	 * Default: false
+	 */
+	private boolean enabled = false;
+
+	/**
+	 * Removes accounts that never verified their email this many days after they registered. Accounts disabled or locked
+	 * after they were verified are kept.
+	 * Default: 0 (off)
+	 */
+	private int unverifiedDays = 0;
+
+	/**
+	 * Removes accounts not logged into or modified for this many days. This goes by {@code lastActivityDate}, which is updated
+	 * at login and whenever the account row is saved, not on every request.
+	 * Default: 0 (off)
+	 */
+	private int inactiveDays = 0;
+
+	/**
+	 * Whether selected accounts are deleted or anonymized.
+	 * Default: DELETE
+	 */
+	private Action action = Action.DELETE;
+
+	/**
+	 * Number of accounts selected and removed per transaction.
+	 * Default: 100
+	 */
+	private int chunkSize = 100;
+
+	/**
+	 * Maximum number of accounts removed per run, to bound how long a run takes. The rest are removed by later runs.
+	 * Default: 0 (no limit)
+	 */
+	private int maxUsersPerRun = 0;
+}
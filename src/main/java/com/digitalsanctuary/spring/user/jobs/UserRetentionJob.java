@@ -0,0 +1,248 @@
+package com.digitalsanctuary.spring.user.jobs;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.digitalsanctuary.spring.user.gdpr.GdprDeletionService;
+import com.digitalsanctuary.spring.user.gdpr.GdprDeletionService.DeletionResult;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.persistence.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Scheduled job service that removes accounts past their retention period. Runs on a cron schedule defined by the
+ * {@code user.retention.cron.expression} property, when {@code user.retention.enabled} is true.
+ *
+ * <p>Two criteria can be enabled: accounts that never verified their email, registered more than
+ * {@code user.retention.unverifiedDays} ago (see {@link UserRepository#findUnverifiedRegisteredBefore}), and any account not
+ * logged into or modified for {@code user.retention.inactiveDays}, going by its {@code lastActivityDate}. Accounts disabled or
+ * locked on purpose are not unverified. For each criterion, candidates are selected in id order,
+ * {@code user.retention.chunkSize} at a time, resuming after the last id of the previous chunk, so every query is an index
+ * range scan no matter how far the run has got. Each chunk is removed in its own transaction through
+ * {@link GdprDeletionService}, so {@link com.digitalsanctuary.spring.user.gdpr.GdprDataContributor}s and the pre- and
+ * post-delete events see each account as they would a user's own deletion request. If a chunk fails it is rolled back and its
+ * accounts retried one transaction each, so one failing account does not hold back the others; it is retried by the next run.
+ *
+ * <p>A retried account's contributors and {@code UserPreDeleteEvent} listeners are called again. Their database changes were
+ * rolled back with the chunk, but anything else they do must be safe to repeat. Independent contributors are only called once
+ * an account's removal has committed, so they are not repeated.
+ *
+ * <p>Progress and throughput are logged after each chunk, and {@link #purge()} returns the totals of the run. Unlike a user's
+ * own deletion request, sessions are not revoked: accounts without activity for the retention period have none.
+ *
+ * @see UserRetentionConfig
+ */
+@Slf4j
+@Service
+public class UserRetentionJob {
+
+	/** Skips accounts that have already been anonymized. */
+	private static final String ANONYMIZED_EMAIL_PATTERN = "%@" + GdprDeletionService.ANONYMIZED_EMAIL_DOMAIN;
+
+	/**
+	 * The totals of a retention run.
+	 *
+	 * @param selected the number of accounts selected
+	 * @param removed the number of accounts deleted or anonymized
+	 * @param failed the number of accounts that could not be removed
+	 * @param elapsed how long the run took
+	 */
+	public record Result(int selected, int removed, int failed, Duration elapsed) {
+
+		/**
+		 * Returns the throughput of the run.
+		 *
+		 * @return accounts removed per second
+		 */
+		public double removedPerSecond() {
+			return removed * 1000.0 / Math.max(1L, elapsed.toMillis());
+		}
+	}
+
+	/**
+	 * Selects a chunk of candidates.
+	 */
+	@FunctionalInterface
+	private interface CandidateFinder {
+		List<User> find(Long afterId, Date cutoff, String excludedEmailPattern, Limit limit);
+	}
+
+	/**
+	 * Checks whether a selected candidate still matches the criteria it was selected by.
+	 */
+	@FunctionalInterface
+	private interface CandidateCheck {
+		boolean matches(Long id, Date cutoff, String excludedEmailPattern);
+	}
+
+	/** The retention configuration. */
+	private final UserRetentionConfig retentionConfig;
+
+	/** The user repository. */
+	private final UserRepository userRepository;
+
+	/** Deletes or anonymizes the accounts. */
+	private final GdprDeletionService gdprDeletionService;
+
+	/** Runs each chunk in its own transaction. */
+	private final TransactionTemplate transactionTemplate;
+
+	/**
+	 * Creates the job.
+	 *
+	 * @param retentionConfig the retention configuration
+	 * @param userRepository the user repository
+	 * @param gdprDeletionService deletes or anonymizes the accounts
+	 * @param transactionManager the transaction manager the chunk transactions are run with
+	 */
+	public UserRetentionJob(UserRetentionConfig retentionConfig, UserRepository userRepository, GdprDeletionService gdprDeletionService,
+			PlatformTransactionManager transactionManager) {
+		this.retentionConfig = retentionConfig;
+		this.userRepository = userRepository;
+		this.gdprDeletionService = gdprDeletionService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Purge expired accounts.
+	 */
+	@Scheduled(cron = "${user.retention.cron.expression:0 30 3 * * ?}")
+	public void purgeExpired() {
+		purge();
+	}
+
+	/**
+	 * Removes the accounts past their retention period, if the job is enabled.
+	 *
+	 * @return the totals of the run, or {@code null} if the job is disabled
+	 */
+	public Result purge() {
+		if (!retentionConfig.isEnabled()) {
+			return null;
+		}
+		log.info("UserRetentionJob.purge: running....");
+		Progress progress = new Progress(retentionConfig.getMaxUsersPerRun());
+		Instant now = Instant.now();
+		if (retentionConfig.getUnverifiedDays() > 0) {
+			Date cutoff = Date.from(now.minus(Duration.ofDays(retentionConfig.getUnverifiedDays())));
+			purge("unverified", userRepository::findUnverifiedRegisteredBefore, userRepository::isUnverifiedRegisteredBefore,
+					cutoff, progress);
+		}
+		if (retentionConfig.getInactiveDays() > 0) {
+			Date cutoff = Date.from(now.minus(Duration.ofDays(retentionConfig.getInactiveDays())));
+			purge("inactive", userRepository::findInactiveSince, userRepository::isInactiveSince, cutoff, progress);
+		}
+		if (progress.remaining() <= 0) {
+			log.info("UserRetentionJob.purge: reached user.retention.maxUsersPerRun ({}); the rest is left for the next run",
+					retentionConfig.getMaxUsersPerRun());
+		}
+		Result result = progress.result();
+		log.info("UserRetentionJob.purge: {} accounts {} in {} ms ({} per second), {} failed, {} selected", result.removed(),
+				actionDone(), result.elapsed().toMillis(), String.format("%.1f", result.removedPerSecond()), result.failed(),
+				result.selected());
+		return result;
+	}
+
+	/**
+	 * Removes the candidates of one criterion, chunk by chunk, until none are left or the run limit is reached.
+	 */
+	private void purge(String criterion, CandidateFinder finder, CandidateCheck check, Date cutoff, Progress progress) {
+		long afterId = 0L;
+		while (progress.remaining() > 0) {
+			int size = Math.min(Math.max(1, retentionConfig.getChunkSize()), progress.remaining());
+			List<Long> ids = finder.find(afterId, cutoff, ANONYMIZED_EMAIL_PATTERN, Limit.of(size)).stream().map(User::getId).toList();
+			if (ids.isEmpty()) {
+				return;
+			}
+			afterId = ids.getLast();
+
+			int removed;
+			int failed = 0;
+			try {
+				removed = transactionTemplate.execute(status -> removeAll(ids, check, cutoff));
+			} catch (RuntimeException e) {
+				log.warn("UserRetentionJob.purge: chunk of {} {} accounts failed ({}), retrying them one at a time", ids.size(), criterion,
+						e.getMessage());
+				removed = 0;
+				for (Long id : ids) {
+					try {
+						removed += transactionTemplate.execute(status -> removeAll(List.of(id), check, cutoff));
+					} catch (RuntimeException userFailure) {
+						log.error("UserRetentionJob.purge: failed to remove user {}: {}", id, userFailure.getMessage());
+						failed++;
+					}
+				}
+			}
+			progress.chunkDone(ids.size(), removed, failed);
+			log.info("UserRetentionJob.purge: {}: {} of {} accounts {} up to id {}; run total {} {}, {} failed, {} per second", criterion,
+					removed, ids.size(), actionDone(), afterId, progress.removed, actionDone(), progress.failed,
+					String.format("%.1f", progress.result().removedPerSecond()));
+			if (ids.size() < size) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes the users with the given ids that still match the criteria they were selected by, in the current transaction.
+	 *
+	 * @return the number removed
+	 */
+	private int removeAll(List<Long> ids, CandidateCheck check, Date cutoff) {
+		int removed = 0;
+		for (User user : userRepository.findAllById(ids)) {
+			// Re-checked in the transaction with the selection's own criteria, in case the user changed since the chunk was selected
+			if (!check.matches(user.getId(), cutoff, ANONYMIZED_EMAIL_PATTERN)) {
+				continue;
+			}
+			DeletionResult result = retentionConfig.getAction() == UserRetentionConfig.Action.ANONYMIZE
+					? gdprDeletionService.anonymizeUser(user)
+					: gdprDeletionService.deleteUser(user, false);
+			if (!result.isSuccess()) {
+				throw new IllegalStateException("User " + user.getId() + ": " + result.getMessage());
+			}
+			removed++;
+		}
+		return removed;
+	}
+
+	private String actionDone() {
+		return retentionConfig.getAction() == UserRetentionConfig.Action.ANONYMIZE ? "anonymized" : "deleted";
+	}
+
+	/**
+	 * The running totals of a run.
+	 */
+	private static final class Progress {
+
+		private final long start = System.nanoTime();
+		private final int limit;
+		private int selected;
+		private int removed;
+		private int failed;
+
+		Progress(int limit) {
+			this.limit = limit > 0 ? limit : Integer.MAX_VALUE;
+		}
+
+		int remaining() {
+			return limit - selected;
+		}
+
+		void chunkDone(int chunkSelected, int chunkRemoved, int chunkFailed) {
+			selected += chunkSelected;
+			removed += chunkRemoved;
+			failed += chunkFailed;
+		}
+
+		Result result() {
+			return new Result(selected, removed, failed, Duration.ofNanos(System.nanoTime() - start));
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package com.digitalsanctuary.spring.user.persistence.repository;
 
+import java.util.Date;
 import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -13,6 +15,14 @@ import com.digitalsanctuary.spring.user.persistence.model.User;
  */
 public interface UserRepository extends JpaRepository<User, Long> {
 
+	/** The criteria of {@link #findUnverifiedRegisteredBefore}, shared with {@link #isUnverifiedRegisteredBefore}. */
+	String UNVERIFIED_REGISTERED_BEFORE = "u.enabled = false and u.locked = false and u.registrationDate < :cutoff"
+			+ " and (u.lastActivityDate <= u.registrationDate or exists (select t.id from VerificationToken t where t.user = u))"
+			+ " and u.email not like :excludedEmailPattern";
+
+	/** The criteria of {@link #findInactiveSince}, shared with {@link #isInactiveSince}. */
+	String INACTIVE_SINCE = "u.lastActivityDate < :cutoff and u.email not like :excludedEmailPattern";
+
 	/**
 	 * Find by email.
 	 *
@@ -69,6 +79,79 @@ public interface UserRepository extends JpaRepository<User, Long> {
 	 */
 	List<User> findAllByEnabledTrue();
 
+	/**
+	 * Finds a chunk of users in id order, starting after a given id. Meant for keyset pagination: pass the last id of the
+	 * previous chunk, so users added or deleted while paging neither shift nor repeat the remaining chunks.
+	 *
+	 * @param afterId return only users with a greater id; {@code 0} for the first chunk
+	 * @param limit the chunk size
+	 * @return the users, in id order
+	 */
+	List<User> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+	/**
+	 * Finds a chunk of accounts registered before a cutoff that never verified their email, in id order, starting after a given
+	 * id. Meant for keyset pagination: pass the last id of the previous chunk.
+	 *
+	 * <p>An account counts as unverified when it is disabled and not locked, and either still has a verification token or has
+	 * not been modified since it registered. Verifying, logging in, locking and disabling an account all update its
+	 * {@code lastActivityDate}, and verifying consumes the token, so accounts that were verified and later disabled or locked
+	 * are not selected. An unverified account whose expired token has been purged is selected only while unmodified.
+	 *
+	 * @param afterId return only users with a greater id; {@code 0} for the first chunk
+	 * @param cutoff return only users registered before this
+	 * @param excludedEmailPattern a {@code like} pattern of emails to skip, such as those of anonymized accounts
+	 * @param limit the chunk size
+	 * @return the users, in id order
+	 */
+	@Query("select u from User u where u.id > :afterId and " + UNVERIFIED_REGISTERED_BEFORE + " order by u.id")
+	List<User> findUnverifiedRegisteredBefore(@Param("afterId") Long afterId, @Param("cutoff") Date cutoff,
+			@Param("excludedEmailPattern") String excludedEmailPattern, Limit limit);
+
+	/**
+	 * Checks whether a user still matches the criteria of {@link #findUnverifiedRegisteredBefore}, such as when removing it
+	 * in a later transaction than the one that selected it.
+	 *
+	 * @param id the user id
+	 * @param cutoff the registration cutoff
+	 * @param excludedEmailPattern a {@code like} pattern of emails to skip, such as those of anonymized accounts
+	 * @return true if the user exists and is still unverified
+	 */
+	@Query("select case when count(u) > 0 then true else false end from User u where u.id = :id and "
+			+ UNVERIFIED_REGISTERED_BEFORE)
+	boolean isUnverifiedRegisteredBefore(@Param("id") Long id, @Param("cutoff") Date cutoff,
+			@Param("excludedEmailPattern") String excludedEmailPattern);
+
+	/**
+	 * Finds a chunk of accounts not modified since a cutoff, in id order, starting after a given id. Meant for keyset
+	 * pagination: pass the last id of the previous chunk.
+	 *
+	 * <p>{@code lastActivityDate} is set at login and whenever the account row is saved, so it is the time the account was
+	 * last logged into or modified, not the time of its last request.
+	 *
+	 * @param afterId return only users with a greater id; {@code 0} for the first chunk
+	 * @param cutoff return only users last logged into or modified before this
+	 * @param excludedEmailPattern a {@code like} pattern of emails to skip, such as those of anonymized accounts
+	 * @param limit the chunk size
+	 * @return the users, in id order
+	 */
+	@Query("select u from User u where u.id > :afterId and " + INACTIVE_SINCE + " order by u.id")
+	List<User> findInactiveSince(@Param("afterId") Long afterId, @Param("cutoff") Date cutoff,
+			@Param("excludedEmailPattern") String excludedEmailPattern, Limit limit);
+
+	/**
+	 * Checks whether a user still matches the criteria of {@link #findInactiveSince}, such as when removing it in a later
+	 * transaction than the one that selected it.
+	 *
+	 * @param id the user id
+	 * @param cutoff the activity cutoff
+	 * @param excludedEmailPattern a {@code like} pattern of emails to skip, such as those of anonymized accounts
+	 * @return true if the user exists and is still inactive
+	 */
+	@Query("select case when count(u) > 0 then true else false end from User u where u.id = :id and " + INACTIVE_SINCE)
+	boolean isInactiveSince(@Param("id") Long id, @Param("cutoff") Date cutoff,
+			@Param("excludedEmailPattern") String excludedEmailPattern);
+
 	/**
 	 * Delete.
 	 *
@@ -1,24 +1,38 @@
 package com.digitalsanctuary.spring.user.api;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -26,6 +40,7 @@ import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.MessageSource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -39,6 +54,8 @@ import com.digitalsanctuary.spring.user.gdpr.ConsentRecord;
 import com.digitalsanctuary.spring.user.gdpr.ConsentType;
 import com.digitalsanctuary.spring.user.gdpr.GdprConfig;
 import com.digitalsanctuary.spring.user.gdpr.GdprDeletionService;
+import com.digitalsanctuary.spring.user.gdpr.GdprExportJob;
+import com.digitalsanctuary.spring.user.gdpr.GdprExportJobService;
 import com.digitalsanctuary.spring.user.gdpr.GdprExportService;
 import com.digitalsanctuary.spring.user.persistence.model.User;
 import com.digitalsanctuary.spring.user.service.DSUserDetails;
@@ -68,6 +85,9 @@ class GdprAPITest {
     @Mock
     private GdprExportService gdprExportService;
 
+    @Mock
+    private GdprExportJobService gdprExportJobService;
+
     @Mock
     private GdprDeletionService gdprDeletionService;
 
@@ -231,6 +251,164 @@ class GdprAPITest {
         }
     }
 
+    @Nested
+    @DisplayName("Stream User Data Tests")
+    class StreamUserDataTests {
+
+        @Test
+        @DisplayName("GET /user/gdpr/export/stream - writes the export to the response as an attachment")
+        void streamUserData_whenAuthenticated_writesExport() throws Exception {
+            // Given
+            MockMvc authedMockMvc = mockMvcWithAuthenticatedUser();
+            when(gdprConfig.isEnabled()).thenReturn(true);
+            when(userService.findUserByEmail(testUser.getEmail())).thenReturn(testUser);
+            doAnswer(invocation -> {
+                OutputStream out = invocation.getArgument(1);
+                out.write("{\"userData\":{\"id\":1}}".getBytes(StandardCharsets.UTF_8));
+                return null;
+            }).when(gdprExportService).writeUserData(eq(testUser), any(OutputStream.class));
+
+            // When & Then
+            authedMockMvc.perform(get("/user/gdpr/export/stream")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("gdpr-export.json")))
+                    .andExpect(jsonPath("$.userData.id").value(1));
+
+            verify(gdprExportService, never()).exportUserData(any());
+        }
+
+        @Test
+        @DisplayName("GET /user/gdpr/export/stream - returns a JSON error when the export fails before writing")
+        void streamUserData_whenExportFailsEarly_returns500() throws Exception {
+            // Given
+            MockMvc authedMockMvc = mockMvcWithAuthenticatedUser();
+            when(gdprConfig.isEnabled()).thenReturn(true);
+            when(userService.findUserByEmail(testUser.getEmail())).thenReturn(testUser);
+            doThrow(new IllegalStateException("audit store unavailable"))
+                    .when(gdprExportService).writeUserData(eq(testUser), any(OutputStream.class));
+
+            // When & Then
+            authedMockMvc.perform(get("/user/gdpr/export/stream")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isInternalServerError())
+                    .andExpect(jsonPath("$.success").value(false))
+                    .andExpect(jsonPath("$.code").value(5));
+        }
+
+        @Test
+        @DisplayName("GET /user/gdpr/export/stream - returns 404 when GDPR disabled")
+        void streamUserData_whenGdprDisabled_returns404() throws Exception {
+            // Given
+            MockMvc authedMockMvc = mockMvcWithAuthenticatedUser();
+            when(gdprConfig.isEnabled()).thenReturn(false);
+
+            // When & Then
+            authedMockMvc.perform(get("/user/gdpr/export/stream")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+
+            verify(gdprExportService, never()).writeUserData(any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Export Job Tests")
+    class ExportJobTests {
+
+        @TempDir
+        Path tempDir;
+
+        @Test
+        @DisplayName("POST /user/gdpr/export/jobs - returns 503 when too many exports are waiting")
+        void requestExportJob_whenQueueFull_returns503() throws Exception {
+            // Given
+            MockMvc authedMockMvc = mockMvcWithAuthenticatedUser();
+            when(gdprConfig.isEnabled()).thenReturn(true);
+            when(userService.findUserByEmail(testUser.getEmail())).thenReturn(testUser);
+            when(gdprExportJobService.submit(testUser)).thenThrow(new RejectedExecutionException("full"));
+
+            // When & Then
+            authedMockMvc.perform(post("/user/gdpr/export/jobs")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.success").value(false))
+                    .andExpect(jsonPath("$.code").value(6));
+        }
+
+        @Test
+        @DisplayName("POST /user/gdpr/export/jobs - returns 401 when not authenticated")
+        void requestExportJob_whenNotAuthenticated_returns401() throws Exception {
+            // Given
+            when(gdprConfig.isEnabled()).thenReturn(true);
+
+            // When & Then
+            mockMvc.perform(post("/user/gdpr/export/jobs")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isUnauthorized());
+
+            verify(gdprExportJobService, never()).submit(any());
+        }
+
+        @Test
+        @DisplayName("GET /user/gdpr/export/jobs/{jobId} - returns 404 for another user's or an unknown job")
+        void getExportJob_whenUnknown_returns404() throws Exception {
+            // Given
+            MockMvc authedMockMvc = mockMvcWithAuthenticatedUser();
+            when(gdprConfig.isEnabled()).thenReturn(true);
+            when(userService.findUserByEmail(testUser.getEmail())).thenReturn(testUser);
+            when(gdprExportJobService.getJob("job-1", testUser)).thenReturn(Optional.empty());
+
+            // When & Then
+            authedMockMvc.perform(get("/user/gdpr/export/jobs/job-1")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.code").value(3));
+        }
+
+        @Test
+        @DisplayName("GET /user/gdpr/export/jobs/{jobId}/download - returns 409 while the export is not ready")
+        void downloadExportJob_whenNotCompleted_returns409() throws Exception {
+            // Given
+            MockMvc authedMockMvc = mockMvcWithAuthenticatedUser();
+            GdprExportJob job = mock(GdprExportJob.class);
+            when(job.getStatus()).thenReturn(GdprExportJob.Status.RUNNING);
+            when(gdprConfig.isEnabled()).thenReturn(true);
+            when(userService.findUserByEmail(testUser.getEmail())).thenReturn(testUser);
+            when(gdprExportJobService.getJob("job-1", testUser)).thenReturn(Optional.of(job));
+            when(gdprExportJobService.claimDownload("job-1", testUser)).thenReturn(Optional.empty());
+
+            // When & Then
+            authedMockMvc.perform(get("/user/gdpr/export/jobs/job-1/download")
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.code").value(4));
+
+            verify(gdprExportJobService, never()).finishDownload(any(), eq(true));
+        }
+
+        @Test
+        @DisplayName("GET /user/gdpr/export/jobs/{jobId}/download - sends the compressed export and finishes the download")
+        void downloadExportJob_whenCompleted_sendsFile() throws Exception {
+            // Given
+            MockMvc authedMockMvc = mockMvcWithAuthenticatedUser();
+            Path file = Files.write(tempDir.resolve("export.json.gz"), new byte[] {1, 2, 3});
+            when(gdprConfig.isEnabled()).thenReturn(true);
+            when(userService.findUserByEmail(testUser.getEmail())).thenReturn(testUser);
+            when(gdprExportJobService.getJob("job-1", testUser)).thenReturn(Optional.of(mock(GdprExportJob.class)));
+            when(gdprExportJobService.claimDownload("job-1", testUser)).thenReturn(Optional.of(file));
+
+            // When & Then
+            authedMockMvc.perform(get("/user/gdpr/export/jobs/job-1/download"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("gdpr-export.json.gz")))
+                    .andExpect(content().contentType("application/gzip"))
+                    .andExpect(content().bytes(new byte[] {1, 2, 3}));
+
+            verify(gdprExportJobService).finishDownload("job-1", true);
+        }
+    }
+
     @Nested
     @DisplayName("Delete Account Tests")
     class DeleteAccountTests {
@@ -0,0 +1,196 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("AuditDispatchExecutor Tests")
+class AuditDispatchExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+    private AuditDispatchExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    private AuditDispatchExecutor newExecutor(AuditOverflowPolicy policy, long blockTimeoutMs) {
+        AuditConfig.Dispatch settings = new AuditConfig.Dispatch();
+        settings.setThreads(1);
+        settings.setQueueCapacity(1);
+        settings.setOverflowPolicy(policy);
+        settings.setBlockTimeoutMs(blockTimeoutMs);
+        executor = new AuditDispatchExecutor(settings);
+        return executor;
+    }
+
+    /**
+     * Occupies the single dispatch thread until {@link #release} and fills the one-slot queue with task "queued".
+     */
+    private void saturate() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ran.add("busy");
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> ran.add("queued"));
+        assertEquals(1, executor.getQueueSize());
+    }
+
+    private void drain() {
+        release.countDown();
+        executor.destroy();
+    }
+
+    @Nested
+    @DisplayName("Overflow Policies")
+    class OverflowPolicies {
+
+        @Test
+        @DisplayName("DROP_NEWEST drops the event being published")
+        void dropNewest() throws Exception {
+            newExecutor(AuditOverflowPolicy.DROP_NEWEST, 0);
+            saturate();
+
+            executor.execute(() -> ran.add("overflow"));
+            drain();
+
+            assertEquals(List.of("busy", "queued"), ran);
+            assertEquals(1, executor.getDroppedTaskCount());
+        }
+
+        @Test
+        @DisplayName("DROP_OLDEST drops the oldest queued event")
+        void dropOldest() throws Exception {
+            newExecutor(AuditOverflowPolicy.DROP_OLDEST, 0);
+            saturate();
+
+            executor.execute(() -> ran.add("overflow"));
+            drain();
+
+            assertEquals(List.of("busy", "overflow"), ran);
+            assertEquals(1, executor.getDroppedTaskCount());
+        }
+
+        @Test
+        @DisplayName("CALLER_RUNS processes the event on the publishing thread")
+        void callerRuns() throws Exception {
+            newExecutor(AuditOverflowPolicy.CALLER_RUNS, 0);
+            saturate();
+            AtomicReference<Thread> runner = new AtomicReference<>();
+
+            executor.execute(() -> runner.set(Thread.currentThread()));
+
+            assertSame(Thread.currentThread(), runner.get());
+            assertEquals(1, executor.getCallerRunTaskCount());
+            assertEquals(0, executor.getDroppedTaskCount());
+        }
+
+        @Test
+        @DisplayName("BLOCK drops the event once the timeout expires")
+        void blockTimesOut() throws Exception {
+            newExecutor(AuditOverflowPolicy.BLOCK, 50);
+            saturate();
+
+            executor.execute(() -> ran.add("overflow"));
+            drain();
+
+            assertFalse(ran.contains("overflow"));
+            assertEquals(1, executor.getDroppedTaskCount());
+        }
+
+        @Test
+        @DisplayName("BLOCK queues the event once space frees up")
+        void blockWaitsForSpace() throws Exception {
+            newExecutor(AuditOverflowPolicy.BLOCK, 5000);
+            saturate();
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            });
+            releaser.start();
+
+            executor.execute(() -> ran.add("overflow"));
+            drain();
+
+            assertEquals(List.of("busy", "queued", "overflow"), ran);
+            assertEquals(0, executor.getDroppedTaskCount());
+        }
+
+        @Test
+        @DisplayName("Runs events on the caller after shutdown")
+        void runsOnCallerAfterShutdown() {
+            newExecutor(AuditOverflowPolicy.DROP_NEWEST, 0);
+            executor.destroy();
+
+            executor.execute(() -> ran.add("late"));
+
+            assertEquals(List.of("late"), ran);
+            assertEquals(0, executor.getDroppedTaskCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Metrics")
+    class Metrics {
+
+        @Test
+        @DisplayName("Exports queue depth, drops and hand-off time")
+        void exportsMeters() throws Exception {
+            newExecutor(AuditOverflowPolicy.DROP_NEWEST, 0);
+            StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+            beanFactory.addBean("dsAuditExecutor", executor);
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            new AuditDispatchMetrics(beanFactory.getBeanProvider(AuditDispatchExecutor.class)).bindTo(registry);
+
+            saturate();
+            assertEquals(1.0, registry.get("audit.dispatch.queue.size").gauge().value());
+            assertEquals(1.0, registry.get("audit.dispatch.queue.capacity").gauge().value());
+
+            executor.execute(() -> ran.add("overflow"));
+            drain();
+
+            assertEquals(1.0, registry.get("audit.dispatch.dropped").tag("policy", "DROP_NEWEST").functionCounter().count());
+            assertEquals(0.0, registry.get("audit.dispatch.caller.runs").functionCounter().count());
+            assertEquals(2, registry.get("audit.dispatch.handoff").timer().count());
+        }
+
+        @Test
+        @DisplayName("Binds nothing without the library executor")
+        void bindsNothingWithoutExecutor() {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+            new AuditDispatchMetrics(new StaticListableBeanFactory().getBeanProvider(AuditDispatchExecutor.class)).bindTo(registry);
+
+            assertTrue(registry.getMeters().isEmpty());
+        }
+    }
+}
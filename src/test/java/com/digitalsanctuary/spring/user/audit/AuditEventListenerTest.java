@@ -2,15 +2,20 @@ package com.digitalsanctuary.spring.user.audit;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.digitalsanctuary.spring.user.persistence.model.User;
 import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.ObjectProvider;
@@ -390,4 +395,116 @@ class AuditEventListenerTest {
             verify(auditLogWriter, never()).writeLog(any());
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("Rate Limiting Tests")
+    class RateLimitingTests {
+
+        @Mock
+        private AuditRateLimiter auditRateLimiter;
+
+        @Mock
+        private ObjectProvider<AuditRateLimiter> auditRateLimiterProvider;
+
+        @BeforeEach
+        void setUp() {
+            when(auditConfig.isLogEvents()).thenReturn(true);
+            when(auditRateLimiterProvider.getIfAvailable()).thenReturn(auditRateLimiter);
+            auditEventListener = new AuditEventListener(auditConfig, auditLogWriterProvider, auditRateLimiterProvider);
+            auditEvent = AuditEvent.builder()
+                    .source(this)
+                    .action("CaptchaValidation")
+                    .actionStatus("Failure")
+                    .ipAddress("203.0.113.7")
+                    .build();
+        }
+
+        @Test
+        @DisplayName("Writes events the rate limiter admits")
+        void writesAdmittedEvents() {
+            when(auditRateLimiter.tryAcquire(auditEvent)).thenReturn(true);
+
+            auditEventListener.onApplicationEvent(auditEvent);
+
+            verify(auditLogWriter).writeLog(auditEvent);
+        }
+
+        @Test
+        @DisplayName("Does not write events the rate limiter denies")
+        void skipsDeniedEvents() {
+            when(auditRateLimiter.tryAcquire(auditEvent)).thenReturn(false);
+
+            auditEventListener.onApplicationEvent(auditEvent);
+
+            verify(auditLogWriter, never()).writeLog(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Dispatch Tests")
+    class DispatchTests {
+
+        @Mock
+        private AuditRecordWriter auditRecordWriter;
+
+        @Mock
+        private ObjectProvider<Executor> dispatchExecutorProvider;
+
+        private final List<Runnable> queued = new ArrayList<>();
+
+        @BeforeEach
+        void setUp() {
+            when(auditConfig.isLogEvents()).thenReturn(true);
+            when(dispatchExecutorProvider.getIfAvailable()).thenReturn(queued::add);
+            auditEventListener = new AuditEventListener(auditConfig, auditLogWriterProvider, null, dispatchExecutorProvider);
+            auditEvent = AuditEvent.builder()
+                    .source(this)
+                    .user(testUser)
+                    .action("Login")
+                    .actionStatus("Success")
+                    .ipAddress("192.168.1.1")
+                    .build();
+        }
+
+        @Test
+        @DisplayName("Queues a snapshot for record writers, not the event")
+        void queuesSnapshotForRecordWriters() {
+            when(auditLogWriterProvider.getIfAvailable()).thenReturn(auditRecordWriter);
+
+            auditEventListener.onApplicationEvent(auditEvent);
+            testUser.setEmail("changed@example.com"); // later changes to the entity must not leak into the record
+
+            assertEquals(1, queued.size());
+            verify(auditRecordWriter, never()).writeRecord(any());
+            queued.get(0).run();
+            ArgumentCaptor<AuditRecord> captor = ArgumentCaptor.forClass(AuditRecord.class);
+            verify(auditRecordWriter).writeRecord(captor.capture());
+            verify(auditRecordWriter, never()).writeLog(any());
+            AuditRecord record = captor.getValue();
+            assertEquals("1", record.userId());
+            assertEquals("test@example.com", record.userEmail());
+            assertEquals("Login", record.action());
+            assertEquals(auditEvent.getDate().getTime(), record.timestamp());
+        }
+
+        @Test
+        @DisplayName("Queues the event itself for other writers")
+        void queuesEventForOtherWriters() {
+            auditEventListener.onApplicationEvent(auditEvent);
+
+            assertEquals(1, queued.size());
+            verify(auditLogWriter, never()).writeLog(any());
+            queued.get(0).run();
+            verify(auditLogWriter).writeLog(auditEvent);
+        }
+
+        @Test
+        @DisplayName("Queued writes do not propagate writer exceptions")
+        void queuedWriteSwallowsExceptions() {
+            doThrow(new RuntimeException("Writer failed")).when(auditLogWriter).writeLog(any());
+            auditEventListener.onApplicationEvent(auditEvent);
+
+            assertDoesNotThrow(() -> queued.get(0).run());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+/**
+ * Verifies the dedicated bounded {@code dsAuditExecutor} and its optional metrics binder, against a minimal {@link ApplicationContextRunner} that
+ * imports only {@link AuditExecutorConfiguration}.
+ */
+@DisplayName("Audit Executor Configuration Tests")
+class AuditExecutorConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withBean(AuditConfig.class, AuditConfig::new)
+            .withUserConfiguration(AuditExecutorConfiguration.class);
+
+    @Nested
+    @DisplayName("Bean presence")
+    class BeanPresence {
+
+        @Test
+        @DisplayName("dsAuditExecutor bean exists and uses the configured policy")
+        void dsAuditExecutorBeanExists() {
+            contextRunner.run(context -> {
+                assertThat(context).hasBean("dsAuditExecutor");
+                AuditDispatchExecutor executor = context.getBean("dsAuditExecutor", AuditDispatchExecutor.class);
+                assertThat(executor.getQueueCapacity()).isEqualTo(10000);
+                assertThat(executor.getOverflowPolicy()).isEqualTo(AuditOverflowPolicy.BLOCK);
+            });
+        }
+
+        @Test
+        @DisplayName("Metrics binder is registered when Micrometer is present")
+        void metricsBinderPresent() {
+            contextRunner.run(context -> assertThat(context).hasSingleBean(AuditDispatchMetrics.class));
+        }
+
+        @Test
+        @DisplayName("Metrics binder is skipped when Micrometer is absent")
+        void metricsBinderAbsentWithoutMicrometer() {
+            contextRunner.withClassLoader(new FilteredClassLoader("io.micrometer.core")).run(context -> {
+                assertThat(context).hasBean("dsAuditExecutor");
+                assertThat(context).doesNotHaveBean(AuditDispatchMetrics.class);
+            });
+        }
+    }
+
+    @Nested
+    @DisplayName("Override behavior")
+    class Override {
+
+        @Test
+        @DisplayName("Consumer can override dsAuditExecutor by name")
+        void consumerCanOverride() {
+            SyncTaskExecutor custom = new SyncTaskExecutor();
+            contextRunner.withBean("dsAuditExecutor", TaskExecutor.class, () -> custom).run(context -> {
+                assertThat(context.getBean("dsAuditExecutor")).isSameAs(custom);
+                assertThat(context).doesNotHaveBean(AuditDispatchExecutor.class);
+            });
+        }
+    }
+}
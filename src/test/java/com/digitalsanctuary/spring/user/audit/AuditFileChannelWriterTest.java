@@ -0,0 +1,58 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("AuditFileChannelWriter Tests")
+class AuditFileChannelWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("appends UTF-8 text across buffer overflows")
+    void appendsAcrossBufferOverflows() throws IOException {
+        Path file = tempDir.resolve("audit.log");
+        Files.writeString(file, "existing\n");
+        String text = "caf\u00e9 ".repeat(100);
+
+        try (AuditFileChannelWriter writer = AuditFileChannelWriter.open(file, 16)) {
+            writer.write(text);
+            writer.flush();
+            writer.force();
+        }
+
+        assertThat(Files.readString(file, StandardCharsets.UTF_8)).isEqualTo("existing\n" + text);
+    }
+
+    @Test
+    @DisplayName("encodes a surrogate pair split across two writes")
+    void encodesSplitSurrogatePair() throws IOException {
+        Path file = tempDir.resolve("audit.log");
+        String emoji = "\uD83D\uDE00";
+
+        try (AuditFileChannelWriter writer = AuditFileChannelWriter.open(file, 64)) {
+            writer.write(new char[] {'a', emoji.charAt(0)});
+            writer.write(new char[] {emoji.charAt(1), 'b'});
+        }
+
+        assertThat(Files.readString(file, StandardCharsets.UTF_8)).isEqualTo("a" + emoji + "b");
+    }
+
+    @Test
+    @DisplayName("rejects writes after close")
+    void rejectsWritesAfterClose() throws IOException {
+        AuditFileChannelWriter writer = AuditFileChannelWriter.open(tempDir.resolve("audit.log"), 64);
+        writer.close();
+
+        assertThatThrownBy(() -> writer.write("late")).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,109 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AuditLineScanner Tests")
+class AuditLineScannerTest {
+
+    private final AuditLineScanner scanner = new AuditLineScanner("1", "test@example.com", null);
+
+    @Nested
+    @DisplayName("NDJSON lines")
+    class JsonLines {
+
+        @Test
+        @DisplayName("matches by user id or by email ignoring case")
+        void matchesUser() {
+            assertThat(scanner.mayMatch("{\"ts\":1,\"action\":\"Login\",\"userId\":\"1\",\"email\":\"other@example.com\"}")).isTrue();
+            assertThat(scanner.mayMatch("{\"ts\":1,\"action\":\"Login\",\"email\":\"TEST@example.com\"}")).isTrue();
+        }
+
+        @Test
+        @DisplayName("rules out other users without decoding")
+        void rulesOutOtherUsers() {
+            assertThat(scanner.mayMatch("{\"ts\":1,\"action\":\"Login\",\"userId\":\"12\",\"email\":\"other@example.com\"}")).isFalse();
+            assertThat(scanner.mayMatch("{\"ts\":1,\"action\":\"Login\"}")).isFalse();
+        }
+
+        @Test
+        @DisplayName("treats escaped or malformed values as possible matches")
+        void conservativeOnEscapes() {
+            assertThat(scanner.mayMatch("{\"ts\":1,\"email\":\"test\\u0040example.com\"}")).isTrue();
+            assertThat(scanner.mayMatch("{\"ts\":1,\"email\" \"test@example.com\"}")).isTrue();
+        }
+
+        @Test
+        @DisplayName("ignores keys inside other string values")
+        void ignoresEmbeddedKeys() {
+            assertThat(scanner.mayMatch("{\"ts\":1,\"message\":\"\\\"userId\\\":\\\"1\\\"\",\"userId\":\"2\"}")).isFalse();
+        }
+
+        @Test
+        @DisplayName("reads the epoch millisecond timestamp in place")
+        void readsTimestamp() {
+            assertThat(AuditLineScanner.timestampMillis("{\"ts\":1736937000000,\"action\":\"Login\"}", new AuditTimestampParser()))
+                    .isEqualTo(1736937000000L);
+        }
+    }
+
+    @Nested
+    @DisplayName("Pipe-delimited lines")
+    class PipeLines {
+
+        @Test
+        @DisplayName("matches trimmed user id and email columns")
+        void matchesUser() {
+            assertThat(scanner.mayMatch("2025-01-15T10:00:00Z|Login|Success| 1 |null|127.0.0.1|s|m|ua|null")).isTrue();
+            assertThat(scanner.mayMatch("2025-01-15T10:00:00Z|Login|Success|null|Test@Example.com|127.0.0.1|s|m|ua|null")).isTrue();
+        }
+
+        @Test
+        @DisplayName("rules out other users, the header and short lines")
+        void rulesOutOthers() {
+            assertThat(scanner.mayMatch("2025-01-15T10:00:00Z|Login|Success|11|other@example.com|127.0.0.1|s|m|ua|null")).isFalse();
+            assertThat(scanner.mayMatch(PipeDelimitedAuditRecordCodec.HEADER)).isFalse();
+            assertThat(scanner.mayMatch("2025-01-15T10:00:00Z|Login|Success")).isFalse();
+        }
+
+        @Test
+        @DisplayName("is not confused by pipes in the message column")
+        void pipesInMessage() {
+            assertThat(scanner.mayMatch("2025-01-15T10:00:00Z|Login|Success|1|null|127.0.0.1|s|a|b|c|ua|null")).isTrue();
+        }
+
+        @Test
+        @DisplayName("reads the timestamp column with the segment's parser")
+        void readsTimestamp() {
+            assertThat(AuditLineScanner.timestampMillis("2025-01-15T10:00:00Z|Login|Success|1|null|ip|s|m|ua|null",
+                    new AuditTimestampParser())).isEqualTo(Instant.parse("2025-01-15T10:00:00Z").toEpochMilli());
+            assertThat(AuditLineScanner.timestampMillis(PipeDelimitedAuditRecordCodec.HEADER, new AuditTimestampParser()))
+                    .isEqualTo(AuditLineScanner.NO_TIMESTAMP);
+        }
+    }
+
+    @Test
+    @DisplayName("requires the action when the query is limited to one")
+    void filtersByAction() {
+        AuditLineScanner consent = new AuditLineScanner("1", "test@example.com", Set.of("CONSENT_GRANTED"));
+
+        assertThat(consent.mayMatch("{\"ts\":1,\"action\":\"Login\",\"userId\":\"1\"}")).isFalse();
+        assertThat(consent.mayMatch("{\"ts\":1,\"action\":\"CONSENT_GRANTED\",\"userId\":\"1\"}")).isTrue();
+        assertThat(consent.mayMatch("2025-01-15T10:00:00Z|Login|Success|1|null|ip|s|m|ua|null")).isFalse();
+    }
+
+    @Test
+    @DisplayName("accepts any of several actions")
+    void filtersByActions() {
+        AuditLineScanner consent = new AuditLineScanner("1", "test@example.com", Set.of("CONSENT_GRANTED", "CONSENT_WITHDRAWN"));
+
+        assertThat(consent.mayMatch("{\"ts\":1,\"action\":\"CONSENT_WITHDRAWN\",\"userId\":\"1\"}")).isTrue();
+        assertThat(consent.mayMatch("2025-01-15T10:00:00Z|CONSENT_GRANTED|Success|1|null|ip|s|m|ua|null")).isTrue();
+        assertThat(consent.mayMatch("2025-01-15T10:00:00Z|CONSENT_EXPIRED|Success|1|null|ip|s|m|ua|null")).isFalse();
+    }
+}
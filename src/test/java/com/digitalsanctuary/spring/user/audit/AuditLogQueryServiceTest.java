@@ -0,0 +1,134 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
+
+@DisplayName("AuditLogQueryService default paging Tests")
+class AuditLogQueryServiceTest {
+
+    private final User user = UserTestDataBuilder.aVerifiedUser().withId(1L).withEmail("test@example.com").build();
+
+    /** Implements only the list methods, like a custom implementation written before paging existed. */
+    private static final class ListOnlyService implements AuditLogQueryService {
+
+        private final List<AuditEventDTO> history = new ArrayList<>();
+        private int pagesRead;
+
+        ListOnlyService(int events) {
+            for (int i = events - 1; i >= 0; i--) {
+                history.add(AuditEventDTO.builder().timestamp(Instant.ofEpochSecond(i)).action(i % 2 == 0 ? "Login" : "Logout").build());
+            }
+        }
+
+        @Override
+        public List<AuditEventDTO> findByUser(User user) {
+            return history;
+        }
+
+        @Override
+        public List<AuditEventDTO> findByUserSince(User user, Instant since) {
+            return history.stream().filter(event -> !event.getTimestamp().isBefore(since)).toList();
+        }
+
+        @Override
+        public List<AuditEventDTO> findByUserAndAction(User user, String action) {
+            return history.stream().filter(event -> action.equals(event.getAction())).toList();
+        }
+
+        @Override
+        public AuditEventPage findPage(User user, AuditQuery query, String cursor, int pageSize) {
+            pagesRead++;
+            return AuditLogQueryService.super.findPage(user, query, cursor, pageSize);
+        }
+    }
+
+    @Nested
+    @DisplayName("findPage")
+    class FindPage {
+
+        @Test
+        @DisplayName("pages through the list result")
+        void pagesThroughList() {
+            ListOnlyService service = new ListOnlyService(5);
+
+            AuditEventPage first = service.findPage(user, AuditQuery.all(), null, 2);
+            AuditEventPage second = service.findPage(user, AuditQuery.all(), first.getNextCursor(), 2);
+            AuditEventPage third = service.findPage(user, AuditQuery.all(), second.getNextCursor(), 2);
+
+            assertThat(first.getEvents()).extracting(AuditEventDTO::getTimestamp)
+                    .containsExactly(Instant.ofEpochSecond(4), Instant.ofEpochSecond(3));
+            assertThat(second.getEvents()).extracting(AuditEventDTO::getTimestamp)
+                    .containsExactly(Instant.ofEpochSecond(2), Instant.ofEpochSecond(1));
+            assertThat(third.getEvents()).extracting(AuditEventDTO::getTimestamp).containsExactly(Instant.ofEpochSecond(0));
+            assertThat(third.hasNext()).isFalse();
+        }
+
+        @Test
+        @DisplayName("combines the since and action criteria")
+        void combinesCriteria() {
+            ListOnlyService service = new ListOnlyService(6);
+            AuditQuery query = AuditQuery.builder().since(Instant.ofEpochSecond(2)).action("Login").build();
+
+            AuditEventPage page = service.findPage(user, query, null, 10);
+
+            assertThat(page.getEvents()).extracting(AuditEventDTO::getTimestamp)
+                    .containsExactly(Instant.ofEpochSecond(4), Instant.ofEpochSecond(2));
+        }
+
+        @Test
+        @DisplayName("rejects a non-positive page size")
+        void rejectsPageSize() {
+            assertThatThrownBy(() -> new ListOnlyService(1).findPage(user, AuditQuery.all(), null, 0))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("find")
+    class Find {
+
+        @Test
+        @DisplayName("filters the narrowest list result by every criterion, then limits and orders it")
+        void filtersLimitsAndOrders() {
+            ListOnlyService service = new ListOnlyService(10);
+            AuditQuery query = AuditQuery.builder().action("Login").action("Logout").until(Instant.ofEpochSecond(8)).limit(3)
+                    .order(AuditQuery.Order.OLDEST_FIRST).build();
+
+            List<AuditEventDTO> result = service.find(user, query);
+
+            assertThat(result).extracting(AuditEventDTO::getTimestamp)
+                    .containsExactly(Instant.ofEpochSecond(5), Instant.ofEpochSecond(6), Instant.ofEpochSecond(7));
+        }
+    }
+
+    @Nested
+    @DisplayName("stream")
+    class StreamPages {
+
+        @Test
+        @DisplayName("fetches pages only as they are consumed")
+        void fetchesLazily() {
+            ListOnlyService service = new ListOnlyService(AuditLogQueryService.DEFAULT_PAGE_SIZE * 2 + 1);
+
+            try (Stream<AuditEventDTO> events = service.stream(user, AuditQuery.all(), null)) {
+                Iterator<AuditEventDTO> iterator = events.iterator();
+                assertThat(service.pagesRead).isZero();
+
+                iterator.next();
+                assertThat(service.pagesRead).isEqualTo(1);
+            }
+            assertThat(service.stream(user, AuditQuery.all(), null).count()).isEqualTo(AuditLogQueryService.DEFAULT_PAGE_SIZE * 2 + 1);
+        }
+    }
+}
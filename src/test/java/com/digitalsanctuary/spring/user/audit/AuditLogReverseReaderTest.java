@@ -0,0 +1,84 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("AuditLogReverseReader Tests")
+class AuditLogReverseReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<String> readBackwards(String content, int chunkBytes) throws IOException {
+        Path file = tempDir.resolve("audit.log");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            AuditLogReverseReader reader = new AuditLogReverseReader(channel, channel.size(), chunkBytes);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    @DisplayName("returns lines newest first, joining lines that span chunks")
+    void returnsLinesNewestFirst() throws IOException {
+        String content = "first line\nsecond, a good deal longer than one chunk\nthird\n";
+
+        for (int chunkBytes : new int[] {1, 3, 7, 64}) {
+            assertThat(readBackwards(content, chunkBytes))
+                    .as("chunk of %d bytes", chunkBytes)
+                    .containsExactly("third", "second, a good deal longer than one chunk", "first line");
+        }
+    }
+
+    @Test
+    @DisplayName("keeps multi-byte characters split across chunks intact")
+    void keepsMultiByteCharacters() throws IOException {
+        String content = "caf\u00e9 \u65e5\u672c\nGr\u00fc\u00dfe \ud83d\ude00\n";
+
+        assertThat(readBackwards(content, 2)).containsExactly("Gr\u00fc\u00dfe \ud83d\ude00", "caf\u00e9 \u65e5\u672c");
+    }
+
+    @Test
+    @DisplayName("strips carriage returns and returns an unterminated last line")
+    void handlesLineEndings() throws IOException {
+        assertThat(readBackwards("one\r\ntwo\r\n\r\npartial", 4)).containsExactly("partial", "", "two", "one");
+    }
+
+    @Test
+    @DisplayName("returns nothing for an empty file")
+    void emptyFile() throws IOException {
+        assertThat(readBackwards("", 8)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("reports the byte offset of each line")
+    void reportsLineOffsets() throws IOException {
+        Path file = tempDir.resolve("audit.log");
+        Files.writeString(file, "\u00e9\u00e9\nab\nc\n", StandardCharsets.UTF_8);
+        List<Long> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            AuditLogReverseReader reader = new AuditLogReverseReader(channel, channel.size(), 3);
+            while (reader.readLine() != null) {
+                offsets.add(reader.lineOffset());
+            }
+        }
+
+        assertThat(offsets).containsExactly(8L, 5L, 0L);
+    }
+}
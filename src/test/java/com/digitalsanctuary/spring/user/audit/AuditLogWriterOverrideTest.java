@@ -4,13 +4,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
 import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.mail.javamail.JavaMailSender;
 import com.digitalsanctuary.spring.user.mail.MailContentBuilder;
 
@@ -65,6 +70,27 @@ class AuditLogWriterOverrideTest {
                 assertThat(context.getBean(AuditLogWriter.class)).isInstanceOf(FileAuditLogWriter.class);
             });
         }
+
+        @Test
+        @DisplayName("Library provides the recent-activity cache for the file store, and none when it is disabled")
+        void recentActivityCacheFollowsProperty() {
+            contextRunner.run(context -> assertThat(context).hasSingleBean(AuditRecentActivityCache.class));
+            contextRunner.withPropertyValues("user.audit.recentActivity.enabled=false")
+                    .run(context -> assertThat(context).doesNotHaveBean(AuditRecentActivityCache.class));
+        }
+
+        @Test
+        @DisplayName("keeps rollups and the analytics service unless disabled")
+        void rollupsFollowProperty() {
+            contextRunner.run(context -> {
+                assertThat(context).hasSingleBean(AuditRollups.class);
+                assertThat(context).hasSingleBean(AuditAnalyticsService.class);
+            });
+            contextRunner.withPropertyValues("user.audit.rollups.enabled=false").run(context -> {
+                assertThat(context).doesNotHaveBean(AuditRollups.class);
+                assertThat(context).doesNotHaveBean(AuditAnalyticsService.class);
+            });
+        }
     }
 
     @Nested
@@ -112,6 +138,94 @@ class AuditLogWriterOverrideTest {
         }
     }
 
+    @Nested
+    @DisplayName("JDBC store: user.audit.store=jdbc swaps in the JDBC writer and query service")
+    class JdbcStore {
+
+        private final ApplicationContextRunner jdbcRunner = contextRunner
+                .withBean(DataSource.class, () -> new DriverManagerDataSource("jdbc:h2:mem:auditJdbcStoreTest"))
+                .withConfiguration(AutoConfigurations.of(JdbcAuditAutoConfiguration.class));
+
+        @Test
+        @DisplayName("JdbcAuditLogWriter replaces the FileAuditLogWriter")
+        void jdbcWriterReplacesFileWriter() {
+            jdbcRunner.withPropertyValues("user.audit.store=jdbc").run(context -> {
+                assertThat(context).hasSingleBean(AuditLogWriter.class);
+                assertThat(context.getBean(AuditLogWriter.class)).isInstanceOf(JdbcAuditLogWriter.class);
+                assertThat(context).doesNotHaveBean(FileAuditLogWriter.class);
+                assertThat(context).hasSingleBean(JdbcAuditLogQueryService.class);
+            });
+        }
+
+        @Test
+        @DisplayName("The JDBC beans are absent with the default file store")
+        void jdbcBeansAbsentByDefault() {
+            jdbcRunner.run(context -> {
+                assertThat(context.getBean(AuditLogWriter.class)).isInstanceOf(FileAuditLogWriter.class);
+                assertThat(context).doesNotHaveBean(JdbcAuditLogQueryService.class);
+            });
+        }
+
+        @Test
+        @DisplayName("A consumer AuditLogWriter still wins over the JDBC writer")
+        void consumerWriterWinsOverJdbc() {
+            jdbcRunner.withPropertyValues("user.audit.store=jdbc").withUserConfiguration(ConsumerAuditLogWriterConfig.class).run(context -> {
+                assertThat(context).hasSingleBean(AuditLogWriter.class);
+                assertThat(context.getBean(AuditLogWriter.class)).isSameAs(ConsumerAuditLogWriterConfig.CONSUMER_WRITER);
+                assertThat(context).hasSingleBean(JdbcAuditLogQueryService.class);
+            });
+        }
+    }
+
+    @Nested
+    @DisplayName("Multiple sinks: user.audit.sinks swaps in the composite writer")
+    class MultipleSinks {
+
+        private ApplicationContextRunner sinksRunner(AuditSinkType... sinks) {
+            return new ApplicationContextRunner()
+                    .withPropertyValues("user.mail.fromAddress=test@example.com", "user.audit.sinks=" + Arrays.toString(sinks).replaceAll("[\\[\\] ]", ""))
+                    .withBean(AuditConfig.class, () -> {
+                        AuditConfig config = auditConfig();
+                        config.setSinks(List.of(sinks));
+                        return config;
+                    })
+                    .withBean(MailContentBuilder.class, () -> mock(MailContentBuilder.class))
+                    .withBean("javaMailSender", JavaMailSender.class, () -> mock(JavaMailSender.class))
+                    .withConfiguration(AutoConfigurations.of(CompositeAuditAutoConfiguration.class, JdbcAuditAutoConfiguration.class,
+                            AuditMailAutoConfiguration.class));
+        }
+
+        @Test
+        @DisplayName("CompositeAuditLogWriter replaces the FileAuditLogWriter")
+        void compositeWriterReplacesFileWriter() {
+            sinksRunner(AuditSinkType.FILE, AuditSinkType.LOG).run(context -> {
+                assertThat(context).hasSingleBean(AuditLogWriter.class);
+                CompositeAuditLogWriter writer = context.getBean(CompositeAuditLogWriter.class);
+                assertThat(writer.getSinks()).extracting(AuditSink::getName).containsExactly("file", "log");
+                assertThat(context).doesNotHaveBean(FileAuditLogWriter.class);
+                assertThat(context).hasSingleBean(AuditSinkMetrics.class);
+            });
+        }
+
+        @Test
+        @DisplayName("Listing the JDBC sink without a DataSource fails startup")
+        void jdbcSinkRequiresDataSource() {
+            sinksRunner(AuditSinkType.JDBC).run(context -> {
+                assertThat(context).hasFailed();
+                assertThat(context.getStartupFailure()).hasRootCauseInstanceOf(IllegalStateException.class);
+            });
+        }
+
+        @Test
+        @DisplayName("A consumer AuditLogWriter still wins over the composite writer")
+        void consumerWriterWinsOverComposite() {
+            sinksRunner(AuditSinkType.LOG).withUserConfiguration(ConsumerAuditLogWriterConfig.class).run(context -> {
+                assertThat(context.getBean(AuditLogWriter.class)).isSameAs(ConsumerAuditLogWriterConfig.CONSUMER_WRITER);
+                assertThat(context).doesNotHaveBean(CompositeAuditLogWriter.class);
+            });
+        }
+    }
+
     @Nested
     @DisplayName("Annotation contract on the auto-configuration bean method")
     class AnnotationContract {
@@ -119,7 +233,15 @@ class AuditLogWriterOverrideTest {
         @Test
         @DisplayName("fileAuditLogWriter() is @ConditionalOnMissingBean")
         void writerIsConditional() throws Exception {
-            Method method = AuditMailAutoConfiguration.class.getMethod("fileAuditLogWriter", AuditConfig.class);
+            Method method = AuditMailAutoConfiguration.class.getMethod("fileAuditLogWriter", AuditConfig.class, AuditRecordCodec.class,
+                    ObjectProvider.class, ObjectProvider.class);
+            assertThat(method.getAnnotation(ConditionalOnMissingBean.class)).isNotNull();
+        }
+
+        @Test
+        @DisplayName("auditRecordCodec() is @ConditionalOnMissingBean")
+        void codecIsConditional() throws Exception {
+            Method method = AuditMailAutoConfiguration.class.getMethod("auditRecordCodec", AuditConfig.class);
             assertThat(method.getAnnotation(ConditionalOnMissingBean.class)).isNotNull();
         }
     }
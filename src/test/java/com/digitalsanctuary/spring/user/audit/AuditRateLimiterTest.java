@@ -0,0 +1,257 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AuditRateLimiter Tests")
+class AuditRateLimiterTest {
+
+    @Mock
+    private AuditLogWriter auditLogWriter;
+
+    @Mock
+    private ObjectProvider<AuditLogWriter> auditLogWriterProvider;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    /** Flushes handed off from the event path, run by the test when it chooses. */
+    private final List<Runnable> handedOff = new ArrayList<>();
+
+    private AuditConfig.RateLimit settings;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(auditLogWriterProvider.getIfAvailable()).thenReturn(auditLogWriter);
+        settings = new AuditConfig.RateLimit();
+        settings.setEnabled(true);
+        settings.setActionEventsPerSecond(1000);
+        settings.setActionBurst(1000);
+        settings.setSourceEventsPerSecond(1);
+        settings.setSourceBurst(3);
+        settings.setAggregateIntervalMs(60_000L);
+    }
+
+    private AuditRateLimiter newLimiter() {
+        return new AuditRateLimiter(settings, auditLogWriterProvider, handedOff::add, clock::get);
+    }
+
+    private static AuditEvent event(String action, String status, String ip) {
+        return AuditEvent.builder().source(AuditRateLimiterTest.class).action(action).actionStatus(status).ipAddress(ip).build();
+    }
+
+    private void advanceMillis(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Nested
+    @DisplayName("Token Buckets")
+    class TokenBuckets {
+
+        @Test
+        @DisplayName("Admits the burst from one network, then suppresses")
+        void admitsBurstThenSuppresses() {
+            AuditRateLimiter limiter = newLimiter();
+
+            for (int i = 0; i < 3; i++) {
+                assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113." + i)));
+            }
+            assertFalse(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.99")));
+            assertEquals(1, limiter.getSuppressedEventCount());
+        }
+
+        @Test
+        @DisplayName("Limits each network independently")
+        void limitsNetworksIndependently() {
+            AuditRateLimiter limiter = newLimiter();
+
+            for (int i = 0; i < 3; i++) {
+                limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1"));
+            }
+
+            assertFalse(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1")));
+            assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Failure", "198.51.100.1")));
+        }
+
+        @Test
+        @DisplayName("Limits an action across networks")
+        void limitsActionAcrossNetworks() {
+            settings.setActionBurst(2);
+            settings.setActionEventsPerSecond(1);
+            AuditRateLimiter limiter = newLimiter();
+
+            assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1")));
+            assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Failure", "198.51.100.1")));
+            assertFalse(limiter.tryAcquire(event("CaptchaValidation", "Failure", "192.0.2.1")));
+            assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Success", "192.0.2.1")));
+        }
+
+        @Test
+        @DisplayName("Refills tokens over time")
+        void refillsOverTime() {
+            AuditRateLimiter limiter = newLimiter();
+            for (int i = 0; i < 3; i++) {
+                limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1"));
+            }
+            assertFalse(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1")));
+
+            advanceMillis(1000);
+
+            assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1")));
+            assertFalse(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1")));
+        }
+
+        @Test
+        @DisplayName("Never limits exempt actions")
+        void exemptActionsAlwaysPass() {
+            AuditRateLimiter limiter = newLimiter();
+
+            for (int i = 0; i < 50; i++) {
+                assertTrue(limiter.tryAcquire(event("Login", "Success", "203.0.113.1")));
+                assertTrue(limiter.tryAcquire(event("consent_granted", "Success", "203.0.113.1")));
+            }
+            assertTrue(limiter.tryAcquire(event("Login", "Failure", "203.0.113.1")));
+            assertEquals(0, limiter.getSuppressedEventCount());
+        }
+
+        @Test
+        @DisplayName("Shares one bucket between networks beyond maxTrackedSources")
+        void sharesBucketBeyondMaxTrackedSources() {
+            settings.setMaxTrackedSources(1);
+            settings.setSourceBurst(1);
+            AuditRateLimiter limiter = newLimiter();
+
+            assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1")));
+            assertTrue(limiter.tryAcquire(event("CaptchaValidation", "Failure", "198.51.100.1")));
+            assertFalse(limiter.tryAcquire(event("CaptchaValidation", "Failure", "192.0.2.1")));
+
+            List<AuditEvent> aggregates = limiter.drainAggregates();
+            assertEquals(1, aggregates.size());
+            assertTrue(aggregates.get(0).getMessage().contains("from " + AuditRateLimiter.OVERFLOW_SOURCE));
+            assertNull(aggregates.get(0).getIpAddress());
+        }
+    }
+
+    @Nested
+    @DisplayName("Aggregates")
+    class Aggregates {
+
+        @Test
+        @DisplayName("Folds suppressed events into one record per action, status and network")
+        void foldsSuppressedEvents() {
+            AuditRateLimiter limiter = newLimiter();
+            for (int i = 0; i < 3 + 18_422; i++) {
+                limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113." + (i % 250)));
+            }
+
+            List<AuditEvent> aggregates = limiter.drainAggregates();
+
+            assertEquals(1, aggregates.size());
+            AuditEvent aggregate = aggregates.get(0);
+            assertEquals("CaptchaValidation", aggregate.getAction());
+            assertEquals("Failure", aggregate.getActionStatus());
+            assertEquals("203.0.113.0/24", aggregate.getIpAddress());
+            assertEquals("CaptchaValidation Failure x 18,422 from 203.0.113.0/24 in last 60s", aggregate.getMessage());
+            assertEquals("{\"aggregate\":true,\"suppressed\":18422,\"windowSeconds\":60}", aggregate.getExtraData());
+            assertTrue(limiter.drainAggregates().isEmpty());
+        }
+
+        @Test
+        @DisplayName("flushAggregates writes aggregates to the audit writer")
+        void flushWritesAggregates() {
+            AuditRateLimiter limiter = newLimiter();
+            for (int i = 0; i < 5; i++) {
+                limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1"));
+            }
+
+            limiter.flushAggregates();
+
+            ArgumentCaptor<AuditEvent> captor = ArgumentCaptor.forClass(AuditEvent.class);
+            verify(auditLogWriter).writeLog(captor.capture());
+            assertEquals("CaptchaValidation Failure x 2 from 203.0.113.0/24 in last 60s", captor.getValue().getMessage());
+        }
+
+        @Test
+        @DisplayName("Hands the flush to the executor from the event path once the interval has elapsed")
+        void flushesLazilyFromEventPath() {
+            AuditRateLimiter limiter = newLimiter();
+            for (int i = 0; i < 4; i++) {
+                limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1"));
+            }
+            assertTrue(handedOff.isEmpty());
+
+            advanceMillis(60_000);
+            limiter.tryAcquire(event("Login", "Success", "203.0.113.1"));
+
+            // The request thread only queues the flush; nothing is written until the executor runs it
+            verify(auditLogWriter, never()).writeLog(any());
+            assertEquals(1, handedOff.size());
+            handedOff.get(0).run();
+
+            ArgumentCaptor<AuditEvent> captor = ArgumentCaptor.forClass(AuditEvent.class);
+            verify(auditLogWriter).writeLog(captor.capture());
+            assertEquals("CaptchaValidation Failure x 1 from 203.0.113.0/24 in last 60s", captor.getValue().getMessage());
+        }
+
+        @Test
+        @DisplayName("Does not write anything when nothing was suppressed")
+        void flushWithoutSuppressionWritesNothing() {
+            AuditRateLimiter limiter = newLimiter();
+            limiter.tryAcquire(event("CaptchaValidation", "Failure", "203.0.113.1"));
+
+            limiter.flushAggregates();
+
+            verify(auditLogWriter, never()).writeLog(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Source Networks")
+    class SourceNetworks {
+
+        @Test
+        @DisplayName("Maps IPv4 addresses to their /24")
+        void mapsIpv4() {
+            assertEquals("203.0.113.0/24", AuditRateLimiter.sourceOf("203.0.113.57"));
+        }
+
+        @Test
+        @DisplayName("Maps IPv6 addresses to their /64")
+        void mapsIpv6() {
+            assertEquals("2001:db8:0:1:0:0:0:0/64", AuditRateLimiter.sourceOf("2001:db8:0:1:abcd::42"));
+        }
+
+        @Test
+        @DisplayName("Maps missing addresses to the unknown source")
+        void mapsMissingAddress() {
+            assertEquals(AuditRateLimiter.UNKNOWN_SOURCE, AuditRateLimiter.sourceOf(null));
+            assertEquals(AuditRateLimiter.UNKNOWN_SOURCE, AuditRateLimiter.sourceOf(" "));
+        }
+
+        @Test
+        @DisplayName("Uses values that are not IP literals as-is")
+        void keepsNonLiterals() {
+            assertEquals("proxy.example.com", AuditRateLimiter.sourceOf("proxy.example.com"));
+        }
+    }
+}
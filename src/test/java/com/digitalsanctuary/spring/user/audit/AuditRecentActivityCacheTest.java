@@ -0,0 +1,145 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AuditRecentActivityCache Tests")
+class AuditRecentActivityCacheTest {
+
+    private static final Instant BASE = Instant.parse("2025-01-15T10:00:00Z");
+
+    private static AuditRecord record(int minute, String userId, String email, String action) {
+        return new AuditRecord(at(minute).toEpochMilli(), userId, email, "sess", "127.0.0.1", "Mozilla/5.0", action, "Success", "message",
+                null);
+    }
+
+    private static Instant at(int minute) {
+        return BASE.plusSeconds(minute * 60L);
+    }
+
+    /** Writes records for user 1 at the given minutes; the first one only creates the entry, which is complete a minute later. */
+    private static AuditRecentActivityCache cacheWith(int eventsPerUser, int... minutes) {
+        AuditRecentActivityCache cache = new AuditRecentActivityCache(eventsPerUser, Long.MAX_VALUE);
+        for (int minute : minutes) {
+            cache.record(record(minute, "1", "test@example.com", "Login"));
+        }
+        return cache;
+    }
+
+    @Nested
+    @DisplayName("find")
+    class Find {
+
+        @Test
+        @DisplayName("answers a limited query from the events after the entry became complete")
+        void answersLimit() {
+            AuditRecentActivityCache cache = cacheWith(10, 0, 2, 3, 4);
+
+            List<AuditEventDTO> events = cache.find("1", "Test@Example.com", AuditQuery.all(), 2);
+
+            assertThat(events).extracting(AuditEventDTO::getTimestamp).containsExactly(at(4), at(3));
+            assertThat(events.get(0).getUserAgent()).isEqualTo("Mozilla/5.0");
+            assertThat(cache.getHitCount()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("misses a query that may need events from before the entry was created")
+        void missesIncompleteWindow() {
+            AuditRecentActivityCache cache = cacheWith(10, 0, 2, 3, 4);
+
+            assertThat(cache.find("1", "test@example.com", AuditQuery.all(), 10)).isNull();
+            assertThat(cache.find("1", "test@example.com", AuditQuery.builder().since(at(0)).build(), 10)).isNull();
+            assertThat(cache.getMissCount()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("answers a since query that lies within the complete range")
+        void answersSince() {
+            AuditRecentActivityCache cache = cacheWith(10, 0, 2, 3, 4);
+
+            List<AuditEventDTO> events = cache.find("1", "test@example.com", AuditQuery.builder().since(at(2)).build(), 0);
+
+            assertThat(events).extracting(AuditEventDTO::getTimestamp).containsExactly(at(4), at(3), at(2));
+        }
+
+        @Test
+        @DisplayName("applies the remaining criteria to the cached events")
+        void appliesCriteria() {
+            AuditRecentActivityCache cache = cacheWith(10, 0);
+            cache.record(record(2, "1", "test@example.com", "Logout"));
+            cache.record(record(3, "1", "test@example.com", "Login"));
+
+            List<AuditEventDTO> events = cache.find("1", "test@example.com", AuditQuery.builder().action("Logout").since(at(1)).build(), 0);
+
+            assertThat(events).extracting(AuditEventDTO::getAction).containsExactly("Logout");
+        }
+
+        @Test
+        @DisplayName("misses a user whose email differs from the cached one")
+        void missesChangedEmail() {
+            AuditRecentActivityCache cache = cacheWith(10, 0, 2, 3);
+
+            assertThat(cache.find("1", "new@example.com", AuditQuery.builder().since(at(2)).build(), 0)).isNull();
+            assertThat(cache.find("2", "test@example.com", AuditQuery.builder().since(at(2)).build(), 0)).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("record")
+    class Recording {
+
+        @Test
+        @DisplayName("keeps the most recent events per user and moves the complete range past dropped ones")
+        void dropsOldest() {
+            AuditRecentActivityCache cache = cacheWith(2, 0, 2, 3, 4);
+
+            assertThat(cache.find("1", "test@example.com", AuditQuery.builder().since(at(3)).build(), 0))
+                    .extracting(AuditEventDTO::getTimestamp).containsExactly(at(4), at(3));
+            assertThat(cache.find("1", "test@example.com", AuditQuery.builder().since(at(2)).build(), 0)).isNull();
+        }
+
+        @Test
+        @DisplayName("adds records of another subject with the user's email, which the log query also matches")
+        void routesByEmail() {
+            AuditRecentActivityCache cache = cacheWith(10, 0);
+            cache.record(record(2, "test@example.com", "test@example.com", "Registration"));
+
+            assertThat(cache.find("1", "test@example.com", AuditQuery.builder().since(at(2)).build(), 0))
+                    .extracting(AuditEventDTO::getAction).containsExactly("Registration");
+        }
+
+        @Test
+        @DisplayName("ignores records without a subject")
+        void ignoresUnknownUser() {
+            AuditRecentActivityCache cache = cacheWith(10);
+            cache.record(record(0, AuditRecord.UNKNOWN_USER, null, "CaptchaValidation"));
+
+            assertThat(cache.size()).isZero();
+            assertThat(cache.estimatedBytes()).isZero();
+        }
+
+        @Test
+        @DisplayName("evicts the least recently used user once over the memory budget")
+        void evictsLeastRecentlyUsed() {
+            AuditRecentActivityCache probe = new AuditRecentActivityCache(10, Long.MAX_VALUE);
+            probe.record(record(0, "1", "user1@example.com", "Login"));
+            AuditRecentActivityCache cache = new AuditRecentActivityCache(10, probe.estimatedBytes() * 3);
+            for (int user = 1; user <= 3; user++) {
+                cache.record(record(0, String.valueOf(user), "user" + user + "@example.com", "Login"));
+            }
+            cache.find("1", "user1@example.com", AuditQuery.all(), 1); // touches user 1
+
+            cache.record(record(1, "4", "user4@example.com", "Login"));
+
+            assertThat(cache.size()).isEqualTo(3);
+            assertThat(cache.estimatedBytes()).isEqualTo(probe.estimatedBytes() * 3);
+            cache.record(record(2, "2", "user2@example.com", "Login")); // user 2 was evicted, so this starts a new entry
+            assertThat(cache.find("2", "user2@example.com", AuditQuery.builder().since(at(2)).build(), 0)).isNull();
+        }
+    }
+}
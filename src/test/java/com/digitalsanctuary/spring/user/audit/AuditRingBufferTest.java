@@ -0,0 +1,108 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AuditRingBuffer Tests")
+class AuditRingBufferTest {
+
+    @Test
+    @DisplayName("rounds capacity up to a power of two")
+    void roundsCapacityUpToPowerOfTwo() {
+        assertThat(new AuditRingBuffer<String>(1000).capacity()).isEqualTo(1024);
+        assertThat(new AuditRingBuffer<String>(1024).capacity()).isEqualTo(1024);
+        assertThat(new AuditRingBuffer<String>(1).capacity()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("rejects non-positive capacity and null elements")
+    void rejectsInvalidArguments() {
+        assertThatThrownBy(() -> new AuditRingBuffer<String>(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AuditRingBuffer<String>(4).offer(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("drains in FIFO order and respects the batch limit")
+    void drainsInFifoOrder() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drainTo(drained::add, 3)).isEqualTo(3);
+        assertThat(drained).containsExactly(0, 1, 2);
+        assertThat(buffer.size()).isEqualTo(2);
+
+        buffer.drainTo(drained::add, 10);
+        assertThat(drained).containsExactly(0, 1, 2, 3, 4);
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("offer returns false when full and succeeds again once drained")
+    void offerFailsWhenFull() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(99)).isFalse();
+
+        buffer.drainTo(e -> { }, 1);
+        assertThat(buffer.offer(4)).isTrue();
+
+        List<Integer> drained = new ArrayList<>();
+        buffer.drainTo(drained::add, 10);
+        assertThat(drained).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    @DisplayName("delivers every element exactly once with concurrent producers")
+    void concurrentProducers_deliverEveryElementOnce() throws Exception {
+        int producers = 4;
+        int perProducer = 5000;
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(256);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                return null;
+            });
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        List<Integer> duplicates = new ArrayList<>();
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (seen.size() + duplicates.size() < producers * perProducer && System.nanoTime() < deadline) {
+            buffer.drainTo(e -> {
+                if (!seen.add(e)) {
+                    duplicates.add(e);
+                }
+            }, 64);
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(duplicates).isEmpty();
+        assertThat(seen).hasSize(producers * perProducer);
+    }
+}
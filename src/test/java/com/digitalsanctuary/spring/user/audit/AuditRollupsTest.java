@@ -0,0 +1,140 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AuditRollups Tests")
+class AuditRollupsTest {
+
+    private static final Instant BASE = Instant.parse("2025-01-15T10:00:00Z");
+
+    /** The rollups' clock, starting at {@link #BASE}. */
+    private final AtomicLong now = new AtomicLong(BASE.toEpochMilli());
+
+    private AuditRollups rollups(int retentionMinutes, int maxGroups) {
+        return new AuditRollups(retentionMinutes, maxGroups, now::get);
+    }
+
+    private static AuditRecord record(int second, String action, String status, String ip) {
+        return new AuditRecord(BASE.plusSeconds(second).toEpochMilli(), "1", "test@example.com", null, ip, null, action, status, null, null);
+    }
+
+    /** Records failed logins from two addresses and a CAPTCHA failure across the first three minutes, and moves the clock past them. */
+    private AuditRollups withTraffic() {
+        AuditRollups rollups = rollups(60, 1000);
+        rollups.record(record(5, "Login", "Failure", "10.0.0.1"));
+        rollups.record(record(30, "Login", "Failure", "10.0.0.1"));
+        rollups.record(record(70, "Login", "Failure", "10.0.0.2"));
+        rollups.record(record(75, "Login", "Success", "10.0.0.2"));
+        rollups.record(record(130, "CaptchaValidation", "Failure", "10.0.0.1"));
+        rollups.record(record(140, "Login", "Failure", "10.0.0.1"));
+        now.set(BASE.plusSeconds(600).toEpochMilli());
+        return rollups;
+    }
+
+    @Nested
+    @DisplayName("aggregate")
+    class Aggregate {
+
+        @Test
+        @DisplayName("groups by IP address, largest count first")
+        void groupsByIp() {
+            List<AuditAggregate> rows = withTraffic().aggregate(AuditAggregateQuery.builder().action("Login").status("Failure")
+                    .dimension(AuditAggregateQuery.Dimension.IP_ADDRESS).build());
+
+            assertThat(rows).extracting(AuditAggregate::getIpAddress).containsExactly("10.0.0.1", "10.0.0.2");
+            assertThat(rows).extracting(AuditAggregate::getCount).containsExactly(3L, 1L);
+            assertThat(rows.get(0).getAction()).isNull();
+            assertThat(rows.get(0).getBucketStart()).isNull();
+        }
+
+        @Test
+        @DisplayName("counts per time bucket in bucket order")
+        void bucketsByMinute() {
+            List<AuditAggregate> rows = withTraffic().aggregate(AuditAggregateQuery.builder().status("Failure")
+                    .bucket(Duration.ofMinutes(1)).build());
+
+            assertThat(rows).extracting(AuditAggregate::getBucketStart)
+                    .containsExactly(BASE, BASE.plusSeconds(60), BASE.plusSeconds(120));
+            assertThat(rows).extracting(AuditAggregate::getCount).containsExactly(2L, 1L, 2L);
+        }
+
+        @Test
+        @DisplayName("keeps the top groups per bucket and honors the time range in whole minutes")
+        void limitsAndRanges() {
+            List<AuditAggregate> rows = withTraffic().aggregate(AuditAggregateQuery.builder()
+                    .dimension(AuditAggregateQuery.Dimension.ACTION)
+                    .since(BASE.plusSeconds(90))
+                    .limit(1)
+                    .build());
+
+            assertThat(rows).hasSize(1);
+            assertThat(rows.get(0).getAction()).isEqualTo("Login");
+            assertThat(rows.get(0).getCount()).isEqualTo(3L);
+        }
+
+        @Test
+        @DisplayName("counts a rate limiter aggregate as the events it stands for")
+        void weighsAggregates() {
+            AuditRollups rollups = rollups(60, 1000);
+            rollups.record(new AuditRecord(BASE.toEpochMilli(), AuditRecord.UNKNOWN_USER, null, null, "10.0.0.0/24", null, "Login", "Failure",
+                    null, "{\"aggregate\":true,\"suppressed\":250,\"windowSeconds\":60}"));
+
+            assertThat(rollups.aggregate(AuditAggregateQuery.builder().build())).extracting(AuditAggregate::getCount).containsExactly(250L);
+        }
+    }
+
+    @Nested
+    @DisplayName("record")
+    class Recording {
+
+        @Test
+        @DisplayName("discards minutes that fall out of retention, and records that arrive for them")
+        void discardsExpiredMinutes() {
+            AuditRollups rollups = withTraffic();
+            now.set(BASE.plusSeconds(3600 + 90).toEpochMilli()); // minute 0 and 1 are now older than 60 minutes
+
+            rollups.record(record(10, "Login", "Failure", "10.0.0.1"));
+
+            assertThat(rollups.aggregate(AuditAggregateQuery.builder().build())).extracting(AuditAggregate::getCount).containsExactly(2L);
+            assertThat(rollups.getGroupCount()).isEqualTo(2);
+            assertThat(rollups.getCoverageStart()).isEqualTo(BASE.plusSeconds(120));
+        }
+
+        @Test
+        @DisplayName("folds new addresses into the other group once full")
+        void capsGroups() {
+            AuditRollups rollups = rollups(60, 2);
+            rollups.record(record(0, "Login", "Failure", "10.0.0.1"));
+            rollups.record(record(1, "Login", "Failure", "10.0.0.2"));
+            rollups.record(record(2, "Login", "Failure", "10.0.0.3"));
+            rollups.record(record(3, "Login", "Failure", "10.0.0.4"));
+            rollups.record(record(4, "Login", "Failure", "10.0.0.1"));
+            rollups.record(record(5, "Login", "Failure", "10.0.0.5"));
+
+            List<AuditAggregate> rows = rollups.aggregate(AuditAggregateQuery.builder().dimension(AuditAggregateQuery.Dimension.IP_ADDRESS)
+                    .build());
+
+            assertThat(rows).extracting(AuditAggregate::getIpAddress).containsExactly(AuditRollups.OTHER_IP_ADDRESS, "10.0.0.1", "10.0.0.2");
+            assertThat(rows).extracting(AuditAggregate::getCount).containsExactly(3L, 2L, 1L);
+        }
+    }
+
+    @Test
+    @DisplayName("AuditAnalyticsService rejects a bucket that is not whole minutes")
+    void rejectsPartialMinuteBucket() {
+        AuditAnalyticsService service = new AuditAnalyticsService(rollups(60, 10));
+
+        assertThatThrownBy(() -> service.aggregate(AuditAggregateQuery.builder().bucket(Duration.ofSeconds(90)).build()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.aggregate(AuditAggregateQuery.builder().bucket(Duration.ofMinutes(5)).build())).isEmpty();
+    }
+}
@@ -0,0 +1,111 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("AuditSegmentBloomFilter Tests")
+class AuditSegmentBloomFilterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String record(String userId, String email) {
+        return "{\"ts\":1736935200000,\"action\":\"Login\",\"status\":\"Success\",\"userId\":\"" + userId + "\",\"email\":\"" + email
+                + "\"}\n";
+    }
+
+    @Nested
+    @DisplayName("membership")
+    class Membership {
+
+        @Test
+        @DisplayName("never misses an added key and rejects most absent ones")
+        void noFalseNegatives() {
+            AuditSegmentBloomFilter filter = AuditSegmentBloomFilter.create(1000, 0.01);
+            for (int i = 0; i < 1000; i++) {
+                filter.add(AuditSegmentBloomFilter.idKey(String.valueOf(i)));
+            }
+
+            int falsePositives = 0;
+            for (int i = 0; i < 1000; i++) {
+                assertThat(filter.mightContain(AuditSegmentBloomFilter.idKey(String.valueOf(i)))).isTrue();
+                if (filter.mightContain(AuditSegmentBloomFilter.idKey(String.valueOf(i + 1000)))) {
+                    falsePositives++;
+                }
+            }
+            assertThat(falsePositives).isLessThan(50); // about 10 expected at 1%
+        }
+
+        @Test
+        @DisplayName("matches a user by id or by email regardless of case")
+        void matchesUser() {
+            AuditSegmentBloomFilter filter = AuditSegmentBloomFilter.create(2, 0.0001);
+            filter.add(AuditSegmentBloomFilter.idKey("1"));
+            filter.add(AuditSegmentBloomFilter.emailKey("Test@Example.com"));
+
+            assertThat(filter.mightContainUser("1", null)).isTrue();
+            assertThat(filter.mightContainUser(null, "test@EXAMPLE.com")).isTrue();
+            assertThat(filter.mightContainUser("2", "other@example.com")).isFalse();
+            assertThat(filter.mightContainUser(null, null)).isFalse();
+        }
+
+        @Test
+        @DisplayName("rejects a false-positive rate outside (0, 1)")
+        void rejectsRate() {
+            assertThatThrownBy(() -> AuditSegmentBloomFilter.create(10, 0.0)).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> AuditSegmentBloomFilter.create(10, 1.0)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("persistence")
+    class Persistence {
+
+        @Test
+        @DisplayName("builds from a compressed segment and survives a save and load")
+        void buildsSavesAndLoads() throws IOException {
+            Path segment = tempDir.resolve("audit.log.1.gz");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(segment))) {
+                out.write((record("1", "one@example.com") + "not a record\n" + record("2", "two@example.com"))
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            Path path = AuditSegmentBloomFilter.pathFor(tempDir.resolve("audit.log").toString(), 3L);
+
+            AuditSegmentBloomFilter built = AuditSegmentBloomFilter.build(segment, 0.0001);
+            built.save(path);
+            AuditSegmentBloomFilter loaded = AuditSegmentBloomFilter.load(path);
+
+            assertThat(path.getFileName().toString()).isEqualTo("audit.log.bloom-3");
+            assertThat(Files.size(path)).isEqualTo(built.byteSize());
+            assertThat(loaded).isNotNull();
+            assertThat(loaded.mightContainUser("1", null)).isTrue();
+            assertThat(loaded.mightContainUser(null, "two@example.com")).isTrue();
+            assertThat(loaded.mightContainUser("3", "three@example.com")).isFalse();
+        }
+
+        @Test
+        @DisplayName("loads nothing from a missing or truncated file")
+        void rejectsInvalidFile() throws IOException {
+            Path path = tempDir.resolve("audit.log.bloom-1");
+            assertThat(AuditSegmentBloomFilter.load(path)).isNull();
+
+            AuditSegmentBloomFilter.create(100, 0.01).save(path);
+            byte[] bytes = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+
+            assertThat(AuditSegmentBloomFilter.load(path)).isNull();
+        }
+    }
+}
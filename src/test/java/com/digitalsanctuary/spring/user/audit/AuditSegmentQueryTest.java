@@ -0,0 +1,134 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AuditSegmentQuery Tests")
+class AuditSegmentQueryTest {
+
+    private static final Path ACTIVE = Path.of("audit.log");
+    private static final Path FIRST_ARCHIVE = Path.of("audit.log.1");
+    private static final Path SECOND_ARCHIVE = Path.of("audit.log.2.gz");
+
+    private static AuditEventDTO event(String isoTime, String action) {
+        return AuditEventDTO.builder().timestamp(Instant.parse(isoTime)).action(action).build();
+    }
+
+    private static AuditSegmentQuery query(Map<Path, List<AuditEventDTO>> contents, Set<Path> read, int maxResults) {
+        return new AuditSegmentQuery(List.of(ACTIVE, FIRST_ARCHIVE, SECOND_ARCHIVE),
+                cancelled -> new AuditSegmentMatches(event -> true, null, maxResults, cancelled), (segment, matches) -> {
+                    read.add(segment);
+                    for (AuditEventDTO event : contents.getOrDefault(segment, List.of())) {
+                        if (!matches.offer(event)) {
+                            return;
+                        }
+                    }
+                }, maxResults);
+    }
+
+    @Test
+    @DisplayName("merges the matches of all segments newest first")
+    void mergesSegmentsNewestFirst() throws Exception {
+        Map<Path, List<AuditEventDTO>> contents = Map.of(
+                ACTIVE, List.of(event("2025-01-15T10:00:00Z", "Active")),
+                FIRST_ARCHIVE, List.of(event("2025-01-14T12:00:00Z", "Later"), event("2025-01-14T10:00:00Z", "Earlier")),
+                SECOND_ARCHIVE, List.of(event("2025-01-13T10:00:00Z", "Oldest")));
+
+        List<AuditEventDTO> result = query(contents, ConcurrentHashMap.newKeySet(), 0).run(3);
+
+        assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Active", "Later", "Earlier", "Oldest");
+    }
+
+    @Test
+    @DisplayName("reads no older segment once the newer ones hold the answer")
+    void skipsSegmentsNotNeeded() throws Exception {
+        Map<Path, List<AuditEventDTO>> contents = Map.of(
+                ACTIVE, List.of(event("2025-01-15T10:00:00Z", "Active")),
+                FIRST_ARCHIVE, List.of(event("2025-01-14T12:00:00Z", "Later"), event("2025-01-14T10:00:00Z", "Earlier")),
+                SECOND_ARCHIVE, List.of(event("2025-01-13T10:00:00Z", "Oldest")));
+        Set<Path> read = ConcurrentHashMap.newKeySet();
+
+        List<AuditEventDTO> result = query(contents, read, 2).run(1);
+
+        assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Active", "Later");
+        assertThat(read).containsExactlyInAnyOrder(ACTIVE, FIRST_ARCHIVE);
+    }
+
+    @Test
+    @DisplayName("cancels an older segment that is still being read once the newer ones hold the answer")
+    void cancelsOlderSegments() throws Exception {
+        CountDownLatch olderStarted = new CountDownLatch(1);
+        CountDownLatch olderStopped = new CountDownLatch(1);
+        AuditSegmentQuery query = new AuditSegmentQuery(List.of(ACTIVE, FIRST_ARCHIVE),
+                cancelled -> new AuditSegmentMatches(event -> true, null, 1, cancelled), (segment, matches) -> {
+                    if (segment.equals(ACTIVE)) {
+                        awaitQuietly(olderStarted);
+                        matches.offer(event("2025-01-15T10:00:00Z", "Active"));
+                        return;
+                    }
+                    olderStarted.countDown();
+                    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                    while (System.nanoTime() < deadline) {
+                        // an older record that does not match, read until the segment is cancelled
+                        if (!matches.offer(null)) {
+                            olderStopped.countDown();
+                            return;
+                        }
+                        Thread.onSpinWait();
+                    }
+                }, 1);
+
+        List<AuditEventDTO> result = query.run(2);
+
+        assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Active");
+        assertThat(olderStopped.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("skips a segment deleted before it was read")
+    void skipsDeletedSegments() throws Exception {
+        AuditSegmentQuery query = new AuditSegmentQuery(List.of(ACTIVE, FIRST_ARCHIVE),
+                cancelled -> new AuditSegmentMatches(event -> true, null, 0, cancelled), (segment, matches) -> {
+                    if (segment.equals(FIRST_ARCHIVE)) {
+                        throw new NoSuchFileException(segment.toString());
+                    }
+                    matches.offer(event("2025-01-15T10:00:00Z", "Active"));
+                }, 0);
+
+        assertThat(query.run(2)).extracting(AuditEventDTO::getAction).containsExactly("Active");
+    }
+
+    @Test
+    @DisplayName("fails the query when a segment cannot be read")
+    void failsOnUnreadableSegment() {
+        AuditSegmentQuery query = new AuditSegmentQuery(List.of(ACTIVE, FIRST_ARCHIVE),
+                cancelled -> new AuditSegmentMatches(event -> true, null, 0, cancelled), (segment, matches) -> {
+                    if (segment.equals(FIRST_ARCHIVE)) {
+                        throw new IOException("Not in GZIP format");
+                    }
+                }, 0);
+
+        assertThatThrownBy(() -> query.run(2)).isInstanceOf(IOException.class).hasMessageContaining("audit.log.1");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
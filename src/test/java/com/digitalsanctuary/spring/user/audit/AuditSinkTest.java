@@ -0,0 +1,226 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("AuditSink Tests")
+class AuditSinkTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private CompositeAuditLogWriter composite;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (composite != null) {
+            composite.cleanup();
+        }
+    }
+
+    private static AuditRecord record(String action) {
+        return new AuditRecord(System.currentTimeMillis(), "1", "user@example.com", "sess", "127.0.0.1", "JUnit", action, "Success", null,
+                null);
+    }
+
+    /** Records every action it is handed. */
+    private static final class CollectingWriter implements AuditRecordWriter {
+
+        final List<String> actions = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void writeRecord(AuditRecord record) {
+            actions.add(record.action());
+        }
+
+        @Override
+        public void setup() {
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+
+    /** Blocks on its first write until {@link #release} is counted down, like a writer stuck on a degraded database. */
+    private final class StuckWriter implements AuditRecordWriter {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final List<String> actions = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void writeRecord(AuditRecord record) {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            actions.add(record.action());
+        }
+
+        @Override
+        public void setup() {
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+
+    private static void awaitWritten(AuditSink sink, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sink.getWrittenRecordCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, sink.getWrittenRecordCount());
+    }
+
+    @Nested
+    @DisplayName("Isolation")
+    class Isolation {
+
+        @Test
+        @DisplayName("A stuck sink does not hold up the others or the caller")
+        void stuckSinkIsIsolated() throws Exception {
+            StuckWriter stuck = new StuckWriter();
+            CollectingWriter healthy = new CollectingWriter();
+            AuditSink stuckSink = new AuditSink("jdbc", stuck, 4, 1, null);
+            AuditSink healthySink = new AuditSink("file", healthy, 64, 8, null);
+            composite = new CompositeAuditLogWriter(List.of(stuckSink, healthySink));
+            composite.setup();
+
+            composite.writeRecord(record("first"));
+            assertTrue(stuck.entered.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 20; i++) {
+                composite.writeRecord(record("e" + i));
+            }
+
+            awaitWritten(healthySink, 21);
+            assertEquals(21, healthy.actions.size());
+            assertEquals(0, healthySink.getDroppedRecordCount());
+            assertEquals(4, stuckSink.getQueueSize());
+            assertEquals(16, stuckSink.getDroppedRecordCount());
+
+            release.countDown();
+            composite.cleanup();
+            assertEquals("first", stuck.actions.get(0));
+            assertEquals(5, stuck.actions.size());
+        }
+
+        @Test
+        @DisplayName("Writes on the caller before the sink is started")
+        void writesOnCallerBeforeStart() {
+            CollectingWriter writer = new CollectingWriter();
+            AuditSink sink = new AuditSink("log", writer, 8, 8, null);
+
+            sink.offer(record("early"));
+
+            assertEquals(List.of("early"), writer.actions);
+            assertEquals(1, sink.getWrittenRecordCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Health")
+    class Health {
+
+        @Test
+        @DisplayName("A throwing writer marks the sink unhealthy until a batch succeeds")
+        void throwingWriterIsUnhealthy() {
+            AtomicLong failuresLeft = new AtomicLong(1);
+            CollectingWriter collected = new CollectingWriter();
+            AuditRecordWriter flaky = new AuditRecordWriter() {
+                @Override
+                public void writeRecord(AuditRecord record) {
+                    if (failuresLeft.getAndDecrement() > 0) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    collected.writeRecord(record);
+                }
+
+                @Override
+                public void setup() {
+                }
+
+                @Override
+                public void cleanup() {
+                }
+            };
+            AuditSink sink = new AuditSink("jdbc", flaky, 8, 8, null);
+
+            sink.offer(record("lost"));
+            assertFalse(sink.isHealthy());
+            assertEquals(1, sink.getFailedRecordCount());
+
+            sink.offer(record("stored"));
+            assertTrue(sink.isHealthy());
+            assertEquals(List.of("stored"), collected.actions);
+            assertEquals(1, sink.getWrittenRecordCount());
+        }
+
+        @Test
+        @DisplayName("Failures the writer only counts are attributed to the sink")
+        void countedWriterFailures() {
+            AtomicLong writerFailures = new AtomicLong();
+            AuditRecordWriter swallowing = new AuditRecordWriter() {
+                @Override
+                public void writeRecord(AuditRecord record) {
+                    writerFailures.incrementAndGet();
+                }
+
+                @Override
+                public void setup() {
+                }
+
+                @Override
+                public void cleanup() {
+                }
+            };
+            AuditSink sink = new AuditSink("jdbc", swallowing, 8, 8, writerFailures::get);
+
+            sink.offer(record("lost"));
+
+            assertFalse(sink.isHealthy());
+            assertEquals(1, sink.getFailedRecordCount());
+            assertEquals(0, sink.getWrittenRecordCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Metrics")
+    class Metrics {
+
+        @Test
+        @DisplayName("Exports per-sink meters tagged with the sink name")
+        void exportsMeters() throws Exception {
+            CollectingWriter writer = new CollectingWriter();
+            composite = new CompositeAuditLogWriter(List.of(new AuditSink("log", writer, 8, 8, null)));
+            composite.setup();
+            StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+            beanFactory.addBean("compositeAuditLogWriter", composite);
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            new AuditSinkMetrics(beanFactory.getBeanProvider(CompositeAuditLogWriter.class)).bindTo(registry);
+
+            composite.writeRecord(record("one"));
+            awaitWritten(composite.getSinks().get(0), 1);
+
+            assertEquals(1.0, registry.get("audit.sink.written").tag("sink", "log").functionCounter().count());
+            assertEquals(0.0, registry.get("audit.sink.dropped").tag("sink", "log").functionCounter().count());
+            assertEquals(1.0, registry.get("audit.sink.healthy").tag("sink", "log").gauge().value());
+            assertEquals(0.0, registry.get("audit.sink.lag").tag("sink", "log").timeGauge().value(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.text.DateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AuditTimestampParser Tests")
+class AuditTimestampParserTest {
+
+    private final AuditTimestampParser parser = new AuditTimestampParser();
+
+    @Nested
+    @DisplayName("Formats")
+    class Formats {
+
+        @Test
+        @DisplayName("reads ISO-8601 instants and offsets")
+        void readsIso() {
+            assertThat(parser.parse("2025-01-15T10:30:00Z")).isEqualTo(Instant.parse("2025-01-15T10:30:00Z"));
+            assertThat(parser.parse("2025-01-15T10:30:00.123Z")).isEqualTo(Instant.parse("2025-01-15T10:30:00.123Z"));
+            assertThat(parser.parse("2025-01-15T11:30:00+01:00")).isEqualTo(Instant.parse("2025-01-15T10:30:00Z"));
+            assertThat(parser.parse("2025-01-15T05:00:00-05:30")).isEqualTo(Instant.parse("2025-01-15T10:30:00Z"));
+            assertThat(parser.format()).isEqualTo(AuditTimestampParser.Format.ISO);
+        }
+
+        @Test
+        @DisplayName("reads a local ISO date-time in the system zone")
+        void readsLocalIso() {
+            assertThat(parser.parse("2025-01-15T10:30:00"))
+                    .isEqualTo(LocalDateTime.of(2025, 1, 15, 10, 30).atZone(ZoneId.systemDefault()).toInstant());
+        }
+
+        @Test
+        @DisplayName("reads an ISO date-time with a region id")
+        void readsZonedIso() {
+            assertThat(parser.parse("2025-01-15T11:30:00+01:00[Europe/Paris]")).isEqualTo(Instant.parse("2025-01-15T10:30:00Z"));
+            assertThat(parser.format()).isEqualTo(AuditTimestampParser.Format.ISO_DATE_TIME);
+        }
+
+        @Test
+        @DisplayName("reads epoch milliseconds")
+        void readsEpochMillis() {
+            assertThat(parser.parse("1736937000000")).isEqualTo(Instant.ofEpochMilli(1736937000000L));
+            assertThat(parser.format()).isEqualTo(AuditTimestampParser.Format.EPOCH_MILLIS);
+        }
+
+        @Test
+        @DisplayName("reads Date.toString renderings")
+        void readsDateToString() {
+            assertThat(parser.parse("Wed Jan 15 10:30:00 UTC 2025")).isEqualTo(Instant.parse("2025-01-15T10:30:00Z"));
+            assertThat(parser.format()).isEqualTo(AuditTimestampParser.Format.DATE_TO_STRING);
+        }
+
+        @Test
+        @DisplayName("reads the short MessageFormat rendering earlier releases wrote")
+        void readsShortMessageFormat() {
+            Instant minute = Instant.parse("2025-01-15T10:30:00Z");
+            String rendered = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT).format(Date.from(minute));
+
+            assertThat(parser.parse(rendered)).isEqualTo(minute);
+        }
+
+        @Test
+        @DisplayName("returns null for blank, null and unknown values")
+        void rejectsUnknown() {
+            assertThat(parser.parse(null)).isNull();
+            assertThat(parser.parse("  ")).isNull();
+            assertThat(parser.parse("null")).isNull();
+            assertThat(parser.parse("yesterday")).isNull();
+            assertThat(parser.parse("2025-02-30T10:00:00Z")).isNull();
+            assertThat(parser.parse("2025-01-15T10:30:00+01")).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("Detection")
+    class Detection {
+
+        @Test
+        @DisplayName("keeps the detected format and re-detects when a segment changes format")
+        void redetectsOnFormatChange() {
+            assertThat(parser.parse("Wed Jan 15 10:30:00 UTC 2025")).isNotNull();
+            assertThat(parser.parse("Wed Jan 15 10:31:00 UTC 2025")).isEqualTo(Instant.parse("2025-01-15T10:31:00Z"));
+            assertThat(parser.format()).isEqualTo(AuditTimestampParser.Format.DATE_TO_STRING);
+
+            assertThat(parser.parse("2025-01-16T08:00:00Z")).isEqualTo(Instant.parse("2025-01-16T08:00:00Z"));
+            assertThat(parser.format()).isEqualTo(AuditTimestampParser.Format.ISO);
+        }
+
+        @Test
+        @DisplayName("round-trips the timestamps the pipe codec writes")
+        void roundTripsPipeCodec() {
+            PipeDelimitedAuditRecordCodec codec = new PipeDelimitedAuditRecordCodec();
+            long timestamp = Instant.parse("2025-01-15T10:30:00.045Z").toEpochMilli();
+            StringBuilder line = new StringBuilder();
+            codec.encode(new AuditRecord(timestamp, "1", "a@example.com", "sess", "127.0.0.1", "JUnit", "Login", "Success", null, null),
+                    line);
+
+            assertThat(line.toString()).startsWith("2025-01-15T10:30:00.045Z|Login|");
+            assertThat(codec.decode(line.toString()).getTimestamp()).isEqualTo(Instant.ofEpochMilli(timestamp));
+        }
+    }
+}
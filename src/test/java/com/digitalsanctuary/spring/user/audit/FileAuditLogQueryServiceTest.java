@@ -1,11 +1,19 @@
 package com.digitalsanctuary.spring.user.audit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -13,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.beans.factory.ObjectProvider;
 import com.digitalsanctuary.spring.user.persistence.model.User;
 import com.digitalsanctuary.spring.user.test.annotations.ServiceTest;
 import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
@@ -187,6 +196,43 @@ class FileAuditLogQueryServiceTest {
             assertThat(result).extracting(AuditEventDTO::getAction)
                     .containsExactly("Logout", "PasswordUpdate", "Login");
         }
+        @Test
+        @DisplayName("stops reading once a record before the since window has been passed")
+        void stopsAtSinceCutoff() throws IOException {
+            // Given - a matching record in the window sits behind a much older one, so reading past the old record would return it
+            setupLogFilePath();
+            String logContent = """
+                2025-01-15T09:00:00Z|Hidden|Success|1|test@example.com|127.0.0.1|sess1|msg|Mozilla/5.0|null
+                2025-01-10T10:00:00Z|Old|Success|2|other@example.com|127.0.0.1|sess2|msg|Mozilla/5.0|null
+                2025-01-15T10:00:00Z|Recent|Success|1|test@example.com|127.0.0.1|sess3|msg|Mozilla/5.0|null
+                """;
+            Files.writeString(logFile, logContent);
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUserSince(testUser, Instant.parse("2025-01-14T00:00:00Z"));
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Recent");
+        }
+
+        @Test
+        @DisplayName("tolerates records slightly out of order around the since cutoff")
+        void toleratesSlightReordering() throws IOException {
+            // Given - a record just before since, within the slack, is followed by an older in-window record
+            setupLogFilePath();
+            String logContent = """
+                2025-01-15T10:00:10Z|Earlier|Success|1|test@example.com|127.0.0.1|sess1|msg|Mozilla/5.0|null
+                2025-01-15T09:59:50Z|Before|Success|2|other@example.com|127.0.0.1|sess2|msg|Mozilla/5.0|null
+                2025-01-15T10:00:20Z|Later|Success|1|test@example.com|127.0.0.1|sess3|msg|Mozilla/5.0|null
+                """;
+            Files.writeString(logFile, logContent);
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUserSince(testUser, Instant.parse("2025-01-15T10:00:00Z"));
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Later", "Earlier");
+        }
     }
 
     @Nested
@@ -296,6 +342,598 @@ class FileAuditLogQueryServiceTest {
             // Then
             assertThat(result).hasSize(2);
         }
+
+        @Test
+        @DisplayName("parses NDJSON records including escaped values")
+        void parsesNdjsonRecords() throws IOException {
+            // Given
+            setupLogFilePath();
+            String logContent = """
+                {"ts":1736955000000,"action":"Login","status":"Success","userId":"1","email":"test@example.com","message":"line one\\nline|two"}
+                {"ts":1736955300000,"action":"Logout","status":"Success","userId":"2","email":"other@example.com"}
+                """;
+            Files.writeString(logFile, logContent);
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).hasSize(1);
+            assertThat(result.get(0).getAction()).isEqualTo("Login");
+            assertThat(result.get(0).getMessage()).isEqualTo("line one\nline|two");
+            assertThat(result.get(0).getTimestamp().toEpochMilli()).isEqualTo(1736955000000L);
+        }
+
+        @Test
+        @DisplayName("reads files that switched from pipe to NDJSON part-way through")
+        void readsMixedFormatFile() throws IOException {
+            // Given
+            setupLogFilePath();
+            String logContent = """
+                Date|Action|Action Status|User ID|Email|IP Address|SessionId|Message|User Agent|Extra Data
+                Thu Jan 15 10:30:00 EST 2025|Login|Success|1|test@example.com|127.0.0.1|sess1|Message|Mozilla/5.0|null
+                {"ts":1736955300000,"action":"Logout","status":"Success","userId":"1","email":"test@example.com"}
+                {"ts":1736955400000,"action":"Login","status":"Success","userId":"1"
+                """;
+            Files.writeString(logFile, logContent);
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then - the truncated trailing record is skipped
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactlyInAnyOrder("Login", "Logout");
+        }
+    }
+
+    @Nested
+    @DisplayName("Archived segments")
+    class ArchivedSegments {
+
+        private String record(String isoTime, String action) {
+            return "{\"ts\":" + Instant.parse(isoTime).toEpochMilli() + ",\"action\":\"" + action
+                    + "\",\"status\":\"Success\",\"userId\":\"1\",\"email\":\"test@example.com\"}\n";
+        }
+
+        private Path archive(String suffix, String content) throws IOException {
+            Path path = Path.of(logFile + suffix);
+            Files.writeString(path, content);
+            return path;
+        }
+
+        private Path gzipArchive(String suffix, String content) throws IOException {
+            Path path = Path.of(logFile + suffix);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            return path;
+        }
+
+        private void describe(Path archive, String firstIso, String lastIso) throws IOException {
+            AuditSegmentManifest manifest = AuditSegmentManifest.load(AuditSegmentManifest.pathFor(logFile.toString()));
+            manifest.put(new AuditSegmentManifest.Segment(1L, archive.getFileName().toString(), Instant.parse(firstIso).toEpochMilli(),
+                    Instant.parse(lastIso).toEpochMilli(), 1L, Files.size(archive)));
+            manifest.save();
+        }
+
+        @Test
+        @DisplayName("reads plain and gzip archives together with the active file")
+        void readsArchivesAndActiveFile() throws IOException {
+            // Given
+            setupLogFilePath();
+            gzipArchive(".2.gz", record("2025-01-13T10:00:00Z", "Oldest"));
+            archive(".1", record("2025-01-14T10:00:00Z", "Older"));
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "Newest"));
+            Files.writeString(Path.of(logFile + ".pending-1"), record("2025-01-15T09:00:00Z", "Pending"));
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then - pending segments are not archives yet and are skipped
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Newest", "Older", "Oldest");
+        }
+
+        @Test
+        @DisplayName("reads archives in parallel and merges them newest first")
+        void readsArchivesInParallel() throws IOException {
+            // Given
+            setupLogFilePath();
+            when(auditConfig.getQueryParallelism()).thenReturn(4);
+            gzipArchive(".3.gz", record("2025-01-12T10:00:00Z", "Third"));
+            gzipArchive(".2.gz", record("2025-01-13T10:00:00Z", "Second"));
+            archive(".1", record("2025-01-14T09:00:00Z", "FirstEarly") + record("2025-01-14T10:00:00Z", "FirstLate"));
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "Active"));
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction)
+                    .containsExactly("Active", "FirstLate", "FirstEarly", "Second", "Third");
+        }
+
+        @Test
+        @DisplayName("keeps the most recent matches across segments when capped")
+        void capsAcrossSegments() throws IOException {
+            // Given
+            setupLogFilePath();
+            when(auditConfig.getMaxQueryResults()).thenReturn(2);
+            archive(".2", record("2025-01-13T10:00:00Z", "Oldest"));
+            archive(".1", record("2025-01-14T10:00:00Z", "Older"));
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "Newest"));
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Newest", "Older");
+        }
+
+        @Test
+        @DisplayName("fills the cap from the end of a gzip archive after the active file")
+        void capsWithinCompressedArchive() throws IOException {
+            // Given
+            setupLogFilePath();
+            when(auditConfig.getMaxQueryResults()).thenReturn(3);
+            gzipArchive(".1.gz", record("2025-01-14T08:00:00Z", "First") + record("2025-01-14T09:00:00Z", "Second")
+                    + record("2025-01-14T10:00:00Z", "Third"));
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "Newest"));
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Newest", "Third", "Second");
+        }
+
+        @Test
+        @DisplayName("does not open older archives once the active file passed the since window")
+        void stopsBeforeOlderArchives() throws IOException {
+            // Given - the archive holds an in-window record, so returning it proves the archive was read
+            setupLogFilePath();
+            archive(".1", record("2025-01-15T09:00:00Z", "Archived"));
+            Files.writeString(logFile, record("2025-01-10T10:00:00Z", "Old") + record("2025-01-15T10:00:00Z", "Recent"));
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUserSince(testUser, Instant.parse("2025-01-14T00:00:00Z"));
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Recent");
+        }
+
+        @Test
+        @DisplayName("skips archives the manifest shows to end before the requested window")
+        void skipsArchivesOutsideWindow() throws IOException {
+            // Given - the manifest claims .1 ended on Jan 10, so a later record in it proves whether it was opened
+            setupLogFilePath();
+            Path old = archive(".1", record("2025-01-14T10:00:00Z", "Skipped"));
+            describe(old, "2025-01-09T00:00:00Z", "2025-01-10T00:00:00Z");
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "Recent"));
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUserSince(testUser, Instant.parse("2025-01-12T00:00:00Z"));
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Recent");
+        }
+
+        @Test
+        @DisplayName("reads archives that overlap the window or whose manifest entry is stale")
+        void readsOverlappingAndStaleArchives() throws IOException {
+            // Given
+            setupLogFilePath();
+            Path overlapping = archive(".2", record("2025-01-13T10:00:00Z", "Overlapping"));
+            describe(overlapping, "2025-01-11T00:00:00Z", "2025-01-13T10:00:00Z");
+            Path stale = archive(".1", record("2025-01-14T10:00:00Z", "Stale"));
+            describe(stale, "2025-01-09T00:00:00Z", "2025-01-10T00:00:00Z");
+            Files.writeString(stale, record("2025-01-14T11:00:00Z", "Appended"), StandardOpenOption.APPEND);
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUserSince(testUser, Instant.parse("2025-01-12T00:00:00Z"));
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Appended", "Stale", "Overlapping");
+        }
+
+        @Test
+        @DisplayName("skips archives whose segment filter rules the user out")
+        void skipsArchivesFilteredOut() throws IOException {
+            // Given - .2's filter was built for another user, so its record of user 1 proves whether it was opened
+            setupLogFilePath();
+            Path filteredOut = archive(".2", record("2025-01-13T10:00:00Z", "Skipped"));
+            Path filteredIn = archive(".1", record("2025-01-14T10:00:00Z", "Matched"));
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "Active"));
+            AuditSegmentManifest manifest = AuditSegmentManifest.load(AuditSegmentManifest.pathFor(logFile.toString()));
+            manifest.put(new AuditSegmentManifest.Segment(7L, filteredOut.getFileName().toString(), 0L, Long.MAX_VALUE, 1L,
+                    Files.size(filteredOut)));
+            manifest.put(new AuditSegmentManifest.Segment(8L, filteredIn.getFileName().toString(), 0L, Long.MAX_VALUE, 1L,
+                    Files.size(filteredIn)));
+            manifest.save();
+            AuditSegmentBloomFilter other = AuditSegmentBloomFilter.create(2, 0.0001);
+            other.add(AuditSegmentBloomFilter.idKey("2"));
+            other.add(AuditSegmentBloomFilter.emailKey("other@example.com"));
+            other.save(AuditSegmentBloomFilter.pathFor(logFile.toString(), 7L));
+            AuditSegmentBloomFilter.build(filteredIn, 0.0001).save(AuditSegmentBloomFilter.pathFor(logFile.toString(), 8L));
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Active", "Matched");
+        }
+    }
+
+    @Nested
+    @DisplayName("User index")
+    class UserIndex {
+
+        private FileAuditLogWriter writer;
+
+        private FileAuditLogWriter startWriter() {
+            AuditConfig writerConfig = new AuditConfig();
+            writerConfig.setLogEvents(true);
+            writerConfig.setLogFilePath(logFile.toString());
+            writerConfig.setFlushOnWrite(true);
+            writerConfig.setUserIndex(true);
+            writerConfig.setLogFormat(AuditLogFormat.NDJSON);
+            FileAuditLogWriter started = new FileAuditLogWriter(writerConfig);
+            started.setup();
+            return started;
+        }
+
+        private void write(FileAuditLogWriter target, String isoTime, String userId, String email, String action, String message) {
+            target.writeRecord(new AuditRecord(Instant.parse(isoTime).toEpochMilli(), userId, email, "sess", "127.0.0.1", "JUnit", action,
+                    "Success", message, null));
+        }
+
+        @AfterEach
+        void stopWriter() {
+            if (writer != null) {
+                writer.cleanup();
+            }
+        }
+
+        @Test
+        @DisplayName("reads only the user's records, with offsets that survive multi-byte characters")
+        void readsIndexedRecords() throws IOException {
+            // Given
+            setupLogFilePath();
+            writer = startWriter();
+            write(writer, "2025-01-15T10:00:00Z", "1", "test@example.com", "Login", "Gr\u00fc\u00dfe \u65e5\u672c");
+            write(writer, "2025-01-15T10:01:00Z", "2", "other@example.com", "Login", "\u00e9\u00e8\u00ea");
+            write(writer, "2025-01-15T10:02:00Z", "1", "test@example.com", "Logout", "bye");
+            write(writer, "2025-01-15T10:03:00Z", null, "TEST@example.com", "PasswordReset", "\u2603");
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(AuditUserIndex.pathFor(logFile.toString())).exists();
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("PasswordReset", "Logout", "Login");
+            assertThat(result.get(2).getMessage()).isEqualTo("Gr\u00fc\u00dfe \u65e5\u672c");
+        }
+
+        @Test
+        @DisplayName("finds records appended after the index was last written")
+        void readsUnindexedTail() throws IOException {
+            // Given - a line appended behind the writer's back is not in the index
+            setupLogFilePath();
+            writer = startWriter();
+            write(writer, "2025-01-15T10:00:00Z", "1", "test@example.com", "Login", null);
+            Files.writeString(logFile, "{\"ts\":" + Instant.parse("2025-01-15T11:00:00Z").toEpochMilli()
+                    + ",\"action\":\"Tail\",\"status\":\"Success\",\"userId\":\"1\",\"email\":\"test@example.com\"}\n",
+                    StandardOpenOption.APPEND);
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Tail", "Login");
+        }
+
+        @Test
+        @DisplayName("rebuilds a missing or corrupt index when the writer starts")
+        void rebuildsIndexOnStartup() throws IOException {
+            // Given
+            setupLogFilePath();
+            writer = startWriter();
+            write(writer, "2025-01-15T10:00:00Z", "1", "test@example.com", "Login", null);
+            write(writer, "2025-01-15T10:01:00Z", "2", "other@example.com", "Login", null);
+            writer.cleanup();
+            Path index = AuditUserIndex.pathFor(logFile.toString());
+            Files.write(index, new byte[] {1, 2, 3});
+
+            // When
+            writer = startWriter();
+            write(writer, "2025-01-15T10:02:00Z", "1", "test@example.com", "Logout", null);
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(Files.size(index)).isGreaterThan(AuditUserIndex.HEADER_BYTES);
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Logout", "Login");
+        }
+
+        @Test
+        @DisplayName("matches the linear scan when the index is disabled")
+        void matchesLinearScan() throws IOException {
+            // Given
+            setupLogFilePath();
+            writer = startWriter();
+            for (int i = 0; i < 50; i++) {
+                write(writer, Instant.parse("2025-01-15T10:00:00Z").plusSeconds(i).toString(), String.valueOf(i % 3 + 1),
+                        "user" + (i % 3 + 1) + "@example.com", "Action" + i, null);
+            }
+            List<AuditEventDTO> indexed = queryService.findByUser(testUser);
+
+            // When
+            writer.cleanup();
+            writer = null;
+            Files.delete(AuditUserIndex.pathFor(logFile.toString()));
+            List<AuditEventDTO> scanned = new FileAuditLogQueryService(auditConfig).findByUser(testUser);
+
+            // Then
+            assertThat(indexed).hasSize(17);
+            assertThat(indexed).extracting(AuditEventDTO::getAction).containsExactlyElementsOf(
+                    scanned.stream().map(AuditEventDTO::getAction).toList());
+        }
+    }
+
+    @Nested
+    @DisplayName("Paged query")
+    class PagedQuery {
+
+        private static final String HEADER = PipeDelimitedAuditRecordCodec.HEADER + "\n";
+
+        private String record(String isoTime, String action) {
+            return isoTime + "|" + action + "|Success|1|test@example.com|127.0.0.1|sess|message|Mozilla/5.0|null\n";
+        }
+
+        private List<String> actions(AuditEventPage page) {
+            return page.getEvents().stream().map(AuditEventDTO::getAction).toList();
+        }
+
+        @Test
+        @DisplayName("pages through the active file and archives without gaps or repeats")
+        void pagesAcrossSegments() throws IOException {
+            // Given - every segment starts with the same pipe header
+            setupLogFilePath();
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(Path.of(logFile + ".2.gz")))) {
+                out.write((HEADER + record("2025-01-13T10:00:00Z", "A1") + record("2025-01-13T11:00:00Z", "A2"))
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            Files.writeString(Path.of(logFile + ".1"), HEADER + record("2025-01-14T10:00:00Z", "B1")
+                    + record("2025-01-14T11:00:00Z", "B2") + record("2025-01-14T12:00:00Z", "B3"));
+            Files.writeString(logFile, HEADER + record("2025-01-15T10:00:00Z", "C1") + record("2025-01-15T11:00:00Z", "C2"));
+
+            // When
+            AuditEventPage first = queryService.findPage(testUser, AuditQuery.all(), null, 3);
+            AuditEventPage second = queryService.findPage(testUser, AuditQuery.all(), first.getNextCursor(), 3);
+            AuditEventPage third = queryService.findPage(testUser, AuditQuery.all(), second.getNextCursor(), 3);
+
+            // Then
+            assertThat(actions(first)).containsExactly("C2", "C1", "B3");
+            assertThat(actions(second)).containsExactly("B2", "B1", "A2");
+            assertThat(actions(third)).containsExactly("A1");
+            assertThat(third.hasNext()).isFalse();
+        }
+
+        @Test
+        @DisplayName("resumes in the same records after the active file was rotated and compressed")
+        void cursorSurvivesRotation() throws IOException {
+            // Given
+            setupLogFilePath();
+            String active = record("2025-01-15T10:00:00Z", "First") + record("2025-01-15T11:00:00Z", "Second")
+                    + record("2025-01-15T12:00:00Z", "Third");
+            Files.writeString(logFile, active);
+            AuditEventPage first = queryService.findPage(testUser, AuditQuery.all(), null, 2);
+
+            // When - the active file becomes archive .1.gz and a new active file is started
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(Path.of(logFile + ".1.gz")))) {
+                out.write(active.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.writeString(logFile, record("2025-01-16T10:00:00Z", "New"));
+            AuditEventPage second = queryService.findPage(testUser, AuditQuery.all(), first.getNextCursor(), 2);
+
+            // Then
+            assertThat(actions(first)).containsExactly("Third", "Second");
+            assertThat(actions(second)).containsExactly("First");
+            assertThat(second.hasNext()).isFalse();
+        }
+
+        @Test
+        @DisplayName("ends the query when the cursor's segment was deleted by retention")
+        void endsWhenSegmentDeleted() throws IOException {
+            // Given
+            setupLogFilePath();
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "First") + record("2025-01-15T11:00:00Z", "Second"));
+            AuditEventPage first = queryService.findPage(testUser, AuditQuery.all(), null, 1);
+            Files.writeString(logFile, record("2025-01-16T10:00:00Z", "New"));
+
+            // When
+            AuditEventPage second = queryService.findPage(testUser, AuditQuery.all(), first.getNextCursor(), 1);
+
+            // Then
+            assertThat(second.getEvents()).isEmpty();
+            assertThat(second.hasNext()).isFalse();
+        }
+
+        @Test
+        @DisplayName("applies the since and action criteria")
+        void appliesCriteria() throws IOException {
+            // Given
+            setupLogFilePath();
+            Files.writeString(Path.of(logFile + ".1"), record("2025-01-10T10:00:00Z", "Login"));
+            Files.writeString(logFile, record("2025-01-15T10:00:00Z", "Login") + record("2025-01-15T11:00:00Z", "Logout")
+                    + record("2025-01-15T12:00:00Z", "Login"));
+            AuditQuery query = AuditQuery.builder().since(Instant.parse("2025-01-14T00:00:00Z")).action("Login").build();
+
+            // When
+            List<AuditEventDTO> result = queryService.stream(testUser, query, null).toList();
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getTimestamp)
+                    .containsExactly(Instant.parse("2025-01-15T12:00:00Z"), Instant.parse("2025-01-15T10:00:00Z"));
+        }
+
+        @Test
+        @DisplayName("streams the whole history regardless of maxQueryResults")
+        void streamsBeyondQueryCap() throws IOException {
+            // Given
+            setupLogFilePath();
+            when(auditConfig.getMaxQueryResults()).thenReturn(10);
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 1200; i++) {
+                content.append(record(Instant.parse("2025-01-15T00:00:00Z").plusSeconds(i).toString(), "Action" + i));
+            }
+            Files.writeString(logFile, content);
+
+            // When
+            List<AuditEventDTO> capped = queryService.findByUser(testUser);
+            List<AuditEventDTO> streamed = queryService.stream(testUser, AuditQuery.all(), null).toList();
+
+            // Then
+            assertThat(capped).hasSize(10);
+            assertThat(streamed).hasSize(1200);
+            assertThat(streamed.get(0).getAction()).isEqualTo("Action1199");
+            assertThat(streamed.get(1199).getAction()).isEqualTo("Action0");
+        }
+
+        @Test
+        @DisplayName("rejects cursors it did not issue")
+        void rejectsForeignCursor() {
+            String jdbcCursor = new AuditCursor(AuditCursor.JDBC, 1L, 2L).encode();
+
+            assertThatThrownBy(() -> queryService.findPage(testUser, AuditQuery.all(), jdbcCursor, 10))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> queryService.findPage(testUser, AuditQuery.all(), "not a cursor", 10))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
     }
 
+    @Nested
+    @DisplayName("Multi-criteria query")
+    class MultiCriteriaQuery {
+
+        private String record(String isoTime, String action, String status, String ip) {
+            return "{\"ts\":" + Instant.parse(isoTime).toEpochMilli() + ",\"action\":\"" + action + "\",\"status\":\"" + status
+                    + "\",\"userId\":\"1\",\"email\":\"test@example.com\",\"ip\":\"" + ip + "\"}\n";
+        }
+
+        @Test
+        @DisplayName("answers several actions, statuses, an IP and a time range in one query")
+        void combinesCriteria() throws IOException {
+            // Given
+            setupLogFilePath();
+            Files.writeString(logFile, record("2025-01-15T08:00:00Z", "CONSENT_GRANTED", "Success", "10.0.0.1")
+                    + record("2025-01-15T09:00:00Z", "CONSENT_WITHDRAWN", "Success", "10.0.0.1")
+                    + record("2025-01-15T10:00:00Z", "Login", "Success", "10.0.0.1")
+                    + record("2025-01-15T11:00:00Z", "CONSENT_GRANTED", "Failure", "10.0.0.1")
+                    + record("2025-01-15T12:00:00Z", "CONSENT_GRANTED", "Success", "10.0.0.2")
+                    + record("2025-01-15T13:00:00Z", "CONSENT_GRANTED", "Success", "10.0.0.1"));
+            AuditQuery query = AuditQuery.builder()
+                    .action("CONSENT_GRANTED").action("CONSENT_WITHDRAWN")
+                    .status("Success")
+                    .ipAddress("10.0.0.1")
+                    .since(Instant.parse("2025-01-15T08:30:00Z"))
+                    .until(Instant.parse("2025-01-15T13:00:00Z"))
+                    .build();
+
+            // When
+            List<AuditEventDTO> result = queryService.find(testUser, query);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getTimestamp).containsExactly(Instant.parse("2025-01-15T09:00:00Z"));
+        }
+
+        @Test
+        @DisplayName("keeps the most recent events up to the limit and returns them in the requested order")
+        void limitsAndOrders() throws IOException {
+            // Given
+            setupLogFilePath();
+            Files.writeString(logFile, record("2025-01-15T08:00:00Z", "A", "Success", "ip")
+                    + record("2025-01-15T09:00:00Z", "B", "Success", "ip")
+                    + record("2025-01-15T10:00:00Z", "C", "Success", "ip"));
+
+            // When
+            List<AuditEventDTO> result = queryService.find(testUser,
+                    AuditQuery.builder().limit(2).order(AuditQuery.Order.OLDEST_FIRST).build());
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("B", "C");
+        }
+
+        @Test
+        @DisplayName("skips archives the manifest shows to start after the window")
+        void skipsArchivesAfterUntil() throws IOException {
+            // Given - the manifest claims .1 started on Jan 16, so a record in it proves whether it was opened
+            setupLogFilePath();
+            Path archive = Path.of(logFile + ".1");
+            Files.writeString(archive, record("2025-01-14T10:00:00Z", "Skipped", "Success", "ip"));
+            AuditSegmentManifest manifest = AuditSegmentManifest.load(AuditSegmentManifest.pathFor(logFile.toString()));
+            manifest.put(new AuditSegmentManifest.Segment(1L, archive.getFileName().toString(),
+                    Instant.parse("2025-01-16T00:00:00Z").toEpochMilli(), Instant.parse("2025-01-17T00:00:00Z").toEpochMilli(), 1L,
+                    Files.size(archive)));
+            manifest.save();
+            Files.writeString(logFile, record("2025-01-13T10:00:00Z", "Read", "Success", "ip"));
+
+            // When
+            List<AuditEventDTO> result = queryService.find(testUser,
+                    AuditQuery.builder().until(Instant.parse("2025-01-15T00:00:00Z")).build());
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Read");
+        }
+    }
+
+    @Nested
+    @DisplayName("Recent activity cache")
+    class RecentActivity {
+
+        private FileAuditLogQueryService cachedService(AuditRecentActivityCache cache) {
+            @SuppressWarnings("unchecked")
+            ObjectProvider<AuditRecentActivityCache> provider = mock(ObjectProvider.class);
+            when(provider.getIfAvailable()).thenReturn(cache);
+            return new FileAuditLogQueryService(auditConfig, provider);
+        }
+
+        private AuditRecord record(String isoTime, String action) {
+            return new AuditRecord(Instant.parse(isoTime).toEpochMilli(), "1", "test@example.com", null, null, null, action, "Success",
+                    null, null);
+        }
+
+        @Test
+        @DisplayName("answers a query the cached window holds without reading the log")
+        void servesFromCache() {
+            // Given - no log file path is configured, so any read would come back empty
+            AuditRecentActivityCache cache = new AuditRecentActivityCache(10, Long.MAX_VALUE);
+            cache.record(record("2025-01-15T10:00:00Z", "Login"));
+            cache.record(record("2025-01-15T10:05:00Z", "PasswordUpdate"));
+            cache.record(record("2025-01-15T10:10:00Z", "Logout"));
+
+            // When
+            List<AuditEventDTO> result = cachedService(cache).find(testUser,
+                    AuditQuery.builder().limit(2).order(AuditQuery.Order.OLDEST_FIRST).build());
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("PasswordUpdate", "Logout");
+            assertThat(cache.getHitCount()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("reads the log when the cached window cannot hold the answer")
+        void fallsThroughToLog() throws IOException {
+            // Given
+            setupLogFilePath();
+            Files.writeString(logFile, "{\"ts\":" + Instant.parse("2025-01-14T10:00:00Z").toEpochMilli()
+                    + ",\"action\":\"Registration\",\"status\":\"Success\",\"userId\":\"1\",\"email\":\"test@example.com\"}\n");
+            AuditRecentActivityCache cache = new AuditRecentActivityCache(10, Long.MAX_VALUE);
+            cache.record(record("2025-01-15T10:00:00Z", "Login"));
+
+            // When
+            List<AuditEventDTO> result = cachedService(cache).find(testUser, AuditQuery.builder().limit(5).build());
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Registration");
+            assertThat(cache.getMissCount()).isEqualTo(1);
+        }
+    }
 }
@@ -1,9 +1,11 @@
 package com.digitalsanctuary.spring.user.audit;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
@@ -15,9 +17,16 @@ import static org.mockito.Mockito.when;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -55,6 +64,7 @@ class FileAuditLogWriterTest {
         logFilePath = tempDir.resolve("audit.log").toString();
         lenient().when(auditConfig.getLogFilePath()).thenReturn(logFilePath);
         lenient().when(auditConfig.isLogEvents()).thenReturn(true);
+        lenient().when(auditConfig.getLogFormat()).thenReturn(AuditLogFormat.NDJSON);
     }
 
     @AfterEach
@@ -194,7 +204,7 @@ class FileAuditLogWriterTest {
 
             // Replace the bufferedWriter with a mock that throws IOException
             BufferedWriter mockWriter = mock(BufferedWriter.class);
-            doThrow(new IOException("Test IO Exception")).when(mockWriter).write(anyString());
+            doThrow(new IOException("Test IO Exception")).when(mockWriter).write(any(char[].class), anyInt(), anyInt());
 
             Field writerField = FileAuditLogWriter.class.getDeclaredField("bufferedWriter");
             writerField.setAccessible(true);
@@ -351,6 +361,7 @@ class FileAuditLogWriterTest {
         @DisplayName("rotates the active file when the size threshold is exceeded")
         void rotatesActiveFile_whenThresholdExceeded() throws IOException {
             // Given - a tiny effective byte threshold so a few writes trigger rotation
+            when(auditConfig.getLogFormat()).thenReturn(AuditLogFormat.PIPE); // the pipe format writes a header
             when(auditConfig.isFlushOnWrite()).thenReturn(true);
             when(auditConfig.getMaxFileSizeMb()).thenReturn(10); // positive => rotation enabled
             when(auditConfig.getMaxFiles()).thenReturn(5);
@@ -366,6 +377,7 @@ class FileAuditLogWriterTest {
             }
 
             // Then - a rotated file exists and the active file is fresh (header + recent writes only)
+            assertTrue(fileAuditLogWriter.awaitArchivingForTesting(5000), "background archiving should finish");
             assertTrue(Files.exists(rotated1), "rotated file .1 should exist after rotation");
             assertTrue(Files.exists(active), "active log file should be reopened after rotation");
             String activeContent = Files.readString(active);
@@ -395,6 +407,7 @@ class FileAuditLogWriterTest {
             }
 
             // Then - at most maxFiles rotated files are kept; .3 must never exist
+            assertTrue(fileAuditLogWriter.awaitArchivingForTesting(5000), "background archiving should finish");
             assertTrue(Files.exists(rotated1), ".1 should exist");
             assertTrue(Files.exists(rotated2), ".2 should exist");
             assertTrue(!Files.exists(rotated3), ".3 should have been deleted (exceeds maxFiles)");
@@ -418,6 +431,399 @@ class FileAuditLogWriterTest {
             // Then - no rotation occurred
             assertTrue(!Files.exists(rotated1), "no rotated file should exist when rotation is disabled");
         }
+
+        @Test
+        @DisplayName("compresses rotated archives in the background when enabled")
+        void compressesArchives_whenEnabled() throws IOException {
+            // Given
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            when(auditConfig.getMaxFileSizeMb()).thenReturn(10);
+            when(auditConfig.getMaxFiles()).thenReturn(3);
+            when(auditConfig.isCompressArchives()).thenReturn(true);
+            fileAuditLogWriter.setup();
+            fileAuditLogWriter.setMaxFileSizeBytesForTesting(120L);
+
+            // When
+            for (int i = 0; i < 10; i++) {
+                fileAuditLogWriter.writeLog(event("Action" + i));
+            }
+
+            // Then - archives are gzip files holding the rotated records; no pending segments remain
+            assertTrue(fileAuditLogWriter.awaitArchivingForTesting(5000), "background archiving should finish");
+            Path archive = Path.of(logFilePath + ".1.gz");
+            assertTrue(Files.exists(archive), ".1.gz should exist");
+            assertTrue(!Files.exists(Path.of(logFilePath + ".1")), "uncompressed .1 should not exist");
+            try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+                assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("rotation test message"));
+            }
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(0L, files.filter(f -> f.getFileName().toString().contains(".pending-")).count());
+            }
+        }
+
+        @Test
+        @DisplayName("records each archived segment's time range, record count and size in the manifest")
+        void recordsSegmentsInManifest() throws IOException {
+            // Given
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            when(auditConfig.getMaxFileSizeMb()).thenReturn(10);
+            when(auditConfig.getMaxFiles()).thenReturn(3);
+            fileAuditLogWriter.setup();
+            fileAuditLogWriter.setMaxFileSizeBytesForTesting(120L);
+            long before = System.currentTimeMillis();
+
+            // When
+            for (int i = 0; i < 10; i++) {
+                fileAuditLogWriter.writeLog(event("Action" + i));
+            }
+
+            // Then - every retained archive has an entry matching the file on disk
+            assertTrue(fileAuditLogWriter.awaitArchivingForTesting(5000), "background archiving should finish");
+            AuditSegmentManifest manifest = AuditSegmentManifest.load(AuditSegmentManifest.pathFor(logFilePath));
+            AuditSegmentManifest.Segment newest = manifest.findByFileName(Path.of(logFilePath + ".1").getFileName().toString());
+            assertNotNull(newest, ".1 should have a manifest entry");
+            assertTrue(newest.recordCount() > 0);
+            assertTrue(newest.firstTimestamp() >= before);
+            assertTrue(newest.firstTimestamp() <= newest.lastTimestamp());
+            assertEquals(Files.size(Path.of(logFilePath + ".1")), newest.byteSize());
+            for (AuditSegmentManifest.Segment segment : manifest.segments()) {
+                assertTrue(Files.exists(tempDir.resolve(segment.fileName())), segment.fileName() + " should exist");
+            }
+        }
+
+        @Test
+        @DisplayName("writes a segment filter per retained archive and deletes those of dropped archives")
+        void writesSegmentFilters() throws IOException {
+            // Given
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            when(auditConfig.getMaxFileSizeMb()).thenReturn(10);
+            when(auditConfig.getMaxFiles()).thenReturn(2);
+            when(auditConfig.getSegmentFilterFalsePositiveRate()).thenReturn(0.01);
+            fileAuditLogWriter.setup();
+            fileAuditLogWriter.setMaxFileSizeBytesForTesting(80L);
+
+            // When - force more rotations than maxFiles retains
+            for (int i = 0; i < 40; i++) {
+                fileAuditLogWriter.writeLog(event("Action" + i));
+            }
+
+            // Then - exactly the manifest's segments have a filter, and the gauge value is their total size
+            assertTrue(fileAuditLogWriter.awaitArchivingForTesting(5000), "background archiving should finish");
+            AuditSegmentManifest manifest = AuditSegmentManifest.load(AuditSegmentManifest.pathFor(logFilePath));
+            assertEquals(2, manifest.segments().size());
+            long expectedBytes = 0L;
+            for (AuditSegmentManifest.Segment segment : manifest.segments()) {
+                Path filter = AuditSegmentBloomFilter.pathFor(logFilePath, segment.sequence());
+                assertTrue(Files.exists(filter), filter + " should exist");
+                expectedBytes += Files.size(filter);
+            }
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(2L, files.filter(f -> f.getFileName().toString().contains(AuditSegmentBloomFilter.INFIX)).count());
+            }
+            assertEquals(expectedBytes, fileAuditLogWriter.getSegmentFilterBytes());
+        }
+
+        @Test
+        @DisplayName("archives a pending segment left behind by an earlier run on startup")
+        void recoversPendingSegments_onStartup() throws IOException {
+            // Given - a segment that was renamed aside but never archived
+            when(auditConfig.getMaxFileSizeMb()).thenReturn(10);
+            when(auditConfig.getMaxFiles()).thenReturn(3);
+            Files.writeString(Path.of(logFilePath + ".pending-1000"), "orphaned record\n");
+
+            // When
+            fileAuditLogWriter.setup();
+
+            // Then
+            assertTrue(fileAuditLogWriter.awaitArchivingForTesting(5000), "background archiving should finish");
+            assertEquals("orphaned record\n", Files.readString(Path.of(logFilePath + ".1")));
+            assertTrue(!Files.exists(Path.of(logFilePath + ".pending-1000")));
+        }
+
+        @Test
+        @DisplayName("computes hourly and daily rolling boundaries")
+        void computesRollingBoundaries() {
+            ZoneId utc = ZoneOffset.UTC;
+            long t = Instant.parse("2025-01-15T10:30:00Z").toEpochMilli();
+
+            assertEquals(Instant.parse("2025-01-15T11:00:00Z").toEpochMilli(), AuditRollingInterval.HOURLY.nextBoundary(t, utc));
+            assertEquals(Instant.parse("2025-01-16T00:00:00Z").toEpochMilli(), AuditRollingInterval.DAILY.nextBoundary(t, utc));
+            assertEquals(Long.MAX_VALUE, AuditRollingInterval.NONE.nextBoundary(t, utc));
+        }
+    }
+
+    @Nested
+    @DisplayName("Record Format Tests")
+    class RecordFormatTests {
+
+        private AuditEvent event(String message) {
+            return AuditEvent.builder()
+                    .source(this)
+                    .action("Login")
+                    .actionStatus("Success")
+                    .message(message)
+                    .build();
+        }
+
+        @Test
+        @DisplayName("writes NDJSON when configured, escaping newlines so each record stays on one line")
+        void writesNdjsonWhenConfigured() throws IOException {
+            // Given
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            fileAuditLogWriter.setup();
+
+            // When
+            fileAuditLogWriter.writeLog(event("first\nforged|record"));
+
+            // Then - no header, one record, value round-trips exactly
+            List<String> lines = Files.readAllLines(Path.of(logFilePath));
+            assertEquals(1, lines.size());
+            AuditEventDTO decoded = new NdjsonAuditRecordCodec().decode(lines.get(0));
+            assertEquals("first\nforged|record", decoded.getMessage());
+            assertEquals("unknown", decoded.getUserId());
+        }
+
+        @Test
+        @DisplayName("defaults to the legacy pipe format, as earlier releases wrote")
+        void defaultsToPipeFormat() {
+            assertEquals(AuditLogFormat.PIPE, new AuditConfig().getLogFormat());
+            assertTrue(AuditLogFormat.codecFor(null) instanceof PipeDelimitedAuditRecordCodec);
+        }
+
+        @Test
+        @DisplayName("writes the legacy pipe format with a header and sanitized fields when configured")
+        void writesPipeFormatWhenConfigured() throws IOException {
+            // Given
+            when(auditConfig.getLogFormat()).thenReturn(AuditLogFormat.PIPE);
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            fileAuditLogWriter.setup();
+
+            // When
+            fileAuditLogWriter.writeLog(event("first\nforged|record"));
+
+            // Then
+            List<String> lines = Files.readAllLines(Path.of(logFilePath));
+            assertEquals(2, lines.size());
+            assertEquals(PipeDelimitedAuditRecordCodec.HEADER, lines.get(0));
+            assertTrue(lines.get(1).contains("|first forged record|"));
+        }
+
+        @Test
+        @DisplayName("uses a codec supplied through the constructor")
+        void usesSuppliedCodec() throws IOException {
+            // Given
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            FileAuditLogWriter writer = new FileAuditLogWriter(auditConfig, new PipeDelimitedAuditRecordCodec());
+            writer.setup();
+
+            // When
+            writer.writeLog(event("custom"));
+            writer.cleanup();
+
+            // Then
+            assertTrue(Files.readString(Path.of(logFilePath)).startsWith(PipeDelimitedAuditRecordCodec.HEADER));
+        }
+
+        @Test
+        @DisplayName("caches records as the codec reads them back, so cache hits match the log")
+        void cachesDecodedRecords() {
+            // Given
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            AuditRecentActivityCache cache = new AuditRecentActivityCache(10, Long.MAX_VALUE);
+            FileAuditLogWriter writer = new FileAuditLogWriter(auditConfig, new PipeDelimitedAuditRecordCodec(), cache);
+            writer.setup();
+            long start = Instant.parse("2025-01-15T10:00:00Z").toEpochMilli();
+
+            // When - the second record falls inside the window the cache knows to be complete
+            writer.writeRecord(new AuditRecord(start, "1", "test@example.com", null, null, null, "Login", "Success", "first", null));
+            writer.writeRecord(new AuditRecord(start + 120_000L, "1", "test@example.com", null, null, null, "Login", "Success",
+                    "first\nforged|record", null));
+            writer.cleanup();
+
+            // Then
+            List<AuditEventDTO> events = cache.find("1", "test@example.com", AuditQuery.all(), 1);
+            assertNotNull(events);
+            assertEquals("first forged record", events.get(0).getMessage());
+        }
+
+        @Test
+        @DisplayName("Pipe codec reads back the record it would write without parsing a line")
+        void pipeCodecDecodedFormMatchesDecode() {
+            // Given
+            PipeDelimitedAuditRecordCodec codec = new PipeDelimitedAuditRecordCodec();
+            AuditRecord clean = new AuditRecord(1736935200000L, "1", "test@example.com", "s1", "127.0.0.1", "agent", "Login",
+                    "Success", "ok", null);
+            AuditRecord dirty = new AuditRecord(1736935200000L, "1", " test@example.com ", null, "null", "agent|x", "Login",
+                    "Success", "first\r\nforged|record", "  ");
+
+            // When
+            StringBuilder line = new StringBuilder();
+            codec.encode(dirty, line);
+            AuditEventDTO decoded = codec.decode(line.toString());
+            AuditRecord readBack = codec.decodedForm(dirty);
+
+            // Then - a clean record is passed through; a dirty one matches what decode returns
+            assertTrue(codec.decodedForm(clean) == clean);
+            assertEquals(decoded.getUserEmail(), readBack.userEmail());
+            assertEquals(decoded.getIpAddress(), readBack.ipAddress());
+            assertEquals(decoded.getUserAgent(), readBack.userAgent());
+            assertEquals(decoded.getMessage(), readBack.message());
+            assertEquals(decoded.getExtraData(), readBack.extraData());
+            assertEquals(decoded.getTimestamp().toEpochMilli(), readBack.timestamp());
+        }
+    }
+
+    @Nested
+    @DisplayName("Durability Policy Tests")
+    class DurabilityPolicyTests {
+
+        private AuditEvent event(String action) {
+            return AuditEvent.builder()
+                    .source(this)
+                    .action(action)
+                    .actionStatus("Success")
+                    .build();
+        }
+
+        @Test
+        @DisplayName("EVERY_BATCH writes each event through to the file without flushOnWrite")
+        void everyBatch_syncsEachWrite() throws IOException {
+            // Given
+            when(auditConfig.getDurabilityPolicy()).thenReturn(AuditDurabilityPolicy.EVERY_BATCH);
+            fileAuditLogWriter.setup();
+
+            // When
+            fileAuditLogWriter.writeLog(event("Durable"));
+
+            // Then
+            assertTrue(Files.readString(Path.of(logFilePath)).contains("Durable"));
+        }
+
+        @Test
+        @DisplayName("EVERY_N_EVENTS syncs once the configured number of events has been written")
+        void everyNEvents_syncsAfterN() throws IOException {
+            // Given
+            when(auditConfig.getDurabilityPolicy()).thenReturn(AuditDurabilityPolicy.EVERY_N_EVENTS);
+            when(auditConfig.getDurabilityEveryNEvents()).thenReturn(3);
+            fileAuditLogWriter.setup();
+            Path active = Path.of(logFilePath);
+
+            // When
+            fileAuditLogWriter.writeLog(event("First"));
+            fileAuditLogWriter.writeLog(event("Second"));
+
+            // Then - still buffered
+            assertTrue(Files.readString(active).isEmpty());
+
+            // When
+            fileAuditLogWriter.writeLog(event("Third"));
+
+            // Then
+            assertEquals(3, Files.readAllLines(active).size());
+        }
+
+        @Test
+        @DisplayName("INTERVAL syncs pending events from the background timer")
+        void interval_syncsFromTimer() throws Exception {
+            // Given
+            when(auditConfig.getDurabilityPolicy()).thenReturn(AuditDurabilityPolicy.INTERVAL);
+            when(auditConfig.getDurabilityIntervalMs()).thenReturn(20L);
+            fileAuditLogWriter.setup();
+            Path active = Path.of(logFilePath);
+
+            // When
+            fileAuditLogWriter.writeLog(event("Timed"));
+
+            // Then
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!Files.readString(active).contains("Timed") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.readString(active).contains("Timed"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Async Mode Tests")
+    class AsyncModeTests {
+
+        private AuditEvent event(String action) {
+            return AuditEvent.builder()
+                    .source(this)
+                    .action(action)
+                    .actionStatus("Success")
+                    .message("async test")
+                    .build();
+        }
+
+        @Test
+        @DisplayName("writes every event from concurrent producers before cleanup returns")
+        void writesAllEvents_fromConcurrentProducers() throws Exception {
+            // Given
+            when(auditConfig.isAsyncWrite()).thenReturn(true);
+            when(auditConfig.getAsyncBufferSize()).thenReturn(16384);
+            when(auditConfig.getAsyncBatchSize()).thenReturn(64);
+            fileAuditLogWriter.setup();
+
+            int producers = 4;
+            int perProducer = 500;
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                threads[p] = new Thread(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        fileAuditLogWriter.writeLog(event("P" + producer + "E" + i));
+                    }
+                });
+                threads[p].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // When - cleanup drains the buffer before closing the file
+            fileAuditLogWriter.cleanup();
+
+            // Then
+            List<String> lines = Files.readAllLines(Path.of(logFilePath));
+            long written = lines.stream().filter(line -> line.contains("async test")).count();
+            assertEquals(producers * perProducer, written);
+            assertEquals(0L, fileAuditLogWriter.getDroppedEventCount());
+        }
+
+        @Test
+        @DisplayName("group commit flushes batches to disk without waiting for cleanup")
+        void groupCommit_flushesBatches() throws Exception {
+            // Given
+            when(auditConfig.isAsyncWrite()).thenReturn(true);
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            fileAuditLogWriter.setup();
+
+            // When
+            fileAuditLogWriter.writeLog(event("GroupCommit"));
+
+            // Then - the writer thread flushes the batch on its own
+            Path active = Path.of(logFilePath);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!Files.readString(active).contains("GroupCommit") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.readString(active).contains("GroupCommit"));
+        }
+
+        @Test
+        @DisplayName("does not start a writer thread when async mode is disabled")
+        void syncMode_writesOnCallingThread() throws IOException {
+            // Given
+            when(auditConfig.isFlushOnWrite()).thenReturn(true);
+            fileAuditLogWriter.setup();
+
+            // When
+            fileAuditLogWriter.writeLog(event("SyncWrite"));
+
+            // Then - visible immediately, no hand-off involved
+            assertTrue(Files.readString(Path.of(logFilePath)).contains("SyncWrite"));
+        }
     }
 
     @Nested
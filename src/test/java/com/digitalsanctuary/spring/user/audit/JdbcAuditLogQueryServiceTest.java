@@ -0,0 +1,238 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
+
+@DisplayName("JdbcAuditLogQueryService Tests")
+class JdbcAuditLogQueryServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private AuditConfig auditConfig;
+    private JdbcAuditLogQueryService queryService;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = JdbcAuditLogWriterTest.createAuditEventTable();
+        auditConfig = new AuditConfig();
+        queryService = new JdbcAuditLogQueryService(auditConfig, jdbcTemplate);
+        testUser = UserTestDataBuilder.aVerifiedUser().withId(1L).withEmail("Test@Example.com").build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    private void insert(String isoTime, String action, String userId, String email) {
+        jdbcTemplate.update(JdbcAuditLogWriter.INSERT_SQL, Instant.parse(isoTime).toEpochMilli(), action, "Success", userId, email,
+                "127.0.0.1", "sess", "message", "Mozilla/5.0", null);
+    }
+
+    @Nested
+    @DisplayName("findByUser")
+    class FindByUser {
+
+        @Test
+        @DisplayName("matches by id, by email and by email-as-id, newest first")
+        void matchesUserNewestFirst() {
+            // Given
+            insert("2025-01-15T08:00:00Z", "Registration", "test@example.com", "test@example.com");
+            insert("2025-01-15T12:00:00Z", "Logout", "1", null);
+            insert("2025-01-15T10:00:00Z", "Login", "1", "test@example.com");
+            insert("2025-01-15T11:00:00Z", "Login", "2", "other@example.com");
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Logout", "Login", "Registration");
+            assertThat(result.get(0).getTimestamp()).isEqualTo(Instant.parse("2025-01-15T12:00:00Z"));
+        }
+
+        @Test
+        @DisplayName("returns empty list when user is null")
+        void returnsEmptyList_whenUserIsNull() {
+            assertThat(queryService.findByUser(null)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("caps results at maxQueryResults, keeping the newest")
+        void capsResults() {
+            // Given
+            auditConfig.setMaxQueryResults(2);
+            for (int i = 0; i < 5; i++) {
+                insert(String.format("2025-01-15T10:%02d:00Z", i), "Action" + i, "1", "test@example.com");
+            }
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUser(testUser);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("Action4", "Action3");
+        }
+
+        @Test
+        @DisplayName("returns empty list when the table is missing")
+        void returnsEmptyList_whenTableMissing() {
+            // Given
+            jdbcTemplate.execute("DROP TABLE audit_event");
+
+            // When / Then
+            assertThat(queryService.findByUser(testUser)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("filters")
+    class Filters {
+
+        @Test
+        @DisplayName("findByUserSince includes events at or after the bound")
+        void filtersBySince() {
+            // Given
+            insert("2025-01-14T10:00:00Z", "Old", "1", "test@example.com");
+            insert("2025-01-15T10:00:00Z", "Boundary", "1", "test@example.com");
+            insert("2025-01-16T10:00:00Z", "New", "1", "test@example.com");
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUserSince(testUser, Instant.parse("2025-01-15T10:00:00Z"));
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("New", "Boundary");
+        }
+
+        @Test
+        @DisplayName("findByUserAndAction filters by action")
+        void filtersByAction() {
+            // Given
+            insert("2025-01-15T10:00:00Z", "Login", "1", "test@example.com");
+            insert("2025-01-15T10:05:00Z", "CONSENT_GRANTED", "1", "test@example.com");
+
+            // When
+            List<AuditEventDTO> result = queryService.findByUserAndAction(testUser, "CONSENT_GRANTED");
+
+            // Then
+            assertThat(result).hasSize(1);
+            assertThat(result.get(0).getAction()).isEqualTo("CONSENT_GRANTED");
+        }
+    }
+
+    @Nested
+    @DisplayName("findPage")
+    class FindPage {
+
+        @Test
+        @DisplayName("pages newest first through rows sharing a timestamp")
+        void pagesThroughTies() {
+            // Given - ties on ts are broken by id
+            insert("2025-01-15T10:00:00Z", "A", "1", "test@example.com");
+            insert("2025-01-15T11:00:00Z", "B", "1", "test@example.com");
+            insert("2025-01-15T11:00:00Z", "C", "1", "test@example.com");
+            insert("2025-01-15T11:00:00Z", "D", "1", "test@example.com");
+            insert("2025-01-15T12:00:00Z", "E", "2", "other@example.com");
+
+            // When
+            AuditEventPage first = queryService.findPage(testUser, AuditQuery.all(), null, 2);
+            AuditEventPage second = queryService.findPage(testUser, AuditQuery.all(), first.getNextCursor(), 2);
+
+            // Then
+            assertThat(first.getEvents()).extracting(AuditEventDTO::getAction).containsExactly("D", "C");
+            assertThat(second.getEvents()).extracting(AuditEventDTO::getAction).containsExactly("B", "A");
+            assertThat(second.hasNext()).isFalse();
+        }
+
+        @Test
+        @DisplayName("applies the query criteria")
+        void appliesCriteria() {
+            // Given
+            insert("2025-01-14T10:00:00Z", "Login", "1", "test@example.com");
+            insert("2025-01-15T10:00:00Z", "Logout", "1", "test@example.com");
+            insert("2025-01-15T11:00:00Z", "Login", "1", "test@example.com");
+            AuditQuery query = AuditQuery.builder().since(Instant.parse("2025-01-15T00:00:00Z")).action("Login").build();
+
+            // When
+            AuditEventPage page = queryService.findPage(testUser, query, null, 10);
+
+            // Then
+            assertThat(page.getEvents()).extracting(AuditEventDTO::getTimestamp).containsExactly(Instant.parse("2025-01-15T11:00:00Z"));
+        }
+
+        @Test
+        @DisplayName("streams the whole history regardless of maxQueryResults")
+        void streamsBeyondQueryCap() {
+            // Given
+            auditConfig.setMaxQueryResults(3);
+            for (int i = 0; i < 1100; i++) {
+                jdbcTemplate.update(JdbcAuditLogWriter.INSERT_SQL, 1_000_000L + i, "Action" + i, "Success", "1", null, null, null, null,
+                        null, null);
+            }
+
+            // When
+            List<AuditEventDTO> result = queryService.stream(testUser, AuditQuery.all(), null).toList();
+
+            // Then
+            assertThat(queryService.findByUser(testUser)).hasSize(3);
+            assertThat(result).hasSize(1100);
+            assertThat(result.get(0).getAction()).isEqualTo("Action1099");
+        }
+    }
+
+    @Nested
+    @DisplayName("find")
+    class Find {
+
+        @Test
+        @DisplayName("answers several actions, a status and a time range in one query")
+        void combinesCriteria() {
+            // Given
+            insert("2025-01-15T08:00:00Z", "CONSENT_GRANTED", "1", "test@example.com");
+            insert("2025-01-15T09:00:00Z", "CONSENT_WITHDRAWN", "1", "test@example.com");
+            insert("2025-01-15T10:00:00Z", "Login", "1", "test@example.com");
+            insert("2025-01-15T11:00:00Z", "CONSENT_GRANTED", "1", "test@example.com");
+            jdbcTemplate.update(JdbcAuditLogWriter.INSERT_SQL, Instant.parse("2025-01-15T09:30:00Z").toEpochMilli(), "CONSENT_GRANTED",
+                    "Failure", "1", "test@example.com", "127.0.0.1", "sess", "message", "Mozilla/5.0", null);
+            jdbcTemplate.update(JdbcAuditLogWriter.INSERT_SQL, Instant.parse("2025-01-15T09:45:00Z").toEpochMilli(), "CONSENT_GRANTED",
+                    "Success", "1", "test@example.com", "10.0.0.1", "sess", "message", "Mozilla/5.0", null);
+            AuditQuery query = AuditQuery.builder()
+                    .action("CONSENT_GRANTED").action("CONSENT_WITHDRAWN")
+                    .status("Success")
+                    .ipAddress("127.0.0.1")
+                    .since(Instant.parse("2025-01-15T08:30:00Z"))
+                    .until(Instant.parse("2025-01-15T11:00:00Z"))
+                    .build();
+
+            // When
+            List<AuditEventDTO> result = queryService.find(testUser, query);
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("CONSENT_WITHDRAWN");
+        }
+
+        @Test
+        @DisplayName("keeps the most recent rows up to the limit and returns them in the requested order")
+        void limitsAndOrders() {
+            // Given
+            insert("2025-01-15T08:00:00Z", "A", "1", "test@example.com");
+            insert("2025-01-15T09:00:00Z", "B", "1", "test@example.com");
+            insert("2025-01-15T10:00:00Z", "C", "1", "test@example.com");
+
+            // When
+            List<AuditEventDTO> result = queryService.find(testUser,
+                    AuditQuery.builder().limit(2).order(AuditQuery.Order.OLDEST_FIRST).build());
+
+            // Then
+            assertThat(result).extracting(AuditEventDTO::getAction).containsExactly("B", "C");
+        }
+    }
+}
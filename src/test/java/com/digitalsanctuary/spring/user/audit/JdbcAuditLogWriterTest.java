@@ -0,0 +1,180 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
+
+@DisplayName("JdbcAuditLogWriter Tests")
+class JdbcAuditLogWriterTest {
+
+    /** H2 equivalent of the {@code audit_event} table in {@code db-scripts/mariadb-schema.sql}. */
+    static final String H2_AUDIT_EVENT_DDL = "CREATE TABLE audit_event (id BIGINT AUTO_INCREMENT PRIMARY KEY, ts BIGINT NOT NULL, "
+            + "action VARCHAR(255), action_status VARCHAR(255), user_id VARCHAR(255), user_email VARCHAR(255), ip_address VARCHAR(255), "
+            + "session_id VARCHAR(255), message CLOB, user_agent CLOB, extra_data CLOB)";
+
+    static JdbcTemplate createAuditEventTable() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:audit-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(H2_AUDIT_EVENT_DDL);
+        jdbcTemplate.execute("CREATE INDEX idx_audit_event_user_ts ON audit_event (user_id, ts)");
+        jdbcTemplate.execute("CREATE INDEX idx_audit_event_email_ts ON audit_event (user_email, ts)");
+        jdbcTemplate.execute("CREATE INDEX idx_audit_event_action_ts ON audit_event (action, ts)");
+        return jdbcTemplate;
+    }
+
+    private JdbcTemplate jdbcTemplate;
+    private AuditConfig auditConfig;
+    private JdbcAuditLogWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = createAuditEventTable();
+        auditConfig = new AuditConfig();
+        auditConfig.setLogEvents(true);
+        auditConfig.setJdbcBatchSize(16);
+        writer = new JdbcAuditLogWriter(auditConfig, jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.cleanup();
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    private AuditEvent event(User user, String action) {
+        return AuditEvent.builder()
+                .source(this)
+                .user(user)
+                .sessionId("sess")
+                .ipAddress("127.0.0.1")
+                .userAgent("Mozilla/5.0")
+                .action(action)
+                .actionStatus("Success")
+                .message("message for " + action)
+                .extraData("{\"k\":\"v\"}")
+                .build();
+    }
+
+    private int rowCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_event", Integer.class);
+    }
+
+    @Test
+    @DisplayName("inserts queued events in batches and drains the queue on cleanup")
+    void insertsQueuedEventsInBatches() {
+        // Given
+        writer.setup();
+        User user = UserTestDataBuilder.aVerifiedUser().withId(7L).withEmail("user@example.com").build();
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            writer.writeLog(event(user, "Action" + i));
+        }
+        writer.cleanup();
+
+        // Then
+        assertThat(rowCount()).isEqualTo(100);
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM audit_event WHERE action = 'Action42'");
+        assertThat(row.get("USER_ID")).isEqualTo("7");
+        assertThat(row.get("USER_EMAIL")).isEqualTo("user@example.com");
+        assertThat(row.get("ACTION_STATUS")).isEqualTo("Success");
+        assertThat(row.get("IP_ADDRESS")).isEqualTo("127.0.0.1");
+        assertThat(row.get("SESSION_ID")).isEqualTo("sess");
+        assertThat((Long) row.get("TS")).isPositive();
+        assertThat(writer.getDroppedEventCount()).isZero();
+        assertThat(writer.getFailedEventCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("counts inserted records in the rollups")
+    void feedsRollups() {
+        // Given - not started, so events are inserted on the calling thread
+        AuditRollups rollups = new AuditRollups(60, 100);
+        JdbcAuditLogWriter rollupWriter = new JdbcAuditLogWriter(auditConfig, jdbcTemplate, true, rollups);
+        User user = UserTestDataBuilder.aVerifiedUser().withId(7L).withEmail("user@example.com").build();
+
+        // When
+        rollupWriter.writeLog(event(user, "Login"));
+        rollupWriter.writeLog(event(user, "Login"));
+
+        // Then
+        assertThat(rollups.aggregate(AuditAggregateQuery.builder().action("Login").build()))
+                .extracting(AuditAggregate::getCount).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("stores emails lower-cased, including an email standing in for an unsaved user's id")
+    void lowerCasesEmails() {
+        // Given - not started, so events are inserted on the calling thread
+        User saved = UserTestDataBuilder.aVerifiedUser().withId(3L).withEmail("Mixed@Example.com").build();
+        User unsaved = UserTestDataBuilder.aUser().withId(null).withEmail("New@Example.com").build();
+
+        // When
+        writer.writeLog(event(saved, "Login"));
+        writer.writeLog(event(unsaved, "Registration"));
+
+        // Then
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT user_id, user_email FROM audit_event ORDER BY id");
+        assertThat(rows).extracting(r -> r.get("USER_ID")).containsExactly("3", "new@example.com");
+        assertThat(rows).extracting(r -> r.get("USER_EMAIL")).containsExactly("mixed@example.com", "new@example.com");
+    }
+
+    @Test
+    @DisplayName("truncates values longer than the VARCHAR columns instead of failing the batch")
+    void truncatesLongValues() {
+        // Given
+        User user = UserTestDataBuilder.aVerifiedUser().withId(1L).withEmail("user@example.com").build();
+        AuditEvent event = AuditEvent.builder().source(this).user(user).action("A".repeat(400)).actionStatus("Success").build();
+
+        // When
+        writer.writeLog(event);
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT action FROM audit_event", String.class))
+                .hasSize(JdbcAuditLogWriter.MAX_VARCHAR_LENGTH);
+    }
+
+    @Test
+    @DisplayName("counts events lost to a failed batch insert and keeps running")
+    void countsFailedBatches() {
+        // Given
+        writer.setup();
+        jdbcTemplate.execute("DROP TABLE audit_event");
+        User user = UserTestDataBuilder.aVerifiedUser().withId(1L).withEmail("user@example.com").build();
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            writer.writeLog(event(user, "Action" + i));
+        }
+        writer.cleanup();
+
+        // Then
+        assertThat(writer.getFailedEventCount()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("inserts on the calling thread when audit logging is disabled and no writer thread runs")
+    void insertsSynchronouslyWhenNotStarted() {
+        // Given
+        auditConfig.setLogEvents(false);
+        writer.setup();
+        User user = UserTestDataBuilder.aVerifiedUser().withId(1L).withEmail("user@example.com").build();
+
+        // When
+        writer.writeLog(event(user, "Login"));
+
+        // Then - visible immediately, without waiting for a drain
+        assertThat(rowCount()).isEqualTo(1);
+    }
+}
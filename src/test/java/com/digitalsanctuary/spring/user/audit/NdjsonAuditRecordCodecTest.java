@@ -0,0 +1,125 @@
+package com.digitalsanctuary.spring.user.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
+
+@DisplayName("NdjsonAuditRecordCodec Tests")
+class NdjsonAuditRecordCodecTest {
+
+    private final NdjsonAuditRecordCodec codec = new NdjsonAuditRecordCodec();
+
+    private String encode(AuditEvent event) {
+        StringBuilder out = new StringBuilder();
+        codec.encode(AuditRecord.of(event), out);
+        return out.toString();
+    }
+
+    @Nested
+    @DisplayName("encode")
+    class Encode {
+
+        @Test
+        @DisplayName("writes epoch millis and omits null fields")
+        void writesEpochMillisAndOmitsNulls() {
+            AuditEvent event = AuditEvent.builder()
+                    .source(this)
+                    .action("Login")
+                    .actionStatus("Success")
+                    .build();
+
+            assertThat(encode(event)).isEqualTo("{\"ts\":" + event.getDate().getTime()
+                    + ",\"action\":\"Login\",\"status\":\"Success\",\"userId\":\"unknown\"}");
+        }
+
+        @Test
+        @DisplayName("escapes quotes, backslashes, control characters and line separators")
+        void escapesSpecialCharacters() {
+            AuditEvent event = AuditEvent.builder()
+                    .source(this)
+                    .action("A")
+                    .message("say \"hi\"\\\r\n\t\u0001\u2028end")
+                    .build();
+
+            String line = encode(event);
+
+            assertThat(line).contains("\"message\":\"say \\\"hi\\\"\\\\\\r\\n\\t\\u0001\\u2028end\"");
+            assertThat(line).doesNotContain("\n").doesNotContain("\r");
+        }
+    }
+
+    @Nested
+    @DisplayName("decode")
+    class Decode {
+
+        @Test
+        @DisplayName("round-trips every field")
+        void roundTripsEveryField() {
+            User user = UserTestDataBuilder.aUser().withId(42L).withEmail("rt@example.com").build();
+            AuditEvent event = AuditEvent.builder()
+                    .source(this)
+                    .user(user)
+                    .action("Password Update")
+                    .actionStatus("Success")
+                    .ipAddress("10.0.0.1")
+                    .sessionId("sess-1")
+                    .message("multi\nline | \"quoted\" \u00e9")
+                    .userAgent("Mozilla/5.0")
+                    .extraData("{\"k\":\"v\"}")
+                    .build();
+
+            AuditEventDTO decoded = codec.decode(encode(event));
+
+            assertThat(decoded.getTimestamp().toEpochMilli()).isEqualTo(event.getDate().getTime());
+            assertThat(decoded.getAction()).isEqualTo("Password Update");
+            assertThat(decoded.getActionStatus()).isEqualTo("Success");
+            assertThat(decoded.getUserId()).isEqualTo("42");
+            assertThat(decoded.getUserEmail()).isEqualTo("rt@example.com");
+            assertThat(decoded.getIpAddress()).isEqualTo("10.0.0.1");
+            assertThat(decoded.getSessionId()).isEqualTo("sess-1");
+            assertThat(decoded.getMessage()).isEqualTo("multi\nline | \"quoted\" \u00e9");
+            assertThat(decoded.getUserAgent()).isEqualTo("Mozilla/5.0");
+            assertThat(decoded.getExtraData()).isEqualTo("{\"k\":\"v\"}");
+        }
+
+        @Test
+        @DisplayName("ignores unknown keys and non-string values")
+        void ignoresUnknownKeys() {
+            AuditEventDTO decoded = codec.decode("{ \"ts\" : 5, \"extra\" : true, \"n\" : null, \"action\" : \"X\" }");
+
+            assertThat(decoded.getTimestamp().toEpochMilli()).isEqualTo(5L);
+            assertThat(decoded.getAction()).isEqualTo("X");
+        }
+
+        @Test
+        @DisplayName("returns null for truncated, malformed or non-JSON lines")
+        void returnsNullForMalformedLines() {
+            assertThat(codec.decode("{\"ts\":1,\"action\":\"Lo")).isNull();
+            assertThat(codec.decode("{\"ts\":1 \"action\":\"X\"}")).isNull();
+            assertThat(codec.decode("{\"message\":\"bad \\q escape\"}")).isNull();
+            assertThat(codec.decode("Date|Action|Action Status")).isNull();
+            assertThat(codec.decode("")).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("decodedForm")
+    class DecodedForm {
+
+        @Test
+        @DisplayName("returns the record itself, since every value reads back exactly")
+        void returnsRecordItself() {
+            AuditRecord record = new AuditRecord(1736935200000L, "1", "a@example.com", null, null, "agent\n\"x\"", "Login", "Success",
+                    "line1\nline2|x", null);
+            StringBuilder line = new StringBuilder();
+            codec.encode(record, line);
+
+            assertThat(codec.decodedForm(record)).isSameAs(record);
+            assertThat(codec.decode(line.toString()).getMessage()).isEqualTo(record.message());
+        }
+    }
+}
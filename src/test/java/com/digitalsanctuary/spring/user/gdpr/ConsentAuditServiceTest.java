@@ -3,10 +3,13 @@ package com.digitalsanctuary.spring.user.gdpr;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,11 +19,14 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationEventPublisher;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import com.digitalsanctuary.spring.user.audit.AuditEvent;
+import com.digitalsanctuary.spring.user.audit.AuditEventDTO;
 import com.digitalsanctuary.spring.user.audit.AuditLogQueryService;
+import com.digitalsanctuary.spring.user.audit.AuditQuery;
 import com.digitalsanctuary.spring.user.event.ConsentChangedEvent;
 import com.digitalsanctuary.spring.user.persistence.model.User;
 import com.digitalsanctuary.spring.user.test.annotations.ServiceTest;
@@ -44,6 +50,12 @@ class ConsentAuditServiceTest {
     @Spy
     private ObjectMapper objectMapper = JsonMapper.builder().build();
 
+    @Mock
+    private ObjectProvider<ConsentStateService> consentStateServiceProvider;
+
+    @Mock
+    private ConsentStateService consentStateService;
+
     @Mock
     private HttpServletRequest request;
 
@@ -261,10 +273,7 @@ class ConsentAuditServiceTest {
         @DisplayName("returns empty map when no consent events")
         void returnsEmptyMap_whenNoConsentEvents() {
             // Given
-            when(auditLogQueryService.findByUserAndAction(testUser, "CONSENT_GRANTED"))
-                    .thenReturn(new ArrayList<>());
-            when(auditLogQueryService.findByUserAndAction(testUser, "CONSENT_WITHDRAWN"))
-                    .thenReturn(new ArrayList<>());
+            when(auditLogQueryService.find(eq(testUser), any())).thenReturn(new ArrayList<>());
 
             // When
             Map<String, ConsentAuditService.ConsentStatus> result = consentAuditService.getConsentStatus(testUser);
@@ -274,6 +283,73 @@ class ConsentAuditServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("getConsentStatus with events")
+    class GetConsentStatusWithEvents {
+
+        @Test
+        @DisplayName("asks for grants and withdrawals in one query and lets the newest event per type win")
+        void usesOneQuery_newestEventWins() {
+            // Given - newest first, as the query service returns them
+            when(auditLogQueryService.find(eq(testUser), any())).thenReturn(List.of(
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T12:00:00Z")).action("CONSENT_WITHDRAWN")
+                            .extraData("{\"consentType\":\"marketing_emails\"}").build(),
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T11:00:00Z")).action("CONSENT_GRANTED")
+                            .extraData("{\"consentType\":\"privacy_policy\"}").build(),
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T10:00:00Z")).action("CONSENT_GRANTED")
+                            .extraData("{\"consentType\":\"marketing_emails\"}").build()));
+
+            // When
+            Map<String, ConsentAuditService.ConsentStatus> result = consentAuditService.getConsentStatus(testUser);
+
+            // Then
+            ArgumentCaptor<AuditQuery> queryCaptor = ArgumentCaptor.forClass(AuditQuery.class);
+            verify(auditLogQueryService).find(eq(testUser), queryCaptor.capture());
+            assertThat(queryCaptor.getValue().getActions()).containsExactlyInAnyOrder("CONSENT_GRANTED", "CONSENT_WITHDRAWN");
+            assertThat(result.get("marketing_emails").isActive()).isFalse();
+            assertThat(result.get("privacy_policy").isActive()).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("getConsentStatus with the consent state store")
+    class GetConsentStatusFromStore {
+
+        @Test
+        @DisplayName("reads the store without querying the audit log once it is backfilled")
+        void readsStore() {
+            // Given
+            Map<String, ConsentAuditService.ConsentStatus> stored = Map.of("privacy_policy",
+                    new ConsentAuditService.ConsentStatus("privacy_policy", true, Instant.parse("2025-01-15T11:00:00Z"), null));
+            when(consentStateServiceProvider.getIfAvailable()).thenReturn(consentStateService);
+            when(consentStateService.getConsentStatus(1L)).thenReturn(stored);
+
+            // When
+            Map<String, ConsentAuditService.ConsentStatus> result = consentAuditService.getConsentStatus(testUser);
+
+            // Then
+            assertThat(result).isSameAs(stored);
+            verify(auditLogQueryService, never()).find(any(), any(AuditQuery.class));
+        }
+
+        @Test
+        @DisplayName("replays the audit log until the store is backfilled")
+        void replaysUntilBackfilled() {
+            // Given
+            when(consentStateServiceProvider.getIfAvailable()).thenReturn(consentStateService);
+            when(consentStateService.getConsentStatus(1L)).thenReturn(null);
+            when(auditLogQueryService.find(eq(testUser), any())).thenReturn(List.of(
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T11:00:00Z")).action("CONSENT_GRANTED")
+                            .extraData("{\"consentType\":\"privacy_policy\"}").build()));
+
+            // When
+            Map<String, ConsentAuditService.ConsentStatus> result = consentAuditService.getConsentStatus(testUser);
+
+            // Then
+            assertThat(result.get("privacy_policy").isActive()).isTrue();
+        }
+    }
+
     @Nested
     @DisplayName("ConsentStatus")
     class ConsentStatusTests {
@@ -0,0 +1,227 @@
+package com.digitalsanctuary.spring.user.gdpr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.digitalsanctuary.spring.user.event.ConsentChangedEvent;
+import com.digitalsanctuary.spring.user.event.UserPreDeleteEvent;
+
+@DisplayName("ConsentStateService Tests")
+class ConsentStateServiceTest {
+
+    /** H2 equivalent of the {@code user_consent_state} table in {@code db-scripts/mariadb-schema.sql}. */
+    private static final String H2_CONSENT_STATE_DDL = "CREATE TABLE user_consent_state (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "user_id BIGINT NOT NULL, consent_type VARCHAR(255) NOT NULL, active BOOLEAN NOT NULL, granted_at TIMESTAMP(6), "
+            + "withdrawn_at TIMESTAMP(6), changed_at TIMESTAMP(6) NOT NULL, "
+            + "CONSTRAINT ux_user_consent_state_user_type UNIQUE (user_id, consent_type))";
+
+    /** H2 equivalent of the {@code user_consent_state_backfill} table in {@code db-scripts/mariadb-schema.sql}. */
+    private static final String H2_BACKFILL_DDL = "CREATE TABLE user_consent_state_backfill (name VARCHAR(64) PRIMARY KEY, "
+            + "locked_by VARCHAR(255) NOT NULL, locked_until TIMESTAMP(6) NOT NULL, completed_at TIMESTAMP(6))";
+
+    private static final Instant EARLIER = Instant.parse("2025-01-15T10:00:00Z");
+    private static final Instant LATER = Instant.parse("2025-01-15T12:00:00Z");
+
+    private String url;
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ConsentStateService consentStateService;
+
+    @BeforeEach
+    void setUp() {
+        url = "jdbc:h2:mem:consent-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        dataSource = new DriverManagerDataSource(url);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(H2_CONSENT_STATE_DDL);
+        jdbcTemplate.execute(H2_BACKFILL_DDL);
+        consentStateService = new ConsentStateService(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    private void markBackfilled() {
+        String owner = UUID.randomUUID().toString();
+        assertThat(consentStateService.tryLockBackfill(owner, Duration.ofMinutes(1))).isTrue();
+        assertThat(consentStateService.markBackfilled(owner)).isTrue();
+    }
+
+    private static ConsentChangedEvent withdrawal(Instant withdrawnAt) {
+        ConsentRecord record = ConsentRecord.builder().type(ConsentType.MARKETING_EMAILS).withdrawnAt(withdrawnAt).build();
+        return new ConsentChangedEvent(ConsentStateServiceTest.class, 1L, "test@example.com", record,
+                ConsentChangedEvent.ChangeType.WITHDRAWN);
+    }
+
+    @Nested
+    @DisplayName("onConsentChanged")
+    class OnConsentChanged {
+
+        @Test
+        @DisplayName("stores a withdrawal over an older grant")
+        void replacesOlderState() {
+            consentStateService.apply(1L, "marketing_emails", true, EARLIER);
+            markBackfilled();
+
+            consentStateService.onConsentChanged(withdrawal(LATER));
+
+            ConsentAuditService.ConsentStatus status = consentStateService.getConsentStatus(1L).get("marketing_emails");
+            assertThat(status.isActive()).isFalse();
+            assertThat(status.getGrantedAt()).isNull();
+            assertThat(status.getWithdrawnAt()).isEqualTo(LATER);
+        }
+
+        @Test
+        @DisplayName("stores nothing when the caller's transaction rolls back")
+        void ignoresRolledBackChange() {
+            markBackfilled();
+            TransactionTemplate caller = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+            caller.executeWithoutResult(status -> {
+                consentStateService.onConsentChanged(withdrawal(LATER));
+                status.setRollbackOnly();
+            });
+
+            assertThat(consentStateService.getConsentStatus(1L)).isEmpty();
+        }
+
+        @Test
+        @DisplayName("stores the change once the caller's transaction commits")
+        void appliesAfterCommit() {
+            markBackfilled();
+            TransactionTemplate caller = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+            caller.executeWithoutResult(status -> {
+                consentStateService.onConsentChanged(withdrawal(LATER));
+                assertThat(consentStateService.getConsentStatus(1L)).isEmpty();
+            });
+
+            assertThat(consentStateService.getConsentStatus(1L).get("marketing_emails").isActive()).isFalse();
+        }
+
+        @Test
+        @DisplayName("never overwrites a newer change")
+        void keepsNewerState() {
+            consentStateService.apply(1L, "marketing_emails", false, LATER);
+
+            assertThat(consentStateService.apply(1L, "marketing_emails", true, EARLIER)).isFalse();
+        }
+
+        @Test
+        @DisplayName("retries as an update when a concurrent change inserts the row first")
+        void retriesConcurrentInsert() {
+            JdbcTemplate otherNode = new JdbcTemplate(new DriverManagerDataSource(url)); // its own connection, outside the transaction
+            JdbcTemplate racing = spy(jdbcTemplate);
+            doAnswer(invocation -> {
+                otherNode.update("INSERT INTO user_consent_state (user_id, consent_type, active, granted_at, changed_at) "
+                        + "VALUES (1, 'marketing_emails', TRUE, ?, ?)", Timestamp.from(EARLIER), Timestamp.from(EARLIER));
+                return invocation.callRealMethod();
+            }).doCallRealMethod().when(racing).update(startsWith("INSERT INTO user_consent_state "), any(Object[].class));
+            ConsentStateService service = new ConsentStateService(racing, new DataSourceTransactionManager(dataSource));
+
+            assertThat(service.apply(1L, "marketing_emails", false, LATER)).isTrue();
+
+            assertThat(jdbcTemplate.queryForObject("SELECT active FROM user_consent_state WHERE user_id = 1", Boolean.class)).isFalse();
+        }
+
+        @Test
+        @DisplayName("does not throw when the change cannot be stored, and falls back to the audit log")
+        void fallsBackOnFailure() {
+            markBackfilled();
+            jdbcTemplate.execute("DROP TABLE user_consent_state");
+
+            assertThatCode(() -> consentStateService.onConsentChanged(withdrawal(LATER))).doesNotThrowAnyException();
+
+            assertThat(consentStateService.getConsentStatus(1L)).isNull();
+            assertThat(jdbcTemplate.queryForObject("SELECT completed_at FROM user_consent_state_backfill", Timestamp.class)).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("getConsentStatus")
+    class GetConsentStatus {
+
+        @Test
+        @DisplayName("returns null until the backfill has completed")
+        void nullUntilBackfilled() {
+            consentStateService.apply(1L, "marketing_emails", true, EARLIER);
+
+            assertThat(consentStateService.getConsentStatus(1L)).isNull();
+        }
+
+        @Test
+        @DisplayName("reads the stored states, most recently changed first, once backfilled")
+        void readsStore() {
+            consentStateService.apply(1L, "privacy_policy", true, EARLIER);
+            consentStateService.apply(1L, "marketing_emails", false, LATER);
+            markBackfilled();
+
+            Map<String, ConsentAuditService.ConsentStatus> result = consentStateService.getConsentStatus(1L);
+
+            assertThat(result).containsOnlyKeys("marketing_emails", "privacy_policy");
+            assertThat(result.keySet()).first().isEqualTo("marketing_emails");
+            assertThat(result.get("marketing_emails").isActive()).isFalse();
+            assertThat(result.get("privacy_policy").getGrantedAt()).isEqualTo(EARLIER);
+        }
+    }
+
+    @Nested
+    @DisplayName("backfill lease")
+    class BackfillLease {
+
+        @Test
+        @DisplayName("is held by one owner at a time and not taken again once the backfill completed")
+        void oneOwnerAtATime() {
+            assertThat(consentStateService.tryLockBackfill("node-1", Duration.ofMinutes(1))).isTrue();
+            assertThat(consentStateService.tryLockBackfill("node-2", Duration.ofMinutes(1))).isFalse();
+            assertThat(consentStateService.markBackfilled("node-2")).isFalse();
+
+            assertThat(consentStateService.markBackfilled("node-1")).isTrue();
+
+            assertThat(consentStateService.isBackfilled()).isTrue();
+            assertThat(consentStateService.tryLockBackfill("node-2", Duration.ofMinutes(1))).isFalse();
+        }
+
+        @Test
+        @DisplayName("can be taken over once it expires or is released")
+        void takenOverAfterRelease() {
+            assertThat(consentStateService.tryLockBackfill("node-1", Duration.ZERO)).isTrue();
+            assertThat(consentStateService.tryLockBackfill("node-2", Duration.ofMinutes(1))).isTrue();
+            assertThat(consentStateService.extendBackfillLock("node-1", Duration.ofMinutes(1))).isFalse();
+
+            consentStateService.unlockBackfill("node-2");
+
+            assertThat(consentStateService.tryLockBackfill("node-3", Duration.ofMinutes(1))).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("deletes a user's states before the user is deleted")
+    void deletesOnUserPreDelete() {
+        consentStateService.apply(1L, "marketing_emails", true, EARLIER);
+        consentStateService.apply(2L, "marketing_emails", true, EARLIER);
+
+        consentStateService.onUserPreDelete(new UserPreDeleteEvent(this, 1L, "test@example.com"));
+
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM user_consent_state", Long.class)).containsExactly(2L);
+    }
+}
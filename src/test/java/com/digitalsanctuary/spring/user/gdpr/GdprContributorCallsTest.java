@@ -0,0 +1,78 @@
+package com.digitalsanctuary.spring.user.gdpr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+
+@DisplayName("GdprContributorCalls Tests")
+class GdprContributorCallsTest {
+
+    private static GdprDataContributor contributor(String key) {
+        return new GdprDataContributor() {
+            @Override
+            public String getDataKey() {
+                return key;
+            }
+
+            @Override
+            public Map<String, Object> exportUserData(User user) {
+                return Map.of();
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("runs the calls at the same time and returns their outcomes in contributor order")
+    void runsConcurrentlyInOrder() {
+        // Each call waits until all three have started, which only happens if they run at the same time
+        CountDownLatch started = new CountDownLatch(3);
+        GdprContributorCalls<String> calls = new GdprContributorCalls<>(
+                List.of(contributor("a"), contributor("b"), contributor("c")), contributor -> {
+                    started.countDown();
+                    try {
+                        return started.await(5, TimeUnit.SECONDS) ? contributor.getDataKey() : null;
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, 10_000L);
+
+        List<GdprContributorCalls.Outcome<String>> outcomes = calls.await();
+
+        assertThat(outcomes).extracting(GdprContributorCalls.Outcome::value).containsExactly("a", "b", "c");
+        assertThat(outcomes).allMatch(GdprContributorCalls.Outcome::succeeded);
+    }
+
+    @Test
+    @DisplayName("reports a slow call as timed out and a failing call as failed without waiting for the slow one")
+    void reportsTimeoutsAndFailures() {
+        CountDownLatch never = new CountDownLatch(1);
+        GdprContributorCalls<String> calls = new GdprContributorCalls<>(
+                List.of(contributor("slow"), contributor("broken"), contributor("fast")), contributor -> {
+                    if (contributor.getDataKey().equals("broken")) {
+                        throw new IllegalStateException("unavailable");
+                    }
+                    if (contributor.getDataKey().equals("slow")) {
+                        try {
+                            never.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "late";
+                    }
+                    return "done";
+                }, 200L);
+
+        long start = System.nanoTime();
+        List<GdprContributorCalls.Outcome<String>> outcomes = calls.await();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000L);
+        assertThat(outcomes.get(0).timedOut()).isTrue();
+        assertThat(outcomes.get(1).failure()).isInstanceOf(IllegalStateException.class);
+        assertThat(outcomes.get(2).value()).isEqualTo("done");
+    }
+}
@@ -3,11 +3,16 @@ package com.digitalsanctuary.spring.user.gdpr;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -15,8 +20,11 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import com.digitalsanctuary.spring.user.dto.GdprExportDTO;
 import com.digitalsanctuary.spring.user.event.UserDeletedEvent;
 import com.digitalsanctuary.spring.user.event.UserPreDeleteEvent;
@@ -211,6 +219,205 @@ class GdprDeletionServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("deleteUser with contributors")
+    class DeleteUserWithContributors {
+
+        private final List<String> calls = new CopyOnWriteArrayList<>();
+
+        private GdprDataContributor contributor(String key, boolean independent, Runnable cleanup) {
+            return new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return key;
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    return Map.of();
+                }
+
+                @Override
+                public boolean isIndependent() {
+                    return independent;
+                }
+
+                @Override
+                public void prepareForDeletion(User user) {
+                    cleanup.run();
+                    calls.add(key);
+                }
+            };
+        }
+
+        private GdprDeletionService serviceWith(GdprDataContributor... contributors) {
+            GdprDeletionService service = new GdprDeletionService(gdprConfig, gdprExportService, userRepository,
+                    verificationTokenRepository, passwordResetTokenRepository, List.of(contributors), eventPublisher);
+            ReflectionTestUtils.setField(service, "self", service);
+            return service;
+        }
+
+        @Test
+        @DisplayName("calls dependent contributors in the deletion and independent ones after it")
+        void callsIndependentContributorsAfterDeletion() {
+            // Given
+            when(gdprConfig.getContributorTimeoutMs()).thenReturn(5_000L);
+            doAnswer(invocation -> calls.add("delete")).when(userRepository).delete(testUser);
+            GdprDeletionService service = serviceWith(contributor("remote", true, () -> { }),
+                    contributor("orders", false, () -> { }));
+
+            // When
+            GdprDeletionService.DeletionResult result = service.deleteUser(testUser, false);
+
+            // Then
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(calls).containsExactly("orders", "delete", "remote");
+        }
+
+        @Test
+        @DisplayName("waits for the deletion to commit before calling independent contributors")
+        void callsIndependentContributorsAfterCommit() {
+            // Given
+            when(gdprConfig.getContributorTimeoutMs()).thenReturn(5_000L);
+            GdprDeletionService service = serviceWith(contributor("remote", true, () -> { }),
+                    contributor("orders", false, () -> { }));
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                // When
+                service.deleteUser(testUser, false);
+
+                // Then - nothing remote until the transaction commits
+                assertThat(calls).containsExactly("orders");
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                assertThat(calls).containsExactly("orders", "remote");
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("keeps the committed deletion when an independent contributor times out")
+        void keepsDeletionWhenIndependentContributorTimesOut() {
+            // Given
+            when(gdprConfig.getContributorTimeoutMs()).thenReturn(100L);
+            CountDownLatch never = new CountDownLatch(1);
+            GdprDeletionService service = serviceWith(contributor("remote", true, () -> {
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+
+            // When
+            GdprDeletionService.DeletionResult result = service.deleteUser(testUser, false);
+
+            // Then
+            assertThat(result.isSuccess()).isTrue();
+            verify(userRepository).delete(testUser);
+        }
+
+        @Test
+        @DisplayName("gives independent contributors the original email of an anonymized user")
+        void givesIndependentContributorsOriginalEmailOnAnonymization() {
+            // Given
+            when(gdprConfig.getContributorTimeoutMs()).thenReturn(5_000L);
+            List<String> emails = new CopyOnWriteArrayList<>();
+            GdprDeletionService service = serviceWith(new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return "remote";
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    return Map.of();
+                }
+
+                @Override
+                public boolean isIndependent() {
+                    return true;
+                }
+
+                @Override
+                public void prepareForDeletion(User user) {
+                    emails.add(user.getId() + ":" + user.getEmail());
+                }
+            });
+
+            // When
+            GdprDeletionService.DeletionResult result = service.anonymizeUser(testUser);
+
+            // Then
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(testUser.getEmail()).endsWith("@" + GdprDeletionService.ANONYMIZED_EMAIL_DOMAIN);
+            assertThat(emails).containsExactly("1:test@example.com");
+        }
+
+        @Test
+        @DisplayName("rolls the deletion back when a dependent contributor fails")
+        void failsWhenDependentContributorFails() {
+            // Given
+            GdprDeletionService service = serviceWith(contributor("orders", false, () -> {
+                throw new IllegalStateException("orders unavailable");
+            }), contributor("remote", true, () -> { }));
+
+            // When
+            GdprDeletionService.DeletionResult result = service.deleteUser(testUser, false);
+
+            // Then
+            assertThat(result.isSuccess()).isFalse();
+            assertThat(result.getMessage()).contains("orders");
+            assertThat(calls).isEmpty();
+            verify(userRepository, never()).delete(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("anonymizeUser")
+    class AnonymizeUser {
+
+        @Test
+        @DisplayName("removes the user's personal data but keeps the account")
+        void removesPersonalData() {
+            testUser.setPassword("hashed");
+            testUser.setEnabled(true);
+
+            GdprDeletionService.DeletionResult result = gdprDeletionService.anonymizeUser(testUser);
+
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(testUser.getFirstName()).isNull();
+            assertThat(testUser.getLastName()).isNull();
+            assertThat(testUser.getPassword()).isNull();
+            assertThat(testUser.isEnabled()).isFalse();
+            assertThat(testUser.getRolesAsSet()).isNotNull().isEmpty();
+            assertThat(testUser.getEmail()).isEqualTo("anonymized-1@" + GdprDeletionService.ANONYMIZED_EMAIL_DOMAIN);
+            verify(userRepository).save(testUser);
+            verify(userRepository, never()).delete(any());
+        }
+
+        @Test
+        @DisplayName("publishes the pre-delete and deleted events with the original email")
+        void publishesDeletionEvents() {
+            gdprDeletionService.anonymizeUser(testUser);
+
+            ArgumentCaptor<ApplicationEvent> events = ArgumentCaptor.forClass(ApplicationEvent.class);
+            verify(eventPublisher, times(2)).publishEvent(events.capture());
+            assertThat(events.getAllValues().get(0)).isInstanceOfSatisfying(UserPreDeleteEvent.class,
+                    event -> assertThat(event.getUserEmail()).isEqualTo("test@example.com"));
+            assertThat(events.getAllValues().get(1)).isInstanceOfSatisfying(UserDeletedEvent.class,
+                    event -> assertThat(event.getUserEmail()).isEqualTo("test@example.com"));
+        }
+
+        @Test
+        @DisplayName("throws exception when user is null")
+        void throwsException_whenUserIsNull() {
+            assertThatThrownBy(() -> gdprDeletionService.anonymizeUser(null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("User cannot be null");
+        }
+    }
+
     @Nested
     @DisplayName("DeletionResult")
     class DeletionResultTests {
@@ -0,0 +1,404 @@
+package com.digitalsanctuary.spring.user.gdpr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPInputStream;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.digitalsanctuary.spring.user.audit.AuditEvent;
+import com.digitalsanctuary.spring.user.event.UserPreDeleteEvent;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.persistence.repository.UserRepository;
+import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
+
+@DisplayName("GdprExportJobService Tests")
+class GdprExportJobServiceTest {
+
+    private static final byte[] EXPORT = "{\"userData\":{\"id\":1}}".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private GdprConfig gdprConfig;
+    private GdprExportService gdprExportService;
+    private UserRepository userRepository;
+    private PlatformTransactionManager transactionManager;
+    private ApplicationEventPublisher eventPublisher;
+    private GdprExportJobService service;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private User user;
+    private User otherUser;
+
+    @BeforeEach
+    void setUp() {
+        gdprConfig = mock(GdprConfig.class);
+        gdprExportService = mock(GdprExportService.class);
+        userRepository = mock(UserRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        when(gdprConfig.getExportJobDirectory()).thenReturn(directory.toString());
+        when(gdprConfig.getExportJobConcurrency()).thenReturn(1);
+        when(gdprConfig.getExportJobQueueCapacity()).thenReturn(1);
+        when(gdprConfig.getExportJobRetentionMinutes()).thenReturn(60);
+        service = new GdprExportJobService(gdprConfig, gdprExportService, userRepository, transactionManager, eventPublisher);
+
+        user = UserTestDataBuilder.aUser().withId(1L).withEmail("one@example.com").build();
+        otherUser = UserTestDataBuilder.aUser().withId(2L).withEmail("two@example.com").build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(otherUser));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    private void exportWrites(byte[] bytes) throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write(bytes);
+            return null;
+        }).when(gdprExportService).writeUserData(any(User.class), any(OutputStream.class));
+    }
+
+    private void exportBlocksUntilReleased() throws Exception {
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(gdprExportService).writeUserData(any(User.class), any(OutputStream.class));
+    }
+
+    private GdprExportJob awaitStatus(GdprExportJob job, GdprExportJob.Status status) {
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(Duration.ofMillis(25))
+                .until(() -> job.getStatus() == status);
+        return job;
+    }
+
+    private List<String> auditStatuses() {
+        ArgumentCaptor<AuditEvent> events = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        return events.getAllValues().stream().map(AuditEvent::getActionStatus).toList();
+    }
+
+    @Nested
+    @DisplayName("submit")
+    class Submit {
+
+        @Test
+        @DisplayName("writes the export to a gzip-compressed file in the background")
+        void writesCompressedExport() throws Exception {
+            exportWrites(EXPORT);
+
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            Path file = service.claimDownload(job.getId(), user).orElseThrow();
+            assertThat(file.getParent()).isEqualTo(directory);
+            assertThat(job.getSizeBytes()).isEqualTo(Files.size(file));
+            assertThat(job.getCompletedAt()).isNotNull();
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                in.transferTo(content);
+                assertThat(content.toByteArray()).isEqualTo(EXPORT);
+            }
+            assertThat(auditStatuses()).containsExactly("Requested", "Success");
+        }
+
+        @Test
+        @DisplayName("creates the export directory and files readable by the owner only")
+        void createsOwnerOnlyFiles() throws Exception {
+            Assumptions.assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+            Path exports = directory.resolve("exports");
+            when(gdprConfig.getExportJobDirectory()).thenReturn(exports.toString());
+            exportWrites(EXPORT);
+
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            Path file = service.claimDownload(job.getId(), user).orElseThrow();
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(exports))).isEqualTo("rwx------");
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("rw-------");
+        }
+
+        @Test
+        @DisplayName("returns the user's job that is still running instead of starting another")
+        void reusesActiveJob() throws Exception {
+            exportBlocksUntilReleased();
+
+            GdprExportJob first = service.submit(user);
+            GdprExportJob second = service.submit(user);
+
+            assertThat(second).isSameAs(first);
+            assertThat(first.getStatus().isActive()).isTrue();
+        }
+
+        @Test
+        @DisplayName("rejects a job when the workers are busy and the queue is full")
+        void rejectsWhenQueueFull() throws Exception {
+            exportBlocksUntilReleased();
+            User thirdUser = UserTestDataBuilder.aUser().withId(3L).withEmail("three@example.com").build();
+
+            service.submit(user);
+            service.submit(otherUser);
+
+            assertThatThrownBy(() -> service.submit(thirdUser)).isInstanceOf(RejectedExecutionException.class);
+            assertThat(auditStatuses()).contains("Rejected");
+        }
+
+        @Test
+        @DisplayName("marks the job failed and leaves no file behind when the export fails")
+        void marksFailedJob() throws Exception {
+            doThrow(new IllegalStateException("audit store unavailable"))
+                    .when(gdprExportService).writeUserData(any(User.class), any(OutputStream.class));
+
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.FAILED);
+
+            assertThat(service.claimDownload(job.getId(), user)).isEmpty();
+            try (var files = Files.list(directory)) {
+                assertThat(files).isEmpty();
+            }
+            assertThat(auditStatuses()).containsExactly("Requested", "Failure");
+        }
+
+        @Test
+        @DisplayName("loads the user again in the worker's own transaction instead of using the caller's entity")
+        void reloadsUserOnWorker() throws Exception {
+            User loaded = UserTestDataBuilder.aUser().withId(1L).withEmail("one@example.com").build();
+            when(userRepository.findById(1L)).thenReturn(Optional.of(loaded));
+            exportWrites(EXPORT);
+
+            awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            verify(gdprExportService).writeUserData(same(loaded), any(OutputStream.class));
+            verify(transactionManager).getTransaction(any());
+        }
+
+        @Test
+        @DisplayName("fails the job when the user no longer exists")
+        void failsForMissingUser() throws Exception {
+            when(userRepository.findById(1L)).thenReturn(Optional.empty());
+
+            awaitStatus(service.submit(user), GdprExportJob.Status.FAILED);
+
+            verify(gdprExportService, never()).writeUserData(any(User.class), any(OutputStream.class));
+            assertThat(auditStatuses()).containsExactly("Requested", "Failure");
+        }
+
+        @Test
+        @DisplayName("publishes audit events without holding the service's monitor")
+        void auditsOutsideMonitor() throws Exception {
+            List<Boolean> heldLock = new CopyOnWriteArrayList<>();
+            doAnswer(invocation -> heldLock.add(Thread.holdsLock(service))).when(eventPublisher).publishEvent(any(AuditEvent.class));
+            exportWrites(EXPORT);
+
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+            service.claimDownload(job.getId(), user);
+            service.finishDownload(job.getId(), true);
+
+            assertThat(heldLock).hasSize(3).containsOnly(false);
+        }
+
+        @Test
+        @DisplayName("rejects a null user")
+        void rejectsNullUser() {
+            assertThatThrownBy(() -> service.submit(null)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("getJob")
+    class GetJob {
+
+        @Test
+        @DisplayName("does not return another user's job")
+        void hidesOtherUsersJobs() throws Exception {
+            exportWrites(EXPORT);
+            GdprExportJob job = service.submit(user);
+
+            assertThat(service.getJob(job.getId(), user)).contains(job);
+            assertThat(service.getJob(job.getId(), otherUser)).isEmpty();
+            assertThat(service.getJob("unknown", user)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("download")
+    class Download {
+
+        @Test
+        @DisplayName("lets an export be downloaded once and then deletes its file")
+        void downloadsOnce() throws Exception {
+            exportWrites(EXPORT);
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            Optional<Path> file = service.claimDownload(job.getId(), user);
+            assertThat(file).isPresent();
+            assertThat(service.claimDownload(job.getId(), user)).isEmpty();
+            service.finishDownload(job.getId(), true);
+
+            assertThat(job.getStatus()).isEqualTo(GdprExportJob.Status.DOWNLOADED);
+            assertThat(file.get()).doesNotExist();
+            assertThat(service.claimDownload(job.getId(), user)).isEmpty();
+            assertThat(auditStatuses()).containsExactly("Requested", "Success", "Downloaded");
+        }
+
+        @Test
+        @DisplayName("lets an interrupted download be retried")
+        void retriesInterruptedDownload() throws Exception {
+            exportWrites(EXPORT);
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            Path file = service.claimDownload(job.getId(), user).orElseThrow();
+            service.finishDownload(job.getId(), false);
+
+            assertThat(job.getStatus()).isEqualTo(GdprExportJob.Status.COMPLETED);
+            assertThat(file).exists();
+            assertThat(service.claimDownload(job.getId(), user)).contains(file);
+        }
+
+        @Test
+        @DisplayName("does not let another user download the export")
+        void refusesOtherUser() throws Exception {
+            exportWrites(EXPORT);
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            assertThat(service.claimDownload(job.getId(), otherUser)).isEmpty();
+            assertThat(job.getStatus()).isEqualTo(GdprExportJob.Status.COMPLETED);
+        }
+    }
+
+    @Nested
+    @DisplayName("onUserPreDelete")
+    class OnUserPreDelete {
+
+        @Test
+        @DisplayName("deletes a deleted user's completed export")
+        void deletesCompletedExport() throws Exception {
+            exportWrites(EXPORT);
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            service.onUserPreDelete(new UserPreDeleteEvent(this, 1L, "one@example.com"));
+
+            assertThat(job.getStatus()).isEqualTo(GdprExportJob.Status.CANCELLED);
+            assertThat(service.getJob(job.getId(), user)).isEmpty();
+            try (var files = Files.list(directory)) {
+                assertThat(files).isEmpty();
+            }
+        }
+
+        @Test
+        @DisplayName("waits for the deletion to commit before deleting the user's export")
+        void deletesAfterCommit() throws Exception {
+            exportWrites(EXPORT);
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                service.onUserPreDelete(new UserPreDeleteEvent(this, 1L, "one@example.com"));
+
+                // Nothing is deleted until the transaction commits
+                assertThat(job.getStatus()).isEqualTo(GdprExportJob.Status.COMPLETED);
+                assertThat(job.getFile()).exists();
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                assertThat(job.getStatus()).isEqualTo(GdprExportJob.Status.CANCELLED);
+                assertThat(job.getFile()).doesNotExist();
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        @Test
+        @DisplayName("cancels a deleted user's running export and leaves other users' jobs alone")
+        void cancelsRunningExport() throws Exception {
+            doAnswer(invocation -> {
+                User exported = invocation.getArgument(0);
+                if (exported.getId().equals(1L)) {
+                    release.await();
+                }
+                ((OutputStream) invocation.getArgument(1)).write(EXPORT);
+                return null;
+            }).when(gdprExportService).writeUserData(any(User.class), any(OutputStream.class));
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.RUNNING);
+
+            service.onUserPreDelete(new UserPreDeleteEvent(this, 1L, "one@example.com"));
+            // A single worker: the other user's job runs once the cancelled one has stopped
+            GdprExportJob other = awaitStatus(service.submit(otherUser), GdprExportJob.Status.COMPLETED);
+
+            assertThat(job.getStatus()).isEqualTo(GdprExportJob.Status.CANCELLED);
+            assertThat(service.getJob(job.getId(), user)).isEmpty();
+            try (var files = Files.list(directory)) {
+                assertThat(files).containsExactly(other.getFile());
+            }
+            assertThat(auditStatuses()).containsExactly("Requested", "Requested", "Success");
+        }
+    }
+
+    @Nested
+    @DisplayName("purgeExpired")
+    class PurgeExpired {
+
+        @Test
+        @DisplayName("deletes old export files no job refers to and keeps recent ones")
+        void deletesOrphanFiles() throws Exception {
+            Path old = Files.write(directory.resolve(GdprExportJobService.FILE_PREFIX + "old" + GdprExportJobService.FILE_SUFFIX),
+                    EXPORT);
+            Files.setLastModifiedTime(old, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+            Path recent = Files.write(
+                    directory.resolve(GdprExportJobService.FILE_PREFIX + "recent" + GdprExportJobService.FILE_SUFFIX), EXPORT);
+            Path unrelated = Files.write(directory.resolve("other.txt"), EXPORT);
+            Files.setLastModifiedTime(unrelated, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+            service.purgeExpired();
+
+            assertThat(old).doesNotExist();
+            assertThat(recent).exists();
+            assertThat(unrelated).exists();
+        }
+
+        @Test
+        @DisplayName("keeps a completed export that has not expired")
+        void keepsUnexpiredJobs() throws Exception {
+            exportWrites(EXPORT);
+            GdprExportJob job = awaitStatus(service.submit(user), GdprExportJob.Status.COMPLETED);
+
+            service.purgeExpired();
+
+            assertThat(service.getJob(job.getId(), user)).contains(job);
+            assertThat(service.claimDownload(job.getId(), user)).isPresent();
+        }
+    }
+}
@@ -3,12 +3,17 @@ package com.digitalsanctuary.spring.user.gdpr;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import java.io.ByteArrayOutputStream;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -18,10 +23,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.springframework.context.ApplicationEventPublisher;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 import com.digitalsanctuary.spring.user.audit.AuditEventDTO;
 import com.digitalsanctuary.spring.user.audit.AuditLogQueryService;
+import com.digitalsanctuary.spring.user.audit.AuditQuery;
 import com.digitalsanctuary.spring.user.dto.GdprExportDTO;
 import com.digitalsanctuary.spring.user.event.UserDataExportedEvent;
 import com.digitalsanctuary.spring.user.persistence.model.PasswordResetToken;
@@ -90,8 +99,7 @@ class GdprExportServiceTest {
         void exportsBasicUserData() {
             // Given
             when(gdprConfig.isConsentTracking()).thenReturn(true);
-            when(auditLogQueryService.findByUser(testUser)).thenReturn(new ArrayList<>());
-            when(auditLogQueryService.findByUserAndAction(any(), any())).thenReturn(new ArrayList<>());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
 
             // When
             GdprExportDTO export = gdprExportService.exportUserData(testUser);
@@ -117,8 +125,7 @@ class GdprExportServiceTest {
                     .build();
             when(userRepository.findWithRolesByEmail("test@example.com")).thenReturn(userWithRoles);
             when(gdprConfig.isConsentTracking()).thenReturn(true);
-            when(auditLogQueryService.findByUser(testUser)).thenReturn(new ArrayList<>());
-            when(auditLogQueryService.findByUserAndAction(any(), any())).thenReturn(new ArrayList<>());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
 
             // When
             GdprExportDTO export = gdprExportService.exportUserData(testUser);
@@ -132,8 +139,7 @@ class GdprExportServiceTest {
         void includesExportMetadata() {
             // Given
             when(gdprConfig.isConsentTracking()).thenReturn(true);
-            when(auditLogQueryService.findByUser(testUser)).thenReturn(new ArrayList<>());
-            when(auditLogQueryService.findByUserAndAction(any(), any())).thenReturn(new ArrayList<>());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
 
             // When
             GdprExportDTO export = gdprExportService.exportUserData(testUser);
@@ -158,8 +164,7 @@ class GdprExportServiceTest {
                             .userEmail("test@example.com")
                             .build()
             );
-            when(auditLogQueryService.findByUser(testUser)).thenReturn(auditEvents);
-            when(auditLogQueryService.findByUserAndAction(any(), any())).thenReturn(new ArrayList<>());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(auditEvents.stream());
 
             // When
             GdprExportDTO export = gdprExportService.exportUserData(testUser);
@@ -169,6 +174,30 @@ class GdprExportServiceTest {
             assertThat(export.getAuditHistory().get(0).getAction()).isEqualTo("Login");
         }
 
+        @Test
+        @DisplayName("derives consent records from the exported audit history without another query")
+        void derivesConsentsFromAuditHistory() {
+            // Given - newest first, as the query service returns them
+            when(gdprConfig.isConsentTracking()).thenReturn(true);
+            List<AuditEventDTO> auditEvents = List.of(
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T12:00:00Z")).action("CONSENT_WITHDRAWN")
+                            .extraData("{\"consentType\":\"marketing_emails\"}").build(),
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T11:00:00Z")).action("Login").build(),
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T10:00:00Z")).action("CONSENT_GRANTED")
+                            .extraData("{\"consentType\":\"marketing_emails\",\"policyVersion\":\"1.0\"}").build());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(auditEvents.stream());
+
+            // When
+            GdprExportDTO export = gdprExportService.exportUserData(testUser);
+
+            // Then
+            assertThat(export.getAuditHistory()).hasSize(3);
+            assertThat(export.getConsents()).hasSize(1);
+            assertThat(export.getConsents().get(0).getGrantedAt()).isEqualTo(Instant.parse("2025-01-15T10:00:00Z"));
+            assertThat(export.getConsents().get(0).getWithdrawnAt()).isEqualTo(Instant.parse("2025-01-15T12:00:00Z"));
+            verify(auditLogQueryService, never()).find(any(), any());
+        }
+
         @Test
         @DisplayName("exports token metadata without exposing tokens")
         void exportsTokenMetadata_withoutExposingTokens() {
@@ -177,8 +206,7 @@ class GdprExportServiceTest {
             VerificationToken verificationToken = new VerificationToken("secret-token", testUser);
             when(verificationTokenRepository.findByUser(testUser)).thenReturn(verificationToken);
             when(passwordResetTokenRepository.findByUser(testUser)).thenReturn(null);
-            when(auditLogQueryService.findByUser(testUser)).thenReturn(new ArrayList<>());
-            when(auditLogQueryService.findByUserAndAction(any(), any())).thenReturn(new ArrayList<>());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
 
             // When
             GdprExportDTO export = gdprExportService.exportUserData(testUser);
@@ -195,8 +223,7 @@ class GdprExportServiceTest {
         void publishesUserDataExportedEvent() {
             // Given
             when(gdprConfig.isConsentTracking()).thenReturn(true);
-            when(auditLogQueryService.findByUser(testUser)).thenReturn(new ArrayList<>());
-            when(auditLogQueryService.findByUserAndAction(any(), any())).thenReturn(new ArrayList<>());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
 
             // When
             gdprExportService.exportUserData(testUser);
@@ -217,8 +244,7 @@ class GdprExportServiceTest {
         void aggregatesDataFromContributors() {
             // Given - contributors are injected as a List
             when(gdprConfig.isConsentTracking()).thenReturn(true);
-            when(auditLogQueryService.findByUser(testUser)).thenReturn(new ArrayList<>());
-            when(auditLogQueryService.findByUserAndAction(any(), any())).thenReturn(new ArrayList<>());
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
 
             // When
             GdprExportDTO export = gdprExportService.exportUserData(testUser);
@@ -226,6 +252,258 @@ class GdprExportServiceTest {
             // Then
             assertThat(export.getAdditionalData()).isNotNull();
         }
+
+        @Test
+        @DisplayName("calls contributors concurrently, keeps their order and reports the one that times out")
+        void callsContributorsConcurrently() {
+            // Given
+            when(gdprConfig.isConsentTracking()).thenReturn(true);
+            when(gdprConfig.isConcurrentContributors()).thenReturn(true);
+            when(gdprConfig.getContributorTimeoutMs()).thenReturn(200L);
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
+            CountDownLatch never = new CountDownLatch(1);
+            GdprExportService service = new GdprExportService(gdprConfig, auditLogQueryService, verificationTokenRepository,
+                    passwordResetTokenRepository, userRepository,
+                    List.of(contributor("orders", () -> Map.of("count", 2)), contributor("billing", () -> {
+                        try {
+                            never.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return Map.of("late", true);
+                    }), contributor("preferences", () -> Map.of("theme", "dark"))),
+                    eventPublisher, objectMapper);
+
+            // When
+            GdprExportDTO export = service.exportUserData(testUser);
+
+            // Then
+            assertThat(export.getAdditionalData()).containsOnlyKeys("orders", "preferences");
+            assertThat(export.getAdditionalData().keySet()).containsExactly("orders", "preferences");
+            assertThat(export.getMetadata().getTimedOutContributors()).containsExactly("billing");
+        }
+
+        @Test
+        @DisplayName("calls contributors on the exporting thread unless concurrent export is enabled")
+        void callsContributorsOnExportingThreadByDefault() {
+            // Given
+            when(gdprConfig.isConsentTracking()).thenReturn(true);
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
+            List<Thread> threads = new ArrayList<>();
+            GdprExportService service = new GdprExportService(gdprConfig, auditLogQueryService, verificationTokenRepository,
+                    passwordResetTokenRepository, userRepository, List.of(contributor("orders", () -> {
+                        threads.add(Thread.currentThread());
+                        return Map.of("count", 2);
+                    })), eventPublisher, objectMapper);
+
+            // When
+            GdprExportDTO export = service.exportUserData(testUser);
+
+            // Then
+            assertThat(export.getAdditionalData()).containsOnlyKeys("orders");
+            assertThat(threads).containsExactly(Thread.currentThread());
+        }
+
+        private GdprDataContributor contributor(String key, Supplier<Map<String, Object>> data) {
+            return new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return key;
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    return data.get();
+                }
+            };
+        }
+    }
+
+    @Nested
+    @DisplayName("writeUserData")
+    class WriteUserData {
+
+        private GdprExportService streamingService(GdprDataContributor... contributors) {
+            return new GdprExportService(gdprConfig, auditLogQueryService, verificationTokenRepository, passwordResetTokenRepository,
+                    userRepository, List.of(contributors), eventPublisher, objectMapper);
+        }
+
+        private GdprDataContributor mapContributor(String key, Map<String, Object> data) {
+            return new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return key;
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    return data;
+                }
+            };
+        }
+
+        @Test
+        @DisplayName("streams every section and derives consents during the audit pass")
+        void streamsSections() {
+            // Given
+            when(gdprConfig.isConsentTracking()).thenReturn(true);
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.of(
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T11:00:00Z")).action("Login").build(),
+                    AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T10:00:00Z")).action("CONSENT_GRANTED")
+                            .extraData("{\"consentType\":\"marketing_emails\"}").build()));
+            GdprDataContributor streaming = new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return "orders";
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    throw new UnsupportedOperationException("streams instead");
+                }
+
+                @Override
+                public void writeUserData(User user, JsonGenerator generator) {
+                    generator.writeArrayPropertyStart("orders");
+                    generator.writeString("order-1");
+                    generator.writeString("order-2");
+                    generator.writeEndArray();
+                }
+            };
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            // When
+            streamingService(mapContributor("preferences", Map.of("theme", "dark")), streaming).writeUserData(testUser, out);
+
+            // Then
+            JsonNode export = objectMapper.readTree(out.toByteArray());
+            assertThat(export.get("userData").get("email").asString()).isEqualTo("test@example.com");
+            assertThat(export.get("auditHistory")).hasSize(2);
+            assertThat(export.get("consents")).hasSize(1);
+            assertThat(export.get("consents").get(0).get("grantedAt").isNull()).isFalse();
+            assertThat(export.get("additionalData").get("preferences").get("theme").asString()).isEqualTo("dark");
+            assertThat(export.get("additionalData").get("orders").get("orders")).hasSize(2);
+            verify(auditLogQueryService, never()).find(any(), any());
+            verify(eventPublisher).publishEvent(any(UserDataExportedEvent.class));
+        }
+
+        @Test
+        @DisplayName("skips a contributor that fails before writing")
+        void skipsFailingContributor() {
+            // Given
+            when(gdprConfig.isConsentTracking()).thenReturn(false);
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
+            GdprDataContributor failing = new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return "broken";
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    throw new IllegalStateException("unavailable");
+                }
+            };
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            // When
+            streamingService(failing, mapContributor("preferences", Map.of("theme", "dark"))).writeUserData(testUser, out);
+
+            // Then
+            JsonNode export = objectMapper.readTree(out.toByteArray());
+            assertThat(export.get("additionalData").get("broken")).isEmpty();
+            assertThat(export.get("additionalData").get("preferences").get("theme").asString()).isEqualTo("dark");
+        }
+
+        @Test
+        @DisplayName("marks a section incomplete when its contributor fails after writing part of it")
+        void marksPartialSectionIncomplete() {
+            // Given
+            when(gdprConfig.isConsentTracking()).thenReturn(false);
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
+            GdprDataContributor failing = new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return "orders";
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    throw new UnsupportedOperationException("streams instead");
+                }
+
+                @Override
+                public void writeUserData(User user, JsonGenerator generator) {
+                    generator.writeNumberProperty("count", 2);
+                    throw new IllegalStateException("order service unavailable");
+                }
+            };
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            // When
+            streamingService(failing, mapContributor("preferences", Map.of("theme", "dark"))).writeUserData(testUser, out);
+
+            // Then
+            JsonNode additionalData = objectMapper.readTree(out.toByteArray()).get("additionalData");
+            assertThat(additionalData.get("orders").get("count").asInt()).isEqualTo(2);
+            assertThat(additionalData.get("orders").has("_exportError")).isTrue();
+            assertThat(additionalData.get("preferences").get("theme").asString()).isEqualTo("dark");
+            verify(eventPublisher).publishEvent(any(UserDataExportedEvent.class));
+        }
+
+        @Test
+        @DisplayName("leaves unparseable output when a contributor fails part way through its section")
+        void truncatesOnMidSectionFailure() {
+            // Given
+            when(gdprConfig.isConsentTracking()).thenReturn(false);
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.empty());
+            GdprDataContributor failing = new GdprDataContributor() {
+                @Override
+                public String getDataKey() {
+                    return "orders";
+                }
+
+                @Override
+                public Map<String, Object> exportUserData(User user) {
+                    throw new UnsupportedOperationException("streams instead");
+                }
+
+                @Override
+                public void writeUserData(User user, JsonGenerator generator) {
+                    generator.writeArrayPropertyStart("orders");
+                    generator.writeString("order-1");
+                    throw new IllegalStateException("order service unavailable");
+                }
+            };
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            // When / Then
+            assertThatThrownBy(() -> streamingService(failing).writeUserData(testUser, out))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThat(out.toString()).contains("order-1");
+            assertThatThrownBy(() -> objectMapper.readTree(out.toByteArray())).isInstanceOf(JacksonException.class);
+            verify(eventPublisher, never()).publishEvent(any(UserDataExportedEvent.class));
+        }
+
+        @Test
+        @DisplayName("fails, leaving unparseable output, when the audit history cannot be read to the end")
+        void failsOnPartialAuditHistory() {
+            // Given
+            AuditEventDTO login = AuditEventDTO.builder().timestamp(Instant.parse("2025-01-15T11:00:00Z")).action("Login").build();
+            when(auditLogQueryService.stream(testUser, AuditQuery.all(), null)).thenReturn(Stream.concat(Stream.of(login),
+                    Stream.<AuditEventDTO>generate(() -> {
+                        throw new IllegalStateException("audit store unavailable");
+                    }).limit(1)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            // When / Then
+            assertThatThrownBy(() -> streamingService().writeUserData(testUser, out))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("audit store unavailable");
+            assertThat(out.toString()).contains("Login").doesNotContain("consents");
+            assertThatThrownBy(() -> objectMapper.readTree(out.toByteArray())).isInstanceOf(JacksonException.class);
+            verify(eventPublisher, never()).publishEvent(any(UserDataExportedEvent.class));
+        }
     }
 
 }
@@ -0,0 +1,139 @@
+package com.digitalsanctuary.spring.user.jobs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.data.domain.Limit;
+import com.digitalsanctuary.spring.user.gdpr.ConsentAuditService;
+import com.digitalsanctuary.spring.user.gdpr.ConsentAuditService.ConsentStatus;
+import com.digitalsanctuary.spring.user.gdpr.ConsentStateService;
+import com.digitalsanctuary.spring.user.gdpr.GdprConfig;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.persistence.repository.UserRepository;
+import com.digitalsanctuary.spring.user.test.annotations.ServiceTest;
+import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
+
+@ServiceTest
+@DisplayName("ConsentStateBackfillJob Tests")
+class ConsentStateBackfillJobTest {
+
+	private static final Instant GRANTED_AT = Instant.parse("2025-01-15T10:00:00Z");
+	private static final Instant WITHDRAWN_AT = Instant.parse("2025-01-15T12:00:00Z");
+	private static final String OWNER = "node-1";
+
+	@Mock
+	private GdprConfig gdprConfig;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private ConsentAuditService consentAuditService;
+
+	@Mock
+	private ConsentStateService consentStateService;
+
+	@InjectMocks
+	private ConsentStateBackfillJob job;
+
+	private final User first = UserTestDataBuilder.aUser().withId(1L).build();
+	private final User second = UserTestDataBuilder.aUser().withId(2L).build();
+
+	@Test
+	@DisplayName("replays every user's consent history into the store and marks it backfilled")
+	void backfillsAndMarks() {
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(ConsentStateBackfillJob.PAGE_SIZE)))
+				.thenReturn(List.of(first, second));
+		when(consentStateService.extendBackfillLock(OWNER, ConsentStateBackfillJob.LEASE)).thenReturn(true);
+		when(consentStateService.markBackfilled(OWNER)).thenReturn(true);
+		when(consentAuditService.replayConsentStatus(first)).thenReturn(Map.of(
+				"privacy_policy", new ConsentStatus("privacy_policy", true, GRANTED_AT, null)));
+		when(consentAuditService.replayConsentStatus(second)).thenReturn(Map.of(
+				"marketing_emails", new ConsentStatus("marketing_emails", false, null, WITHDRAWN_AT)));
+
+		assertThat(job.backfill(OWNER)).isTrue();
+
+		verify(consentStateService).apply(1L, "privacy_policy", true, GRANTED_AT);
+		verify(consentStateService).apply(2L, "marketing_emails", false, WITHDRAWN_AT);
+		verify(consentStateService).markBackfilled(OWNER);
+	}
+
+	@Test
+	@DisplayName("pages through users by id, continuing after the last id of the previous page")
+	void pagesById() {
+		List<User> fullPage = LongStream.rangeClosed(1, ConsentStateBackfillJob.PAGE_SIZE)
+				.mapToObj(id -> UserTestDataBuilder.aUser().withId(id).build()).toList();
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(ConsentStateBackfillJob.PAGE_SIZE))).thenReturn(fullPage);
+		when(userRepository.findByIdGreaterThanOrderByIdAsc((long) ConsentStateBackfillJob.PAGE_SIZE,
+				Limit.of(ConsentStateBackfillJob.PAGE_SIZE))).thenReturn(List.of());
+		when(consentAuditService.replayConsentStatus(any(User.class))).thenReturn(Map.of());
+		when(consentStateService.extendBackfillLock(OWNER, ConsentStateBackfillJob.LEASE)).thenReturn(true);
+		when(consentStateService.markBackfilled(OWNER)).thenReturn(true);
+
+		assertThat(job.backfill(OWNER)).isTrue();
+
+		verify(userRepository).findByIdGreaterThanOrderByIdAsc((long) ConsentStateBackfillJob.PAGE_SIZE,
+				Limit.of(ConsentStateBackfillJob.PAGE_SIZE));
+	}
+
+	@Test
+	@DisplayName("does not mark the store backfilled when a user fails, so the next startup retries")
+	void leavesUnmarkedOnFailure() {
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(ConsentStateBackfillJob.PAGE_SIZE)))
+				.thenReturn(List.of(first, second));
+		when(consentStateService.extendBackfillLock(OWNER, ConsentStateBackfillJob.LEASE)).thenReturn(true);
+		when(consentAuditService.replayConsentStatus(first)).thenThrow(new IllegalStateException("audit log unreadable"));
+		when(consentAuditService.replayConsentStatus(second)).thenReturn(Map.of(
+				"marketing_emails", new ConsentStatus("marketing_emails", false, null, WITHDRAWN_AT)));
+
+		assertThat(job.backfill(OWNER)).isFalse();
+
+		verify(consentStateService).apply(2L, "marketing_emails", false, WITHDRAWN_AT);
+		verify(consentStateService, never()).markBackfilled(anyString());
+	}
+
+	@Test
+	@DisplayName("does not start when the store is already backfilled")
+	void skipsWhenBackfilled() {
+		when(consentStateService.isBackfilled()).thenReturn(true);
+
+		job.run();
+
+		verify(consentStateService, never()).tryLockBackfill(anyString(), any());
+		verify(userRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+	}
+
+	@Test
+	@DisplayName("does not start while another node holds the lease")
+	void skipsWhenLeased() {
+		when(consentStateService.tryLockBackfill(anyString(), eq(ConsentStateBackfillJob.LEASE))).thenReturn(false);
+
+		job.run();
+
+		verify(userRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+		verify(consentStateService, never()).unlockBackfill(anyString());
+	}
+
+	@Test
+	@DisplayName("logs a failure instead of letting it end the thread silently, and releases the lease")
+	void logsFailure() {
+		when(consentStateService.tryLockBackfill(anyString(), eq(ConsentStateBackfillJob.LEASE))).thenReturn(true);
+		when(userRepository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenThrow(new IllegalStateException("database down"));
+
+		job.run();
+
+		verify(consentStateService).unlockBackfill(anyString());
+	}
+}
@@ -0,0 +1,169 @@
+package com.digitalsanctuary.spring.user.jobs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import com.digitalsanctuary.spring.user.gdpr.GdprDeletionService;
+import com.digitalsanctuary.spring.user.gdpr.GdprDeletionService.DeletionResult;
+import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.persistence.repository.UserRepository;
+import com.digitalsanctuary.spring.user.test.annotations.ServiceTest;
+import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
+
+@ServiceTest
+@DisplayName("UserRetentionJob Tests")
+class UserRetentionJobTest {
+
+	private static final String ANONYMIZED = "%@" + GdprDeletionService.ANONYMIZED_EMAIL_DOMAIN;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private GdprDeletionService gdprDeletionService;
+
+	@Mock
+	private PlatformTransactionManager transactionManager;
+
+	private final UserRetentionConfig retentionConfig = new UserRetentionConfig();
+
+	private UserRetentionJob job;
+
+	private final User first = UserTestDataBuilder.aUser().withId(1L).disabled().registeredDaysAgo(90).lastActiveDaysAgo(90).build();
+	private final User second = UserTestDataBuilder.aUser().withId(2L).disabled().registeredDaysAgo(90).lastActiveDaysAgo(90).build();
+	private final User third = UserTestDataBuilder.aUser().withId(3L).disabled().registeredDaysAgo(90).lastActiveDaysAgo(90).build();
+
+	@BeforeEach
+	void setUp() {
+		retentionConfig.setEnabled(true);
+		retentionConfig.setChunkSize(2);
+		job = new UserRetentionJob(retentionConfig, userRepository, gdprDeletionService, transactionManager);
+	}
+
+	@Test
+	@DisplayName("does nothing when disabled")
+	void doesNothingWhenDisabled() {
+		retentionConfig.setEnabled(false);
+		retentionConfig.setUnverifiedDays(30);
+
+		assertThat(job.purge()).isNull();
+		verify(userRepository, never()).findUnverifiedRegisteredBefore(anyLong(), any(), any(), any());
+	}
+
+	@Test
+	@DisplayName("deletes unverified accounts chunk by chunk, resuming after the last id")
+	void deletesChunkByChunk() {
+		retentionConfig.setUnverifiedDays(30);
+		when(userRepository.findUnverifiedRegisteredBefore(eq(0L), any(Date.class), eq(ANONYMIZED), eq(Limit.of(2))))
+				.thenReturn(List.of(first, second));
+		when(userRepository.findUnverifiedRegisteredBefore(eq(2L), any(Date.class), eq(ANONYMIZED), eq(Limit.of(2))))
+				.thenReturn(List.of(third));
+		when(userRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(first, second));
+		when(userRepository.findAllById(List.of(3L))).thenReturn(List.of(third));
+		when(userRepository.isUnverifiedRegisteredBefore(anyLong(), any(Date.class), eq(ANONYMIZED))).thenReturn(true);
+		when(gdprDeletionService.deleteUser(any(User.class), eq(false))).thenReturn(DeletionResult.success(null));
+
+		UserRetentionJob.Result result = job.purge();
+
+		assertThat(result.selected()).isEqualTo(3);
+		assertThat(result.removed()).isEqualTo(3);
+		assertThat(result.failed()).isZero();
+		verify(gdprDeletionService).deleteUser(third, false);
+		verify(userRepository, never()).findInactiveSince(anyLong(), any(), any(), any());
+	}
+
+	@Test
+	@DisplayName("retries a failed chunk one account at a time")
+	void retriesFailedChunk() {
+		retentionConfig.setUnverifiedDays(30);
+		when(userRepository.findUnverifiedRegisteredBefore(eq(0L), any(Date.class), eq(ANONYMIZED), any(Limit.class)))
+				.thenReturn(List.of(first, second));
+		when(userRepository.findUnverifiedRegisteredBefore(eq(2L), any(Date.class), eq(ANONYMIZED), any(Limit.class)))
+				.thenReturn(List.of());
+		when(userRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(first, second));
+		when(userRepository.findAllById(List.of(1L))).thenReturn(List.of(first));
+		when(userRepository.findAllById(List.of(2L))).thenReturn(List.of(second));
+		when(userRepository.isUnverifiedRegisteredBefore(anyLong(), any(Date.class), eq(ANONYMIZED))).thenReturn(true);
+		when(gdprDeletionService.deleteUser(first, false)).thenReturn(DeletionResult.success(null));
+		when(gdprDeletionService.deleteUser(second, false)).thenReturn(DeletionResult.failure("contributor failed"));
+
+		UserRetentionJob.Result result = job.purge();
+
+		assertThat(result.removed()).isEqualTo(1);
+		assertThat(result.failed()).isEqualTo(1);
+		verify(transactionManager).commit(any());
+	}
+
+	@Test
+	@DisplayName("rechecks the selection criteria in the transaction and skips an account that changed since it was selected")
+	void skipsAccountChangedSinceSelection() {
+		retentionConfig.setUnverifiedDays(30);
+		when(userRepository.findUnverifiedRegisteredBefore(eq(0L), any(Date.class), eq(ANONYMIZED), eq(Limit.of(2))))
+				.thenReturn(List.of(first, second));
+		when(userRepository.findUnverifiedRegisteredBefore(eq(2L), any(Date.class), eq(ANONYMIZED), eq(Limit.of(2))))
+				.thenReturn(List.of());
+		when(userRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(first, second));
+		// The second account verified its email between selection and the chunk transaction
+		when(userRepository.isUnverifiedRegisteredBefore(eq(1L), any(Date.class), eq(ANONYMIZED))).thenReturn(true);
+		when(userRepository.isUnverifiedRegisteredBefore(eq(2L), any(Date.class), eq(ANONYMIZED))).thenReturn(false);
+		when(gdprDeletionService.deleteUser(first, false)).thenReturn(DeletionResult.success(null));
+
+		UserRetentionJob.Result result = job.purge();
+
+		assertThat(result.selected()).isEqualTo(2);
+		assertThat(result.removed()).isEqualTo(1);
+		verify(gdprDeletionService, never()).deleteUser(second, false);
+	}
+
+	@Test
+	@DisplayName("anonymizes inactive accounts and skips one that became active since it was selected")
+	void anonymizesAndRechecks() {
+		retentionConfig.setInactiveDays(30);
+		retentionConfig.setChunkSize(100);
+		retentionConfig.setAction(UserRetentionConfig.Action.ANONYMIZE);
+		User active = UserTestDataBuilder.aUser().withId(2L).enabled().lastActiveDaysAgo(0).build();
+		when(userRepository.findInactiveSince(eq(0L), any(Date.class), eq(ANONYMIZED), eq(Limit.of(100))))
+				.thenReturn(List.of(first, active));
+		when(userRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(first, active));
+		when(userRepository.isInactiveSince(eq(1L), any(Date.class), eq(ANONYMIZED))).thenReturn(true);
+		when(userRepository.isInactiveSince(eq(2L), any(Date.class), eq(ANONYMIZED))).thenReturn(false);
+		when(gdprDeletionService.anonymizeUser(first)).thenReturn(DeletionResult.success(null));
+
+		UserRetentionJob.Result result = job.purge();
+
+		assertThat(result.removed()).isEqualTo(1);
+		verify(gdprDeletionService, never()).anonymizeUser(active);
+		verify(gdprDeletionService, never()).deleteUser(any(User.class), eq(false));
+	}
+
+	@Test
+	@DisplayName("stops after user.retention.maxUsersPerRun accounts")
+	void stopsAtRunLimit() {
+		retentionConfig.setUnverifiedDays(30);
+		retentionConfig.setInactiveDays(365);
+		retentionConfig.setChunkSize(5);
+		retentionConfig.setMaxUsersPerRun(2);
+		when(userRepository.findUnverifiedRegisteredBefore(eq(0L), any(Date.class), eq(ANONYMIZED), eq(Limit.of(2))))
+				.thenReturn(List.of(first, second));
+		when(userRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(first, second));
+		when(userRepository.isUnverifiedRegisteredBefore(anyLong(), any(Date.class), eq(ANONYMIZED))).thenReturn(true);
+		when(gdprDeletionService.deleteUser(any(User.class), eq(false))).thenReturn(DeletionResult.success(null));
+
+		UserRetentionJob.Result result = job.purge();
+
+		assertThat(result.removed()).isEqualTo(2);
+		verify(userRepository, never()).findInactiveSince(anyLong(), any(), any(), any());
+	}
+}
@@ -1,16 +1,21 @@
 package com.digitalsanctuary.spring.user.persistence.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.data.domain.Limit;
 import com.digitalsanctuary.spring.user.persistence.model.User;
+import com.digitalsanctuary.spring.user.persistence.model.VerificationToken;
 import com.digitalsanctuary.spring.user.test.annotations.DatabaseTest;
 import com.digitalsanctuary.spring.user.test.builders.UserTestDataBuilder;
 
 /**
  * Repository slice tests for {@link UserRepository}, focusing on the atomic failed-login-attempt increment used to prevent the lockout-evasion
- * lost-update race.
+ * lost-update race, and on the selection of unverified accounts by the retention job.
  */
 @DatabaseTest
 class UserRepositoryTest {
@@ -44,4 +49,41 @@ class UserRepositoryTest {
 
 		assertThat(updated).isZero();
 	}
+
+	@Test
+	void findUnverifiedRegisteredBeforeSelectsOnlyAccountsThatNeverVerified() {
+		Date registered = Date.from(Instant.now().minus(Duration.ofDays(90)));
+		Date modified = Date.from(Instant.now().minus(Duration.ofDays(10)));
+		User untouched = persistWithDates("untouched@test.com", false, false, registered, registered);
+		User pendingToken = persistWithDates("pending@test.com", false, false, registered, modified);
+		entityManager.persist(new VerificationToken("pending-token", pendingToken, 60));
+		persistWithDates("admin-disabled@test.com", false, false, registered, modified);
+		persistWithDates("locked@test.com", false, true, registered, registered);
+		persistWithDates("verified@test.com", true, false, registered, registered);
+		persistWithDates("recent@test.com", false, false, modified, modified);
+		entityManager.flush();
+		entityManager.clear();
+
+		Date cutoff = Date.from(Instant.now().minus(Duration.ofDays(30)));
+		assertThat(userRepository.findUnverifiedRegisteredBefore(0L, cutoff, "%@anonymized.invalid", Limit.of(10)))
+				.extracting(User::getEmail).containsExactly(untouched.getEmail(), pendingToken.getEmail());
+		assertThat(userRepository.isUnverifiedRegisteredBefore(untouched.getId(), cutoff, "%@anonymized.invalid")).isTrue();
+		assertThat(userRepository.isUnverifiedRegisteredBefore(untouched.getId(), cutoff, "%@test.com")).isFalse();
+		assertThat(userRepository.isUnverifiedRegisteredBefore(userRepository.findByEmail("admin-disabled@test.com").getId(), cutoff,
+				"%@anonymized.invalid")).isFalse();
+	}
+
+	/**
+	 * Persists a user and then sets its dates with a bulk update, which bypasses JPA auditing and {@code @PreUpdate}.
+	 */
+	private User persistWithDates(String email, boolean enabled, boolean locked, Date registrationDate, Date lastActivityDate) {
+		UserTestDataBuilder builder = UserTestDataBuilder.aUser().withId(null).withEmail(email);
+		builder = enabled ? builder.enabled() : builder.disabled();
+		User user = entityManager.persistFlushFind(locked ? builder.locked().build() : builder.build());
+		entityManager.getEntityManager()
+				.createQuery("update User u set u.registrationDate = :registrationDate, u.lastActivityDate = :lastActivityDate where u.id = :id")
+				.setParameter("registrationDate", registrationDate).setParameter("lastActivityDate", lastActivityDate)
+				.setParameter("id", user.getId()).executeUpdate();
+		return user;
+	}
 }